@@ -16,16 +16,18 @@
 
 package org.opencb.opencga.analysis.old.execution.plugins.ibs;
 
+import org.opencb.biodata.models.core.Region;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.opencga.analysis.old.execution.plugins.OpenCGAAnalysis;
+import org.opencb.opencga.catalog.managers.CatalogManager;
 import org.opencb.opencga.catalog.old.models.tool.Execution;
 import org.opencb.opencga.catalog.old.models.tool.Manifest;
 import org.opencb.opencga.catalog.old.models.tool.Option;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 
+import java.net.URI;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.Map;
+import java.util.*;
 
 /**
  * Created on 26/11/15
@@ -45,7 +47,8 @@ public class IbsAnalysis extends OpenCGAAnalysis {
                         new Execution("default", "default", "", Collections.emptyList(), Collections.emptyList(), OUTDIR,
                                 Arrays.asList(
                                         new Option(OUTDIR, "", true),
-                                        new Option(SAMPLES, "", false)
+                                        new Option(SAMPLES, "", false),
+                                        new Option(VariantQueryParam.REGION.key(), "", false)
                                 ), Collections.emptyList(), null, null)
                 ), null, null);
     }
@@ -62,53 +65,30 @@ public class IbsAnalysis extends OpenCGAAnalysis {
 
     @Override
     public int run(Map<String, Path> input, Path outdir, ObjectMap params) throws Exception {
+        CatalogManager catalogManager = getCatalogManager();
+        String sessionId = getSessionId();
+        long studyId = getStudyId();
+
+        List<String> samples = params.getAsStringList(SAMPLES);
+        List<Region> regions = new ArrayList<>();
+        for (String region : params.getAsStringList(VariantQueryParam.REGION.key())) {
+            regions.add(Region.parseRegion(region));
+        }
+
+        if ("-".equals(outdir.getFileName().toString())) {
+            getVariantStorageManager().ibs(String.valueOf(studyId), samples, regions, System.out, params, sessionId);
+        } else {
+            URI outputFile;
+            if (outdir.toAbsolutePath().toFile().isDirectory()) {
+                String alias = catalogManager.getStudyManager().get(String.valueOf(studyId), null, sessionId).first().getId();
+                outputFile = outdir.toAbsolutePath().resolve(alias + ".genome.gz").toUri();
+            } else {
+                outputFile = outdir.toAbsolutePath().toUri();
+            }
+            getVariantStorageManager().ibs(String.valueOf(studyId), samples, regions, outputFile, params, sessionId);
+        }
+
         return 0;
-//        CatalogManager catalogManager = getCatalogManager();
-//        String sessionId = getSessionId();
-//        long studyId = getStudyId();
-//
-//        IdentityByStateClustering ibsc = new IdentityByStateClustering();
-//        List<String> samples;
-//        Query query = new Query(VariantQueryParam.STUDY.key(), studyId);
-//        QueryOptions options = new QueryOptions(QueryOptions.EXCLUDE, VariantField.ANNOTATION);
-//
-//        Query samplesQuery = new Query();
-//        if (StringUtils.isNotEmpty(params.getString(SAMPLES))) {
-//            String userId = catalogManager.getUserManager().getUserId(sessionId);
-//            List<Long> sampleIds = catalogManager.getSampleManager().getIds(params.getAsStringList(SAMPLES), String.valueOf(studyId),
-//                    userId)
-//                    .getResourceIds();
-//            samplesQuery.append(SampleDBAdaptor.QueryParams.UID.key(), sampleIds);
-//            query.append(VariantQueryParam.INCLUDE_SAMPLE.key(), sampleIds);
-//        }
-//        samples = catalogManager.getSampleManager().get(studyId, samplesQuery, new QueryOptions(), sessionId)
-//                .getResult()
-//                .stream()
-//                .map(Sample::getId)
-//                .collect(Collectors.toList());
-//
-//
-//        List<IdentityByState> identityByStateList;
-//        try (VariantDBIterator iterator = getVariantStorageManager().iterable(sessionId).iterator(query, options)) {
-//            identityByStateList = ibsc.countIBS(iterator, samples);
-//        }
-//        if ("-".equals(outdir.getFileName().toString())) {
-//            ibsc.write(System.out, identityByStateList, samples);
-//        } else {
-//            Path outfile;
-//            if (outdir.toAbsolutePath().toFile().isDirectory()) {
-//                String alias = catalogManager.getStudyManager().get(String.valueOf((Long) studyId), null, sessionId).first().getId();
-//                outfile = outdir.resolve(alias + ".genome.gz");
-//            } else {
-//                outfile = outdir;
-//            }
-//
-//            try (OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(outfile.toFile()))) {
-//                ibsc.write(outputStream, identityByStateList, samples);
-//            }
-//        }
-//
-//        return 0;
     }
 
 }
@@ -0,0 +1,107 @@
+// # Typed and indexed annotation sets
+// Annotation values are queried by type (numbers, booleans or strings) through the compound index
+// {studyUid, customAnnotationSets.vs, customAnnotationSets.id, customAnnotationSets.value}.
+// Values stored before the annotations were typed are converted to the type of their variable.
+// Run after the annotation set migration, from the v1.4.0 folder.
+
+load("utils/migrateCollection.js");
+
+function getVariableTypes(variables, prefix, types) {
+    for (var i in variables) {
+        var variable = variables[i];
+        var id = prefix + variable.id;
+        if (variable.type === "OBJECT") {
+            getVariableTypes(variable.variableSet, id + ".", types);
+        } else {
+            types[id] = variable.type;
+        }
+    }
+    return types;
+}
+
+var variableTypes = {};
+db.study.find({"variableSets": {$exists: true, $ne: []}}, {variableSets: 1}).forEach(function(study) {
+    for (var i in study.variableSets) {
+        var variableSet = study.variableSets[i];
+        variableTypes[variableSet.uid.valueOf().toString()] = getVariableTypes(variableSet.variables, "", {});
+    }
+});
+
+// Returns the typed value, or undefined if the value does not need to change
+function castValue(type, value) {
+    if (value === null || value === undefined) {
+        return undefined;
+    }
+    if (Array.isArray(value)) {
+        var changed = false;
+        var list = [];
+        for (var i in value) {
+            var newValue = castValue(type, value[i]);
+            if (newValue === undefined) {
+                list.push(value[i]);
+            } else {
+                list.push(newValue);
+                changed = true;
+            }
+        }
+        return changed ? list : undefined;
+    }
+    switch (type) {
+        case "INTEGER":
+            if (typeof value === "string" && value !== "" && !isNaN(Number(value))) {
+                return NumberInt(parseInt(value));
+            }
+            return undefined;
+        case "DOUBLE":
+            if (typeof value === "string" && value !== "" && !isNaN(Number(value))) {
+                return parseFloat(value);
+            }
+            return undefined;
+        case "BOOLEAN":
+            if (typeof value === "string" && (value.toLowerCase() === "true" || value.toLowerCase() === "false")) {
+                return value.toLowerCase() === "true";
+            }
+            return undefined;
+        case "TEXT":
+        case "CATEGORICAL":
+            if (typeof value === "number" || typeof value === "boolean") {
+                return value.toString();
+            }
+            return undefined;
+        default:
+            return undefined;
+    }
+}
+
+function migrateAnnotations(collection) {
+    print("\nMigrating annotations of " + collection);
+    migrateCollection(collection, {"customAnnotationSets": {$exists: true, $ne: []}}, {customAnnotationSets: 1}, function(bulk, doc) {
+        var set = {};
+        for (var i = 0; i < doc.customAnnotationSets.length; i++) {
+            var annotation = doc.customAnnotationSets[i];
+            var types = variableTypes[annotation.vs.valueOf().toString()];
+            if (types === undefined || !(annotation.id in types)) {
+                continue;
+            }
+            var value = castValue(types[annotation.id], annotation.value);
+            if (value !== undefined) {
+                // Only set the modified fields, to keep the type of the rest of fields
+                var privateId = annotation.vs.valueOf().toString() + "__" + annotation.as + "__" + annotation.id.split(".").join("__");
+                set["customAnnotationSets." + i + ".value"] = value;
+                set["customAnnotationSets." + i + "." + privateId] = value;
+            }
+        }
+        if (Object.keys(set).length > 0) {
+            bulk.find({"_id": doc._id}).updateOne({"$set": set});
+        }
+    });
+
+    db.getCollection(collection).createIndex({"studyUid": 1, "customAnnotationSets.vs": 1, "customAnnotationSets.id": 1,
+        "customAnnotationSets.value": 1}, {"background": true});
+}
+
+migrateAnnotations("sample");
+migrateAnnotations("individual");
+migrateAnnotations("cohort");
+migrateAnnotations("family");
+migrateAnnotations("file");
@@ -134,43 +134,13 @@ public class MigrationCommandExecutor extends AdminCommandExecutor {
             // We get a non-expiring token
             String sessionId = catalogManager.getUserManager().getSystemTokenForUser("admin", options.commonOptions.adminPassword);
 
+            String basePath = appHome + "/migration/v1.4.0/";
+
             // Catalog
             if (!skipCatalogJS) {
                 logger.info("Starting Catalog migration for 1.4.0");
-                
-                String basePath = appHome + "/migration/v1.4.0/";
-
-                String authentication = "";
-                if (StringUtils.isNotEmpty(configuration.getCatalog().getDatabase().getUser())
-                        && StringUtils.isNotEmpty(configuration.getCatalog().getDatabase().getPassword())) {
-                    authentication = "-u " + configuration.getCatalog().getDatabase().getUser() + " -p "
-                            + configuration.getCatalog().getDatabase().getPassword() + " --authenticationDatabase "
-                            + configuration.getCatalog().getDatabase().getOptions().getOrDefault("authenticationDatabase", "admin") + " ";
-                }
-
-                String catalogCli = "mongo " + authentication
-                        + StringUtils.join(configuration.getCatalog().getDatabase().getHosts(), ",") + "/"
-                        + catalogManager.getCatalogDatabase() + " opencga_catalog_v1.3.x_to_1.4.0.js";
-
-                logger.info("Migrating Catalog. Running {} from {}", catalogCli, basePath);
-                ProcessBuilder processBuilder = new ProcessBuilder(catalogCli.split(" "));
-                processBuilder.directory(new File(basePath));
-                Process p = processBuilder.start();
-
-                BufferedReader input = new BufferedReader(new InputStreamReader(p.getInputStream()));
-                String line;
-                while ((line = input.readLine()) != null) {
-                    logger.info(line);
-                }
-                p.waitFor();
-                input.close();
-
-                if (p.exitValue() == 0) {
-                    logger.info("Finished Catalog migration");
-                } else {
-                    throw new CatalogException("Error migrating catalog database!");
-                }
-
+                runMongoScript(catalogManager, basePath, "opencga_catalog_v1.3.x_to_1.4.0.js");
+                logger.info("Finished Catalog migration");
             }
 
             if (!skipAnnotations) {
@@ -178,6 +148,8 @@ public class MigrationCommandExecutor extends AdminCommandExecutor {
 
                 // Migrate annotationSets
                 new AnnotationSetMigration(catalogManager).migrate();
+                // Type the annotation values and create the annotation indexes
+                runMongoScript(catalogManager, basePath, "catalog/rc3_annotation_migration.js");
 
                 logger.info("Finished annotation migration");
             }
@@ -190,5 +162,34 @@ public class MigrationCommandExecutor extends AdminCommandExecutor {
         }
     }
 
+    private void runMongoScript(CatalogManager catalogManager, String basePath, String script) throws Exception {
+        String authentication = "";
+        if (StringUtils.isNotEmpty(configuration.getCatalog().getDatabase().getUser())
+                && StringUtils.isNotEmpty(configuration.getCatalog().getDatabase().getPassword())) {
+            authentication = "-u " + configuration.getCatalog().getDatabase().getUser() + " -p "
+                    + configuration.getCatalog().getDatabase().getPassword() + " --authenticationDatabase "
+                    + configuration.getCatalog().getDatabase().getOptions().getOrDefault("authenticationDatabase", "admin") + " ";
+        }
+
+        String catalogCli = "mongo " + authentication
+                + StringUtils.join(configuration.getCatalog().getDatabase().getHosts(), ",") + "/"
+                + catalogManager.getCatalogDatabase() + " " + script;
+
+        logger.info("Migrating Catalog. Running {} from {}", catalogCli, basePath);
+        ProcessBuilder processBuilder = new ProcessBuilder(catalogCli.split(" "));
+        processBuilder.directory(new File(basePath));
+        Process p = processBuilder.start();
 
+        BufferedReader input = new BufferedReader(new InputStreamReader(p.getInputStream()));
+        String line;
+        while ((line = input.readLine()) != null) {
+            logger.info(line);
+        }
+        p.waitFor();
+        input.close();
+
+        if (p.exitValue() != 0) {
+            throw new CatalogException("Error migrating catalog database! Script " + script + " failed");
+        }
+    }
 }
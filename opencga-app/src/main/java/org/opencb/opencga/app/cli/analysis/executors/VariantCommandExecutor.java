@@ -48,7 +48,6 @@ import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
-import org.opencb.opencga.storage.core.variant.analysis.VariantSampleFilter;
 import org.opencb.opencga.storage.core.variant.annotation.DefaultVariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
@@ -162,6 +161,7 @@ public class VariantCommandExecutor extends AnalysisCommandExecutor {
 
         ObjectMap params = new ObjectMap();
         params.putIfNotEmpty(IbsAnalysis.SAMPLES, cliOptions.samples);
+        params.putIfNotEmpty(VariantQueryParam.REGION.key(), cliOptions.region);
         params.putIfNotEmpty(IbsAnalysis.OUTDIR, cliOptions.outdir);
 
         String userId1 = catalogManager.getUserManager().getUserId(sessionId);
@@ -501,8 +501,6 @@ public class VariantCommandExecutor extends AnalysisCommandExecutor {
 
         VariantStorageManager variantManager = new VariantStorageManager(catalogManager, storageEngineFactory);
 
-        VariantSampleFilter variantSampleFilter = new VariantSampleFilter(variantManager.iterable(sessionId));
-
         if (StringUtils.isNotEmpty(cliOptions.samples)) {
             query.append(VariantQueryParam.INCLUDE_SAMPLE.key(), Arrays.asList(cliOptions.samples.split(",")));
         }
@@ -512,13 +510,13 @@ public class VariantCommandExecutor extends AnalysisCommandExecutor {
 
         List<String> genotypes = Arrays.asList(cliOptions.genotypes.split(","));
         if (cliOptions.all) {
-            Collection<String> samplesInAllVariants = variantSampleFilter.getSamplesInAllVariants(query, genotypes);
+            Collection<String> samplesInAllVariants = variantManager.getSamplesInAllVariants(query, genotypes, sessionId);
             System.out.println("##Samples in ALL variants with genotypes " + genotypes);
             for (String sample : samplesInAllVariants) {
                 System.out.println(sample);
             }
         } else {
-            Map<String, Set<Variant>> samplesInAnyVariants = variantSampleFilter.getSamplesInAnyVariants(query, genotypes);
+            Map<String, Set<Variant>> samplesInAnyVariants = variantManager.getSamplesInAnyVariants(query, genotypes, sessionId);
             System.out.println("##Samples in ANY variants with genotypes " + genotypes);
             Set<Variant> variants = new TreeSet<>((v1, o2) -> v1.getStart().compareTo(o2.getStart()));
             samplesInAnyVariants.forEach((sample, v) -> variants.addAll(v));
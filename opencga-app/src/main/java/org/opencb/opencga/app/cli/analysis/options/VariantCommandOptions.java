@@ -775,6 +775,9 @@ public class VariantCommandOptions {
         @Parameter(names = {"--sample"}, description = "List of samples to check. By default, all samples")
         public String samples;
 
+        @Parameter(names = {"-r", "--region"}, description = "List of regions to check. By default, all the genome")
+        public String region;
+
         @Parameter(names = {"-o", "--outdir"}, description = "Output directory.")
         public String outdir = "-";
     }
@@ -18,18 +18,24 @@ package org.opencb.opencga.catalog.db;
 
 import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.opencga.catalog.exceptions.CatalogDBException;
+import org.opencb.opencga.core.metrics.MetricsRegistry;
+import org.opencb.opencga.core.metrics.Timer;
 import org.slf4j.Logger;
 
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractDBAdaptor {
 
     protected final Logger logger;
+    private final Timer queryTimer;
 
     protected AbstractDBAdaptor(Logger logger) {
         this.logger = logger;
+        this.queryTimer = MetricsRegistry.getInstance().timer("catalog_db_query_seconds", "Catalog database operations latency",
+                "adaptor", getClass().getSimpleName());
     }
 
     protected long startQuery() {
@@ -47,6 +53,7 @@ public abstract class AbstractDBAdaptor {
     protected <T> QueryResult<T> endQuery(String queryId, long startTime, QueryResult<T> result) throws CatalogDBException {
         result.setId(queryId);
         result.setDbTime((int) (System.currentTimeMillis() - startTime));
+        queryTimer.record(result.getDbTime(), TimeUnit.MILLISECONDS);
         logger.trace("CatalogQuery: {}, dbTime: {}, numResults: {}, numTotalResults: {}", result.getId(), result.getDbTime(),
                 result.getNumResults(), result.getNumTotalResults());
         if (result.getErrorMsg() != null && !result.getErrorMsg().isEmpty()) {
@@ -64,6 +71,7 @@ public abstract class AbstractDBAdaptor {
         int numResults = result.size();
         QueryResult<T> queryResult = new QueryResult<>(queryId, (int) (end - startTime), numResults, numResults,
                 warnMessage, errorMessage, result);
+        queryTimer.record(end - startTime, TimeUnit.MILLISECONDS);
         logger.trace("CatalogQuery: {}, dbTime: {}, numResults: {}, numTotalResults: {}", queryResult.getId(), queryResult.getDbTime(),
                 queryResult.getNumResults(), queryResult.getNumTotalResults());
         if (errorMessage != null && !errorMessage.isEmpty()) {
@@ -74,6 +74,14 @@ public interface StudyDBAdaptor extends DBAdaptor<Study> {
 
     void updateStudyLastModified(long studyId) throws CatalogDBException;
 
+    /**
+     * Get a counter increased after every modification of any study, including groups, variable sets and permissions.
+     * Used to invalidate cached studies.
+     *
+     * @return Current value of the counter
+     */
+    long getModificationCounter();
+
 //    @Deprecated
 //    QueryResult<Study> modifyStudy(long studyId, ObjectMap params) throws CatalogDBException;
 
@@ -707,7 +707,9 @@ public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor impleme
         long startTime = startQuery();
 
         List<Bson> aggregation = new ArrayList<>(6);
-        aggregation.add(new Document("$match", new Document(PRIVATE_STUDY_ID, studyId)));
+        // Only unwind the entries annotated with the variable set. Uses the compound annotation index
+        aggregation.add(new Document("$match", new Document(PRIVATE_STUDY_ID, studyId)
+                .append(AnnotationSetParams.ANNOTATION_SETS_VARIABLE_SET_ID.key(), variableSetId)));
         aggregation.add(new Document("$project", new Document(AnnotationSetParams.ANNOTATION_SETS.key(), 1)));
         aggregation.add(new Document("$unwind", "$" + AnnotationSetParams.ANNOTATION_SETS.key()));
 //        aggregation.add(new Document("$unwind", "$" + AnnotationSetParams.ANNOTATION_SETS_ANNOTATIONS.key()));
@@ -866,14 +868,8 @@ public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor impleme
                             throw new CatalogDBException("Variable " + key + ": " + e.getMessage(), e);
                         }
 
-                        Document queryDocument = new Document()
-                                .append(AnnotationSetParams.ID.key(), key)
-                                .append(AnnotationSetParams.VARIABLE_SET_ID.key(), variableTypeMap.getLong(variableSet));
-                        queryDocument.putAll(valueList.get(0));
-
                         // Add the query to the document query list
-                        documentList.add(new Document(AnnotationSetParams.ANNOTATION_SETS.key(),
-                                new Document("$elemMatch", queryDocument)));
+                        documentList.add(createAnnotationElemMatch(variableTypeMap.getLong(variableSet), key, valueList.get(0)));
                     }
                 } else {
                     throw new CatalogDBException("Annotation " + annotation + " could not be parsed to a query.");
@@ -890,4 +886,56 @@ public abstract class AnnotationMongoDBAdaptor<T> extends MongoDBAdaptor impleme
         return document;
     }
 
+    /**
+     * Build the filter for one annotated variable so it can be served by the compound index
+     * {studyUid, customAnnotationSets.vs, customAnnotationSets.id, customAnnotationSets.value}.
+     * <p>
+     * An $or inside an $elemMatch can not use the index bounds of the value, so a list of equalities is merged into one $in, and
+     * any other list of conditions is split into one $elemMatch for each condition.
+     *
+     * @param variableSetUid Variable set uid.
+     * @param variableId     Variable id (a.b.c for nested variables).
+     * @param valueFilter    Filter over the annotation value, as returned by addCompQueryFilter.
+     * @return Filter over the annotation sets.
+     */
+    private Document createAnnotationElemMatch(long variableSetUid, String variableId, Document valueFilter) {
+        List<Document> orList = (List<Document>) valueFilter.get("$or");
+        if (orList == null) {
+            return createAnnotationElemMatch(variableSetUid, variableId, valueFilter, null);
+        }
+
+        List<Object> values = new ArrayList<>(orList.size());
+        for (Document filter : orList) {
+            Object value = filter.get(AnnotationSetParams.VALUE.key());
+            if (value == null || value instanceof Document) {
+                // Not an equality
+                values = null;
+                break;
+            }
+            values.add(value);
+        }
+        if (values != null) {
+            return createAnnotationElemMatch(variableSetUid, variableId, null, new Document("$in", values));
+        }
+
+        List<Document> elemMatchList = new ArrayList<>(orList.size());
+        for (Document filter : orList) {
+            elemMatchList.add(createAnnotationElemMatch(variableSetUid, variableId, filter, null));
+        }
+        return new Document("$or", elemMatchList);
+    }
+
+    private Document createAnnotationElemMatch(long variableSetUid, String variableId, Document valueFilter, Object value) {
+        // Same order as the compound index
+        Document queryDocument = new Document()
+                .append(AnnotationSetParams.VARIABLE_SET_ID.key(), variableSetUid)
+                .append(AnnotationSetParams.ID.key(), variableId);
+        if (valueFilter != null) {
+            queryDocument.putAll(valueFilter);
+        } else {
+            queryDocument.append(AnnotationSetParams.VALUE.key(), value);
+        }
+        return new Document(AnnotationSetParams.ANNOTATION_SETS.key(), new Document("$elemMatch", queryDocument));
+    }
+
 }
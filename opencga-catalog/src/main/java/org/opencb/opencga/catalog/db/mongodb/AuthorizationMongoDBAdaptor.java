@@ -415,6 +415,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
                 query.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()),
                 update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
         dbCollectionMap.get(entry).update(query, update, new QueryOptions(MongoDBCollection.MULTI, true));
+        notifyModification(entry);
 
         logger.debug("Remove all the Acls for member {} in study {}", member, studyId);
     }
@@ -463,6 +464,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
                 update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
 
         collection.update(queryDocument, update, new QueryOptions("multi", true));
+        notifyModification(entity);
     }
 
     @Override
@@ -495,6 +497,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
                 update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
 
         collection.update(queryDocument, update, new QueryOptions("multi", true));
+        notifyModification(entry);
     }
 
     @Override
@@ -534,6 +537,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
                 update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
 
         collection.update(queryDocument, update, new QueryOptions("multi", true));
+        notifyModification(entity);
     }
 
     @Override
@@ -592,6 +596,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
 
             collection.update(queryDocument, update, new QueryOptions(MongoDBCollection.MULTI, true));
         }
+        notifyModification(entity);
     }
 
     @Override
@@ -613,6 +618,7 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
 
         MongoDBCollection collection = dbCollectionMap.get(Entity.STUDY);
         collection.update(queryDocument, update, new QueryOptions());
+        notifyModification(Entity.STUDY);
     }
 
     @Override
@@ -860,12 +866,20 @@ public class AuthorizationMongoDBAdaptor extends MongoDBAdaptor implements Autho
                 query.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()),
                 update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
         QueryResult<UpdateResult> updateResult = dbCollectionMap.get(Entity.STUDY).update(query, update, new QueryOptions("multi", true));
+        notifyModification(Entity.STUDY);
         if (updateResult.first().getModifiedCount() == 0) {
             throw new CatalogException("Could not remove permission rule " + permissionRuleToDelete + " from study "
                     + String.valueOf(studyId));
         }
     }
 
+    private void notifyModification(Entity entity) {
+        if (entity == Entity.STUDY) {
+            // Study permissions are part of the cached studies
+            StudyMongoDBAdaptor.notifyModification();
+        }
+    }
+
     private Bson parseQuery(Query query, Document rawQuery, Entity entry) throws CatalogException {
         switch (entry) {
             case COHORT:
@@ -49,6 +49,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -64,6 +65,9 @@ import static org.opencb.opencga.catalog.db.mongodb.MongoDBUtils.*;
  */
 public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdaptor {
 
+    // Shared by all the instances, so every StudyManager in this process sees every modification
+    private static final AtomicLong MODIFICATION_COUNTER = new AtomicLong();
+
     private final MongoDBCollection studyCollection;
     private StudyConverter studyConverter;
     private VariableSetConverter variableSetConverter;
@@ -90,7 +94,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
     public void nativeInsert(Map<String, Object> study, String userId) throws CatalogDBException {
         Document studyDocument = getMongoDBDocument(study, "study");
         studyDocument.put(PRIVATE_OWNER_ID, userId);
-        studyCollection.insert(studyDocument, null);
+        insertStudy(studyDocument, null);
     }
 
     @Override
@@ -153,7 +157,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         }
 
         //Insert
-        QueryResult<WriteResult> updateResult = studyCollection.insert(studyObject, null);
+        QueryResult<WriteResult> updateResult = insertStudy(studyObject, null);
 
         String errorMsg = updateResult.getErrorMsg() != null ? updateResult.getErrorMsg() : "";
 
@@ -281,7 +285,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(QueryParams.GROUP_NAME.key(), new Document("$ne", group.getName()));
         Document update = new Document("$push", new Document(QueryParams.GROUPS.key(), getMongoDBDocument(group, "Group")));
 
-        QueryResult<UpdateResult> queryResult = studyCollection.update(query, update, null);
+        QueryResult<UpdateResult> queryResult = updateStudies(query, update, null);
 
         if (queryResult.first().getModifiedCount() != 1) {
             QueryResult<Group> group1 = getGroup(studyId, group.getName(), Collections.emptyList());
@@ -362,7 +366,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
         Document update = new Document("$set", new Document("groups.$.userIds", members));
-        QueryResult<UpdateResult> queryResult = studyCollection.update(query, update, null);
+        QueryResult<UpdateResult> queryResult = updateStudies(query, update, null);
 
         if (queryResult.first().getMatchedCount() != 1) {
             throw new CatalogDBException("Unable to set users to group " + groupId + ". The group does not exist.");
@@ -380,7 +384,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
         Document update = new Document("$addToSet", new Document("groups.$.userIds", new Document("$each", members)));
-        QueryResult<UpdateResult> queryResult = studyCollection.update(query, update, null);
+        QueryResult<UpdateResult> queryResult = updateStudies(query, update, null);
 
         if (queryResult.first().getMatchedCount() != 1) {
             throw new CatalogDBException("Unable to add members to group " + groupId + ". The group does not exist.");
@@ -398,7 +402,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
         Bson pull = Updates.pullAll("groups.$.userIds", members);
-        QueryResult<UpdateResult> update = studyCollection.update(query, pull, null);
+        QueryResult<UpdateResult> update = updateStudies(query, pull, null);
         if (update.first().getMatchedCount() != 1) {
             throw new CatalogDBException("Unable to remove members from group " + groupId + ". The group does not exist.");
         }
@@ -419,7 +423,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         // Pull those users while they are still there
         QueryResult<UpdateResult> update;
         do {
-            update = studyCollection.update(query, pull, null);
+            update = updateStudies(query, pull, null);
         } while (update.first().getModifiedCount() > 0);
     }
 
@@ -430,7 +434,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
         Document pull = new Document("$pull", new Document("groups", new Document("name", groupId)));
-        QueryResult<UpdateResult> update = studyCollection.update(queryBson, pull, null);
+        QueryResult<UpdateResult> update = updateStudies(queryBson, pull, null);
 
         if (update.first().getModifiedCount() != 1) {
             throw new CatalogDBException("Could not remove the group " + groupId);
@@ -446,7 +450,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 .append(QueryParams.GROUP_NAME.key(), groupId)
                 .append("$isolated", 1);
         Document updates = new Document("$set", new Document("groups.$.syncedFrom", mongoDBDocument));
-        studyCollection.update(query, updates, null);
+        updateStudies(query, updates, null);
     }
 
     @Override
@@ -468,7 +472,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         QueryOptions multi = new QueryOptions(MongoDBCollection.MULTI, true);
         QueryResult<UpdateResult> update;
         do {
-            update = studyCollection.update(query, pull, multi);
+            update = updateStudies(query, pull, multi);
         } while (update.first().getModifiedCount() > 0);
 
         // 2. Add user to all synced groups
@@ -483,7 +487,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                     .append("$isolated", 1);
             Document push = new Document("$addToSet", new Document("groups.$.userIds", user));
             do {
-                update = studyCollection.update(query, push, multi);
+                update = updateStudies(query, push, multi);
             } while (update.first().getModifiedCount() > 0);
 
             // We need to be updated with the internal @members group, so we fetch all the studies where the user has been added
@@ -525,7 +529,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         // We update the study document to contain the new permission rules
         Query query = new Query(QueryParams.UID.key(), studyId);
         Document update = new Document("$set", new Document(QueryParams.PERMISSION_RULES.key() + "." + entry, permissionDocumentList));
-        QueryResult<UpdateResult> updateResult = studyCollection.update(parseQuery(query, true), update, QueryOptions.empty());
+        QueryResult<UpdateResult> updateResult = updateStudies(parseQuery(query, true), update, QueryOptions.empty());
 
         if (updateResult.first().getModifiedCount() == 0) {
             throw new CatalogDBException("Unexpected error occurred when adding new permission rules to study");
@@ -552,7 +556,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
                 query.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()),
                 update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
 
-        QueryResult<UpdateResult> updateQueryResult = studyCollection.update(query, update, QueryOptions.empty());
+        QueryResult<UpdateResult> updateQueryResult = updateStudies(query, update, QueryOptions.empty());
         if (updateQueryResult.first().getMatchedCount() == 0) {
             throw new CatalogDBException("Permission rule " + permissionRuleId + " not found");
         }
@@ -619,7 +623,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
 
         Bson bsonQuery = Filters.eq(PRIVATE_UID, studyId);
         Bson update = Updates.push("variableSets", object);
-        QueryResult<UpdateResult> queryResult = studyCollection.update(bsonQuery, update, null);
+        QueryResult<UpdateResult> queryResult = updateStudies(bsonQuery, update, null);
 
         if (queryResult.first().getModifiedCount() == 0) {
             throw new CatalogDBException("createVariableSet: Could not create a new variable set in study " + studyId);
@@ -639,7 +643,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         Bson bsonQuery = Filters.eq(QueryParams.VARIABLE_SET_UID.key(), variableSetId);
         Bson update = Updates.push(QueryParams.VARIABLE_SET.key() + ".$." + VariableSetParams.VARIABLE.key(),
                 getMongoDBDocument(variable, "variable"));
-        QueryResult<UpdateResult> queryResult = studyCollection.update(bsonQuery, update, null);
+        QueryResult<UpdateResult> queryResult = updateStudies(bsonQuery, update, null);
         if (queryResult.first().getModifiedCount() == 0) {
             throw CatalogDBException.updateError("VariableSet", variableSetId);
         }
@@ -716,7 +720,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         Bson bsonQuery = Filters.eq(QueryParams.VARIABLE_SET_UID.key(), variableSetId);
         Bson update = Updates.pull(QueryParams.VARIABLE_SET.key() + ".$." + VariableSetParams.VARIABLE.key(),
                 Filters.eq("id", name));
-        QueryResult<UpdateResult> queryResult = studyCollection.update(bsonQuery, update, null);
+        QueryResult<UpdateResult> queryResult = updateStudies(bsonQuery, update, null);
         if (queryResult.first().getModifiedCount() != 1) {
             throw new CatalogDBException("Remove field from Variable Set. Could not remove the field " + name
                     + " from the variableSet id " + variableSetId);
@@ -957,7 +961,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
 
         Bson query = Filters.eq(QueryParams.VARIABLE_SET_UID.key(), variableSetId);
         Bson operation = Updates.pull("variableSets", Filters.eq(PRIVATE_UID, variableSetId));
-        QueryResult<UpdateResult> update = studyCollection.update(query, operation, null);
+        QueryResult<UpdateResult> update = updateStudies(query, operation, null);
 
         if (update.first().getModifiedCount() == 0) {
             throw CatalogDBException.uidNotFound("VariableSet", variableSetId);
@@ -1180,7 +1184,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
             BasicDBObject updates = new BasicDBObject("$set", studyParameters);
 
 //            QueryResult<WriteResult> updateResult = studyCollection.update(query, updates, null);
-            QueryResult<UpdateResult> updateResult = studyCollection.update(eq, updates, null);
+            QueryResult<UpdateResult> updateResult = updateStudies(eq, updates, null);
             if (updateResult.getResult().get(0).getModifiedCount() == 0) {
                 throw CatalogDBException.idNotFound("Study", studyId);
             }
@@ -1222,7 +1226,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
             studyParameters.put(PRIVATE_MODIFICATION_DATE, date);
 
             Document updates = new Document("$set", studyParameters);
-            Long nModified = studyCollection.update(parseQuery(query, false), updates, null).getNumTotalResults();
+            Long nModified = updateStudies(parseQuery(query, false), updates, null).getNumTotalResults();
             return endQuery("Study update", startTime, Collections.singletonList(nModified));
         }
 
@@ -1237,7 +1241,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
 
     @Override
     public void delete(Query query) throws CatalogDBException {
-        QueryResult<DeleteResult> remove = studyCollection.remove(parseQuery(query, false), null);
+        QueryResult<DeleteResult> remove = removeStudies(parseQuery(query, false), null);
 
         if (remove.first().getDeletedCount() == 0) {
             throw CatalogDBException.deleteError("Study");
@@ -1277,7 +1281,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
 
             Bson bsonQuery = Filters.eq(QueryParams.UID.key(), study.getUid());
 
-            QueryResult<UpdateResult> result = studyCollection.update(bsonQuery, update, null);
+            QueryResult<UpdateResult> result = updateStudies(bsonQuery, update, null);
             if (result.getResult().get(0).getModifiedCount() == 0) {    //Check if the the project id was modified
                 throw new CatalogDBException("CRITICAL: Could not update new project id references in study " + study.getFqn());
             }
@@ -1455,7 +1459,7 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         Query query = new Query(QueryParams.UID.key(), studyId);
         QueryResult<Study> studyQueryResult = get(query, null);
         if (studyQueryResult.getResult().size() == 1) {
-            QueryResult<DeleteResult> remove = studyCollection.remove(parseQuery(query, false), null);
+            QueryResult<DeleteResult> remove = removeStudies(parseQuery(query, false), null);
             if (remove.getResult().size() == 0) {
                 throw CatalogDBException.newInstance("Study id '{}' has not been deleted", studyId);
             }
@@ -1753,6 +1757,36 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
         return studyCollection;
     }
 
+    @Override
+    public long getModificationCounter() {
+        return MODIFICATION_COUNTER.get();
+    }
+
+    /**
+     * Increase the modification counter. Must be called after any write to the study collection.
+     */
+    static void notifyModification() {
+        MODIFICATION_COUNTER.incrementAndGet();
+    }
+
+    private QueryResult<WriteResult> insertStudy(Document document, QueryOptions options) {
+        QueryResult<WriteResult> result = studyCollection.insert(document, options);
+        notifyModification();
+        return result;
+    }
+
+    private QueryResult<UpdateResult> updateStudies(Bson query, Bson update, QueryOptions options) {
+        QueryResult<UpdateResult> result = studyCollection.update(query, update, options);
+        notifyModification();
+        return result;
+    }
+
+    private QueryResult<DeleteResult> removeStudies(Bson query, QueryOptions options) {
+        QueryResult<DeleteResult> result = studyCollection.remove(query, options);
+        notifyModification();
+        return result;
+    }
+
     /***
      * This method is called every time a file has been inserted, modified or deleted to keep track of the current study size.
      *
@@ -1764,6 +1798,8 @@ public class StudyMongoDBAdaptor extends MongoDBAdaptor implements StudyDBAdapto
     public void updateDiskUsage(long studyId, long size) throws CatalogDBException {
         Bson query = new Document(QueryParams.UID.key(), studyId);
         Bson update = Updates.inc(QueryParams.SIZE.key(), size);
+        // Do not notify the modification. This is called on every file write, and would flush the cached study resolutions.
+        // Cached studies may report an outdated size until they expire.
         if (studyCollection.update(query, update, null).getNumTotalResults() == 0) {
             throw new CatalogDBException("CatalogMongoStudyDBAdaptor updateDiskUsage: Couldn't update the size field of"
                     + " the study " + studyId);
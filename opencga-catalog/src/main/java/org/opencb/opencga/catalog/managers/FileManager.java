@@ -1803,11 +1803,25 @@ public class FileManager extends AnnotationSetManager<File> {
 
     public DataInputStream download(String studyStr, String fileStr, int start, int limit, QueryOptions options, String sessionId)
             throws CatalogException {
+        URI fileUri = getDownloadUri(studyStr, fileStr, sessionId);
+        return catalogIOManagerFactory.get(fileUri).getFileObject(fileUri, start, limit);
+    }
+
+    /**
+     * Get the URI of a file to be downloaded, checking the DOWNLOAD permission. Allows the caller to serve the content directly
+     * from the file, e.g. to answer HTTP Range requests, instead of streaming it through {@link #download}.
+     *
+     * @param studyStr  Study [[user@]project:]study
+     * @param fileStr   File id, name or path
+     * @param sessionId Session id
+     * @return  The URI of the file
+     * @throws CatalogException if the file does not exist or the user does not have DOWNLOAD permission
+     */
+    public URI getDownloadUri(String studyStr, String fileStr, String sessionId) throws CatalogException {
         MyResource<File> resource = getUid(fileStr, studyStr, sessionId);
         authorizationManager.checkFilePermission(resource.getStudy().getUid(), resource.getResource().getUid(), resource.getUser(),
                 FileAclEntry.FilePermissions.DOWNLOAD);
-        URI fileUri = getUri(resource.getResource());
-        return catalogIOManagerFactory.get(fileUri).getFileObject(fileUri, start, limit);
+        return getUri(resource.getResource());
     }
 
     public QueryResult<Job> index(String studyStr, List<String> fileList, String type, Map<String, String> params, String sessionId)
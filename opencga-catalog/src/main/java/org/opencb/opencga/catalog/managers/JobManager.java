@@ -36,6 +36,7 @@ import org.opencb.opencga.catalog.db.api.StudyDBAdaptor;
 import org.opencb.opencga.catalog.exceptions.CatalogAuthorizationException;
 import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.catalog.io.CatalogIOManagerFactory;
+import org.opencb.opencga.catalog.monitor.JobEventQueue;
 import org.opencb.opencga.catalog.utils.ParamUtils;
 import org.opencb.opencga.catalog.utils.UUIDUtils;
 import org.opencb.opencga.core.common.Entity;
@@ -232,6 +233,7 @@ public class JobManager extends ResourceManager<Job> {
         job.setUuid(UUIDUtils.generateOpenCGAUUID(UUIDUtils.Entity.JOB));
         QueryResult<Job> queryResult = jobDBAdaptor.insert(job, study.getUid(), options);
         auditManager.recordCreation(AuditRecord.Resource.job, queryResult.first().getUid(), userId, queryResult.first(), null, null);
+        JobEventQueue.getInstance().publish(queryResult.first());
 
         return queryResult;
     }
@@ -432,6 +434,7 @@ public class JobManager extends ResourceManager<Job> {
 
         QueryResult<Job> queryResult = jobDBAdaptor.update(resource.getResource().getUid(), parameters, QueryOptions.empty());
         auditManager.recordUpdate(AuditRecord.Resource.job, resource.getResource().getUid(), resource.getUser(), parameters, null, null);
+        publishStatusChange(resource.getResource().getUid(), parameters);
         return queryResult;
     }
 
@@ -456,6 +459,14 @@ public class JobManager extends ResourceManager<Job> {
 
         jobDBAdaptor.update(resource.getResource().getUid(), parameters, QueryOptions.empty());
         auditManager.recordUpdate(AuditRecord.Resource.job, resource.getResource().getUid(), resource.getUser(), parameters, null, null);
+        publishStatusChange(resource.getResource().getUid(), parameters);
+    }
+
+    private void publishStatusChange(long jobUid, ObjectMap parameters) {
+        if (parameters.containsKey(JobDBAdaptor.QueryParams.STATUS_NAME.key())) {
+            JobEventQueue.getInstance().publish(new JobEventQueue.JobEvent(jobUid, null,
+                    parameters.getString(JobDBAdaptor.QueryParams.STATUS_NAME.key())));
+        }
     }
 
     @Override
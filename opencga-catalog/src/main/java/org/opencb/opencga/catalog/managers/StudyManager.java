@@ -81,6 +81,7 @@ public class StudyManager extends AbstractManager {
     private static final Pattern PROJECT_STUDY_PATTERN = Pattern.compile("^(" + PROJECT_PATTERN + "):(" + STUDY_PATTERN + ")$");
 
     protected Logger logger;
+    private final StudyResolutionCache studyCache = new StudyResolutionCache();
 
     StudyManager(AuthorizationManager authorizationManager, AuditManager auditManager, CatalogManager catalogManager,
                  DBAdaptorFactory catalogDBAdaptorFactory, CatalogIOManagerFactory ioManagerFactory, Configuration configuration) {
@@ -130,6 +131,21 @@ public class StudyManager extends AbstractManager {
     }
 
     private QueryResult<Study> smartResolutor(String studyStr, String userId, QueryOptions options) throws CatalogException {
+        String cacheKey = StudyResolutionCache.key(studyStr, userId, options);
+        if (cacheKey == null) {
+            return resolveStudies(studyStr, userId, options);
+        }
+        // Read the counter before querying, so any concurrent modification invalidates this entry
+        long modificationCounter = studyDBAdaptor.getModificationCounter();
+        QueryResult<Study> studyQueryResult = studyCache.get(cacheKey, modificationCounter);
+        if (studyQueryResult == null) {
+            studyQueryResult = resolveStudies(studyStr, userId, options);
+            studyCache.put(cacheKey, modificationCounter, studyQueryResult);
+        }
+        return studyQueryResult;
+    }
+
+    private QueryResult<Study> resolveStudies(String studyStr, String userId, QueryOptions options) throws CatalogException {
         String owner = null;
         String project = null;
 
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.managers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.core.common.JacksonUtils;
+import org.opencb.opencga.core.metrics.Counter;
+import org.opencb.opencga.core.metrics.MetricsRegistry;
+import org.opencb.opencga.core.models.Study;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Size bounded cache of the studies resolved by the {@link StudyManager}, for each user and study string.
+ * <p>
+ * Each entry is tagged with the value of the study modification counter read before resolving the study. Entries are
+ * discarded as soon as the counter changes, so any write in this process invalidates the cache. Entries also expire
+ * after {@link #DEFAULT_TTL_MS}, to limit the staleness of modifications made by other processes.
+ * <p>
+ * Studies are stored serialized, and every {@link #get} returns new instances, so callers are free to modify them.
+ */
+class StudyResolutionCache {
+
+    static final int DEFAULT_MAX_SIZE = 5000;
+    static final long DEFAULT_TTL_MS = 30000;
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final Map<String, Entry> cache;
+    private final ObjectMapper objectMapper = JacksonUtils.getDefaultObjectMapper();
+    private final Counter hits = MetricsRegistry.getInstance().counter("cache_requests_total", "Requests to internal caches",
+            "cache", "study", "result", "hit");
+    private final Counter misses = MetricsRegistry.getInstance().counter("cache_requests_total", "Requests to internal caches",
+            "cache", "study", "result", "miss");
+
+    StudyResolutionCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TTL_MS);
+    }
+
+    StudyResolutionCache(int maxSize, long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > StudyResolutionCache.this.maxSize;
+            }
+        };
+    }
+
+    private static class Entry {
+        private final long modificationCounter;
+        private final long timestamp;
+        private final QueryResult<Study> result;
+        private final List<String> studies;
+
+        Entry(long modificationCounter, QueryResult<Study> result, List<String> studies) {
+            this.modificationCounter = modificationCounter;
+            this.timestamp = System.currentTimeMillis();
+            this.result = result;
+            this.studies = studies;
+        }
+    }
+
+    /**
+     * Build the cache key for a resolution. Only queries with no other option than INCLUDE can be cached.
+     *
+     * @param studyStr Study string
+     * @param userId   User id
+     * @param options  Query options
+     * @return Cache key, or null if the resolution can not be cached
+     */
+    static String key(String studyStr, String userId, QueryOptions options) {
+        List<String> include = Collections.emptyList();
+        if (options != null && !options.isEmpty()) {
+            if (options.size() != 1 || !options.containsKey(QueryOptions.INCLUDE)) {
+                return null;
+            }
+            include = new ArrayList<>(options.getAsStringList(QueryOptions.INCLUDE));
+            Collections.sort(include);
+        }
+        return userId + '|' + studyStr + '|' + String.join(",", include);
+    }
+
+    synchronized QueryResult<Study> get(String key, long modificationCounter) {
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            misses.inc();
+            return null;
+        }
+        if (entry.modificationCounter != modificationCounter || System.currentTimeMillis() - entry.timestamp > ttlMs) {
+            cache.remove(key);
+            misses.inc();
+            return null;
+        }
+        List<Study> studies = new ArrayList<>(entry.studies.size());
+        try {
+            for (String study : entry.studies) {
+                studies.add(objectMapper.readValue(study, Study.class));
+            }
+        } catch (IOException e) {
+            cache.remove(key);
+            misses.inc();
+            return null;
+        }
+        hits.inc();
+        return copy(entry.result, studies);
+    }
+
+    synchronized void put(String key, long modificationCounter, QueryResult<Study> result) {
+        List<String> studies = new ArrayList<>(result.getResult().size());
+        try {
+            for (Study study : result.getResult()) {
+                studies.add(objectMapper.writeValueAsString(study));
+            }
+        } catch (IOException e) {
+            // Not cacheable
+            return;
+        }
+        cache.put(key, new Entry(modificationCounter, copy(result, Collections.emptyList()), studies));
+    }
+
+    synchronized void clear() {
+        cache.clear();
+    }
+
+    private static QueryResult<Study> copy(QueryResult<Study> result, List<Study> studies) {
+        return new QueryResult<>(result.getId(), result.getDbTime(), result.getNumResults(), result.getNumTotalResults(),
+                result.getWarningMsg(), result.getErrorMsg(), studies);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.monitor;
+
+import org.opencb.opencga.core.models.Job;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * In-process queue of job events. The {@link org.opencb.opencga.catalog.managers.JobManager} publishes an event every time a job
+ * is created or changes its status, so the monitor daemons can react immediately instead of waiting for the next polling cycle.
+ * <p>
+ * Events are only hints to wake up the daemons. Catalog is still the source of truth, and the daemons keep polling with their
+ * configured interval to find changes made by other processes, or reported by the executors.
+ */
+public final class JobEventQueue {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private static final JobEventQueue INSTANCE = new JobEventQueue();
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public JobEventQueue() {
+    }
+
+    /**
+     * @return JVM wide queue, shared by all the CatalogManager instances.
+     */
+    public static JobEventQueue getInstance() {
+        return INSTANCE;
+    }
+
+    public void publish(Job job) {
+        String status = job.getStatus() == null ? null : job.getStatus().getName();
+        publish(new JobEvent(job.getUid(), job.getType(), status));
+    }
+
+    public void publish(JobEvent event) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Subscribe to the events matching the filter. The subscription must be closed when it is no longer used.
+     *
+     * @param filter Events to receive
+     * @return Subscription
+     */
+    public Subscription subscribe(Predicate<JobEvent> filter) {
+        return subscribe(filter, DEFAULT_CAPACITY);
+    }
+
+    public Subscription subscribe(Predicate<JobEvent> filter, int capacity) {
+        Subscription subscription = new Subscription(filter, capacity);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public final class Subscription implements AutoCloseable {
+        private final Predicate<JobEvent> filter;
+        private final BlockingQueue<JobEvent> events;
+
+        private Subscription(Predicate<JobEvent> filter, int capacity) {
+            this.filter = filter;
+            this.events = new LinkedBlockingQueue<>(capacity);
+        }
+
+        private void offer(JobEvent event) {
+            if (filter.test(event)) {
+                // If the queue is full, the subscriber is already awake. Dropping the event is safe, as events are only hints.
+                events.offer(event);
+            }
+        }
+
+        /**
+         * Wait until at least one event is published, or the timeout expires.
+         *
+         * @param timeout Maximum time to wait
+         * @param unit    Time unit of the timeout
+         * @return All the pending events. Empty if the timeout expired.
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public List<JobEvent> await(long timeout, TimeUnit unit) throws InterruptedException {
+            JobEvent event = events.poll(timeout, unit);
+            if (event == null) {
+                return Collections.emptyList();
+            }
+            List<JobEvent> list = new ArrayList<>();
+            list.add(event);
+            events.drainTo(list);
+            return list;
+        }
+
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+            events.clear();
+        }
+    }
+
+    public static class JobEvent {
+        private final long uid;
+        private final Job.Type type;
+        private final String status;
+
+        public JobEvent(long uid, Job.Type type, String status) {
+            this.uid = uid;
+            this.type = type;
+            this.status = status;
+        }
+
+        public long getUid() {
+            return uid;
+        }
+
+        /**
+         * @return Type of the job. May be null if unknown.
+         */
+        public Job.Type getType() {
+            return type;
+        }
+
+        /**
+         * @return New status of the job. May be null if unknown.
+         */
+        public String getStatus() {
+            return status;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder("JobEvent{");
+            sb.append("uid=").append(uid);
+            sb.append(", type=").append(type);
+            sb.append(", status='").append(status).append('\'');
+            sb.append('}');
+            return sb.toString();
+        }
+    }
+}
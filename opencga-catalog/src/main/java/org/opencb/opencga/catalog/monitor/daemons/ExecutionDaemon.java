@@ -28,6 +28,7 @@ import org.opencb.opencga.catalog.exceptions.CatalogIOException;
 import org.opencb.opencga.catalog.io.CatalogIOManager;
 import org.opencb.opencga.catalog.managers.CatalogManager;
 import org.opencb.opencga.catalog.monitor.ExecutionOutputRecorder;
+import org.opencb.opencga.catalog.monitor.JobEventQueue;
 import org.opencb.opencga.catalog.monitor.executors.AbstractExecutor;
 import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.common.UriUtils;
@@ -38,13 +39,16 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Created by imedina on 16/06/16.
  */
 public class ExecutionDaemon extends MonitorParentDaemon {
 
-    private int runningJobs;
+    private final int maxConcurrentJobs;
     private String binAnalysis;
     private Path tempJobFolder;
 
@@ -61,6 +65,9 @@ public class ExecutionDaemon extends MonitorParentDaemon {
         this.catalogIOManager = catalogManager.getCatalogIOManagerFactory().get("file");
         this.binAnalysis = appHome + "/bin/opencga-analysis.sh";
         this.jobDBAdaptor = dbAdaptorFactory.getCatalogJobDBAdaptor();
+        this.maxConcurrentJobs = catalogManager.getConfiguration().getMonitor().getMaxConcurrentExecutionJobs();
+        this.jobEventSubscription = JobEventQueue.getInstance()
+                .subscribe(event -> event.getType() != Job.Type.INDEX && isPreparedEvent(event));
     }
 
     @Override
@@ -75,55 +82,69 @@ public class ExecutionDaemon extends MonitorParentDaemon {
         Query preparedJobsQuery = new Query()
                 .append(JobDBAdaptor.QueryParams.STATUS_NAME.key(), Job.JobStatus.PREPARED)
                 .append(JobDBAdaptor.QueryParams.TYPE.key(), "!=" + Job.Type.INDEX);
+        Query runningOrQueuedJobsQuery = new Query()
+                .append(JobDBAdaptor.QueryParams.STATUS_NAME.key(), Arrays.asList(Job.JobStatus.RUNNING, Job.JobStatus.QUEUED))
+                .append(JobDBAdaptor.QueryParams.TYPE.key(), "!=" + Job.Type.INDEX);
         // Sort jobs by creation date
         QueryOptions queryOptions = new QueryOptions()
                 .append(QueryOptions.SORT, JobDBAdaptor.QueryParams.CREATION_DATE.key())
                 .append(QueryOptions.ORDER, QueryOptions.ASCENDING);
 
+        long lastCheck = 0;
         while (!exit) {
+            List<JobEventQueue.JobEvent> events = Collections.emptyList();
             try {
-                Thread.sleep(interval);
+                events = waitForJobEvents();
             } catch (InterruptedException e) {
                 if (!exit) {
                     e.printStackTrace();
                 }
             }
-            logger.info("----- EXECUTION DAEMON -----", TimeUtils.getTimeMillis());
 
-            /*
-            RUNNING JOBS
-             */
-            try {
-                QueryResult<Long> count = jobDBAdaptor.count(runningJobsQuery);
-                logger.debug("Checking running jobs. {} running jobs found", count.first());
-            } catch (CatalogException e) {
-                logger.error("{}", e.getMessage(), e);
-            }
+            // Running and queued jobs are updated by the executors, so they are only checked once per interval.
+            // Job events only trigger the check of prepared jobs.
+            boolean checkAll = events.isEmpty() || System.currentTimeMillis() - lastCheck >= interval;
+            if (checkAll) {
+                lastCheck = System.currentTimeMillis();
+                logger.info("----- EXECUTION DAEMON -----", TimeUtils.getTimeMillis());
 
-            try (DBIterator<Job> iterator = jobDBAdaptor.iterator(runningJobsQuery, queryOptions)) {
-                while (iterator.hasNext()) {
-                    checkRunningJob(iterator.next());
+                /*
+                RUNNING JOBS
+                 */
+                try {
+                    QueryResult<Long> count = jobDBAdaptor.count(runningJobsQuery);
+                    logger.debug("Checking running jobs. {} running jobs found", count.first());
+                } catch (CatalogException e) {
+                    logger.error("{}", e.getMessage(), e);
                 }
-            } catch (CatalogException e) {
-                logger.error("{}", e.getMessage(), e);
-            }
 
-            /*
-            QUEUED JOBS
-             */
-            try {
-                QueryResult<Long> count = jobDBAdaptor.count(queuedJobsQuery);
-                logger.debug("Checking queued jobs. {} jobs found", count.first());
-            } catch (CatalogException e) {
-                logger.error("{}", e.getMessage(), e);
-            }
+                try (DBIterator<Job> iterator = jobDBAdaptor.iterator(runningJobsQuery, queryOptions)) {
+                    while (iterator.hasNext()) {
+                        checkRunningJob(iterator.next());
+                    }
+                } catch (CatalogException e) {
+                    logger.error("{}", e.getMessage(), e);
+                }
 
-            try (DBIterator<Job> iterator = jobDBAdaptor.iterator(queuedJobsQuery, queryOptions)) {
-                while (iterator.hasNext()) {
-                    checkQueuedJob(iterator.next(), tempJobFolder, catalogIOManager);
+                /*
+                QUEUED JOBS
+                 */
+                try {
+                    QueryResult<Long> count = jobDBAdaptor.count(queuedJobsQuery);
+                    logger.debug("Checking queued jobs. {} jobs found", count.first());
+                } catch (CatalogException e) {
+                    logger.error("{}", e.getMessage(), e);
                 }
-            } catch (CatalogException e) {
-                logger.error("{}", e.getMessage(), e);
+
+                try (DBIterator<Job> iterator = jobDBAdaptor.iterator(queuedJobsQuery, queryOptions)) {
+                    while (iterator.hasNext()) {
+                        checkQueuedJob(iterator.next(), tempJobFolder, catalogIOManager);
+                    }
+                } catch (CatalogException e) {
+                    logger.error("{}", e.getMessage(), e);
+                }
+            } else {
+                logger.debug("Execution daemon woken up by {} job events", events.size());
             }
 
             /*
@@ -137,8 +158,15 @@ public class ExecutionDaemon extends MonitorParentDaemon {
             }
 
             try (DBIterator<Job> iterator = jobDBAdaptor.iterator(preparedJobsQuery, queryOptions)) {
+                long runningOrQueuedJobs = maxConcurrentJobs > 0 ? jobDBAdaptor.count(runningOrQueuedJobsQuery).first() : 0;
                 while (iterator.hasNext()) {
-                    checkPreparedJob(iterator.next());
+                    if (maxConcurrentJobs > 0 && runningOrQueuedJobs >= maxConcurrentJobs) {
+                        logger.debug("Too many jobs running now, waiting for executing new jobs");
+                        break;
+                    }
+                    if (checkPreparedJob(iterator.next())) {
+                        runningOrQueuedJobs++;
+                    }
                 }
             } catch (CatalogException e) {
                 logger.error("{}", e.getMessage(), e);
@@ -189,14 +217,20 @@ public class ExecutionDaemon extends MonitorParentDaemon {
         }
     }
 
-    private void checkPreparedJob(Job job) {
+    /**
+     * Queue a prepared job.
+     *
+     * @param job Prepared job
+     * @return if the job was queued
+     */
+    private boolean checkPreparedJob(Job job) {
         // Create the temporal output directory.
         Path path = getJobTemporaryFolder(job.getUid(), tempJobFolder);
         try {
             catalogIOManager.createDirectory(path.toUri());
         } catch (CatalogIOException e) {
             logger.warn("Could not create the temporal output directory " + path + " to run the job", e);
-            return;
+            return false;
             // TODO: Maximum attemps ... -> Error !
         }
 
@@ -234,6 +268,7 @@ public class ExecutionDaemon extends MonitorParentDaemon {
                 if (update.getNumResults() == 1) {
                     job = update.first();
                     executeJob(job, userToken);
+                    return true;
                 } else {
                     logger.error("Could not update nor run job {}" + job.getUid());
                 }
@@ -245,6 +280,7 @@ public class ExecutionDaemon extends MonitorParentDaemon {
         } catch (CatalogException e) {
             logger.error("{}", e.getMessage(), e);
         }
+        return false;
     }
 
 }
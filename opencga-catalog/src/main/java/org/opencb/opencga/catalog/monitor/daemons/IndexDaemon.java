@@ -27,6 +27,7 @@ import org.opencb.opencga.catalog.exceptions.CatalogIOException;
 import org.opencb.opencga.catalog.io.CatalogIOManager;
 import org.opencb.opencga.catalog.managers.CatalogManager;
 import org.opencb.opencga.catalog.monitor.ExecutionOutputRecorder;
+import org.opencb.opencga.catalog.monitor.JobEventQueue;
 import org.opencb.opencga.catalog.monitor.executors.AbstractExecutor;
 import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.common.UriUtils;
@@ -39,6 +40,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -77,6 +79,7 @@ public class IndexDaemon extends MonitorParentDaemon {
 
     private String binHome;
     private Path tempJobFolder;
+    private final int maxConcurrentIndexJobs;
 //    private VariantIndexOutputRecorder variantIndexOutputRecorder;
 
     public IndexDaemon(int interval, String sessionId, CatalogManager catalogManager, String appHome)
@@ -87,49 +90,61 @@ public class IndexDaemon extends MonitorParentDaemon {
         this.tempJobFolder = Paths.get(uri.getPath());
         this.catalogIOManager = catalogManager.getCatalogIOManagerFactory().get("file");
         this.jobDBAdaptor = dbAdaptorFactory.getCatalogJobDBAdaptor();
+        this.maxConcurrentIndexJobs = Math.max(1, catalogManager.getConfiguration().getMonitor().getMaxConcurrentIndexJobs());
+        this.jobEventSubscription = JobEventQueue.getInstance()
+                .subscribe(event -> (event.getType() == null || event.getType() == Job.Type.INDEX) && isPreparedEvent(event));
 //        this.variantIndexOutputRecorder = new VariantIndexOutputRecorder(catalogManager, catalogIOManager, sessionId);
     }
 
     @Override
     public void run() {
 
-        int maxConcurrentIndexJobs = 1; // TODO: Read from configuration?
-
+        long lastCheck = 0;
         while (!exit) {
             try {
+                List<JobEventQueue.JobEvent> events;
                 try {
-                    Thread.sleep(interval);
+                    events = waitForJobEvents();
                 } catch (InterruptedException e) {
                     // Break loop
                     exit = true;
                     break;
                 }
-                logger.info("----- INDEX DAEMON -----", TimeUtils.getTimeMillis());
 
-            /*
-            RUNNING JOBS
-             */
-                try {
-                    QueryResult<Job> runningJobs = jobDBAdaptor.get(RUNNING_JOBS_QUERY, QUERY_OPTIONS);
-                    logger.debug("Checking running jobs. {} running jobs found", runningJobs.getNumResults());
-                    for (Job job : runningJobs.getResult()) {
-                        checkRunningJob(job);
+                // Running and queued jobs are updated by the executors, so they are only checked once per interval.
+                // Job events only trigger the check of prepared jobs.
+                boolean checkAll = events.isEmpty() || System.currentTimeMillis() - lastCheck >= interval;
+                if (checkAll) {
+                    lastCheck = System.currentTimeMillis();
+                    logger.info("----- INDEX DAEMON -----", TimeUtils.getTimeMillis());
+
+                    /*
+                    RUNNING JOBS
+                     */
+                    try {
+                        QueryResult<Job> runningJobs = jobDBAdaptor.get(RUNNING_JOBS_QUERY, QUERY_OPTIONS);
+                        logger.debug("Checking running jobs. {} running jobs found", runningJobs.getNumResults());
+                        for (Job job : runningJobs.getResult()) {
+                            checkRunningJob(job);
+                        }
+                    } catch (CatalogException e) {
+                        logger.warn("Cannot obtain running jobs", e);
                     }
-                } catch (CatalogException e) {
-                    logger.warn("Cannot obtain running jobs", e);
-                }
 
-            /*
-            QUEUED JOBS
-             */
-                try {
-                    QueryResult<Job> queuedJobs = jobDBAdaptor.get(QUEUED_JOBS_QUERY, QUERY_OPTIONS);
-                    logger.debug("Checking queued jobs. {} queued jobs found", queuedJobs.getNumResults());
-                    for (Job job : queuedJobs.getResult()) {
-                        checkQueuedJob(job, tempJobFolder, catalogIOManager);
+                    /*
+                    QUEUED JOBS
+                     */
+                    try {
+                        QueryResult<Job> queuedJobs = jobDBAdaptor.get(QUEUED_JOBS_QUERY, QUERY_OPTIONS);
+                        logger.debug("Checking queued jobs. {} queued jobs found", queuedJobs.getNumResults());
+                        for (Job job : queuedJobs.getResult()) {
+                            checkQueuedJob(job, tempJobFolder, catalogIOManager);
+                        }
+                    } catch (CatalogException e) {
+                        logger.warn("Cannot obtain queued jobs", e);
                     }
-                } catch (CatalogException e) {
-                    logger.warn("Cannot obtain queued jobs", e);
+                } else {
+                    logger.debug("Index daemon woken up by {} job events", events.size());
                 }
 
             /*
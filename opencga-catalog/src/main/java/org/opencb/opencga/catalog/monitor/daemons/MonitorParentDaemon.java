@@ -26,6 +26,7 @@ import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.catalog.exceptions.CatalogIOException;
 import org.opencb.opencga.catalog.io.CatalogIOManager;
 import org.opencb.opencga.catalog.managers.CatalogManager;
+import org.opencb.opencga.catalog.monitor.JobEventQueue;
 import org.opencb.opencga.catalog.monitor.executors.AbstractExecutor;
 import org.opencb.opencga.catalog.monitor.executors.ExecutorManager;
 import org.opencb.opencga.core.models.Job;
@@ -33,8 +34,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by imedina on 16/06/16.
@@ -47,6 +51,8 @@ public abstract class MonitorParentDaemon implements Runnable {
     @Deprecated
     protected DBAdaptorFactory dbAdaptorFactory;
     protected AbstractExecutor executorManager;
+    // Job events that wake up the daemon before the interval expires. Null if the daemon does not listen to job events.
+    protected JobEventQueue.Subscription jobEventSubscription;
 
     protected boolean exit = false;
 
@@ -79,6 +85,29 @@ public abstract class MonitorParentDaemon implements Runnable {
 
     public void setExit(boolean exit) {
         this.exit = exit;
+        if (exit && jobEventSubscription != null) {
+            jobEventSubscription.close();
+        }
+    }
+
+    /**
+     * Wait until a job event is received, or the interval expires.
+     *
+     * @return The received job events, or an empty list if the interval expired.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    protected List<JobEventQueue.JobEvent> waitForJobEvents() throws InterruptedException {
+        if (jobEventSubscription == null) {
+            Thread.sleep(interval);
+            return Collections.emptyList();
+        } else {
+            return jobEventSubscription.await(interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static boolean isPreparedEvent(JobEventQueue.JobEvent event) {
+        // Unknown status means that the job might have been prepared
+        return event.getStatus() == null || event.getStatus().equals(Job.JobStatus.PREPARED);
     }
 
     static Path getJobTemporaryFolder(long jobId, Path tempJobFolder) {
@@ -29,7 +29,7 @@ public class ExecutorManager {
     public ExecutorManager(Configuration configuration) {
         if (configuration != null) {
             if (configuration.getExecution().getMode().equalsIgnoreCase("local")) {
-                this.executor = new LocalExecutor();
+                this.executor = new LocalExecutor(configuration);
             } else if (configuration.getExecution().getMode().equalsIgnoreCase("sge")) {
                 // init sge executor
                 this.executor = new SGEExecutor(configuration);
@@ -18,6 +18,7 @@ package org.opencb.opencga.catalog.monitor.executors;
 
 import org.opencb.commons.exec.Command;
 import org.opencb.commons.exec.RunnableProcess;
+import org.opencb.opencga.core.config.Configuration;
 import org.opencb.opencga.core.models.Job;
 import org.slf4j.LoggerFactory;
 
@@ -31,12 +32,31 @@ import java.io.IOException;
  */
 public class LocalExecutor extends AbstractExecutor {
 
-    private static int threadInitNumber;
+    // Default resources of the jobs not declaring them
+    public static final int DEFAULT_INDEX_THREADS = 2;
+    public static final long DEFAULT_INDEX_MEMORY = 4096;
+    public static final int DEFAULT_ANALYSIS_THREADS = 1;
+    public static final long DEFAULT_ANALYSIS_MEMORY = 1024;
+
+    private final LocalJobScheduler scheduler;
 
     public LocalExecutor() {
+        this(null);
+    }
+
+    public LocalExecutor(Configuration configuration) {
         logger = LoggerFactory.getLogger(LocalExecutor.class);
+        scheduler = LocalJobScheduler.getInstance(configuration == null ? null : configuration.getExecution());
     }
 
+    /**
+     * Submit the job to the {@link LocalJobScheduler}. The job starts when there are enough free threads and memory. Meanwhile, it
+     * remains QUEUED.
+     *
+     * @param job   Job to execute
+     * @param token Token of the user
+     * @throws Exception on error
+     */
     @Override
     public void execute(Job job, String token) throws Exception {
         Runnable runnable = () -> {
@@ -103,17 +123,56 @@ public class LocalExecutor extends AbstractExecutor {
 //                }
 //            }
         };
-        Thread thread = new Thread(runnable, "LocalExecutor-" + nextThreadNum());
-        thread.start();
+        scheduler.submit(job, getThreads(job), getMemory(job), runnable);
     }
 
-    private static synchronized int nextThreadNum() {
-        return threadInitNumber++;
+    /**
+     * Threads required by the job, from the resource manager attributes or the job params. Default value by job type, or if the
+     * value is not a valid number.
+     *
+     * @param job Job
+     * @return Number of threads
+     */
+    protected int getThreads(Job job) {
+        long defaultThreads = job.getType() == Job.Type.INDEX ? DEFAULT_INDEX_THREADS : DEFAULT_ANALYSIS_THREADS;
+        return (int) Math.min(Integer.MAX_VALUE, getResource(job, NUM_THREADS, defaultThreads));
+    }
+
+    /**
+     * Memory in MB required by the job, from the resource manager attributes or the job params. Default value by job type, or if
+     * the value is not a valid number.
+     *
+     * @param job Job
+     * @return Memory in MB
+     */
+    protected long getMemory(Job job) {
+        long defaultMemory = job.getType() == Job.Type.INDEX ? DEFAULT_INDEX_MEMORY : DEFAULT_ANALYSIS_MEMORY;
+        return getResource(job, MAX_MEM, defaultMemory);
+    }
+
+    private long getResource(Job job, String key, long defaultValue) {
+        Object value = null;
+        if (job.getResourceManagerAttributes() != null && job.getResourceManagerAttributes().get(key) != null) {
+            value = job.getResourceManagerAttributes().get(key);
+        } else if (job.getParams() != null && job.getParams().get(key) != null) {
+            value = job.getParams().get(key);
+        }
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid {} '{}' for job {}. Using default value {}", key, value, job.getUid(), defaultValue);
+            return defaultValue;
+        }
     }
 
     @Override
     protected String getStatus(Job job) {
-        return Job.JobStatus.UNKNOWN;
+        // Jobs waiting for resources, or started but still not reporting any status
+        String status = scheduler.getStatus(job.getUid());
+        return status == null ? Job.JobStatus.UNKNOWN : status;
     }
 
     @Override
@@ -128,7 +187,8 @@ public class LocalExecutor extends AbstractExecutor {
 
     @Override
     public boolean kill(Job job) throws Exception {
-        return false;
+        // Only jobs waiting for resources can be removed
+        return scheduler.cancel(job.getUid());
     }
 
     @Override
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.monitor.executors;
+
+import org.opencb.opencga.core.config.Execution;
+import org.opencb.opencga.core.models.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admits the jobs of the {@link LocalExecutor} by the available threads and memory of the host.
+ * <p>
+ * Each job declares the threads and memory it needs. A job only starts if it fits in the free capacity. Otherwise, it waits in
+ * this scheduler, and remains QUEUED in catalog. Waiting jobs are started by priority: analysis jobs before index jobs, then jobs
+ * of users with fewer running jobs, then by arrival. If the first job does not fit, no other job is started, so big jobs are not
+ * starved by small ones.
+ * <p>
+ * The scheduler is shared by all the daemons of this process.
+ */
+public final class LocalJobScheduler {
+
+    private static LocalJobScheduler instance;
+
+    private final int maxThreads;
+    private final long maxMemory;
+    private final ExecutorService pool;
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    private final List<Task> queued = new LinkedList<>();
+    private final Map<Long, Task> running = new HashMap<>();
+    private final Map<String, Integer> runningPerUser = new HashMap<>();
+    private int usedThreads;
+    private long usedMemory;
+    private long sequence;
+
+    private final Logger logger = LoggerFactory.getLogger(LocalJobScheduler.class);
+
+    /**
+     * @param maxThreads Threads available for jobs. Number of available processors if not positive.
+     * @param maxMemory  Memory in MB available for jobs. Unlimited if not positive.
+     */
+    public LocalJobScheduler(int maxThreads, long maxMemory) {
+        this.maxThreads = maxThreads > 0 ? maxThreads : Runtime.getRuntime().availableProcessors();
+        this.maxMemory = maxMemory > 0 ? maxMemory : Long.MAX_VALUE;
+        // Every running job takes at least one thread, so the pool never needs more than maxThreads workers
+        this.pool = Executors.newFixedThreadPool(this.maxThreads, r -> {
+            Thread thread = new Thread(r, "LocalExecutor-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param execution Execution configuration. Only used when creating the scheduler.
+     * @return JVM wide scheduler.
+     */
+    public static synchronized LocalJobScheduler getInstance(Execution execution) {
+        if (instance == null) {
+            if (execution == null) {
+                instance = new LocalJobScheduler(0, 0);
+            } else {
+                instance = new LocalJobScheduler(execution.getMaxThreads(), execution.getMaxMemory());
+            }
+        }
+        return instance;
+    }
+
+    private final class Task {
+        private final Job job;
+        private final int threads;
+        private final long memory;
+        private final Runnable runnable;
+        private final long order;
+
+        private Task(Job job, int threads, long memory, Runnable runnable) {
+            // Jobs bigger than the whole capacity would never start
+            this.job = job;
+            this.threads = Math.min(Math.max(1, threads), maxThreads);
+            this.memory = Math.min(Math.max(0, memory), maxMemory);
+            this.runnable = runnable;
+            this.order = sequence++;
+        }
+    }
+
+    /**
+     * Submit a job. It is started as soon as there are enough free resources.
+     *
+     * @param job      Job
+     * @param threads  Threads required by the job
+     * @param memory   Memory in MB required by the job
+     * @param runnable Job execution
+     */
+    public synchronized void submit(Job job, int threads, long memory, Runnable runnable) {
+        if (running.containsKey(job.getUid()) || getQueued(job.getUid()) != null) {
+            logger.warn("Job {} already submitted", job.getUid());
+            return;
+        }
+        Task task = new Task(job, threads, memory, runnable);
+        queued.add(task);
+        logger.info("Job {} requires {} threads and {} MB. Queued jobs: {}, used threads: {}/{}, used memory: {}/{} MB",
+                job.getUid(), task.threads, task.memory, queued.size(), usedThreads, maxThreads, usedMemory, getMaxMemoryString());
+        schedule();
+    }
+
+    /**
+     * @param jobUid Job uid
+     * @return QUEUED or RUNNING if the job was submitted to this scheduler and has not finished. Null otherwise.
+     */
+    public synchronized String getStatus(long jobUid) {
+        if (running.containsKey(jobUid)) {
+            return Job.JobStatus.RUNNING;
+        } else if (getQueued(jobUid) != null) {
+            return Job.JobStatus.QUEUED;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Remove a job that has not started yet.
+     *
+     * @param jobUid Job uid
+     * @return if the job was waiting and has been removed
+     */
+    public synchronized boolean cancel(long jobUid) {
+        Task task = getQueued(jobUid);
+        if (task == null) {
+            return false;
+        }
+        queued.remove(task);
+        // The first job might have been blocking the others
+        schedule();
+        return true;
+    }
+
+    public synchronized int getQueuedJobs() {
+        return queued.size();
+    }
+
+    public synchronized int getRunningJobs() {
+        return running.size();
+    }
+
+    private Task getQueued(long jobUid) {
+        for (Task task : queued) {
+            if (task.job.getUid() == jobUid) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private void schedule() {
+        while (!queued.isEmpty()) {
+            Task next = Collections.min(queued, this::compare);
+            if (usedThreads + next.threads > maxThreads || usedMemory + next.memory > maxMemory) {
+                logger.debug("Not enough resources to start job {}. Waiting for running jobs to finish", next.job.getUid());
+                return;
+            }
+            queued.remove(next);
+            start(next);
+        }
+    }
+
+    private void start(Task task) {
+        usedThreads += task.threads;
+        usedMemory += task.memory;
+        running.put(task.job.getUid(), task);
+        runningPerUser.merge(task.job.getUserId(), 1, Integer::sum);
+        logger.info("Starting job {}. Used threads: {}/{}, used memory: {}/{} MB", task.job.getUid(), usedThreads, maxThreads,
+                usedMemory, getMaxMemoryString());
+        pool.submit(() -> {
+            try {
+                task.runnable.run();
+            } catch (RuntimeException e) {
+                logger.error("Error executing job {}", task.job.getUid(), e);
+            } finally {
+                finish(task);
+            }
+        });
+    }
+
+    private synchronized void finish(Task task) {
+        usedThreads -= task.threads;
+        usedMemory -= task.memory;
+        running.remove(task.job.getUid());
+        runningPerUser.computeIfPresent(task.job.getUserId(), (user, count) -> count > 1 ? count - 1 : null);
+        schedule();
+    }
+
+    private int compare(Task a, Task b) {
+        int c = Integer.compare(getTypePriority(a.job), getTypePriority(b.job));
+        if (c == 0) {
+            c = Integer.compare(runningPerUser.getOrDefault(a.job.getUserId(), 0), runningPerUser.getOrDefault(b.job.getUserId(), 0));
+        }
+        if (c == 0) {
+            c = Long.compare(a.order, b.order);
+        }
+        return c;
+    }
+
+    private static int getTypePriority(Job job) {
+        // Analysis jobs are usually short and interactive. Index jobs may run for hours
+        return job.getType() == Job.Type.INDEX ? 1 : 0;
+    }
+
+    private String getMaxMemoryString() {
+        return maxMemory == Long.MAX_VALUE ? "unlimited" : String.valueOf(maxMemory);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.db.mongodb;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.QueryParam;
+import org.opencb.opencga.catalog.exceptions.CatalogDBException;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the shape of the annotation queries, so they can be resolved with the compound index
+ * {studyUid, customAnnotationSets.vs, customAnnotationSets.id, customAnnotationSets.value}.
+ */
+public class AnnotationMongoDBAdaptorTest extends MongoDBAdaptorTest {
+
+    private static final long VS_UID = 5;
+
+    private Document createAnnotationQuery(String annotations) throws CatalogDBException {
+        ObjectMap variableTypeMap = new ObjectMap()
+                .append("vs", VS_UID)
+                .append("vs:NAME", QueryParam.Type.TEXT)
+                .append("vs:AGE", QueryParam.Type.INTEGER)
+                .append("vs:ALIVE", QueryParam.Type.BOOLEAN);
+        return catalogDBAdaptor.getCatalogSampleDBAdaptor().createAnnotationQuery(annotations, variableTypeMap);
+    }
+
+    private static Document elemMatch(String variable, Object value) {
+        return new Document("customAnnotationSets", new Document("$elemMatch",
+                new Document("vs", VS_UID).append("id", variable).append("value", value)));
+    }
+
+    @Test
+    public void testSingleVariable() throws CatalogDBException {
+        assertEquals(elemMatch("AGE", 30), createAnnotationQuery("vs:AGE=30"));
+        assertEquals(elemMatch("AGE", new Document("$gt", 30)), createAnnotationQuery("vs:AGE>30"));
+        assertEquals(elemMatch("ALIVE", true), createAnnotationQuery("vs:ALIVE=true"));
+    }
+
+    @Test
+    public void testMultipleValues() throws CatalogDBException {
+        // A list of equalities is one $in
+        assertEquals(elemMatch("NAME", new Document("$in", Arrays.asList("s_1", "s_2", "s_3"))),
+                createAnnotationQuery("vs:NAME=s_1,s_2,s_3"));
+        assertEquals(elemMatch("AGE", new Document("$in", Arrays.asList(6, 10))), createAnnotationQuery("vs:AGE=6,10"));
+
+        // Any other list is one $elemMatch per condition, with no $or inside the $elemMatch
+        assertEquals(new Document("$or", Arrays.asList(
+                elemMatch("AGE", new Document("$lt", 10)),
+                elemMatch("AGE", new Document("$gt", 40)))),
+                createAnnotationQuery("vs:AGE<10,>40"));
+        assertEquals(new Document("$or", Arrays.asList(
+                elemMatch("AGE", 6),
+                elemMatch("AGE", new Document("$gt", 40)))),
+                createAnnotationQuery("vs:AGE=6,>40"));
+    }
+
+    @Test
+    public void testOrAnd() throws CatalogDBException {
+        Document query = createAnnotationQuery("vs:AGE<10,>40;vs:NAME=s_1,s_8;vs:ALIVE=true");
+        List<Document> and = (List<Document>) query.get("$and");
+        assertEquals(3, and.size());
+        assertEquals(new Document("$or", Arrays.asList(
+                elemMatch("AGE", new Document("$lt", 10)),
+                elemMatch("AGE", new Document("$gt", 40)))), and.get(0));
+        assertEquals(elemMatch("NAME", new Document("$in", Arrays.asList("s_1", "s_8"))), and.get(1));
+        assertEquals(elemMatch("ALIVE", true), and.get(2));
+    }
+}
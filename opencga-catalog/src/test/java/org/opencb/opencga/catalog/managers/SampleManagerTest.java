@@ -872,6 +872,33 @@ public class SampleManagerTest extends AbstractManagerTest {
         assertEquals(2, samples.size());
     }
 
+    @Test
+    public void testQuerySamplesAnnotationOrAnd() throws CatalogException {
+        String vs = catalogManager.getStudyManager().get(studyFqn, QueryOptions.empty(), sessionIdUser).first()
+                .getVariableSets().get(0).getId();
+
+        // Single variable
+        assertEquals(new HashSet<>(Arrays.asList("s_6", "s_7", "s_8")), querySampleIds(vs + ":AGE>30"));
+        // Multiple values. Equalities
+        assertEquals(new HashSet<>(Arrays.asList("s_1", "s_4", "s_7")), querySampleIds(vs + ":AGE=6,22,46"));
+        // Multiple values. Ranges
+        assertEquals(new HashSet<>(Arrays.asList("s_1", "s_7", "s_8")), querySampleIds(vs + ":AGE<10,>40"));
+        // Multiple values. Equalities and ranges
+        assertEquals(new HashSet<>(Arrays.asList("s_1", "s_7", "s_8")), querySampleIds(vs + ":AGE=6,>40"));
+        // Same variable twice
+        assertEquals(new HashSet<>(Arrays.asList("s_3", "s_4", "s_5")), querySampleIds(vs + ":AGE>10;" + vs + ":AGE<30"));
+        // Or and And
+        assertEquals(new HashSet<>(Arrays.asList("s_1", "s_8")), querySampleIds(vs + ":AGE<10,>40;" + vs + ":ALIVE=true"));
+        assertEquals(new HashSet<>(Arrays.asList("s_7")),
+                querySampleIds(vs + ":AGE<10,>40;" + vs + ":PHEN=CASE,CONTROL;" + vs + ":ALIVE=false"));
+        assertEquals(Collections.emptySet(), querySampleIds(vs + ":AGE<10,>40;" + vs + ":NAME=s_2,s_3"));
+    }
+
+    private Set<String> querySampleIds(String annotation) throws CatalogException {
+        return catalogManager.getSampleManager().get(studyFqn, new Query(ANNOTATION.key(), annotation), null, sessionIdUser)
+                .getResult().stream().map(Sample::getId).collect(Collectors.toSet());
+    }
+
     @Test
     public void testUpdateAnnotation() throws CatalogException {
         Sample sample = catalogManager.getSampleManager().get(studyFqn, s_1, null, sessionIdUser).first();
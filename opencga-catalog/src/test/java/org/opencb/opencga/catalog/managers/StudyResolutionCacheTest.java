@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.managers;
+
+import org.junit.Test;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.core.models.Group;
+import org.opencb.opencga.core.models.Study;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class StudyResolutionCacheTest {
+
+    private static QueryResult<Study> result(String id) {
+        return new QueryResult<>("", 0, 1, 1, "", "", Collections.singletonList(new Study().setId(id)));
+    }
+
+    @Test
+    public void testGetPut() {
+        StudyResolutionCache cache = new StudyResolutionCache();
+        String key = StudyResolutionCache.key("user@1000G:phase1", "user", null);
+        assertNull(cache.get(key, 0));
+
+        cache.put(key, 0, result("phase1"));
+        assertEquals("phase1", cache.get(key, 0).first().getId());
+        // Results are copied. Modifying the list does not modify the cache
+        cache.get(key, 0).getResult().clear();
+        assertEquals(1, cache.get(key, 0).getNumResults());
+        // Neither modifying the returned studies
+        cache.get(key, 0).first().setId("other").setGroups(Collections.singletonList(new Group("@members", Collections.emptyList())));
+        assertEquals("phase1", cache.get(key, 0).first().getId());
+        assertNull(cache.get(key, 0).first().getGroups());
+        // Nor the stored ones
+        QueryResult<Study> result = result("phase2");
+        cache.put(key, 0, result);
+        result.first().setId("other");
+        assertEquals("phase2", cache.get(key, 0).first().getId());
+        assertNotSame(cache.get(key, 0).first(), cache.get(key, 0).first());
+
+        // Any modification invalidates the entry
+        assertNull(cache.get(key, 1));
+        assertNull(cache.get(key, 0));
+    }
+
+    @Test
+    public void testMaxSizeAndTtl() throws InterruptedException {
+        StudyResolutionCache cache = new StudyResolutionCache(2, 50);
+        cache.put("a", 0, result("a"));
+        cache.put("b", 0, result("b"));
+        cache.get("a", 0);
+        cache.put("c", 0, result("c"));
+        assertNotNull(cache.get("a", 0));
+        assertNull(cache.get("b", 0));
+
+        Thread.sleep(100);
+        assertNull(cache.get("a", 0));
+    }
+
+    @Test
+    public void testKey() {
+        assertEquals(StudyResolutionCache.key("s", "user", null), StudyResolutionCache.key("s", "user", new QueryOptions()));
+        assertEquals(StudyResolutionCache.key("s", "user", new QueryOptions(QueryOptions.INCLUDE, Arrays.asList("groups", "fqn"))),
+                StudyResolutionCache.key("s", "user", new QueryOptions(QueryOptions.INCLUDE, "fqn,groups")));
+        assertNotEquals(StudyResolutionCache.key("s", "user", null), StudyResolutionCache.key("s", "user2", null));
+        assertNull(StudyResolutionCache.key("s", "user", new QueryOptions(QueryOptions.EXCLUDE, "groups")));
+    }
+}
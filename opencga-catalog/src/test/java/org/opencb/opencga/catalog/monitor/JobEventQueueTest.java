@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.monitor;
+
+import org.junit.Test;
+import org.opencb.opencga.catalog.monitor.JobEventQueue.JobEvent;
+import org.opencb.opencga.core.models.Job;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JobEventQueueTest {
+
+    @Test
+    public void testSubscribe() throws Exception {
+        JobEventQueue queue = new JobEventQueue();
+        try (JobEventQueue.Subscription index = queue.subscribe(event -> event.getType() == Job.Type.INDEX);
+             JobEventQueue.Subscription all = queue.subscribe(event -> true)) {
+            queue.publish(new JobEvent(1, Job.Type.INDEX, Job.JobStatus.PREPARED));
+            queue.publish(new JobEvent(2, Job.Type.ANALYSIS, Job.JobStatus.PREPARED));
+
+            List<JobEvent> events = index.await(1, TimeUnit.SECONDS);
+            assertEquals(1, events.size());
+            assertEquals(1, events.get(0).getUid());
+
+            events = all.await(1, TimeUnit.SECONDS);
+            assertEquals(2, events.size());
+
+            assertTrue(index.await(10, TimeUnit.MILLISECONDS).isEmpty());
+        }
+    }
+
+    @Test
+    public void testWakeUp() throws Exception {
+        JobEventQueue queue = new JobEventQueue();
+        try (JobEventQueue.Subscription subscription = queue.subscribe(event -> true)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                }
+                queue.publish(new JobEvent(1, null, null));
+            });
+            thread.start();
+
+            long start = System.currentTimeMillis();
+            List<JobEvent> events = subscription.await(1, TimeUnit.MINUTES);
+            assertEquals(1, events.size());
+            assertTrue(System.currentTimeMillis() - start < TimeUnit.MINUTES.toMillis(1));
+            thread.join();
+        }
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        JobEventQueue queue = new JobEventQueue();
+        try (JobEventQueue.Subscription subscription = queue.subscribe(event -> true, 5)) {
+            for (int i = 0; i < 10; i++) {
+                queue.publish(new JobEvent(i, null, null));
+            }
+            assertEquals(5, subscription.await(1, TimeUnit.SECONDS).size());
+        }
+
+        // Closed subscriptions do not receive more events
+        JobEventQueue.Subscription subscription = queue.subscribe(event -> true);
+        subscription.close();
+        queue.publish(new JobEvent(1, null, null));
+        assertTrue(subscription.await(10, TimeUnit.MILLISECONDS).isEmpty());
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.monitor.executors;
+
+import org.junit.Test;
+import org.opencb.opencga.core.models.Job;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class LocalExecutorTest {
+
+    @Test
+    public void testResources() {
+        LocalExecutor executor = new LocalExecutor();
+
+        Job job = new Job().setUid(1).setType(Job.Type.INDEX);
+        assertEquals(LocalExecutor.DEFAULT_INDEX_THREADS, executor.getThreads(job));
+        assertEquals(LocalExecutor.DEFAULT_INDEX_MEMORY, executor.getMemory(job));
+
+        job = new Job().setUid(2).setType(Job.Type.ANALYSIS)
+                .setParams(Collections.singletonMap(AbstractExecutor.NUM_THREADS, "4"))
+                .setResourceManagerAttributes(Collections.singletonMap(AbstractExecutor.MAX_MEM, 2048));
+        assertEquals(4, executor.getThreads(job));
+        assertEquals(2048, executor.getMemory(job));
+
+        // Invalid values fall back to the default values
+        job = new Job().setUid(3).setType(Job.Type.ANALYSIS)
+                .setParams(Collections.singletonMap(AbstractExecutor.NUM_THREADS, "four"))
+                .setResourceManagerAttributes(Collections.singletonMap(AbstractExecutor.MAX_MEM, "2g"));
+        assertEquals(LocalExecutor.DEFAULT_ANALYSIS_THREADS, executor.getThreads(job));
+        assertEquals(LocalExecutor.DEFAULT_ANALYSIS_MEMORY, executor.getMemory(job));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.catalog.monitor.executors;
+
+import org.junit.Test;
+import org.opencb.opencga.core.models.Job;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LocalJobSchedulerTest {
+
+    private static Job job(long uid, String userId, Job.Type type) {
+        return new Job().setUid(uid).setUserId(userId).setType(type);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testAdmission() throws Exception {
+        LocalJobScheduler scheduler = new LocalJobScheduler(4, 4096);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable runnable = () -> await(release);
+
+        scheduler.submit(job(1, "user", Job.Type.INDEX), 2, 2048, runnable);
+        scheduler.submit(job(2, "user", Job.Type.INDEX), 2, 2048, runnable);
+        // No memory left
+        scheduler.submit(job(3, "user", Job.Type.ANALYSIS), 1, 1024, runnable);
+        // Requires the whole capacity, so it only starts once all the other jobs have finished
+        List<Object> state = new CopyOnWriteArrayList<>();
+        CountDownLatch lastStarted = new CountDownLatch(1);
+        scheduler.submit(job(4, "user", Job.Type.INDEX), 4, 4096, () -> {
+            state.add(scheduler.getRunningJobs());
+            state.add(scheduler.getQueuedJobs());
+            state.add(String.valueOf(scheduler.getStatus(3)));
+            lastStarted.countDown();
+        });
+
+        assertEquals(Job.JobStatus.RUNNING, scheduler.getStatus(1));
+        assertEquals(Job.JobStatus.RUNNING, scheduler.getStatus(2));
+        assertEquals(Job.JobStatus.QUEUED, scheduler.getStatus(3));
+        assertEquals(Job.JobStatus.QUEUED, scheduler.getStatus(4));
+        assertNull(scheduler.getStatus(5));
+
+        release.countDown();
+        assertTrue(lastStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(1, 0, "null"), state);
+    }
+
+    @Test
+    public void testTypePriority() throws Exception {
+        LocalJobScheduler scheduler = new LocalJobScheduler(1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> order = new CopyOnWriteArrayList<>();
+        CountDownLatch finished = new CountDownLatch(2);
+
+        scheduler.submit(job(1, "user1", Job.Type.INDEX), 1, 0, () -> await(release));
+        scheduler.submit(job(2, "user1", Job.Type.INDEX), 1, 0, () -> {
+            order.add(2L);
+            finished.countDown();
+        });
+        scheduler.submit(job(3, "user1", Job.Type.ANALYSIS), 1, 0, () -> {
+            order.add(3L);
+            finished.countDown();
+        });
+        // Bigger than the whole capacity. Limited to the capacity
+        scheduler.submit(job(4, "user1", Job.Type.INDEX), 8, 0, () -> order.add(4L));
+        assertTrue(scheduler.cancel(4));
+        assertFalse(scheduler.cancel(1));
+
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        // Analysis first, even if submitted later
+        assertEquals(Arrays.asList(3L, 2L), order);
+    }
+
+    @Test
+    public void testUserFairness() throws Exception {
+        LocalJobScheduler scheduler = new LocalJobScheduler(2, 0);
+        CountDownLatch release1 = new CountDownLatch(1);
+        CountDownLatch release2 = new CountDownLatch(1);
+        List<Long> order = new CopyOnWriteArrayList<>();
+        CountDownLatch finished = new CountDownLatch(2);
+
+        scheduler.submit(job(1, "user1", Job.Type.INDEX), 1, 0, () -> await(release1));
+        scheduler.submit(job(2, "user1", Job.Type.INDEX), 1, 0, () -> await(release2));
+        scheduler.submit(job(3, "user1", Job.Type.INDEX), 1, 0, () -> {
+            order.add(3L);
+            finished.countDown();
+        });
+        scheduler.submit(job(4, "user2", Job.Type.INDEX), 1, 0, () -> {
+            order.add(4L);
+            finished.countDown();
+        });
+        assertEquals(Job.JobStatus.QUEUED, scheduler.getStatus(3));
+        assertEquals(Job.JobStatus.QUEUED, scheduler.getStatus(4));
+
+        // Frees one thread. Job 1 is still running, so user2 has fewer running jobs than user1 and goes first
+        release2.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(4L, 3L), order);
+        assertEquals(Job.JobStatus.RUNNING, scheduler.getStatus(1));
+        release1.countDown();
+    }
+
+    @Test
+    public void testFailedJob() throws Exception {
+        LocalJobScheduler scheduler = new LocalJobScheduler(1, 0);
+        CountDownLatch finished = new CountDownLatch(1);
+        scheduler.submit(job(1, "user", Job.Type.ANALYSIS), 1, 0, () -> {
+            throw new IllegalStateException("Error");
+        });
+        // Only starts if the failed job released its resources
+        scheduler.submit(job(2, "user", Job.Type.ANALYSIS), 1, 0, finished::countDown);
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+    }
+}
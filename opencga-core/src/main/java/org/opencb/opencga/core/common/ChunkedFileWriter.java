@@ -0,0 +1,383 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.core.common;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Writes a file uploaded by chunks directly into its final location.
+ * <p>
+ * Each chunk is streamed from the request into the target file at its own offset, so there is no need to keep the chunk in memory
+ * nor to concatenate partial files at the end. Received chunks are tracked in a small sidecar file ({@code <target>.ranges}) that
+ * is used to resume interrupted uploads and to detect when the file is complete.
+ * <p>
+ * Each upload is identified by its upload id, total size and checksum, when known. Declaring a different value for any of them
+ * discards the received chunks, as they belong to a different file. Chunks can be sent again, or in any order.
+ * <p>
+ * Concurrent uploads of different targets do not block each other. Only the access to the sidecar file is serialized, by target.
+ * <p>
+ * Usage:
+ * ChunkedFileWriter writer = new ChunkedFileWriter(target).start(uploadId, size, checksum);
+ * writer.write(chunkId, offset, chunkSize, inputStream, hash);
+ * if (writer.isComplete() &amp;&amp; writer.complete()) { ... }
+ */
+public class ChunkedFileWriter {
+
+    public static final String RANGES_SUFFIX = ".ranges";
+    private static final String UPLOAD_ID_HEADER = "#upload_id";
+    private static final String TOTAL_SIZE_HEADER = "#total";
+    private static final String CHECKSUM_HEADER = "#checksum";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Striped locks, so only the uploads of the same target (or a colliding one) are serialized
+    private static final Object[] LOCKS = new Object[64];
+
+    static {
+        for (int i = 0; i < LOCKS.length; i++) {
+            LOCKS[i] = new Object();
+        }
+    }
+
+    private final Path target;
+    private final Path rangesFile;
+    private final Object lock;
+    private final Logger logger = LoggerFactory.getLogger(ChunkedFileWriter.class);
+
+    public ChunkedFileWriter(Path target) {
+        this.target = target;
+        this.rangesFile = Paths.get(target.toString() + RANGES_SUFFIX);
+        this.lock = LOCKS[Math.floorMod(target.toAbsolutePath().normalize().hashCode(), LOCKS.length)];
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    /**
+     * Discards any previous partial upload of the target, removing the received chunks and truncating the file.
+     *
+     * @return this
+     * @throws IOException if the file can not be truncated
+     */
+    public ChunkedFileWriter reset() throws IOException {
+        synchronized (lock) {
+            if (Files.deleteIfExists(rangesFile)) {
+                logger.info("Discarding partial upload of {}", target);
+            }
+            if (Files.exists(target)) {
+                try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                    channel.truncate(0);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Declares the upload. If any of the given values is different from the one declared before, the previous partial upload
+     * is discarded. The received chunks are kept otherwise, so the upload can be resumed. The file is preallocated or truncated
+     * to the total size, if known.
+     *
+     * @param uploadId  Identifier of the upload, or null if unknown
+     * @param totalSize Final size of the file in bytes, or -1 if unknown
+     * @param checksum  Checksum of the whole file, or null if unknown
+     * @return this
+     * @throws IOException if the file can not be created
+     */
+    public ChunkedFileWriter start(String uploadId, long totalSize, String checksum) throws IOException {
+        Map<String, String> declared = new LinkedHashMap<>();
+        if (StringUtils.isNotEmpty(uploadId)) {
+            declared.put(UPLOAD_ID_HEADER, uploadId);
+        }
+        if (totalSize >= 0) {
+            declared.put(TOTAL_SIZE_HEADER, String.valueOf(totalSize));
+        }
+        if (StringUtils.isNotEmpty(checksum)) {
+            declared.put(CHECKSUM_HEADER, checksum);
+        }
+        if (declared.isEmpty()) {
+            return this;
+        }
+        synchronized (lock) {
+            Map<String, String> headers = getHeaders();
+            for (Map.Entry<String, String> entry : declared.entrySet()) {
+                String previous = headers.get(entry.getKey());
+                if (previous != null && !previous.equals(entry.getValue())) {
+                    logger.info("{} of {} changed from {} to {}", entry.getKey().substring(1), target, previous, entry.getValue());
+                    reset();
+                    headers.clear();
+                    break;
+                }
+            }
+            StringBuilder newHeaders = new StringBuilder();
+            for (Map.Entry<String, String> entry : declared.entrySet()) {
+                if (!headers.containsKey(entry.getKey())) {
+                    newHeaders.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+                }
+            }
+            if (newHeaders.length() > 0) {
+                Files.write(rangesFile, newHeaders.toString().getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            if (totalSize >= 0) {
+                try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    if (channel.size() > totalSize) {
+                        channel.truncate(totalSize);
+                    } else if (channel.size() < totalSize) {
+                        // Extend the file without writing any content. Most file systems will create a sparse file.
+                        channel.write(ByteBuffer.wrap(new byte[]{0}), totalSize - 1);
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Declares the final size of the file. See {@link #start}.
+     *
+     * @param totalSize Final size of the file in bytes.
+     * @return this
+     * @throws IOException if the file can not be created
+     */
+    public ChunkedFileWriter setTotalSize(long totalSize) throws IOException {
+        return start(null, totalSize, null);
+    }
+
+    /**
+     * Streams one chunk into the target file.
+     *
+     * @param chunkId       Chunk identifier
+     * @param offset        Position of the first byte of the chunk within the file
+     * @param size          Expected size of the chunk
+     * @param inputStream   Chunk content
+     * @param expectedHash  Optional hex encoded hash of the chunk (MD5, SHA-1 or SHA-256). If present, the chunk is only registered
+     *                      as received if the hash matches.
+     * @throws IOException  if the chunk could not be written, or if its size or hash do not match
+     */
+    public void write(int chunkId, long offset, long size, InputStream inputStream, String expectedHash) throws IOException {
+        if (offset < 0) {
+            throw new IOException("Unknown offset for chunk " + chunkId);
+        }
+        MessageDigest digest = null;
+        if (StringUtils.isNotEmpty(expectedHash)) {
+            digest = getDigest(expectedHash);
+        }
+
+        long written = 0;
+        byte[] bytes = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = inputStream.read(bytes)) > 0) {
+                if (digest != null) {
+                    digest.update(bytes, 0, read);
+                }
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+            }
+        }
+
+        if (size >= 0 && written != size) {
+            throw new IOException("Chunk content size (" + written + ") != chunk_size (" + size + ").");
+        }
+        if (digest != null) {
+            String hash = toHex(digest.digest());
+            if (!hash.equalsIgnoreCase(expectedHash)) {
+                throw new IOException("Chunk " + chunkId + " hash (" + hash + ") != chunk_hash (" + expectedHash + ").");
+            }
+        }
+
+        synchronized (lock) {
+            Files.write(rangesFile, (chunkId + "\t" + offset + "\t" + written + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        logger.debug("Chunk {} written at offset {} ({}B)", chunkId, offset, written);
+    }
+
+    /**
+     * Infer the offset of a chunk when the client does not provide it. All the chunks, but the last one, are expected to have the
+     * same size.
+     *
+     * @param chunkId   Chunk identifier
+     * @param size      Size of the chunk
+     * @param lastChunk If this is the last chunk of the file
+     * @return  Offset of the chunk, or -1 if it can not be inferred
+     * @throws IOException if the ranges file can not be read
+     */
+    public long inferOffset(int chunkId, long size, boolean lastChunk) throws IOException {
+        if (!lastChunk) {
+            return chunkId * size;
+        }
+        long totalSize = getTotalSize();
+        if (totalSize >= 0) {
+            return totalSize - size;
+        }
+        for (Map.Entry<Integer, long[]> entry : getReceivedChunks().entrySet()) {
+            if (entry.getKey() < chunkId) {
+                // Any non-last chunk has the nominal chunk size
+                return chunkId * entry.getValue()[1];
+            }
+        }
+        return chunkId == 0 ? 0 : -1;
+    }
+
+    /**
+     * @return Final size of the file, or -1 if unknown
+     * @throws IOException if the ranges file can not be read
+     */
+    public long getTotalSize() throws IOException {
+        String totalSize = getHeaders().get(TOTAL_SIZE_HEADER);
+        return totalSize == null ? -1 : Long.parseLong(totalSize);
+    }
+
+    /**
+     * @return Declared checksum of the whole file, or null if unknown
+     * @throws IOException if the ranges file can not be read
+     */
+    public String getChecksum() throws IOException {
+        return getHeaders().get(CHECKSUM_HEADER);
+    }
+
+    private Map<String, String> getHeaders() throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        if (Files.exists(rangesFile)) {
+            for (String line : Files.readAllLines(rangesFile, StandardCharsets.UTF_8)) {
+                if (line.startsWith("#")) {
+                    String[] split = line.split("\t", 2);
+                    headers.putIfAbsent(split[0], split.length > 1 ? split[1] : "");
+                }
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * @return Received chunks, sorted by chunk id. Values are {offset, size}
+     * @throws IOException if the ranges file can not be read
+     */
+    public SortedMap<Integer, long[]> getReceivedChunks() throws IOException {
+        SortedMap<Integer, long[]> chunks = new TreeMap<>();
+        if (Files.exists(rangesFile)) {
+            for (String line : Files.readAllLines(rangesFile, StandardCharsets.UTF_8)) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] split = line.split("\t");
+                chunks.put(Integer.valueOf(split[0]), new long[]{Long.parseLong(split[1]), Long.parseLong(split[2])});
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * @return If the received chunks cover the whole file
+     * @throws IOException if the ranges file can not be read
+     */
+    public boolean isComplete() throws IOException {
+        long totalSize = getTotalSize();
+        if (totalSize < 0) {
+            return false;
+        }
+        List<long[]> ranges = new ArrayList<>(getReceivedChunks().values());
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+        long covered = 0;
+        for (long[] range : ranges) {
+            if (range[0] > covered) {
+                return false;
+            }
+            covered = Math.max(covered, range[0] + range[1]);
+        }
+        return covered >= totalSize;
+    }
+
+    /**
+     * Marks the upload as finished, removing the tracking information. Only one caller will succeed.
+     *
+     * @return true if this call finished the upload
+     * @throws IOException if the ranges file can not be deleted
+     */
+    public boolean complete() throws IOException {
+        synchronized (lock) {
+            try {
+                Files.delete(rangesFile);
+                return true;
+            } catch (NoSuchFileException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Discards the upload, removing the partial file and the tracking information.
+     *
+     * @throws IOException if the files can not be deleted
+     */
+    public void abort() throws IOException {
+        synchronized (lock) {
+            Files.deleteIfExists(rangesFile);
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private static MessageDigest getDigest(String expectedHash) throws IOException {
+        String algorithm;
+        switch (expectedHash.length()) {
+            case 32:
+                algorithm = "MD5";
+                break;
+            case 40:
+                algorithm = "SHA-1";
+                break;
+            case 64:
+                algorithm = "SHA-256";
+                break;
+            default:
+                throw new IOException("Unknown hash algorithm for chunk_hash '" + expectedHash + "'");
+        }
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
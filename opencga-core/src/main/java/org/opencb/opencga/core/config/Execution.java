@@ -27,6 +27,10 @@ public class Execution {
     private String defaultQueue;
     private String availableQueues;
     private Map<String, String> toolsPerQueue;
+    // Threads available for jobs run by the local executor. Number of available processors if not positive.
+    private int maxThreads;
+    // Memory in MB available for jobs run by the local executor. Unlimited if not positive.
+    private long maxMemory;
 
     public Execution() {
     }
@@ -38,6 +42,8 @@ public class Execution {
         sb.append(", defaultQueue='").append(defaultQueue).append('\'');
         sb.append(", availableQueues='").append(availableQueues).append('\'');
         sb.append(", toolsPerQueue=").append(toolsPerQueue);
+        sb.append(", maxThreads=").append(maxThreads);
+        sb.append(", maxMemory=").append(maxMemory);
         sb.append('}');
         return sb.toString();
     }
@@ -77,4 +83,22 @@ public class Execution {
         this.toolsPerQueue = toolsPerQueue;
         return this;
     }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public Execution setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+        return this;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    public Execution setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+        return this;
+    }
 }
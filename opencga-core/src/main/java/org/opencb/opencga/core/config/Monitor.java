@@ -24,6 +24,10 @@ public class Monitor {
     private int daysToRemove;
     private int executionDaemonInterval;
     private int fileDaemonInterval;
+    // Maximum number of jobs queued or running at the same time. Unlimited if not positive.
+    private int maxConcurrentExecutionJobs;
+    // Maximum number of index jobs queued or running at the same time. 1 if not positive.
+    private int maxConcurrentIndexJobs;
 
     private int port;
 
@@ -36,6 +40,8 @@ public class Monitor {
         sb.append("daysToRemove=").append(daysToRemove);
         sb.append(", executionDaemonInterval=").append(executionDaemonInterval);
         sb.append(", fileDaemonInterval=").append(fileDaemonInterval);
+        sb.append(", maxConcurrentExecutionJobs=").append(maxConcurrentExecutionJobs);
+        sb.append(", maxConcurrentIndexJobs=").append(maxConcurrentIndexJobs);
         sb.append(", port=").append(port);
         sb.append('}');
         return sb.toString();
@@ -68,6 +74,24 @@ public class Monitor {
         return this;
     }
 
+    public int getMaxConcurrentExecutionJobs() {
+        return maxConcurrentExecutionJobs;
+    }
+
+    public Monitor setMaxConcurrentExecutionJobs(int maxConcurrentExecutionJobs) {
+        this.maxConcurrentExecutionJobs = maxConcurrentExecutionJobs;
+        return this;
+    }
+
+    public int getMaxConcurrentIndexJobs() {
+        return maxConcurrentIndexJobs;
+    }
+
+    public Monitor setMaxConcurrentIndexJobs(int maxConcurrentIndexJobs) {
+        this.maxConcurrentIndexJobs = maxConcurrentIndexJobs;
+        return this;
+    }
+
     public int getPort() {
         return port;
     }
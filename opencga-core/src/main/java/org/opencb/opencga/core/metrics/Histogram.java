@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.core.metrics;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of observed values, counted in fixed buckets.
+ */
+public class Histogram extends Metric implements HistogramMXBean {
+
+    private final double[] buckets;
+    private final LongAdder[] bucketCounts;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+
+    Histogram(String name, String help, Map<String, String> labels, double[] buckets) {
+        super(name, help, labels);
+        this.buckets = Arrays.copyOf(buckets, buckets.length);
+        Arrays.sort(this.buckets);
+        this.bucketCounts = new LongAdder[this.buckets.length];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+    }
+
+    public void observe(double value) {
+        // Counts are not cumulative. They are accumulated when exported
+        for (int i = 0; i < buckets.length; i++) {
+            if (value <= buckets[i]) {
+                bucketCounts[i].increment();
+                break;
+            }
+        }
+        count.increment();
+        sum.add(value);
+    }
+
+    /**
+     * @return Upper bounds of the buckets
+     */
+    public double[] getBuckets() {
+        return Arrays.copyOf(buckets, buckets.length);
+    }
+
+    /**
+     * @return Number of observations in each bucket, cumulative, as exported to Prometheus. Does not include the +Inf bucket.
+     */
+    public long[] getCumulativeBucketCounts() {
+        long[] counts = new long[buckets.length];
+        long acc = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            acc += bucketCounts[i].sum();
+            counts[i] = acc;
+        }
+        return counts;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getSum() {
+        return sum.sum();
+    }
+
+    @Override
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : getSum() / count;
+    }
+
+    @Override
+    public String getType() {
+        return "histogram";
+    }
+}
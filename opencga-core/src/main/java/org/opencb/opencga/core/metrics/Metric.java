@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.core.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Base class of the metrics of the {@link MetricsRegistry}. A metric is identified by its name and its labels.
+ */
+public abstract class Metric {
+
+    private final String name;
+    private final String help;
+    private final Map<String, String> labels;
+
+    protected Metric(String name, String help, Map<String, String> labels) {
+        this.name = name;
+        this.help = help;
+        this.labels = Collections.unmodifiableMap(new LinkedHashMap<>(labels));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return Prometheus type of the metric
+     */
+    public abstract String getType();
+}
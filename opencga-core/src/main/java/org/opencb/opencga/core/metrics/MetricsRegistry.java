@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.core.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * JVM wide registry of counters, histograms and timers.
+ * <p>
+ * Metrics are identified by name and labels, and created on first use. All the metrics are registered in the platform
+ * MBeanServer under the domain {@link #JMX_DOMAIN}, and can be exported in the Prometheus text format with
+ * {@link #writePrometheus(Writer)}.
+ * <p>
+ * Usage:
+ * try (Timer.Context ignored = MetricsRegistry.getInstance().timer("variant_query_seconds", "Variant query latency",
+ *         "backend", "mongodb").time()) {
+ *     .....
+ * }
+ */
+public final class MetricsRegistry {
+
+    public static final String PREFIX = "opencga_";
+    public static final String JMX_DOMAIN = "org.opencb.opencga";
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry(true);
+
+    private final ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<>();
+    private final boolean jmx;
+    private final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    MetricsRegistry(boolean jmx) {
+        this.jmx = jmx;
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param name   Metric name, without the {@link #PREFIX}. Counter names should end with "_total"
+     * @param help   Description of the metric
+     * @param labels Pairs of label name and label value
+     * @return The counter. Created if it did not exist
+     */
+    public Counter counter(String name, String help, String... labels) {
+        return get(name, labels, Counter.class, l -> new Counter(PREFIX + name, help, l));
+    }
+
+    /**
+     * @param name    Metric name, without the {@link #PREFIX}
+     * @param help    Description of the metric
+     * @param buckets Upper bounds of the buckets. Only used when the histogram is created
+     * @param labels  Pairs of label name and label value
+     * @return The histogram. Created if it did not exist
+     */
+    public Histogram histogram(String name, String help, double[] buckets, String... labels) {
+        return get(name, labels, Histogram.class, l -> new Histogram(PREFIX + name, help, l, buckets));
+    }
+
+    /**
+     * @param name   Metric name, without the {@link #PREFIX}. Timer names should end with "_seconds"
+     * @param help   Description of the metric
+     * @param labels Pairs of label name and label value
+     * @return The timer. Created if it did not exist
+     */
+    public Timer timer(String name, String help, String... labels) {
+        return get(name, labels, Timer.class, l -> new Timer(PREFIX + name, help, l, Timer.DEFAULT_BUCKETS));
+    }
+
+    public Collection<Metric> getMetrics() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    private <T extends Metric> T get(String name, String[] labels, Class<T> clazz, Function<Map<String, String>, T> factory) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Expected pairs of label name and value. Got " + Arrays.toString(labels));
+        }
+        StringBuilder key = new StringBuilder(name);
+        for (String label : labels) {
+            key.append('|').append(label);
+        }
+        Metric metric = metrics.computeIfAbsent(key.toString(), k -> {
+            Map<String, String> labelsMap = new LinkedHashMap<>();
+            for (int i = 0; i < labels.length; i += 2) {
+                labelsMap.put(labels[i], String.valueOf(labels[i + 1]));
+            }
+            T newMetric = factory.apply(labelsMap);
+            registerJmx(newMetric);
+            return newMetric;
+        });
+        if (!clazz.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getType() + ", not a " + clazz.getSimpleName());
+        }
+        return clazz.cast(metric);
+    }
+
+    private void registerJmx(Metric metric) {
+        if (!jmx) {
+            return;
+        }
+        try {
+            Hashtable<String, String> properties = new Hashtable<>();
+            properties.put("name", metric.getName());
+            for (Map.Entry<String, String> entry : metric.getLabels().entrySet()) {
+                properties.put(entry.getKey(), ObjectName.quote(entry.getValue()));
+            }
+            StandardMBean mBean;
+            if (metric instanceof Histogram) {
+                mBean = new StandardMBean((Histogram) metric, HistogramMXBean.class, true);
+            } else {
+                mBean = new StandardMBean((Counter) metric, CounterMXBean.class, true);
+            }
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN, properties);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(mBean, objectName);
+            }
+        } catch (Exception e) {
+            // Metrics must never break the instrumented code
+            logger.debug("Unable to register metric {} in JMX", metric.getName(), e);
+        }
+    }
+
+    /**
+     * Write all the metrics in the Prometheus text exposition format, version 0.0.4.
+     *
+     * @param writer Writer
+     * @throws IOException on write error
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        Map<String, List<Metric>> byName = new TreeMap<>();
+        for (Metric metric : metrics.values()) {
+            byName.computeIfAbsent(metric.getName(), k -> new ArrayList<>()).add(metric);
+        }
+        for (List<Metric> list : byName.values()) {
+            Metric first = list.get(0);
+            writer.write("# HELP " + first.getName() + ' ' + escapeHelp(first.getHelp()) + '\n');
+            writer.write("# TYPE " + first.getName() + ' ' + first.getType() + '\n');
+            for (Metric metric : list) {
+                if (metric instanceof Histogram) {
+                    Histogram histogram = (Histogram) metric;
+                    double[] buckets = histogram.getBuckets();
+                    long[] counts = histogram.getCumulativeBucketCounts();
+                    // Read the count after the buckets, so the +Inf bucket is never lower than the others
+                    long count = histogram.getCount();
+                    for (int i = 0; i < buckets.length; i++) {
+                        writeSample(writer, metric.getName() + "_bucket", metric.getLabels(), "le", Double.toString(buckets[i]),
+                                Long.toString(counts[i]));
+                    }
+                    writeSample(writer, metric.getName() + "_bucket", metric.getLabels(), "le", "+Inf", Long.toString(count));
+                    writeSample(writer, metric.getName() + "_sum", metric.getLabels(), null, null,
+                            Double.toString(histogram.getSum()));
+                    writeSample(writer, metric.getName() + "_count", metric.getLabels(), null, null, Long.toString(count));
+                } else {
+                    writeSample(writer, metric.getName(), metric.getLabels(), null, null, Long.toString(((Counter) metric).getCount()));
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    public String toPrometheus() {
+        StringWriter writer = new StringWriter();
+        try {
+            writePrometheus(writer);
+        } catch (IOException e) {
+            // StringWriter never throws IOException
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    private static void writeSample(Writer writer, String name, Map<String, String> labels, String extraLabel, String extraValue,
+                                    String value) throws IOException {
+        writer.write(name);
+        if (!labels.isEmpty() || extraLabel != null) {
+            writer.write('{');
+            boolean first = true;
+            for (Map.Entry<String, String> entry : labels.entrySet()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writer.write(entry.getKey() + "=\"" + escapeLabel(entry.getValue()) + '"');
+            }
+            if (extraLabel != null) {
+                if (!first) {
+                    writer.write(',');
+                }
+                writer.write(extraLabel + "=\"" + extraValue + '"');
+            }
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(value);
+        writer.write('\n');
+    }
+
+    private static String escapeHelp(String help) {
+        return help == null ? "" : help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
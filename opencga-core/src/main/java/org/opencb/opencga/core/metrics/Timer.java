@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histogram of durations, in seconds.
+ *
+ * Usage:
+ * try (Timer.Context ignored = timer.time()) {
+ *     .....
+ * }
+ */
+public class Timer extends Histogram {
+
+    /**
+     * Default buckets, from 1ms to 5 minutes.
+     */
+    public static final double[] DEFAULT_BUCKETS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300};
+
+    Timer(String name, String help, Map<String, String> labels, double[] buckets) {
+        super(name, help, labels, buckets);
+    }
+
+    public void record(long duration, TimeUnit timeUnit) {
+        observe(timeUnit.toNanos(duration) / 1e9);
+    }
+
+    public Context time() {
+        return new Context(this);
+    }
+
+    public static final class Context implements AutoCloseable {
+        private final Timer timer;
+        private final long start;
+
+        private Context(Timer timer) {
+            this.timer = timer;
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
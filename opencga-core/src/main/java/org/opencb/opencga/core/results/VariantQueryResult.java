@@ -32,6 +32,7 @@ public class VariantQueryResult<T> extends QueryResult<T> {
     private String source;
     private Boolean approximateCount;
     private Integer approximateCountSamplingSize;
+    private Long approximateCountError;
 
     public VariantQueryResult() {
         this.samples = null;
@@ -94,6 +95,18 @@ public class VariantQueryResult<T> extends QueryResult<T> {
         return this;
     }
 
+    /**
+     * @return Error bound of the approximated count, if known
+     */
+    public Long getApproximateCountError() {
+        return approximateCountError;
+    }
+
+    public VariantQueryResult<T> setApproximateCountError(Long approximateCountError) {
+        this.approximateCountError = approximateCountError;
+        return this;
+    }
+
     public String getSource() {
         return source;
     }
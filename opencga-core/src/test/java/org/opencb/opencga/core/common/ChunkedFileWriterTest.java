@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.core.common;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+public class ChunkedFileWriterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private Path target;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        target = temporaryFolder.getRoot().toPath().resolve("file.txt");
+        content = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testWriteUnorderedChunks() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).setTotalSize(content.length);
+        assertEquals(content.length, Files.size(target));
+
+        writeChunk(writer, 2, 10, true);
+        writeChunk(writer, 0, 10, false);
+        assertFalse(writer.isComplete());
+        assertEquals(2, writer.getReceivedChunks().size());
+
+        writeChunk(writer, 1, 10, false);
+        assertTrue(writer.isComplete());
+        assertTrue(writer.complete());
+        assertFalse(writer.complete());
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertFalse(Files.exists(Paths.get(target + ChunkedFileWriter.RANGES_SUFFIX)));
+    }
+
+    @Test
+    public void testWriteWithoutTotalSize() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target);
+        writeChunk(writer, 0, 10, false);
+        writeChunk(writer, 1, 10, false);
+        assertFalse(writer.isComplete());
+
+        long offset = writer.inferOffset(3, content.length - 30, true);
+        assertEquals(30, offset);
+        writer.write(3, offset, content.length - 30, new ByteArrayInputStream(content, 30, content.length - 30), null);
+        writer.setTotalSize(offset + content.length - 30);
+        assertFalse(writer.isComplete());
+
+        writeChunk(writer, 2, 10, false);
+        assertTrue(writer.isComplete());
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testWrongHash() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).setTotalSize(content.length);
+        thrown.expect(IOException.class);
+        thrown.expectMessage("hash");
+        try {
+            writer.write(0, 0, 10, new ByteArrayInputStream(content, 0, 10), "0000000000000000000000000000000000000000");
+        } finally {
+            assertTrue(writer.getReceivedChunks().isEmpty());
+        }
+    }
+
+    @Test
+    public void testHash() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).setTotalSize(content.length);
+        // md5("0123456789")
+        writer.write(0, 0, 10, new ByteArrayInputStream(content, 0, 10), "781e5e245d69b566979b86e28d23f2c7");
+        assertEquals(1, writer.getReceivedChunks().size());
+    }
+
+    @Test
+    public void testWrongSize() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).setTotalSize(content.length);
+        thrown.expect(IOException.class);
+        thrown.expectMessage("chunk_size");
+        writer.write(0, 0, 11, new ByteArrayInputStream(content, 0, 10), null);
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).setTotalSize(content.length);
+        writeChunk(writer, 0, 10, false);
+        writeChunk(writer, 1, 10, false);
+
+        // A new upload does not reuse the chunks of the interrupted one
+        writer = new ChunkedFileWriter(target).reset().setTotalSize(content.length);
+        assertTrue(writer.getReceivedChunks().isEmpty());
+        writeChunk(writer, 2, 10, true);
+        assertFalse(writer.isComplete());
+    }
+
+    @Test
+    public void testResendChunks() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).start("upload_1", content.length, null);
+        writeChunk(writer, 1, 10, false);
+        writeChunk(writer, 2, 10, false);
+
+        // Chunk 0 arriving late, or twice, does not discard the received chunks
+        writer = new ChunkedFileWriter(target).start("upload_1", content.length, null);
+        writeChunk(writer, 0, 10, false);
+        writer = new ChunkedFileWriter(target).start("upload_1", content.length, null);
+        writeChunk(writer, 0, 10, false);
+        assertEquals(3, writer.getReceivedChunks().size());
+
+        writer = new ChunkedFileWriter(target).start("upload_1", content.length, null);
+        writeChunk(writer, 3, 10, true);
+        assertTrue(writer.isComplete());
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testUploadIdChanged() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).start("upload_1", content.length, null);
+        writeChunk(writer, 0, 10, false);
+        writeChunk(writer, 1, 10, false);
+
+        // Same file, same size, but a new upload
+        writer = new ChunkedFileWriter(target).start("upload_2", content.length, null);
+        assertTrue(writer.getReceivedChunks().isEmpty());
+        assertEquals(content.length, writer.getTotalSize());
+        writeChunk(writer, 2, 10, true);
+        assertFalse(writer.isComplete());
+    }
+
+    @Test
+    public void testChecksumChanged() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).start(null, content.length, "abc");
+        writeChunk(writer, 0, 10, false);
+
+        writer = new ChunkedFileWriter(target).start(null, content.length, "abc");
+        assertEquals(1, writer.getReceivedChunks().size());
+
+        writer = new ChunkedFileWriter(target).start(null, content.length, "def");
+        assertTrue(writer.getReceivedChunks().isEmpty());
+        assertEquals("def", writer.getChecksum());
+    }
+
+    @Test
+    public void testTotalSizeChanged() throws Exception {
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).setTotalSize(content.length + 10);
+        writer.write(0, 0, 10, new ByteArrayInputStream(content, 0, 10), null);
+        writer.write(1, 10, 10, new ByteArrayInputStream(content, 0, 10), null);
+        writer.write(2, 20, 10, new ByteArrayInputStream(content, 0, 10), null);
+        writer.write(3, 30, 10, new ByteArrayInputStream(content, 0, 10), null);
+
+        // The received chunks belong to a different file
+        writer.setTotalSize(content.length);
+        assertEquals(content.length, writer.getTotalSize());
+        assertEquals(content.length, Files.size(target));
+        assertTrue(writer.getReceivedChunks().isEmpty());
+
+        writeChunk(writer, 0, 10, false);
+        writeChunk(writer, 1, 10, false);
+        writeChunk(writer, 2, 10, false);
+        writeChunk(writer, 3, 10, true);
+        assertTrue(writer.isComplete());
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        Files.write(target, new byte[content.length * 2]);
+        ChunkedFileWriter writer = new ChunkedFileWriter(target).setTotalSize(content.length);
+        assertEquals(content.length, Files.size(target));
+
+        writeChunk(writer, 0, 20, false);
+        writeChunk(writer, 1, 20, true);
+        assertTrue(writer.isComplete());
+        assertArrayEquals(content, Files.readAllBytes(target));
+    }
+
+    private void writeChunk(ChunkedFileWriter writer, int chunkId, int chunkSize, boolean lastChunk) throws IOException {
+        int offset = chunkId * chunkSize;
+        int length = lastChunk ? content.length - offset : chunkSize;
+        assertEquals(offset, writer.inferOffset(chunkId, length, lastChunk));
+        writer.write(chunkId, offset, length, new ByteArrayInputStream(content, offset, length), null);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.core.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testCounter() {
+        MetricsRegistry registry = new MetricsRegistry(false);
+        Counter counter = registry.counter("requests_total", "Requests", "cache", "study");
+        counter.inc();
+        counter.inc(2);
+        assertSame(counter, registry.counter("requests_total", "Requests", "cache", "study"));
+        assertNotSame(counter, registry.counter("requests_total", "Requests", "cache", "file"));
+        assertEquals(3, counter.getCount());
+        assertEquals("opencga_requests_total", counter.getName());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongType() {
+        MetricsRegistry registry = new MetricsRegistry(false);
+        registry.counter("query_seconds", "Latency");
+        registry.timer("query_seconds", "Latency");
+    }
+
+    @Test
+    public void testPrometheus() {
+        MetricsRegistry registry = new MetricsRegistry(false);
+        Timer timer = registry.timer("query_seconds", "Query latency", "backend", "mongodb");
+        timer.record(20, TimeUnit.MILLISECONDS);
+        timer.record(2, TimeUnit.SECONDS);
+        registry.counter("variants_total", "Variants").inc(5);
+
+        String text = registry.toPrometheus();
+        assertTrue(text, text.contains("# HELP opencga_query_seconds Query latency\n# TYPE opencga_query_seconds histogram\n"));
+        assertTrue(text, text.contains("opencga_query_seconds_bucket{backend=\"mongodb\",le=\"0.01\"} 0\n"));
+        assertTrue(text, text.contains("opencga_query_seconds_bucket{backend=\"mongodb\",le=\"0.025\"} 1\n"));
+        assertTrue(text, text.contains("opencga_query_seconds_bucket{backend=\"mongodb\",le=\"2.5\"} 2\n"));
+        assertTrue(text, text.contains("opencga_query_seconds_bucket{backend=\"mongodb\",le=\"+Inf\"} 2\n"));
+        assertTrue(text, text.contains("opencga_query_seconds_sum{backend=\"mongodb\"} 2.02\n"));
+        assertTrue(text, text.contains("opencga_query_seconds_count{backend=\"mongodb\"} 2\n"));
+        assertTrue(text, text.contains("# TYPE opencga_variants_total counter\nopencga_variants_total 5\n"));
+    }
+}
@@ -22,10 +22,17 @@ import io.grpc.stub.StreamObserver;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.core.config.Configuration;
 import org.opencb.opencga.storage.core.alignment.iterators.AlignmentIterator;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.manager.AlignmentStorageManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.function.Function;
 
 /**
  * Created by pfurio on 26/10/16.
@@ -35,6 +42,8 @@ public class AlignmentGrpcService extends AlignmentServiceGrpc.AlignmentServiceI
     private GenericGrpcService genericGrpcService;
     private AlignmentStorageManager alignmentStorageManager;
 
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
     public AlignmentGrpcService(Configuration configuration, StorageConfiguration storageConfiguration) {
         genericGrpcService = new GenericGrpcService(configuration, storageConfiguration);
         alignmentStorageManager = new AlignmentStorageManager(genericGrpcService.catalogManager, GenericGrpcService.storageEngineFactory);
@@ -74,46 +83,53 @@ public class AlignmentGrpcService extends AlignmentServiceGrpc.AlignmentServiceI
 
     @Override
     public void get(GenericAlignmentServiceModel.Request request, StreamObserver<Reads.ReadAlignment> responseObserver) {
-        // Creating the datastore Query and QueryOptions objects from the gRPC request Map of Strings
-        Query query = createQuery(request);
-        QueryOptions queryOptions = createQueryOptions(request);
-
-        String studyIdStr = query.getString("study");
-        String fileIdStr = query.getString("fileId");
-        String sessionId = query.getString("sid");
+        try {
+            AlignmentIterator<Reads.ReadAlignment> iterator = iterator(request, createQueryOptions(request), Reads.ReadAlignment.class);
+            FlowControlledStreamer.single(responseObserver, iterator, iterator, Function.identity()).start();
+        } catch (Exception e) {
+            logger.error("Error on get alignments", e);
+            responseObserver.onError(e);
+        }
+    }
 
-        try (AlignmentIterator<Reads.ReadAlignment> iterator =
-                     alignmentStorageManager.iterator(studyIdStr, fileIdStr, query, queryOptions, sessionId, Reads.ReadAlignment.class)) {
-            while (iterator.hasNext()) {
-                responseObserver.onNext(iterator.next());
-            }
-            responseObserver.onCompleted();
+    @Override
+    public void getBatch(GenericAlignmentServiceModel.Request request,
+                         StreamObserver<AlignmentServiceModel.ReadAlignmentBatch> responseObserver) {
+        try {
+            QueryOptions queryOptions = createQueryOptions(request);
+            int batchSize = queryOptions.getInt(FlowControlledStreamer.BATCH_SIZE, FlowControlledStreamer.DEFAULT_BATCH_SIZE);
+            queryOptions.remove(FlowControlledStreamer.BATCH_SIZE);
+            AlignmentIterator<Reads.ReadAlignment> iterator = iterator(request, queryOptions, Reads.ReadAlignment.class);
+            new FlowControlledStreamer<>(responseObserver, iterator, iterator, batchSize,
+                    alignments -> AlignmentServiceModel.ReadAlignmentBatch.newBuilder().addAllAlignments(alignments).build()).start();
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("Error on get alignments", e);
+            responseObserver.onError(e);
         }
     }
 
     @Override
     public void getAsSam(GenericAlignmentServiceModel.Request request, StreamObserver<ServiceTypesModel.StringResponse> responseObserver) {
-        // Creating the datastore Query and QueryOptions objects from the gRPC request Map of Strings
+        try {
+            AlignmentIterator<SAMRecord> iterator = iterator(request, createQueryOptions(request), SAMRecord.class);
+            FlowControlledStreamer.single(responseObserver, iterator, iterator,
+                    samRecord -> ServiceTypesModel.StringResponse.newBuilder().setValue(samRecord.getSAMString()).build()).start();
+        } catch (Exception e) {
+            logger.error("Error on get alignments", e);
+            responseObserver.onError(e);
+        }
+    }
+
+    private <T> AlignmentIterator<T> iterator(GenericAlignmentServiceModel.Request request, QueryOptions queryOptions, Class<T> clazz)
+            throws CatalogException, IOException, StorageEngineException {
+        // Creating the datastore Query object from the gRPC request Map of Strings
         Query query = createQuery(request);
-        QueryOptions queryOptions = createQueryOptions(request);
 
         String studyIdStr = query.getString("study");
         String fileIdStr = query.getString("fileId");
         String sessionId = query.getString("sid");
 
-        try (AlignmentIterator<SAMRecord> iterator =
-                     alignmentStorageManager.iterator(studyIdStr, fileIdStr, query, queryOptions, sessionId, SAMRecord.class)) {
-            while (iterator.hasNext()) {
-                ServiceTypesModel.StringResponse response =
-                        ServiceTypesModel.StringResponse.newBuilder().setValue(iterator.next().getSAMString()).build();
-                responseObserver.onNext(response);
-            }
-            responseObserver.onCompleted();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        return alignmentStorageManager.iterator(studyIdStr, fileIdStr, query, queryOptions, sessionId, clazz);
     }
 
 
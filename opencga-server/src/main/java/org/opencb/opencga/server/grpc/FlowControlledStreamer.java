@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Streams the elements of an iterator to a gRPC client, respecting the client flow control.
+ * <p>
+ * Messages are only sent while the call is ready ({@link ServerCallStreamObserver#isReady()}). When the transport buffer is full,
+ * the streamer stops reading from the iterator and resumes from the onReady handler, so a slow consumer does not make the server
+ * buffer an unbounded number of messages. Elements can be packed in batches to reduce the per message overhead. The iterator is
+ * closed as soon as the call completes, fails or is cancelled by the client.
+ *
+ * @param <T> Type of the elements of the iterator
+ * @param <R> Type of the messages sent to the client
+ */
+public class FlowControlledStreamer<T, R> {
+
+    public static final String BATCH_SIZE = "batchSize";
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int MAX_BATCH_SIZE = 10000;
+
+    private final StreamObserver<R> responseObserver;
+    private final Iterator<T> iterator;
+    private final AutoCloseable closeable;
+    private final int batchSize;
+    private final Function<List<T>, R> converter;
+
+    private volatile boolean cancelled = false;
+    private boolean finished = false;
+    private long numElements = 0;
+
+    private final Logger logger = LoggerFactory.getLogger(FlowControlledStreamer.class);
+
+    /**
+     * @param responseObserver  Response observer
+     * @param iterator          Elements to send
+     * @param closeable         Resource to close at the end of the call. Usually, the iterator itself.
+     * @param batchSize         Number of elements per message
+     * @param converter         Converts a batch of elements into a message
+     */
+    public FlowControlledStreamer(StreamObserver<R> responseObserver, Iterator<T> iterator, AutoCloseable closeable, int batchSize,
+                                  Function<List<T>, R> converter) {
+        this.responseObserver = responseObserver;
+        this.iterator = iterator;
+        this.closeable = closeable;
+        this.batchSize = Math.min(Math.max(1, batchSize), MAX_BATCH_SIZE);
+        this.converter = converter;
+    }
+
+    /**
+     * Stream one message per element.
+     *
+     * @param responseObserver  Response observer
+     * @param iterator          Elements to send
+     * @param closeable         Resource to close at the end of the call
+     * @param converter         Converts an element into a message
+     * @param <T>   Type of the elements of the iterator
+     * @param <R>   Type of the messages sent to the client
+     * @return The streamer
+     */
+    public static <T, R> FlowControlledStreamer<T, R> single(StreamObserver<R> responseObserver, Iterator<T> iterator,
+                                                             AutoCloseable closeable, Function<T, R> converter) {
+        return new FlowControlledStreamer<>(responseObserver, iterator, closeable, 1, batch -> converter.apply(batch.get(0)));
+    }
+
+    /**
+     * Start streaming. Must be called from the service method, before it returns.
+     */
+    public void start() {
+        if (responseObserver instanceof ServerCallStreamObserver) {
+            ServerCallStreamObserver<R> serverCallStreamObserver = (ServerCallStreamObserver<R>) responseObserver;
+            serverCallStreamObserver.setOnCancelHandler(this::cancel);
+            serverCallStreamObserver.setOnReadyHandler(this::drain);
+        }
+        drain();
+    }
+
+    /**
+     * Send messages while the call is ready.
+     */
+    private synchronized void drain() {
+        if (finished) {
+            return;
+        }
+        try {
+            while (isReady()) {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+                if (!iterator.hasNext()) {
+                    finish();
+                    responseObserver.onCompleted();
+                    logger.debug("Streamed {} elements", numElements);
+                    return;
+                }
+                List<T> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                numElements += batch.size();
+                responseObserver.onNext(converter.apply(batch));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error streaming elements", e);
+            finish();
+            if (!cancelled) {
+                responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException());
+            }
+        }
+    }
+
+    private boolean isReady() {
+        if (responseObserver instanceof ServerCallStreamObserver) {
+            return ((ServerCallStreamObserver<R>) responseObserver).isReady() || cancelled;
+        } else {
+            // No flow control available
+            return true;
+        }
+    }
+
+    private void cancel() {
+        logger.debug("Call cancelled by the client after {} elements", numElements);
+        cancelled = true;
+        synchronized (this) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (!finished) {
+            finished = true;
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Error closing iterator", e);
+            }
+        }
+    }
+}
@@ -24,8 +24,10 @@ import org.opencb.biodata.tools.variant.converters.proto.VariantAvroToVariantPro
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.catalog.exceptions.CatalogException;
 import org.opencb.opencga.core.config.Configuration;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,23 +67,43 @@ public class VariantGrpcService extends VariantServiceGrpc.VariantServiceImplBas
     @Override
     public void get(GenericServiceModel.Request request, StreamObserver<VariantProto.Variant> responseObserver) {
         try {
+            VariantDBIterator iterator = iterator(request, genericGrpcService.createQueryOptions(request));
             VariantAvroToVariantProtoConverter converter = new VariantAvroToVariantProtoConverter();
-            Query query = genericGrpcService.createQuery(request);
+            FlowControlledStreamer.single(responseObserver, iterator, iterator, converter::convert).start();
+        } catch (Exception e) {
+            logger.error("Error on get variants", e);
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void getBatch(GenericServiceModel.Request request, StreamObserver<VariantServiceModel.VariantBatch> responseObserver) {
+        try {
             QueryOptions queryOptions = genericGrpcService.createQueryOptions(request);
-            logger.info("Get variants query : {} , queryOptions : {}" , query.toJson(), queryOptions.toJson());
-            try (VariantDBIterator iterator = genericGrpcService.variantStorageManager.iterator(query, queryOptions, request.getSessionId())) {
-                while (iterator.hasNext()) {
-                    Variant variant = iterator.next();
-                    responseObserver.onNext(converter.convert(variant));
+            int batchSize = queryOptions.getInt(FlowControlledStreamer.BATCH_SIZE, FlowControlledStreamer.DEFAULT_BATCH_SIZE);
+            queryOptions.remove(FlowControlledStreamer.BATCH_SIZE);
+            VariantDBIterator iterator = iterator(request, queryOptions);
+            VariantAvroToVariantProtoConverter converter = new VariantAvroToVariantProtoConverter();
+            new FlowControlledStreamer<>(responseObserver, iterator, iterator, batchSize, variants -> {
+                VariantServiceModel.VariantBatch.Builder builder = VariantServiceModel.VariantBatch.newBuilder();
+                for (Variant variant : variants) {
+                    builder.addVariants(converter.convert(variant));
                 }
-            }
-            responseObserver.onCompleted();
+                return builder.build();
+            }).start();
         } catch (Exception e) {
             logger.error("Error on get variants", e);
             responseObserver.onError(e);
         }
     }
 
+    private VariantDBIterator iterator(GenericServiceModel.Request request, QueryOptions queryOptions)
+            throws CatalogException, StorageEngineException {
+        Query query = genericGrpcService.createQuery(request);
+        logger.info("Get variants query : {} , queryOptions : {}" , query.toJson(), queryOptions.toJson());
+        return genericGrpcService.variantStorageManager.iterator(query, queryOptions, request.getSessionId());
+    }
+
     @Override
     public void groupBy(GenericServiceModel.Request request, StreamObserver<ServiceTypesModel.GroupResponse> responseObserver) {
         super.groupBy(request, responseObserver);
@@ -37,7 +37,7 @@ import org.opencb.opencga.catalog.utils.Constants;
 import org.opencb.opencga.catalog.utils.FileMetadataReader;
 import org.opencb.opencga.catalog.utils.FileScanner;
 import org.opencb.opencga.catalog.utils.ParamUtils;
-import org.opencb.opencga.core.common.IOUtils;
+import org.opencb.opencga.core.common.ChunkedFileWriter;
 import org.opencb.opencga.core.common.UriUtils;
 import org.opencb.opencga.core.exception.VersionException;
 import org.opencb.opencga.core.models.AnnotationSet;
@@ -47,6 +47,7 @@ import org.opencb.opencga.core.models.Study;
 import org.opencb.opencga.core.models.acls.AclParams;
 import org.opencb.opencga.core.models.acls.permissions.FileAclEntry;
 import org.opencb.opencga.core.models.acls.permissions.StudyAclEntry;
+import org.opencb.opencga.server.rest.utils.FileRangeResponse;
 import org.opencb.opencga.storage.core.manager.variant.VariantStorageManager;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
@@ -171,7 +172,7 @@ public class FileWSServer extends OpenCGAWSServer {
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @ApiOperation(httpMethod = "POST", position = 4, value = "Resource to upload a file by chunks", response = File.class)
     public Response upload(
-            @ApiParam(hidden = true) @FormDataParam("chunk_content") byte[] chunkBytes,
+            @ApiParam(hidden = true) @FormDataParam("chunk_content") InputStream chunkInputStream,
             @ApiParam(hidden = true) @FormDataParam("chunk_content") FormDataContentDisposition contentDisposition,
             @FormDataParam("file") InputStream fileInputStream,
             @FormDataParam("file") FormDataContentDisposition fileMetaData,
@@ -181,6 +182,9 @@ public class FileWSServer extends OpenCGAWSServer {
             @ApiParam(hidden = true) @DefaultValue("") @FormDataParam("chunk_total") String chunk_total,
             @ApiParam(hidden = true) @DefaultValue("") @FormDataParam("chunk_size") String chunk_size,
             @ApiParam(hidden = true) @DefaultValue("") @FormDataParam("chunk_hash") String chunkHash,
+            @ApiParam(hidden = true) @DefaultValue("") @FormDataParam("chunk_offset") String chunkOffset,
+            @ApiParam(hidden = true) @DefaultValue("") @FormDataParam("upload_id") String uploadId,
+            @ApiParam(hidden = true) @DefaultValue("") @FormDataParam("file_checksum") String fileChecksum,
             @ApiParam(hidden = true) @DefaultValue("false") @FormDataParam("resume_upload") String resume_upload,
 
             @ApiParam(value = "filename", required = false) @FormDataParam("filename") String filename,
@@ -226,60 +230,42 @@ public class FileWSServer extends OpenCGAWSServer {
             return createErrorResponse(e);
         }
 
-        if (chunkBytes != null && filePath != null) {
+        if (chunkInputStream != null && filePath != null) {
 
+            // Chunks are written directly into their final position. No temporary folder nor concatenation is needed.
             java.nio.file.Path completedFilePath = filePath.getParent().resolve("_" + filename);
-            java.nio.file.Path folderPath = filePath.getParent().resolve("__" + filename);
-
-            logger.info(relativeFilePath + "");
-            logger.info(folderPath + "");
-            logger.info(filePath + "");
+            ChunkedFileWriter writer = new ChunkedFileWriter(completedFilePath);
             boolean resume = Boolean.parseBoolean(resume_upload);
 
             try {
-                logger.info("---resume is: " + resume);
+                logger.debug("Upload chunk {} of {}. Resume: {}", chunk_id, completedFilePath, resume);
                 if (resume) {
                     logger.info("Resume ms :" + (System.currentTimeMillis() - t));
-                    return createOkResponse(getResumeFileJSON(folderPath));
+                    return createOkResponse(getResumeFileJSON(writer));
                 }
 
                 int chunkId = Integer.parseInt(chunk_id);
-                int chunkSize = Integer.parseInt(chunk_size);
+                long chunkSize = Long.parseLong(chunk_size);
                 boolean lastChunk = Boolean.parseBoolean(last_chunk);
 
-                logger.info("---saving chunk: " + chunkId);
-                logger.info("lastChunk: " + lastChunk);
-
-                // WRITE CHUNK TYPE_FILE
-                if (!Files.exists(folderPath)) {
-                    logger.info("createDirectory(): " + folderPath);
-                    Files.createDirectory(folderPath);
-                }
-                logger.info("check dir " + Files.exists(folderPath));
-                // String hash = StringUtils.sha1(new String(chunkBytes));
-                // logger.info("bytesHash: " + hash);
-                // logger.info("chunkHash: " + chunkHash);
-                // hash = chunkHash;
-                if (chunkBytes.length == chunkSize) {
-                    Files.write(folderPath.resolve(chunkId + "_" + chunkBytes.length + "_partial"), chunkBytes);
+                // Chunks may be sent again or in any order. A partial file left by a previous upload is only discarded if the
+                // upload id, the total size or the checksum of the file are different
+                writer.start(uploadId, StringUtils.isNotEmpty(chunk_total) ? Long.parseLong(chunk_total) : -1, fileChecksum);
+                long offset;
+                if (StringUtils.isNotEmpty(chunkOffset)) {
+                    offset = Long.parseLong(chunkOffset);
                 } else {
-                    String errorMessage = "Chunk content size (" + chunkBytes.length + ") " +
-                            "!= chunk_size (" + chunk_size + ").";
-                    logger.error(errorMessage);
-                    return createErrorResponse(new IOException(errorMessage));
+                    offset = writer.inferOffset(chunkId, chunkSize, lastChunk);
+                }
+                writer.write(chunkId, offset, chunkSize, chunkInputStream, chunkHash);
+                if (lastChunk && StringUtils.isEmpty(chunk_total)) {
+                    // Without chunk_total, the size of the file is known once the last chunk arrives
+                    writer.setTotalSize(offset + chunkSize);
                 }
 
-                if (lastChunk) {
-                    logger.info("lastChunk is true...");
-                    Files.deleteIfExists(completedFilePath);
-                    Files.createFile(completedFilePath);
-                    List<java.nio.file.Path> chunks = getSortedChunkList(folderPath);
-                    logger.info("----ordered chunks length: " + chunks.size());
-                    for (java.nio.file.Path partPath : chunks) {
-                        logger.info(partPath.getFileName().toString());
-                        Files.write(completedFilePath, Files.readAllBytes(partPath), StandardOpenOption.APPEND);
-                    }
-                    IOUtils.deleteDirectory(folderPath);
+                // The rest of the chunks may arrive in any order. Register the file once all of them are written.
+                if (writer.isComplete() && writer.complete()) {
+                    logger.info("All chunks received for file {}", completedFilePath);
                     try {
                         QueryResult<File> queryResult1 = catalogManager.getFileManager().create(studyStr, File.Type.FILE,
                                 fileFormat, bioformat, relativeFilePath, null, description, new File.FileStatus(File.FileStatus.STAGE), 0, -1, null, -1, null, null, parents, null, null, sessionId);
@@ -294,10 +280,9 @@ public class FileWSServer extends OpenCGAWSServer {
                         return createErrorResponse(e);
                     }
                 }
-            } catch (IOException e) {
-                System.out.println("e = " + e);
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+            } catch (IOException | NumberFormatException e) {
+                logger.error("Error uploading chunk " + chunk_id + " of file " + filename, e);
+                return createErrorResponse(e);
             }
             logger.info("chunk saved ms :" + (System.currentTimeMillis() - t));
             return createOkResponse("ok");
@@ -333,6 +318,15 @@ public class FileWSServer extends OpenCGAWSServer {
                              @QueryParam("study") String studyStr) {
         try {
             isSingleId(fileIdStr);
+            URI fileUri = catalogManager.getFileManager().getDownloadUri(studyStr, fileIdStr, sessionId);
+            java.nio.file.Path localPath = FileRangeResponse.getLocalPath(fileUri);
+            if (localPath != null) {
+                // Serve local files directly, supporting HTTP Range requests
+                FileRangeResponse fileRangeResponse = new FileRangeResponse(localPath, MediaType.APPLICATION_OCTET_STREAM_TYPE,
+                        fileIdStr);
+                return buildResponse(fileRangeResponse.build(httpServletRequest.getHeader(FileRangeResponse.RANGE_HEADER),
+                        httpServletRequest.getHeader(FileRangeResponse.IF_RANGE_HEADER)));
+            }
             DataInputStream stream = catalogManager.getFileManager().download(studyStr, fileIdStr, -1, -1, null, sessionId);
             return createOkResponse(stream, MediaType.APPLICATION_OCTET_STREAM_TYPE, fileIdStr);
         } catch (Exception e) {
@@ -776,41 +770,17 @@ public class FileWSServer extends OpenCGAWSServer {
         return createOkResponse(queryResults);
     }
 
-    private ObjectMap getResumeFileJSON(java.nio.file.Path folderPath) throws IOException {
+    private ObjectMap getResumeFileJSON(ChunkedFileWriter writer) throws IOException {
         ObjectMap objectMap = new ObjectMap();
-
-        if (Files.exists(folderPath)) {
-            try (DirectoryStream<java.nio.file.Path> folderStream = Files.newDirectoryStream(folderPath, "*_partial")) {
-                for (java.nio.file.Path partPath : folderStream) {
-                    String[] nameSplit = partPath.getFileName().toString().split("_");
-                    ObjectMap chunkInfo = new ObjectMap();
-                    chunkInfo.put("size", Integer.parseInt(nameSplit[1]));
-                    objectMap.put(nameSplit[0], chunkInfo);
-                }
-            }
+        for (Map.Entry<Integer, long[]> entry : writer.getReceivedChunks().entrySet()) {
+            ObjectMap chunkInfo = new ObjectMap();
+            chunkInfo.put("offset", entry.getValue()[0]);
+            chunkInfo.put("size", entry.getValue()[1]);
+            objectMap.put(entry.getKey().toString(), chunkInfo);
         }
         return objectMap;
     }
 
-    private List<java.nio.file.Path> getSortedChunkList(java.nio.file.Path folderPath) throws IOException {
-        List<java.nio.file.Path> files = new ArrayList<>();
-        try (DirectoryStream<java.nio.file.Path> stream = Files.newDirectoryStream(folderPath, "*_partial")) {
-            for (java.nio.file.Path p : stream) {
-                logger.info("adding to ArrayList: " + p.getFileName());
-                files.add(p);
-            }
-        }
-        logger.info("----ordered files length: " + files.size());
-        Collections.sort(files, new Comparator<java.nio.file.Path>() {
-            public int compare(java.nio.file.Path o1, java.nio.file.Path o2) {
-                int id_o1 = Integer.parseInt(o1.getFileName().toString().split("_")[0]);
-                int id_o2 = Integer.parseInt(o2.getFileName().toString().split("_")[0]);
-                return id_o1 - id_o2;
-            }
-        });
-        return files;
-    }
-
     @POST
     @Path("/{file}/update")
     @ApiOperation(value = "Update some file attributes", position = 16, response = File.class,
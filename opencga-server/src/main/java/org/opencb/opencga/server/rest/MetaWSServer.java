@@ -22,6 +22,7 @@ import io.swagger.annotations.ApiOperation;
 import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.opencga.core.common.GitRepositoryState;
 import org.opencb.opencga.core.exception.VersionException;
+import org.opencb.opencga.core.metrics.MetricsRegistry;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.GET;
@@ -29,6 +30,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.io.IOException;
@@ -91,5 +93,12 @@ public class MetaWSServer extends OpenCGAWSServer {
         return createOkResponse(queryResult);
     }
 
+    @GET
+    @Path("/metrics")
+    @Produces("text/plain; version=0.0.4")
+    @ApiOperation(httpMethod = "GET", value = "Internal metrics of this server, in Prometheus text format.")
+    public Response metrics() {
+        return createOkResponse(MetricsRegistry.getInstance().toPrometheus(), MediaType.valueOf("text/plain; version=0.0.4"));
+    }
 
 }
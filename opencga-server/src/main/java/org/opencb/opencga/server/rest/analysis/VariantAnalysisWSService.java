@@ -39,7 +39,6 @@ import org.opencb.opencga.storage.core.metadata.ProjectMetadata;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
-import org.opencb.opencga.storage.core.variant.analysis.VariantSampleFilter;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 
 import javax.servlet.http.HttpServletRequest;
@@ -579,7 +578,6 @@ public class VariantAnalysisWSService extends AnalysisWSService {
             @ApiParam(value = "Samples must be present in ALL variants or in ANY variant.") @QueryParam("all") @DefaultValue("false") boolean all
     ) {
         try {
-            VariantSampleFilter variantSampleFilter = new VariantSampleFilter(variantManager.iterable(sessionId));
             List<String> genotypes = Arrays.asList(genotypesStr.split(","));
 
             QueryOptions queryOptions = new QueryOptions(uriInfo.getQueryParameters(), true);
@@ -619,9 +617,9 @@ public class VariantAnalysisWSService extends AnalysisWSService {
 
             Collection<String> sampleNames;
             if (all) {
-                sampleNames = variantSampleFilter.getSamplesInAllVariants(query, genotypes);
+                sampleNames = variantManager.getSamplesInAllVariants(query, genotypes, sessionId);
             } else {
-                Map<String, Set<Variant>> samplesInAnyVariants = variantSampleFilter.getSamplesInAnyVariants(query, genotypes);
+                Map<String, Set<Variant>> samplesInAnyVariants = variantManager.getSamplesInAnyVariants(query, genotypes, sessionId);
                 sampleNames = samplesInAnyVariants.keySet();
             }
             Query sampleQuery = new Query(SampleDBAdaptor.QueryParams.ID.key(), String.join(",", sampleNames));
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.rest.utils;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Builds responses for local files supporting HTTP Range requests (RFC 7233).
+ * <p>
+ * Supports single and multiple byte ranges (multipart/byteranges), suffix and open ranges, and conditional range requests with
+ * If-Range, using either the ETag or the Last-Modified date. The content is copied with {@link FileChannel#transferTo}, so the
+ * bytes do not go through the JVM heap when the container output stream is backed by a channel.
+ */
+public class FileRangeResponse {
+
+    public static final String RANGE_HEADER = "Range";
+    public static final String IF_RANGE_HEADER = "If-Range";
+    private static final String ACCEPT_RANGES_HEADER = "Accept-Ranges";
+    private static final String CONTENT_RANGE_HEADER = "Content-Range";
+    private static final String BYTES_UNIT = "bytes";
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+    // Do not let a malicious client request too many ranges
+    private static final int MAX_RANGES = 100;
+
+    private final Path path;
+    private final MediaType mediaType;
+    private final String fileName;
+    private final long size;
+    private final long lastModified;
+    private final String eTag;
+
+    public FileRangeResponse(Path path, MediaType mediaType, String fileName) throws IOException {
+        this.path = path;
+        this.mediaType = mediaType;
+        this.fileName = fileName;
+        this.size = Files.size(path);
+        this.lastModified = Files.getLastModifiedTime(path).toMillis();
+        this.eTag = '"' + Long.toHexString(lastModified) + '-' + Long.toHexString(size) + '"';
+    }
+
+    /**
+     * Local path of a file URI. URIs without scheme are local paths.
+     *
+     * @param uri File URI
+     * @return Local path, or null if the URI is not a local file
+     */
+    public static Path getLocalPath(URI uri) {
+        if (uri.getScheme() == null) {
+            return Paths.get(uri.getPath());
+        } else if (uri.getScheme().equals("file")) {
+            return Paths.get(uri);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Build the response for the given Range and If-Range headers. Returns 200 with the whole file if there is no range (or
+     * the If-Range validator does not match), 206 with one or more ranges, or 416 if no range can be satisfied.
+     *
+     * @param rangeHeader   Value of the Range header. May be null.
+     * @param ifRangeHeader Value of the If-Range header. May be null.
+     * @return Response builder, with the entity and all the headers set.
+     */
+    public Response.ResponseBuilder build(String rangeHeader, String ifRangeHeader) {
+        List<ByteRange> ranges = null;
+        if (StringUtils.isNotEmpty(rangeHeader) && isIfRangeSatisfied(ifRangeHeader)) {
+            ranges = parseRanges(rangeHeader, size);
+        }
+
+        Response.ResponseBuilder builder;
+        if (ranges == null) {
+            builder = Response.ok(new RangesStreamingOutput(Collections.singletonList(new ByteRange(0, size - 1)), null), mediaType)
+                    .header(HttpHeaders.CONTENT_LENGTH, size);
+        } else if (ranges.isEmpty()) {
+            return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(CONTENT_RANGE_HEADER, BYTES_UNIT + " */" + size)
+                    .header(ACCEPT_RANGES_HEADER, BYTES_UNIT);
+        } else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            builder = Response.status(Response.Status.PARTIAL_CONTENT)
+                    .entity(new RangesStreamingOutput(ranges, null))
+                    .type(mediaType)
+                    .header(CONTENT_RANGE_HEADER, range.toContentRange(size))
+                    .header(HttpHeaders.CONTENT_LENGTH, range.length());
+        } else {
+            String boundary = UUID.randomUUID().toString().replace("-", "");
+            builder = Response.status(Response.Status.PARTIAL_CONTENT)
+                    .entity(new RangesStreamingOutput(ranges, boundary))
+                    .type("multipart/byteranges; boundary=" + boundary);
+        }
+        builder.header(ACCEPT_RANGES_HEADER, BYTES_UNIT)
+                .header(HttpHeaders.ETAG, eTag)
+                .lastModified(new Date(lastModified));
+        if (fileName != null) {
+            builder.header("content-disposition", "attachment; filename =" + fileName);
+        }
+        return builder;
+    }
+
+    /**
+     * Parse a Range header.
+     *
+     * @param rangeHeader Range header, e.g. "bytes=0-499,1000-,-500"
+     * @param size        Size of the file
+     * @return  Null if the header is not valid and must be ignored, an empty list if none of the ranges can be satisfied,
+     *          or the list of satisfiable ranges, sorted and merged when they overlap.
+     */
+    public static List<ByteRange> parseRanges(String rangeHeader, long size) {
+        String header = rangeHeader.trim();
+        if (!header.startsWith(BYTES_UNIT + "=")) {
+            // Unknown range unit. Ignore the header
+            return null;
+        }
+        String[] specs = header.substring(BYTES_UNIT.length() + 1).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            String firstStr = spec.substring(0, dash).trim();
+            String lastStr = spec.substring(dash + 1).trim();
+            long first;
+            long last;
+            try {
+                if (firstStr.isEmpty()) {
+                    // Suffix range. Last N bytes
+                    long suffixLength = Long.parseLong(lastStr);
+                    if (suffixLength <= 0) {
+                        continue;
+                    }
+                    first = Math.max(0, size - suffixLength);
+                    last = size - 1;
+                } else {
+                    first = Long.parseLong(firstStr);
+                    last = lastStr.isEmpty() ? size - 1 : Math.min(Long.parseLong(lastStr), size - 1);
+                    if (!lastStr.isEmpty() && Long.parseLong(lastStr) < first) {
+                        // Syntactically invalid
+                        return null;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (first < 0) {
+                return null;
+            }
+            if (first < size) {
+                ranges.add(new ByteRange(first, last));
+            }
+        }
+
+        // Coalesce overlapping or adjacent ranges
+        ranges.sort(Comparator.comparingLong(ByteRange::getFirst));
+        LinkedList<ByteRange> merged = new LinkedList<>();
+        for (ByteRange range : ranges) {
+            if (!merged.isEmpty() && range.getFirst() <= merged.getLast().getLast() + 1) {
+                ByteRange previous = merged.removeLast();
+                merged.add(new ByteRange(previous.getFirst(), Math.max(previous.getLast(), range.getLast())));
+            } else {
+                merged.add(range);
+            }
+        }
+        return new ArrayList<>(merged);
+    }
+
+    private boolean isIfRangeSatisfied(String ifRangeHeader) {
+        if (StringUtils.isEmpty(ifRangeHeader)) {
+            return true;
+        }
+        String validator = ifRangeHeader.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            // Weak validators are not allowed in If-Range
+            return validator.equals(eTag);
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            // HTTP dates have seconds precision
+            return format.parse(validator).getTime() / 1000 == lastModified / 1000;
+        } catch (ParseException e) {
+            return false;
+        }
+    }
+
+    private class RangesStreamingOutput implements StreamingOutput {
+        private final List<ByteRange> ranges;
+        private final String boundary;
+
+        RangesStreamingOutput(List<ByteRange> ranges, String boundary) {
+            this.ranges = ranges;
+            this.boundary = boundary;
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException {
+            WritableByteChannel target;
+            if (output instanceof WritableByteChannel) {
+                target = (WritableByteChannel) output;
+            } else {
+                target = Channels.newChannel(output);
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                for (ByteRange range : ranges) {
+                    if (boundary != null) {
+                        output.write(("\r\n--" + boundary + "\r\n"
+                                + HttpHeaders.CONTENT_TYPE + ": " + mediaType + "\r\n"
+                                + CONTENT_RANGE_HEADER + ": " + range.toContentRange(size) + "\r\n\r\n")
+                                .getBytes(StandardCharsets.US_ASCII));
+                        output.flush();
+                    }
+                    long position = range.getFirst();
+                    long remaining = range.length();
+                    while (remaining > 0) {
+                        long transferred = channel.transferTo(position, remaining, target);
+                        if (transferred <= 0) {
+                            throw new IOException("Unexpected end of file " + path + " at position " + position);
+                        }
+                        position += transferred;
+                        remaining -= transferred;
+                    }
+                }
+                if (boundary != null) {
+                    output.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+            output.flush();
+        }
+    }
+
+    public static class ByteRange {
+        private final long first;
+        private final long last;
+
+        public ByteRange(long first, long last) {
+            this.first = first;
+            this.last = last;
+        }
+
+        public long getFirst() {
+            return first;
+        }
+
+        public long getLast() {
+            return last;
+        }
+
+        public long length() {
+            return last - first + 1;
+        }
+
+        public String toContentRange(long size) {
+            return BYTES_UNIT + " " + first + "-" + last + "/" + size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ByteRange byteRange = (ByteRange) o;
+            return first == byteRange.first && last == byteRange.last;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(first, last);
+        }
+
+        @Override
+        public String toString() {
+            return first + "-" + last;
+        }
+    }
+}
@@ -18,9 +18,7 @@ package org.opencb.opencga.server.rest.utils;
 
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
-import org.apache.commons.lang3.time.StopWatch;
 import org.opencb.commons.datastore.core.QueryResult;
-import org.opencb.opencga.catalog.managers.AbstractManager;
 import org.opencb.opencga.core.exception.VersionException;
 import org.opencb.opencga.core.models.File;
 import org.opencb.opencga.server.rest.OpenCGAWSServer;
@@ -30,12 +28,7 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.net.URI;
 
 @Path("/{apiVersion}/utils")
 @Produces("application/json")
@@ -47,7 +40,7 @@ public class FileRanges extends OpenCGAWSServer {
 
     @GET
     @Path("/ranges/{file}")
-    @ApiOperation(value = "Fetchs alignment files using HTTP Ranges protocol")
+    @ApiOperation(value = "Fetchs alignment files using HTTP Ranges protocol. Supports multiple ranges and If-Range")
     @Produces("text/plain")
     public Response getRanges(@Context HttpHeaders headers,
                               @ApiParam(value = "File id, name or path") @PathParam("file") String fileIdStr,
@@ -58,38 +51,19 @@ public class FileRanges extends OpenCGAWSServer {
             QueryResult<File> queryResult = catalogManager.getFileManager().get(studyStr, fileIdStr, this.queryOptions, sessionId);
             File file = queryResult.getResult().get(0);
 
-            List<String> rangeList = headers.getRequestHeader("range");
-            if (rangeList != null) {
-                long from;
-                long to;
-                String[] acceptedRanges = rangeList.get(0).split("=")[1].split("-");
-                from = Long.parseLong(acceptedRanges[0]);
-                to = Long.parseLong(acceptedRanges[1]);
-                int length = (int) (to - from) + 1;
-                ByteBuffer buf = ByteBuffer.allocate(length);
-
-                logger.debug("from: {} , to: {}, length:{}", from, to, length);
-                StopWatch t = StopWatch.createStarted();
-
-                java.nio.file.Path filePath = Paths.get(file.getUri());
-                try (FileChannel fc = (FileChannel.open(filePath, StandardOpenOption.READ))) {
-                    fc.position(from);
-                    fc.read(buf);
-                }
-
-                t.stop();
-                logger.debug("Skip {}B and read {}B in {}s", from, length, t.getTime(TimeUnit.MILLISECONDS) / 1000.0);
-
-                return Response.ok(buf.array(), MediaType.APPLICATION_OCTET_STREAM_TYPE)
-                        .header("Accept-Ranges", "bytes")
+            URI fileUri = catalogManager.getFileManager().getDownloadUri(studyStr, fileIdStr, sessionId);
+            java.nio.file.Path localPath = FileRangeResponse.getLocalPath(fileUri);
+            if (localPath != null) {
+                FileRangeResponse fileRangeResponse = new FileRangeResponse(localPath, MediaType.APPLICATION_OCTET_STREAM_TYPE,
+                        file.getName());
+                return fileRangeResponse.build(headers.getHeaderString(FileRangeResponse.RANGE_HEADER),
+                        headers.getHeaderString(FileRangeResponse.IF_RANGE_HEADER))
                         .header("Access-Control-Allow-Origin", "*")
                         .header("Access-Control-Allow-Headers", "x-requested-with, content-type, range")
                         .header("Access-Control-Allow-Credentials", "true")
                         .header("Access-Control-Allow-Methods", "GET, POST, OPTIONS")
-                        .header("Content-Range", "bytes " + from + "-" + to + "/" + file.getSize())
-                        .header("Content-length", to - from + 1)
-                        .status(Response.Status.PARTIAL_CONTENT).build();
-
+                        .header("Access-Control-Expose-Headers", "Accept-Ranges, Content-Range, Content-Length, ETag")
+                        .build();
             } else {
                 stream = catalogManager.getFileManager().download(studyStr, fileIdStr, -1, -1, null, sessionId);
                 return createOkResponse(stream, MediaType.APPLICATION_OCTET_STREAM_TYPE, file.getName());
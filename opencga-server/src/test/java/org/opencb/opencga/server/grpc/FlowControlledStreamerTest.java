@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.grpc;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FlowControlledStreamerTest {
+
+    @Test
+    public void testBatches() {
+        TestObserver observer = new TestObserver(Integer.MAX_VALUE);
+        TestIterator iterator = new TestIterator(25);
+        new FlowControlledStreamer<>(observer, iterator, iterator, 10, batch -> batch).start();
+
+        assertEquals(3, observer.messages.size());
+        assertEquals(10, observer.messages.get(0).size());
+        assertEquals(5, observer.messages.get(2).size());
+        assertTrue(observer.completed);
+        assertTrue(iterator.closed);
+    }
+
+    @Test
+    public void testWaitUntilReady() {
+        TestObserver observer = new TestObserver(2);
+        TestIterator iterator = new TestIterator(10);
+        FlowControlledStreamer.single(observer, iterator, iterator, i -> i).start();
+
+        // Stop reading from the iterator while the client is not ready
+        assertEquals(2, observer.messages.size());
+        assertEquals(2, iterator.next);
+        assertFalse(observer.completed);
+
+        observer.ready(5);
+        assertEquals(7, observer.messages.size());
+        assertFalse(observer.completed);
+
+        observer.ready(Integer.MAX_VALUE);
+        assertEquals(10, observer.messages.size());
+        assertTrue(observer.completed);
+        assertTrue(iterator.closed);
+    }
+
+    @Test
+    public void testCancel() {
+        TestObserver observer = new TestObserver(2);
+        TestIterator iterator = new TestIterator(10);
+        FlowControlledStreamer.single(observer, iterator, iterator, i -> i).start();
+
+        observer.onCancelHandler.run();
+        assertTrue(iterator.closed);
+
+        observer.ready(Integer.MAX_VALUE);
+        assertEquals(2, observer.messages.size());
+        assertFalse(observer.completed);
+        assertNull(observer.error);
+    }
+
+    @Test
+    public void testError() {
+        TestObserver observer = new TestObserver(Integer.MAX_VALUE);
+        TestIterator iterator = new TestIterator(10) {
+            @Override
+            public Integer next() {
+                if (next == 5) {
+                    throw new IllegalStateException("Broken iterator");
+                }
+                return super.next();
+            }
+        };
+        FlowControlledStreamer.single(observer, iterator, iterator, i -> i).start();
+
+        assertEquals(5, observer.messages.size());
+        assertNotNull(observer.error);
+        assertFalse(observer.completed);
+        assertTrue(iterator.closed);
+    }
+
+    private static class TestIterator implements Iterator<Integer>, AutoCloseable {
+        private final int size;
+        protected int next = 0;
+        private boolean closed = false;
+
+        TestIterator(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            assertFalse(closed);
+            return next < size;
+        }
+
+        @Override
+        public Integer next() {
+            assertFalse(closed);
+            return next++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class TestObserver extends ServerCallStreamObserver<Object> {
+        private final List<List<Object>> messages = new ArrayList<>();
+        private int permits;
+        private boolean completed = false;
+        private Throwable error;
+        private Runnable onCancelHandler;
+        private Runnable onReadyHandler;
+
+        TestObserver(int permits) {
+            this.permits = permits;
+        }
+
+        void ready(int permits) {
+            this.permits = permits;
+            onReadyHandler.run();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onNext(Object value) {
+            assertTrue(isReady());
+            permits--;
+            messages.add(value instanceof List ? (List<Object>) value : Collections.singletonList(value));
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public boolean isReady() {
+            return permits > 0;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancelHandler = onCancelHandler;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.server.rest.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.opencga.server.rest.utils.FileRangeResponse.ByteRange;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FileRangeResponseTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testParseRanges() {
+        assertEquals(Collections.singletonList(new ByteRange(0, 499)), FileRangeResponse.parseRanges("bytes=0-499", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(500, 999)), FileRangeResponse.parseRanges("bytes=500-", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(900, 999)), FileRangeResponse.parseRanges("bytes=-100", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(0, 999)), FileRangeResponse.parseRanges("bytes=-2000", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(900, 999)), FileRangeResponse.parseRanges("bytes=900-5000", 1000));
+        assertEquals(Arrays.asList(new ByteRange(0, 9), new ByteRange(100, 199)),
+                FileRangeResponse.parseRanges("bytes=100-199, 0-9", 1000));
+    }
+
+    @Test
+    public void testParseRangesMerge() {
+        assertEquals(Collections.singletonList(new ByteRange(0, 199)), FileRangeResponse.parseRanges("bytes=0-100,50-199", 1000));
+        assertEquals(Collections.singletonList(new ByteRange(0, 199)), FileRangeResponse.parseRanges("bytes=0-99,100-199", 1000));
+    }
+
+    @Test
+    public void testParseRangesUnsatisfiable() {
+        assertEquals(Collections.emptyList(), FileRangeResponse.parseRanges("bytes=1000-", 1000));
+        assertEquals(Collections.emptyList(), FileRangeResponse.parseRanges("bytes=2000-3000", 1000));
+    }
+
+    @Test
+    public void testParseRangesInvalid() {
+        assertNull(FileRangeResponse.parseRanges("items=0-10", 1000));
+        assertNull(FileRangeResponse.parseRanges("bytes=10-0", 1000));
+        assertNull(FileRangeResponse.parseRanges("bytes=a-b", 1000));
+        assertNull(FileRangeResponse.parseRanges("bytes=10", 1000));
+    }
+
+    @Test
+    public void testGetLocalPath() {
+        assertEquals(Paths.get("/data/file.txt"), FileRangeResponse.getLocalPath(URI.create("/data/file.txt")));
+        assertEquals(Paths.get("/data/file.txt"), FileRangeResponse.getLocalPath(URI.create("file:///data/file.txt")));
+        assertNull(FileRangeResponse.getLocalPath(URI.create("hdfs:///data/file.txt")));
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        Path path = temporaryFolder.newFile("file.txt").toPath();
+        Files.write(path, "0123456789".getBytes(StandardCharsets.UTF_8));
+        FileRangeResponse fileRangeResponse = new FileRangeResponse(path, MediaType.TEXT_PLAIN_TYPE, null);
+
+        Response response = fileRangeResponse.build(null, null).build();
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", write(response));
+
+        response = fileRangeResponse.build("bytes=2-4", null).build();
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-4/10", response.getHeaderString("Content-Range"));
+        assertEquals("234", write(response));
+
+        response = fileRangeResponse.build("bytes=2-4", "\"other-etag\"").build();
+        assertEquals(200, response.getStatus());
+
+        String eTag = response.getHeaderString("ETag");
+        response = fileRangeResponse.build("bytes=2-4", eTag).build();
+        assertEquals(206, response.getStatus());
+
+        response = fileRangeResponse.build("bytes=20-", null).build();
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeaderString("Content-Range"));
+
+        response = fileRangeResponse.build("bytes=0-1,8-", null).build();
+        assertEquals(206, response.getStatus());
+        String body = write(response);
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01\r\n"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89\r\n"));
+    }
+
+    private String write(Response response) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(os);
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
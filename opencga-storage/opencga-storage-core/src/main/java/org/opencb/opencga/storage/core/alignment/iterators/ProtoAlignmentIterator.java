@@ -25,14 +25,31 @@ import org.opencb.biodata.tools.alignment.iterators.BamIterator;
 public class ProtoAlignmentIterator extends AlignmentIterator<Reads.ReadAlignment> {
 
     private BamIterator<Reads.ReadAlignment> protoIterator;
+    private AutoCloseable resource;
 
     public ProtoAlignmentIterator(BamIterator<Reads.ReadAlignment> protoIterator) {
+        this(protoIterator, null);
+    }
+
+    /**
+     * @param protoIterator Iterator to wrap
+     * @param resource Resource to be closed with the iterator, e.g. the reader that created the iterator.
+     */
+    public ProtoAlignmentIterator(BamIterator<Reads.ReadAlignment> protoIterator, AutoCloseable resource) {
         this.protoIterator = protoIterator;
+        this.resource = resource;
     }
 
     @Override
     public void close() throws Exception {
-        protoIterator.close();
+        try {
+            protoIterator.close();
+        } finally {
+            if (resource != null) {
+                resource.close();
+                resource = null;
+            }
+        }
     }
 
     @Override
@@ -25,14 +25,31 @@ import org.opencb.biodata.tools.alignment.iterators.BamIterator;
 public class SamRecordAlignmentIterator extends AlignmentIterator<SAMRecord> {
 
     private BamIterator<SAMRecord> bamIterator;
+    private AutoCloseable resource;
 
     public SamRecordAlignmentIterator(BamIterator<SAMRecord> bamIterator) {
+        this(bamIterator, null);
+    }
+
+    /**
+     * @param bamIterator Iterator to wrap
+     * @param resource Resource to be closed with the iterator, e.g. the reader that created the iterator.
+     */
+    public SamRecordAlignmentIterator(BamIterator<SAMRecord> bamIterator, AutoCloseable resource) {
         this.bamIterator = bamIterator;
+        this.resource = resource;
     }
 
     @Override
     public void close() throws Exception {
-        bamIterator.close();
+        try {
+            bamIterator.close();
+        } finally {
+            if (resource != null) {
+                resource.close();
+                resource = null;
+            }
+        }
     }
 
     @Override
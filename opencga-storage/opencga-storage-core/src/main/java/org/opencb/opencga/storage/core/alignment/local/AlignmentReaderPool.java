@@ -0,0 +1,345 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.alignment.local;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Bounded pool of open file readers, such as {@link org.opencb.biodata.tools.alignment.BamManager}.
+ * <p>
+ * Opening a BAM file requires reading the header, and the first query loads the whole BAI index. Both are kept by the reader, so
+ * reusing open readers avoids repeating this work for every small region query.
+ * <p>
+ * Readers are not thread safe, so each reader is given to only one caller at a time, who must return it with
+ * {@link Lease#close()}. Readers are keyed by path, modification time and size, so a modified file is never read with a stale
+ * header or index. Idle readers are closed in LRU order when the pool exceeds its maximum size.
+ * <p>
+ * The total number of open readers, idle or in use, is also bounded. When the limit is reached, least recently used idle readers are
+ * closed to open new ones. If all the readers are in use, callers wait for one of them to be returned.
+ *
+ * @param <T> Type of reader
+ */
+public class AlignmentReaderPool<T> {
+
+    public static final int DEFAULT_MAX_IDLE = 64;
+    public static final int DEFAULT_MAX_IDLE_PER_FILE = 4;
+    public static final int DEFAULT_MAX_OPEN = 256;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 30000;
+
+    private final ReaderFactory<T> factory;
+    private final ReaderCloser<T> closer;
+    private final int maxIdle;
+    private final int maxIdlePerFile;
+    private final int maxOpen;
+    private final long maxWaitMillis;
+
+    // Idle readers, in LRU order
+    private final LinkedHashMap<Key, Deque<T>> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private int numIdle = 0;
+    // Open readers, idle or in use
+    private int numOpen = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    private final Logger logger = LoggerFactory.getLogger(AlignmentReaderPool.class);
+
+    @FunctionalInterface
+    public interface ReaderFactory<T> {
+        T open(Path path) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ReaderCloser<T> {
+        void close(T reader) throws IOException;
+    }
+
+    public AlignmentReaderPool(ReaderFactory<T> factory, ReaderCloser<T> closer) {
+        this(factory, closer, DEFAULT_MAX_IDLE, DEFAULT_MAX_IDLE_PER_FILE);
+    }
+
+    public AlignmentReaderPool(ReaderFactory<T> factory, ReaderCloser<T> closer, int maxIdle, int maxIdlePerFile) {
+        this(factory, closer, maxIdle, maxIdlePerFile, Math.max(maxIdle, DEFAULT_MAX_OPEN), DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    public AlignmentReaderPool(ReaderFactory<T> factory, ReaderCloser<T> closer, int maxIdle, int maxIdlePerFile, int maxOpen,
+                               long maxWaitMillis) {
+        if (maxOpen < maxIdle) {
+            throw new IllegalArgumentException("Max open readers (" + maxOpen + ") can not be lower than max idle readers ("
+                    + maxIdle + ")");
+        }
+        this.factory = factory;
+        this.closer = closer;
+        this.maxIdle = maxIdle;
+        this.maxIdlePerFile = maxIdlePerFile;
+        this.maxOpen = maxOpen;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Get an open reader for the given file. The reader is exclusive for the caller until the lease is closed.
+     *
+     * @param path File to read
+     * @return Lease of an open reader
+     * @throws IOException if the file can not be opened, or if all the readers are in use for longer than the max wait time
+     */
+    public Lease checkout(Path path) throws IOException {
+        Key key = new Key(path);
+        T reader = null;
+        List<T> toClose = new ArrayList<>();
+        try {
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + maxWaitMillis;
+                while (true) {
+                    Deque<T> readers = idle.get(key);
+                    if (readers != null) {
+                        reader = readers.pollFirst();
+                        if (readers.isEmpty()) {
+                            idle.remove(key);
+                        }
+                    }
+                    if (reader != null) {
+                        numIdle--;
+                        hits++;
+                        break;
+                    } else if (numOpen < maxOpen) {
+                        // Reserve the slot of the new reader
+                        numOpen++;
+                        misses++;
+                        break;
+                    } else if (numIdle > 0) {
+                        // Make room closing the least recently used idle reader
+                        toClose.add(pollLeastRecentlyUsed());
+                        numOpen--;
+                    } else {
+                        long wait = deadline - System.currentTimeMillis();
+                        if (wait <= 0) {
+                            throw new IOException("Timeout waiting for a reader of " + path + ". All the " + maxOpen
+                                    + " readers are in use");
+                        }
+                        wait(wait);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a reader of " + path);
+        } finally {
+            toClose.forEach(this::closeQuietly);
+        }
+        if (reader == null) {
+            // Open out of the lock. Opening a file may take a while
+            try {
+                reader = factory.open(path);
+            } catch (IOException | RuntimeException e) {
+                onClosed(1);
+                throw e;
+            }
+        }
+        return new Lease(key, reader);
+    }
+
+    /**
+     * Close all the idle readers. Readers in use will be closed when returned.
+     */
+    public void evictAll() {
+        List<T> toClose = new ArrayList<>();
+        synchronized (this) {
+            for (Deque<T> readers : idle.values()) {
+                toClose.addAll(readers);
+            }
+            idle.clear();
+            numIdle = 0;
+            onClosed(toClose.size());
+        }
+        toClose.forEach(this::closeQuietly);
+    }
+
+    public synchronized int getNumIdle() {
+        return numIdle;
+    }
+
+    public synchronized int getNumOpen() {
+        return numOpen;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void release(Key key, T reader) {
+        List<T> toClose = new ArrayList<>();
+        synchronized (this) {
+            // Drop readers of previous versions of this file
+            idle.entrySet().removeIf(entry -> {
+                if (entry.getKey().path.equals(key.path) && !entry.getKey().equals(key)) {
+                    toClose.addAll(entry.getValue());
+                    numIdle -= entry.getValue().size();
+                    return true;
+                }
+                return false;
+            });
+
+            Deque<T> readers = idle.computeIfAbsent(key, k -> new ArrayDeque<>(maxIdlePerFile));
+            if (readers.size() < maxIdlePerFile && key.isCurrent()) {
+                readers.addFirst(reader);
+                numIdle++;
+                // Wake up callers waiting for a reader of this file
+                notifyAll();
+            } else {
+                toClose.add(reader);
+                if (readers.isEmpty()) {
+                    idle.remove(key);
+                }
+            }
+
+            // Evict least recently used readers
+            while (numIdle > maxIdle) {
+                toClose.add(pollLeastRecentlyUsed());
+            }
+            onClosed(toClose.size());
+        }
+        toClose.forEach(this::closeQuietly);
+    }
+
+    /**
+     * Remove the least recently used idle reader. Must be called holding the lock, with at least one idle reader.
+     *
+     * @return Idle reader to be closed
+     */
+    private T pollLeastRecentlyUsed() {
+        Iterator<Deque<T>> iterator = idle.values().iterator();
+        Deque<T> lruReaders = iterator.next();
+        T reader = lruReaders.pollLast();
+        if (lruReaders.isEmpty()) {
+            iterator.remove();
+        }
+        numIdle--;
+        return reader;
+    }
+
+    private synchronized void onClosed(int numClosed) {
+        if (numClosed > 0) {
+            numOpen -= numClosed;
+            // Wake up callers waiting for a free slot
+            notifyAll();
+        }
+    }
+
+    private void closeQuietly(T reader) {
+        try {
+            closer.close(reader);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Error closing reader", e);
+        }
+    }
+
+    /**
+     * Exclusive use of a reader. Closing the lease returns the reader to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Key key;
+        private T reader;
+
+        private Lease(Key key, T reader) {
+            this.key = key;
+            this.reader = reader;
+        }
+
+        public T get() {
+            if (reader == null) {
+                throw new IllegalStateException("Reader already returned to the pool");
+            }
+            return reader;
+        }
+
+        /**
+         * Close the reader instead of returning it to the pool, e.g. after an error that might leave the reader in a bad state.
+         */
+        public void discard() {
+            if (reader != null) {
+                closeQuietly(reader);
+                onClosed(1);
+                reader = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (reader != null) {
+                release(key, reader);
+                reader = null;
+            }
+        }
+    }
+
+    private static final class Key {
+        private final Path path;
+        private final long lastModified;
+        private final long size;
+
+        private Key(Path path) throws IOException {
+            this(path.toAbsolutePath().normalize(), Files.getLastModifiedTime(path).toMillis(), Files.size(path));
+        }
+
+        private Key(Path path, long lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        private boolean isCurrent() {
+            try {
+                return Files.getLastModifiedTime(path).toMillis() == lastModified && Files.size(path) == size;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return lastModified == key.lastModified && size == key.size && Objects.equals(path, key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, size);
+        }
+
+        @Override
+        public String toString() {
+            return path + "@" + lastModified;
+        }
+    }
+}
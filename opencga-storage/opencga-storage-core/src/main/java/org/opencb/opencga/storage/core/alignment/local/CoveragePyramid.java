@@ -0,0 +1,467 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.alignment.local;
+
+import htsjdk.samtools.*;
+import org.opencb.biodata.models.alignment.RegionCoverage;
+import org.opencb.biodata.models.core.Region;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Precomputed multi-resolution coverage of an alignment file.
+ * <p>
+ * The coverage is stored at several resolutions (levels). The first level usually contains the coverage of every position, stored
+ * as unsigned shorts, and the rest of levels contain the mean coverage of fixed size windows, stored as floats. Any window size
+ * can be answered from the nearest level without reading the BAM file.
+ * <p>
+ * The size and modification time of the BAM file are stored in the header, so a pyramid built from a previous version of the
+ * BAM file is detected with {@link #isUpToDate}.
+ * <p>
+ * File layout (big endian):
+ * <pre>
+ * MAGIC (8 bytes) | version (int) | bamSize (long) | bamLastModified (long) | numLevels (int) | windowSize (int) x numLevels
+ * numChromosomes (int) | (name (UTF) | length (int)) x numChromosomes
+ * data: for each chromosome, for each level, ceil(length / windowSize) values
+ * </pre>
+ * The data of every chromosome and level is memory mapped on demand.
+ */
+public final class CoveragePyramid implements Closeable {
+
+    public static final String SUFFIX = ".coverage.pyr";
+    public static final int[] DEFAULT_WINDOW_SIZES = {1, 64, 1024, 16384};
+
+    private static final byte[] MAGIC = "OCGACOVP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 2;
+    // Size of the chunks of the genome processed at once while building the pyramid. Must be a multiple of all the window sizes.
+    private static final int BUILD_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_SHORT_VALUE = 0xFFFF;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long sourceSize;
+    private final long sourceLastModified;
+    private final int[] windowSizes;
+    private final LinkedHashMap<String, Integer> chromosomeLengths;
+    private final Map<String, long[]> dataOffsets;
+    private final Map<String, MappedByteBuffer[]> buffers = new HashMap<>();
+
+    private static Logger logger = LoggerFactory.getLogger(CoveragePyramid.class);
+
+    private CoveragePyramid(Path path, FileChannel channel, Header header) {
+        this.path = path;
+        this.channel = channel;
+        this.sourceSize = header.sourceSize;
+        this.sourceLastModified = header.sourceLastModified;
+        this.windowSizes = header.windowSizes;
+        this.chromosomeLengths = header.chromosomeLengths;
+        this.dataOffsets = computeDataOffsets(windowSizes, chromosomeLengths, header.size);
+    }
+
+    public static Path getPyramidPath(Path alignmentPath) {
+        return alignmentPath.resolveSibling(alignmentPath.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Open an existing coverage pyramid.
+     *
+     * @param path Coverage pyramid file
+     * @return The coverage pyramid. Must be closed after use.
+     * @throws IOException if the file can not be read, or if it is not a valid coverage pyramid
+     */
+    public static CoveragePyramid open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            return new CoveragePyramid(path, channel, readHeader(in));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Check if a coverage pyramid exists and was built from the current version of the alignment file.
+     *
+     * @param path          Coverage pyramid file
+     * @param alignmentPath Alignment file
+     * @return false if the pyramid does not exist, can not be read, or was built from a different version of the alignment file
+     */
+    public static boolean isUpToDate(Path path, Path alignmentPath) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            Header header = readHeader(in);
+            return header.sourceSize == Files.size(alignmentPath)
+                    && header.sourceLastModified == Files.getLastModifiedTime(alignmentPath).toMillis();
+        } catch (IOException e) {
+            logger.debug("Unable to read coverage pyramid " + path, e);
+            return false;
+        }
+    }
+
+    /**
+     * Build the coverage pyramid of an indexed BAM file. The file is written into a temporary file and then moved to the output,
+     * so readers of a previous pyramid are not affected.
+     *
+     * @param bamPath     Sorted and indexed BAM file
+     * @param output      Output file
+     * @param windowSizes Window sizes of each level, in increasing order
+     * @throws IOException if the BAM file can not be read or the output file can not be written
+     */
+    public static void build(Path bamPath, Path output, int[] windowSizes) throws IOException {
+        for (int i = 0; i < windowSizes.length; i++) {
+            if (windowSizes[i] <= 0 || BUILD_CHUNK_SIZE % windowSizes[i] != 0 || i > 0 && windowSizes[i] <= windowSizes[i - 1]) {
+                throw new IllegalArgumentException("Invalid coverage window sizes " + Arrays.toString(windowSizes));
+            }
+        }
+        // Taken before reading, so a BAM file modified while building makes the pyramid outdated
+        Header header = new Header();
+        header.sourceSize = Files.size(bamPath);
+        header.sourceLastModified = Files.getLastModifiedTime(bamPath).toMillis();
+        header.windowSizes = windowSizes;
+        Path tmpOutput = output.resolveSibling(output.getFileName() + ".tmp");
+        try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(bamPath.toFile())) {
+            if (!reader.hasIndex()) {
+                throw new IOException("Missing index for file " + bamPath);
+            }
+            LinkedHashMap<String, Integer> chromosomeLengths = new LinkedHashMap<>();
+            for (SAMSequenceRecord sequence : reader.getFileHeader().getSequenceDictionary().getSequences()) {
+                chromosomeLengths.put(sequence.getSequenceName(), sequence.getSequenceLength());
+            }
+            header.chromosomeLengths = chromosomeLengths;
+
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            writeHeader(new DataOutputStream(headerBytes), header);
+            Map<String, long[]> dataOffsets = computeDataOffsets(windowSizes, chromosomeLengths, headerBytes.size());
+
+            try (FileChannel out = FileChannel.open(tmpOutput, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(ByteBuffer.wrap(headerBytes.toByteArray()), 0);
+                int[] depth = new int[BUILD_CHUNK_SIZE];
+                for (Map.Entry<String, Integer> entry : chromosomeLengths.entrySet()) {
+                    String chromosome = entry.getKey();
+                    int length = entry.getValue();
+                    long[] offsets = dataOffsets.get(chromosome);
+                    for (int chunkStart = 1; chunkStart <= length; chunkStart += BUILD_CHUNK_SIZE) {
+                        int chunkLength = Math.min(BUILD_CHUNK_SIZE, length - chunkStart + 1);
+                        if (!computeDepth(reader, chromosome, chunkStart, chunkLength, depth)) {
+                            // Leave a hole in the file. Empty regions are read as zeros
+                            continue;
+                        }
+                        for (int level = 0; level < windowSizes.length; level++) {
+                            int windowSize = windowSizes[level];
+                            int valueSize = getValueSize(windowSize);
+                            int numWindows = (chunkLength + windowSize - 1) / windowSize;
+                            ByteBuffer buffer = ByteBuffer.allocate(numWindows * valueSize).order(ByteOrder.BIG_ENDIAN);
+                            for (int w = 0; w < numWindows; w++) {
+                                int from = w * windowSize;
+                                int to = Math.min(from + windowSize, chunkLength);
+                                if (valueSize == Short.BYTES) {
+                                    buffer.putShort((short) Math.min(depth[from], MAX_SHORT_VALUE));
+                                } else {
+                                    long sum = 0;
+                                    for (int i = from; i < to; i++) {
+                                        sum += depth[i];
+                                    }
+                                    buffer.putFloat(((float) sum) / (to - from));
+                                }
+                            }
+                            buffer.flip();
+                            long position = offsets[level] + ((long) (chunkStart - 1) / windowSize) * valueSize;
+                            while (buffer.hasRemaining()) {
+                                position += out.write(buffer, position);
+                            }
+                        }
+                    }
+                    logger.debug("Coverage of chromosome {} done", chromosome);
+                }
+                long fileSize = headerBytes.size();
+                for (Integer length : chromosomeLengths.values()) {
+                    for (int windowSize : windowSizes) {
+                        fileSize += ((long) (length + windowSize - 1) / windowSize) * getValueSize(windowSize);
+                    }
+                }
+                if (out.size() < fileSize) {
+                    out.write(ByteBuffer.wrap(new byte[]{0}), fileSize - 1);
+                }
+            }
+            Files.move(tmpOutput, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpOutput);
+        }
+    }
+
+    /**
+     * Get the coverage of a region with the given window size, using the level with the largest window size not larger than the
+     * requested one.
+     *
+     * @param region     Region
+     * @param windowSize Window size
+     * @return Region coverage
+     * @throws IOException if the pyramid can not be read
+     */
+    public RegionCoverage coverage(Region region, int windowSize) throws IOException {
+        Region fixedRegion = fixRegion(region);
+        windowSize = Math.max(1, windowSize);
+        int level = getLevel(windowSize);
+        int start = fixedRegion.getStart();
+        int end = fixedRegion.getEnd();
+        int numWindows = (end - start + windowSize) / windowSize;
+        float[] values = new float[Math.max(numWindows, 0)];
+        for (int w = 0; w < values.length; w++) {
+            int from = start + w * windowSize;
+            int to = Math.min(from + windowSize - 1, end);
+            values[w] = mean(fixedRegion.getChromosome(), level, from, to);
+        }
+        return new RegionCoverage(fixedRegion, windowSize, values);
+    }
+
+    /**
+     * Get the regions with a coverage lower than the given value, using the finest level.
+     *
+     * @param region      Region
+     * @param minCoverage Minimum coverage
+     * @return List of regions with low coverage, with the coverage values at the finest level
+     * @throws IOException if the pyramid can not be read
+     */
+    public List<RegionCoverage> getLowCoverageRegions(Region region, int minCoverage) throws IOException {
+        Region fixedRegion = fixRegion(region);
+        String chromosome = fixedRegion.getChromosome();
+        int windowSize = windowSizes[0];
+        List<RegionCoverage> regions = new ArrayList<>();
+        int runStart = -1;
+        List<Float> runValues = new ArrayList<>();
+        for (int bin = (fixedRegion.getStart() - 1) / windowSize; bin <= (fixedRegion.getEnd() - 1) / windowSize; bin++) {
+            int binStart = Math.max(bin * windowSize + 1, fixedRegion.getStart());
+            float value = getValue(chromosome, 0, bin);
+            if (value < minCoverage) {
+                if (runStart < 0) {
+                    runStart = binStart;
+                }
+                runValues.add(value);
+            } else if (runStart >= 0) {
+                regions.add(toRegionCoverage(chromosome, runStart, binStart - 1, windowSize, runValues));
+                runStart = -1;
+                runValues.clear();
+            }
+        }
+        if (runStart >= 0) {
+            regions.add(toRegionCoverage(chromosome, runStart, fixedRegion.getEnd(), windowSize, runValues));
+        }
+        return regions;
+    }
+
+    /**
+     * @param alignmentPath Alignment file
+     * @return if this pyramid was built from the current version of the alignment file
+     * @throws IOException if the alignment file can not be read
+     */
+    public boolean isUpToDate(Path alignmentPath) throws IOException {
+        return sourceSize == Files.size(alignmentPath) && sourceLastModified == Files.getLastModifiedTime(alignmentPath).toMillis();
+    }
+
+    public int[] getWindowSizes() {
+        return windowSizes.clone();
+    }
+
+    public Map<String, Integer> getChromosomeLengths() {
+        return Collections.unmodifiableMap(chromosomeLengths);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffers.clear();
+        channel.close();
+    }
+
+    private static RegionCoverage toRegionCoverage(String chromosome, int start, int end, int windowSize, List<Float> runValues) {
+        float[] values = new float[runValues.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = runValues.get(i);
+        }
+        return new RegionCoverage(new Region(chromosome, start, end), windowSize, values);
+    }
+
+    private Region fixRegion(Region region) throws IOException {
+        Integer length = chromosomeLengths.get(region.getChromosome());
+        if (length == null) {
+            throw new IOException("Chromosome '" + region.getChromosome() + "' not found in coverage file " + path);
+        }
+        int start = Math.max(1, region.getStart());
+        int end = Math.min(length, region.getEnd() <= 0 ? length : region.getEnd());
+        return new Region(region.getChromosome(), start, end);
+    }
+
+    private int getLevel(int windowSize) {
+        int level = 0;
+        for (int i = 0; i < windowSizes.length; i++) {
+            if (windowSizes[i] <= windowSize) {
+                level = i;
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Mean coverage between two positions (1-based, inclusive), weighting each bin of the level by its overlap.
+     */
+    private float mean(String chromosome, int level, int from, int to) throws IOException {
+        int windowSize = windowSizes[level];
+        double sum = 0;
+        for (int bin = (from - 1) / windowSize; bin <= (to - 1) / windowSize; bin++) {
+            int binStart = bin * windowSize + 1;
+            int binEnd = binStart + windowSize - 1;
+            int overlap = Math.min(binEnd, to) - Math.max(binStart, from) + 1;
+            sum += ((double) getValue(chromosome, level, bin)) * overlap;
+        }
+        return (float) (sum / (to - from + 1));
+    }
+
+    private float getValue(String chromosome, int level, int bin) throws IOException {
+        MappedByteBuffer buffer = getBuffer(chromosome, level);
+        if (getValueSize(windowSizes[level]) == Short.BYTES) {
+            return buffer.getChar(bin * Short.BYTES);
+        } else {
+            return buffer.getFloat(bin * Float.BYTES);
+        }
+    }
+
+    private synchronized MappedByteBuffer getBuffer(String chromosome, int level) throws IOException {
+        MappedByteBuffer[] chromosomeBuffers = buffers.computeIfAbsent(chromosome, c -> new MappedByteBuffer[windowSizes.length]);
+        if (chromosomeBuffers[level] == null) {
+            int windowSize = windowSizes[level];
+            long numWindows = (chromosomeLengths.get(chromosome) + windowSize - 1) / windowSize;
+            chromosomeBuffers[level] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffsets.get(chromosome)[level],
+                    numWindows * getValueSize(windowSize));
+        }
+        return chromosomeBuffers[level];
+    }
+
+    private static int getValueSize(int windowSize) {
+        return windowSize == 1 ? Short.BYTES : Float.BYTES;
+    }
+
+    private static boolean computeDepth(SamReader reader, String chromosome, int chunkStart, int chunkLength, int[] depth) {
+        boolean empty = true;
+        int chunkEnd = chunkStart + chunkLength - 1;
+        try (SAMRecordIterator iterator = reader.queryOverlapping(chromosome, chunkStart, chunkEnd)) {
+            while (iterator.hasNext()) {
+                SAMRecord record = iterator.next();
+                if (record.getReadUnmappedFlag() || record.isSecondaryOrSupplementary() || record.getDuplicateReadFlag()
+                        || record.getReadFailsVendorQualityCheckFlag()) {
+                    continue;
+                }
+                if (empty) {
+                    Arrays.fill(depth, 0);
+                    empty = false;
+                }
+                for (AlignmentBlock block : record.getAlignmentBlocks()) {
+                    int from = Math.max(block.getReferenceStart(), chunkStart);
+                    int to = Math.min(block.getReferenceStart() + block.getLength() - 1, chunkEnd);
+                    for (int position = from; position <= to; position++) {
+                        depth[position - chunkStart]++;
+                    }
+                }
+            }
+        }
+        return !empty;
+    }
+
+    private static Map<String, long[]> computeDataOffsets(int[] windowSizes, Map<String, Integer> chromosomeLengths, long headerSize) {
+        Map<String, long[]> dataOffsets = new HashMap<>();
+        long offset = headerSize;
+        for (Map.Entry<String, Integer> entry : chromosomeLengths.entrySet()) {
+            long[] offsets = new long[windowSizes.length];
+            for (int level = 0; level < windowSizes.length; level++) {
+                offsets[level] = offset;
+                long numWindows = (entry.getValue() + windowSizes[level] - 1) / windowSizes[level];
+                offset += numWindows * getValueSize(windowSizes[level]);
+            }
+            dataOffsets.put(entry.getKey(), offsets);
+        }
+        return dataOffsets;
+    }
+
+    private static void writeHeader(DataOutputStream out, Header header) throws IOException {
+        out.write(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(header.sourceSize);
+        out.writeLong(header.sourceLastModified);
+        out.writeInt(header.windowSizes.length);
+        for (int windowSize : header.windowSizes) {
+            out.writeInt(windowSize);
+        }
+        out.writeInt(header.chromosomeLengths.size());
+        for (Map.Entry<String, Integer> entry : header.chromosomeLengths.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+        out.flush();
+    }
+
+    private static Header readHeader(DataInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a coverage pyramid file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported coverage pyramid version " + version);
+        }
+        Header header = new Header();
+        header.sourceSize = in.readLong();
+        header.sourceLastModified = in.readLong();
+        header.windowSizes = new int[in.readInt()];
+        for (int i = 0; i < header.windowSizes.length; i++) {
+            header.windowSizes[i] = in.readInt();
+        }
+        int numChromosomes = in.readInt();
+        header.chromosomeLengths = new LinkedHashMap<>();
+        for (int i = 0; i < numChromosomes; i++) {
+            header.chromosomeLengths.put(in.readUTF(), in.readInt());
+        }
+        // Recompute the header size from its content, as the input stream is buffered
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        writeHeader(new DataOutputStream(headerBytes), header);
+        header.size = headerBytes.size();
+        return header;
+    }
+
+    private static class Header {
+        private long sourceSize;
+        private long sourceLastModified;
+        private int[] windowSizes;
+        private LinkedHashMap<String, Integer> chromosomeLengths;
+        private long size;
+    }
+}
@@ -39,7 +39,11 @@ import org.opencb.opencga.storage.core.alignment.AlignmentDBAdaptor;
 import org.opencb.opencga.storage.core.alignment.iterators.AlignmentIterator;
 import org.opencb.opencga.storage.core.alignment.iterators.ProtoAlignmentIterator;
 import org.opencb.opencga.storage.core.alignment.iterators.SamRecordAlignmentIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
@@ -51,6 +55,7 @@ import java.util.List;
 public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
     private int chunkSize;
+    private final AlignmentReaderPool<BamManager> bamManagerPool;
 
     private static final int MINOR_CHUNK_SIZE = 1000;
     private static final int DEFAULT_CHUNK_SIZE = 1000;
@@ -59,13 +64,25 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
     private static final String COVERAGE_SUFFIX = ".coverage";
     private static final String COVERAGE_DATABASE_NAME = "coverage.db";
 
+    // Shared by all the instances, as a new LocalAlignmentDBAdaptor may be created for every request
+    private static final AlignmentReaderPool<BamManager> DEFAULT_BAM_MANAGER_POOL =
+            new AlignmentReaderPool<>(BamManager::new, BamManager::close);
+    private static final AlignmentReaderPool<CoveragePyramid> COVERAGE_PYRAMID_POOL =
+            new AlignmentReaderPool<>(CoveragePyramid::open, CoveragePyramid::close);
+
+    private final Logger logger = LoggerFactory.getLogger(LocalAlignmentDBAdaptor.class);
 
     public LocalAlignmentDBAdaptor() {
         this(DEFAULT_CHUNK_SIZE);
     }
 
     public LocalAlignmentDBAdaptor(int chunkSize) {
+        this(chunkSize, DEFAULT_BAM_MANAGER_POOL);
+    }
+
+    public LocalAlignmentDBAdaptor(int chunkSize, AlignmentReaderPool<BamManager> bamManagerPool) {
         this.chunkSize = chunkSize;
+        this.bamManagerPool = bamManagerPool;
     }
 
 
@@ -76,7 +93,6 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
             StopWatch watch = StopWatch.createStarted();
 
-            BamManager bamManager = new BamManager(path);
             Region region = parseRegion(query);
             AlignmentFilters<SAMRecord> alignmentFilters = parseQuery(query);
             AlignmentOptions alignmentOptions = parseQueryOptions(options);
@@ -84,14 +100,15 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
             String queryResultId;
             List<ReadAlignment> readAlignmentList;
             if (region != null) {
-                readAlignmentList = bamManager.query(region, alignmentFilters, alignmentOptions, ReadAlignment.class);
+                readAlignmentList = withReader(bamManagerPool, path,
+                        bamManager -> bamManager.query(region, alignmentFilters, alignmentOptions, ReadAlignment.class));
                 queryResultId = region.toString();
             } else {
-                readAlignmentList = bamManager.query(alignmentFilters, alignmentOptions, ReadAlignment.class);
+                readAlignmentList = withReader(bamManagerPool, path,
+                        bamManager -> bamManager.query(alignmentFilters, alignmentOptions, ReadAlignment.class));
                 queryResultId = "Get alignments";
             }
 
-            bamManager.close();
             watch.stop();
             return new QueryResult<>(queryResultId, ((int) watch.getTime()), readAlignmentList.size(), readAlignmentList.size(), null, null,
                     readAlignmentList);
@@ -116,27 +133,35 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
         try {
             FileUtils.checkFile(path);
 
-            BamManager bamManager = new BamManager(path);
             Region region = parseRegion(query);
             AlignmentFilters<SAMRecord> alignmentFilters = parseQuery(query);
             AlignmentOptions alignmentOptions = parseQueryOptions(options);
 
-            if (region != null) {
-                if (Reads.ReadAlignment.class == clazz) {
-                    return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(region,
-                            alignmentFilters, alignmentOptions, Reads.ReadAlignment.class));
-                } else if (SAMRecord.class == clazz) {
-                    return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(region,
-                            alignmentFilters, alignmentOptions, SAMRecord.class));
-                }
-            } else {
-                if (Reads.ReadAlignment.class == clazz) {
-                    return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(alignmentFilters,
-                            alignmentOptions, Reads.ReadAlignment.class));
-                } else if (SAMRecord.class == clazz) {
-                    return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(alignmentFilters,
-                            alignmentOptions, SAMRecord.class));
+            // The reader is returned to the pool when the iterator is closed
+            AlignmentReaderPool<BamManager>.Lease lease = bamManagerPool.checkout(path);
+            BamManager bamManager = lease.get();
+            try {
+                if (region != null) {
+                    if (Reads.ReadAlignment.class == clazz) {
+                        return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(region,
+                                alignmentFilters, alignmentOptions, Reads.ReadAlignment.class), lease);
+                    } else if (SAMRecord.class == clazz) {
+                        return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(region,
+                                alignmentFilters, alignmentOptions, SAMRecord.class), lease);
+                    }
+                } else {
+                    if (Reads.ReadAlignment.class == clazz) {
+                        return (AlignmentIterator<T>) new ProtoAlignmentIterator(bamManager.iterator(alignmentFilters,
+                                alignmentOptions, Reads.ReadAlignment.class), lease);
+                    } else if (SAMRecord.class == clazz) {
+                        return (AlignmentIterator<T>) new SamRecordAlignmentIterator(bamManager.iterator(alignmentFilters,
+                                alignmentOptions, SAMRecord.class), lease);
+                    }
                 }
+                lease.close();
+            } catch (Exception e) {
+                lease.discard();
+                throw e;
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -154,10 +179,12 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
         StopWatch watch = StopWatch.createStarted();
         RegionCoverage regionCoverage;
-        if (path.toFile().getName().endsWith(".bam")) {
-            BamManager bamManager = new BamManager(path);
-            regionCoverage = bamManager.coverage(region, windowSize);
-            bamManager.close();
+        AlignmentReaderPool<CoveragePyramid>.Lease pyramidLease = checkoutCoveragePyramid(path);
+        if (pyramidLease != null) {
+            // Precomputed coverage. No need to read the alignments
+            regionCoverage = withReader(pyramidLease, pyramid -> pyramid.coverage(region, windowSize));
+        } else if (path.toFile().getName().endsWith(".bam")) {
+            regionCoverage = withReader(bamManagerPool, path, bamManager -> bamManager.coverage(region, windowSize));
         } else {
             regionCoverage = BamUtils.getCoverageFromBigWig(region, windowSize, path);
         }
@@ -171,24 +198,94 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
 
         StopWatch watch = StopWatch.createStarted();
         List<RegionCoverage> regionCoverages = null;
-        if (path.toFile().getName().endsWith(".bam")) {
-            BamManager bamManager = new BamManager(path);
-            regionCoverages = bamManager.getUncoveredRegions(region, minCoverage);
-            bamManager.close();
+        AlignmentReaderPool<CoveragePyramid>.Lease pyramidLease = checkoutCoveragePyramid(path);
+        if (pyramidLease != null) {
+            regionCoverages = withReader(pyramidLease, pyramid -> pyramid.getLowCoverageRegions(region, minCoverage));
+        } else if (path.toFile().getName().endsWith(".bam")) {
+            regionCoverages = withReader(bamManagerPool, path, bamManager -> bamManager.getUncoveredRegions(region, minCoverage));
         }
         watch.stop();
         return new QueryResult<>(region.toString(), ((int) watch.getTime()), 1, 1, null, null, regionCoverages);
     }
 
+    @FunctionalInterface
+    private interface ReaderFunction<R, T> {
+        T apply(R reader) throws Exception;
+    }
+
+    /**
+     * Run a function over a reader of the pool. The reader is returned to the pool, or closed if the function fails.
+     *
+     * @param pool     Reader pool
+     * @param path     File to read
+     * @param function Function to run
+     * @param <R>      Type of reader
+     * @param <T>      Type of result
+     * @return Result of the function
+     * @throws Exception if the file can not be opened, or the function fails
+     */
+    private static <R, T> T withReader(AlignmentReaderPool<R> pool, Path path, ReaderFunction<R, T> function) throws Exception {
+        return withReader(pool.checkout(path), function);
+    }
+
+    private static <R, T> T withReader(AlignmentReaderPool<R>.Lease lease, ReaderFunction<R, T> function) throws Exception {
+        T result;
+        try {
+            result = function.apply(lease.get());
+        } catch (Exception e) {
+            // The reader might be in a bad state
+            lease.discard();
+            throw e;
+        }
+        lease.close();
+        return result;
+    }
+
+    /**
+     * Get the coverage pyramid of an alignment file, only if it was built from the current version of the file.
+     *
+     * @param path Alignment file
+     * @return Lease of the open coverage pyramid, or null if there is no valid coverage pyramid
+     */
+    private AlignmentReaderPool<CoveragePyramid>.Lease checkoutCoveragePyramid(Path path) {
+        Path pyramidPath = CoveragePyramid.getPyramidPath(path);
+        if (!Files.exists(pyramidPath)) {
+            return null;
+        }
+        AlignmentReaderPool<CoveragePyramid>.Lease lease = null;
+        try {
+            lease = COVERAGE_PYRAMID_POOL.checkout(pyramidPath);
+            if (lease.get().isUpToDate(path)) {
+                return lease;
+            }
+            logger.warn("Ignoring outdated coverage pyramid {}", pyramidPath);
+        } catch (IOException e) {
+            logger.warn("Ignoring invalid coverage pyramid " + pyramidPath, e);
+        }
+        if (lease != null) {
+            lease.discard();
+        }
+        return null;
+    }
+
     @Override
     public QueryResult<Long> count(Path path, Query query, QueryOptions options) {
         StopWatch watch = StopWatch.createStarted();
 
-        ProtoAlignmentIterator iterator = iterator(path, query, options);
         long count = 0;
-        while (iterator.hasNext()) {
-            iterator.next();
-            count++;
+        try (ProtoAlignmentIterator iterator = iterator(path, query, options)) {
+            if (iterator == null) {
+                throw new IOException("Unable to read alignments from " + path);
+            }
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+        } catch (Exception e) {
+            // Do not return a partial count
+            logger.error("Error counting alignments from " + path, e);
+            watch.stop();
+            return new QueryResult<>("Get count", (int) watch.getTime(), 0, 0, "", e.getMessage(), Collections.emptyList());
         }
 
         watch.stop();
@@ -239,8 +336,8 @@ public class LocalAlignmentDBAdaptor implements AlignmentDBAdaptor {
         AlignmentFilters alignmentFilters = parseQuery(query);
         AlignmentOptions alignmentOptions = parseQueryOptions(options);
 
-        BamManager alignmentManager = new BamManager(path);
-        AlignmentGlobalStats alignmentGlobalStats = alignmentManager.stats(region, alignmentFilters, alignmentOptions);
+        AlignmentGlobalStats alignmentGlobalStats = withReader(bamManagerPool, path,
+                bamManager -> bamManager.stats(region, alignmentFilters, alignmentOptions));
 
         watch.stop();
         return new QueryResult<>("Get stats", (int) watch.getTime(), 1, 1, "", "", Arrays.asList(alignmentGlobalStats));
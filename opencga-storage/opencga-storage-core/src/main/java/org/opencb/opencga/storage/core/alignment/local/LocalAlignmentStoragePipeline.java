@@ -86,6 +86,15 @@ public class LocalAlignmentStoragePipeline implements StoragePipeline {
         // 3) Create the BigWig file containing the coverage using the bamCoverage from the DeepTools package
         Path bwPath = workspace.resolve(path.getFileName() + ".bw");
         bamManager.calculateBigWigCoverage(bwPath, 50);
+        bamManager.close();
+
+        // 4) Create the coverage pyramid, to answer coverage queries at any window size without reading the BAM file.
+        // As the bai, it is stored next to the BAM file, where the LocalAlignmentDBAdaptor looks for it.
+        // Rebuild it if the BAM file was modified after building it.
+        Path pyramidPath = CoveragePyramid.getPyramidPath(path);
+        if (!CoveragePyramid.isUpToDate(pyramidPath, path)) {
+            CoveragePyramid.build(path, pyramidPath, CoveragePyramid.DEFAULT_WINDOW_SIZES);
+        }
 
         return input;
     }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.io;
+
+import org.opencb.commons.run.Task;
+import org.opencb.opencga.core.metrics.Counter;
+import org.opencb.opencga.core.metrics.MetricsRegistry;
+import org.opencb.opencga.core.metrics.Timer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Task wrapper reporting the throughput of the wrapped task to the {@link MetricsRegistry}.
+ * Counts the input elements, and times each batch.
+ */
+public class MetricsTask<T, R> implements Task<T, R> {
+
+    private final Task<T, R> task;
+    private final Counter elements;
+    private final Timer batchTimer;
+
+    public MetricsTask(String pipeline, String taskName, Task<T, R> task) {
+        this.task = task;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        elements = metrics.counter("pipeline_task_elements_total", "Elements processed by each pipeline task",
+                "pipeline", pipeline, "task", taskName);
+        batchTimer = metrics.timer("pipeline_task_batch_seconds", "Time to process a batch by each pipeline task",
+                "pipeline", pipeline, "task", taskName);
+    }
+
+    public static <T, R> Supplier<Task<T, R>> wrap(String pipeline, String taskName, Supplier<? extends Task<T, R>> supplier) {
+        return () -> new MetricsTask<>(pipeline, taskName, supplier.get());
+    }
+
+    @Override
+    public void pre() throws Exception {
+        task.pre();
+    }
+
+    @Override
+    public List<R> apply(List<T> batch) throws Exception {
+        long start = System.nanoTime();
+        List<R> result = task.apply(batch);
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        elements.inc(batch.size());
+        return result;
+    }
+
+    @Override
+    public List<R> drain() throws Exception {
+        return task.drain();
+    }
+
+    @Override
+    public void post() throws Exception {
+        task.post();
+    }
+}
@@ -49,6 +49,7 @@ import org.opencb.opencga.storage.core.manager.models.StudyInfo;
 import org.opencb.opencga.storage.core.manager.variant.metadata.CatalogVariantMetadataFactory;
 import org.opencb.opencga.storage.core.manager.variant.operations.*;
 import org.opencb.opencga.storage.core.metadata.ProjectMetadata;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.metadata.VariantMetadataFactory;
 import org.opencb.opencga.storage.core.variant.BeaconResponse;
@@ -59,6 +60,7 @@ import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorExcept
 import org.opencb.opencga.storage.core.variant.io.VariantWriterFactory.VariantOutputFormat;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
@@ -343,6 +345,67 @@ public class VariantStorageManager extends StorageManager {
         variantStorageEngine.fillMissing(study.getFqn(), config, overwrite);
     }
 
+    public void ibs(String studyStr, List<String> samples, List<Region> regions, URI outputFile, ObjectMap config, String sessionId)
+            throws CatalogException, StorageEngineException, IOException {
+        String userId = catalogManager.getUserManager().getUserId(sessionId);
+        Study study = catalogManager.getStudyManager().resolveId(studyStr, userId);
+
+        DataStore dataStore = getDataStore(study.getFqn(), sessionId);
+        VariantStorageEngine variantStorageEngine = getVariantStorageEngine(dataStore);
+
+        samples = getIbsSamples(study, samples, variantStorageEngine.getStudyConfigurationManager(), sessionId);
+        variantStorageEngine.ibs(study.getFqn(), samples, regions, outputFile, config);
+    }
+
+    public void ibs(String studyStr, List<String> samples, List<Region> regions, OutputStream outputStream, ObjectMap config,
+                    String sessionId)
+            throws CatalogException, StorageEngineException, IOException {
+        String userId = catalogManager.getUserManager().getUserId(sessionId);
+        Study study = catalogManager.getStudyManager().resolveId(studyStr, userId);
+
+        DataStore dataStore = getDataStore(study.getFqn(), sessionId);
+        VariantStorageEngine variantStorageEngine = getVariantStorageEngine(dataStore);
+
+        samples = getIbsSamples(study, samples, variantStorageEngine.getStudyConfigurationManager(), sessionId);
+        variantStorageEngine.ibs(study.getFqn(), samples, regions, outputStream, config);
+    }
+
+    /**
+     * Resolve the samples to compare, checking that the user can read all of them.
+     * If no samples are given, use all the indexed samples the user can read.
+     */
+    private List<String> getIbsSamples(Study study, List<String> samples, StudyConfigurationManager scm, String sessionId)
+            throws CatalogException, StorageEngineException {
+        QueryOptions options = new QueryOptions(INCLUDE, SampleDBAdaptor.QueryParams.ID.key());
+        if (samples != null && !samples.isEmpty()) {
+            List<QueryResult<Sample>> samplesQueryResult = catalogManager.getSampleManager().get(study.getFqn(), samples,
+                    new Query(), options, sessionId);
+            if (samplesQueryResult.size() != samples.size()) {
+                throw new CatalogAuthorizationException("Permission denied. User "
+                        + catalogManager.getUserManager().getUserId(sessionId) + " can't read all the requested samples");
+            }
+            return samplesQueryResult.stream().map(QueryResult::first).map(Sample::getId).collect(Collectors.toList());
+        }
+
+        StudyConfiguration sc = scm.getStudyConfiguration(study.getFqn(), null).first();
+        if (sc == null) {
+            throw VariantQueryException.studyNotFound(study.getFqn());
+        }
+        Map<String, Integer> indexedSamples = StudyConfiguration.getIndexedSamplesPosition(sc);
+        List<String> readableSamples = catalogManager.getSampleManager().get(study.getFqn(), new Query(), options, sessionId)
+                .getResult()
+                .stream()
+                .map(Sample::getId)
+                .filter(indexedSamples::containsKey)
+                .sorted(Comparator.comparing(indexedSamples::get))
+                .collect(Collectors.toList());
+        if (readableSamples.isEmpty()) {
+            throw new CatalogAuthorizationException("Permission denied. User "
+                    + catalogManager.getUserManager().getUserId(sessionId) + " can't read any indexed sample");
+        }
+        return readableSamples;
+    }
+
     // ---------------------//
     //   Query methods      //
     // ---------------------//
@@ -416,12 +479,29 @@ public class VariantStorageManager extends StorageManager {
                 engine -> engine.count(query));
     }
 
+    public boolean exists(Query query, String sessionId) throws CatalogException, StorageEngineException, IOException {
+        return secure(query, new QueryOptions(QueryOptions.EXCLUDE, VariantField.STUDIES), sessionId,
+                engine -> engine.exists(query));
+    }
+
     public QueryResult distinct(Query query, String field, String sessionId)
             throws CatalogException, IOException, StorageEngineException {
         return (QueryResult) secure(query, new QueryOptions(QueryOptions.EXCLUDE, VariantField.STUDIES), sessionId,
                 engine -> engine.distinct(query, field));
     }
 
+    public Collection<String> getSamplesInAllVariants(Query query, List<String> genotypes, String sessionId)
+            throws CatalogException, StorageEngineException, IOException {
+        return secure(query, new QueryOptions(INCLUDE, VariantField.STUDIES_SAMPLES_DATA), sessionId,
+                engine -> engine.getVariantSampleFilter().getSamplesInAllVariants(query, genotypes));
+    }
+
+    public Map<String, Set<Variant>> getSamplesInAnyVariants(Query query, List<String> genotypes, String sessionId)
+            throws CatalogException, StorageEngineException, IOException {
+        return secure(query, new QueryOptions(INCLUDE, VariantField.STUDIES_SAMPLES_DATA), sessionId,
+                engine -> engine.getVariantSampleFilter().getSamplesInAnyVariants(query, genotypes));
+    }
+
     public void facet() {
         throw new UnsupportedOperationException();
     }
@@ -683,11 +763,7 @@ public class VariantStorageManager extends StorageManager {
                     break;
             }
 
-            Long count = count(query, sessionId).first();
-            if (count > 1) {
-                throw new VariantQueryException("Unexpected beacon count for query " + query + ". Got " + count + " results!");
-            }
-            BeaconResponse beaconResponse = new BeaconResponse(beacon, beaconQuery, count == 1, null);
+            BeaconResponse beaconResponse = new BeaconResponse(beacon, beaconQuery, exists(query, sessionId), null);
 
             responses.add(beaconResponse);
         }
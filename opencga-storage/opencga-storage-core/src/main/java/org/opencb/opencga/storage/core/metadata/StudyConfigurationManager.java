@@ -57,6 +57,7 @@ public class StudyConfigurationManager implements AutoCloseable {
     public static final String READ_ONLY = "ro";
     public static final QueryOptions RO_CACHED_OPTIONS = new QueryOptions(READ_ONLY, true)
             .append(CACHED, true);
+    public static final int CHECK_AND_UPDATE_MAX_ATTEMPTS = 3;
     protected static Logger logger = LoggerFactory.getLogger(StudyConfigurationManager.class);
 
     private final ProjectMetadataAdaptor projectDBAdaptor;
@@ -143,6 +144,54 @@ public class StudyConfigurationManager implements AutoCloseable {
         }
     }
 
+    public <E extends Exception> StudyConfiguration optimisticUpdate(String studyName, UpdateFunction<StudyConfiguration, E> updater)
+            throws StorageEngineException, E {
+        Integer studyId = getStudyId(studyName, null);
+        return optimisticUpdate(studyId, updater);
+    }
+
+    /**
+     * Atomically read, modify and write the StudyConfiguration, without taking the study lock if possible.
+     *
+     * If supported by the StudyConfigurationAdaptor, writes the modified StudyConfiguration only if nobody else modified
+     * or locked it in the meantime. After {@link #CHECK_AND_UPDATE_MAX_ATTEMPTS} conflicts, falls back to
+     * {@link #lockAndUpdate(int, UpdateFunction)}.
+     *
+     * The updater may be called more than once, so it must only modify the given StudyConfiguration, with no other side
+     * effects. Updaters with side effects must use {@link #lockAndUpdate(int, UpdateFunction)}.
+     *
+     * @param studyId   Study to update
+     * @param updater   Update function, with no side effects
+     * @param <E>       Exception thrown by the updater
+     * @return          Updated StudyConfiguration
+     * @throws StorageEngineException if the study could not be locked
+     * @throws E        if the updater fails
+     */
+    public <E extends Exception> StudyConfiguration optimisticUpdate(int studyId, UpdateFunction<StudyConfiguration, E> updater)
+            throws StorageEngineException, E {
+        checkStudyId(studyId);
+        if (studyDBAdaptor.supportsCheckAndUpdate()) {
+            for (int attempt = 1; attempt <= CHECK_AND_UPDATE_MAX_ATTEMPTS; attempt++) {
+                StudyConfiguration sc = getStudyConfiguration(studyId, new QueryOptions(CACHED, false)).first();
+                Long expectedTimeStamp = sc.getTimeStamp();
+                if (expectedTimeStamp == null) {
+                    break;
+                }
+
+                sc = updater.update(sc);
+
+                StudyConfiguration copy = prepareUpdate(sc);
+                if (studyDBAdaptor.checkAndUpdateStudyConfiguration(copy, expectedTimeStamp, QueryOptions.empty())) {
+                    stringStudyConfigurationMap.put(copy.getStudyName(), copy);
+                    intStudyConfigurationMap.put(copy.getStudyId(), copy);
+                    return sc;
+                }
+                logger.debug("Conflict updating StudyConfiguration {}. Attempt {}/{}", studyId, attempt, CHECK_AND_UPDATE_MAX_ATTEMPTS);
+            }
+        }
+        return lockAndUpdate(studyId, updater);
+    }
+
     public final QueryResult<StudyConfiguration> getStudyConfiguration(String studyName, QueryOptions options) {
         if (StringUtils.isNumeric(studyName)) {
             return getStudyConfiguration(Integer.valueOf(studyName), options);
@@ -250,8 +299,20 @@ public class StudyConfigurationManager implements AutoCloseable {
     }
 
     public final QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, QueryOptions options) {
-        long timeStamp = System.currentTimeMillis();
-        logger.debug("Timestamp : {} -> {}", studyConfiguration.getTimeStamp(), timeStamp);
+        // Store a copy of the StudyConfiguration.
+        StudyConfiguration copy = prepareUpdate(studyConfiguration);
+        stringStudyConfigurationMap.put(copy.getStudyName(), copy);
+        intStudyConfigurationMap.put(copy.getStudyId(), copy);
+        return studyDBAdaptor.updateStudyConfiguration(copy, options);
+    }
+
+    private StudyConfiguration prepareUpdate(StudyConfiguration studyConfiguration) {
+        Long previousTimeStamp = studyConfiguration.getTimeStamp();
+        // The timeStamp is used as version for the conditional updates, so it must always increase
+        long timeStamp = previousTimeStamp == null
+                ? System.currentTimeMillis()
+                : Math.max(System.currentTimeMillis(), previousTimeStamp + 1);
+        logger.debug("Timestamp : {} -> {}", previousTimeStamp, timeStamp);
         studyConfiguration.setTimeStamp(timeStamp);
         Map<Integer, String> headers = studyConfiguration.getHeaders();
 
@@ -261,11 +322,7 @@ public class StudyConfigurationManager implements AutoCloseable {
             studyConfiguration.setHeaders(headers);
         }
 
-        // Store a copy of the StudyConfiguration.
-        StudyConfiguration copy = studyConfiguration.newInstance();
-        stringStudyConfigurationMap.put(copy.getStudyName(), copy);
-        intStudyConfigurationMap.put(copy.getStudyId(), copy);
-        return studyDBAdaptor.updateStudyConfiguration(copy, options);
+        return studyConfiguration.newInstance();
     }
 
     /**
@@ -1095,7 +1152,7 @@ public class StudyConfigurationManager implements AutoCloseable {
                                                      List<Integer> files)
             throws StorageEngineException {
         final BatchFileOperation.Status[] previousStatus = new BatchFileOperation.Status[1];
-        lockAndUpdate(studyId, studyConfiguration -> {
+        optimisticUpdate(studyId, studyConfiguration -> {
             previousStatus[0] = setStatus(studyConfiguration, status, operationName, files);
             return studyConfiguration;
         });
@@ -49,6 +49,26 @@ public interface StudyConfigurationAdaptor extends AutoCloseable {
 
     QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, QueryOptions options);
 
+    /**
+     * @return if this adaptor implements {@link #checkAndUpdateStudyConfiguration}
+     */
+    default boolean supportsCheckAndUpdate() {
+        return false;
+    }
+
+    /**
+     * Atomically update the StudyConfiguration, only if it was not modified since it was read, and the study is not locked.
+     *
+     * @param studyConfiguration StudyConfiguration to write
+     * @param expectedTimeStamp  TimeStamp of the StudyConfiguration when it was read
+     * @param options            Options
+     * @return false if the StudyConfiguration was modified or locked by someone else, and nothing was written
+     */
+    default boolean checkAndUpdateStudyConfiguration(StudyConfiguration studyConfiguration, long expectedTimeStamp,
+                                                     QueryOptions options) {
+        throw new UnsupportedOperationException("Conditional updates not supported by " + getClass().getSimpleName());
+    }
+
     Map<String, Integer> getStudies(QueryOptions options);
 
     default List<String> getStudyNames(QueryOptions options) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Wakes up the threads waiting for a database lock when the lock is released from the same JVM.
+ * <p>
+ * Locks released from other processes can not be notified, so the waiters still have to poll the database,
+ * using an exponential backoff between {@link #MIN_WAIT} and {@link #MAX_WAIT} milliseconds.
+ */
+public class LockNotifier {
+
+    public static final long MIN_WAIT = 10;
+    public static final long MAX_WAIT = 100;
+
+    // Number of releases of each lock
+    private final Map<Object, Long> releases = new HashMap<>();
+
+    /**
+     * Get the current generation of a lock. Must be called before trying to acquire the lock, and passed to
+     * {@link #await(Object, long, long)} if the lock was taken.
+     *
+     * @param key Lock key
+     * @return Current generation
+     */
+    public synchronized long generation(Object key) {
+        return releases.getOrDefault(key, 0L);
+    }
+
+    /**
+     * Wait until the lock is released, or the wait time expires.
+     *
+     * @param key        Lock key
+     * @param generation Generation of the lock before the last attempt to acquire it
+     * @param wait       Max time to wait, in milliseconds
+     * @throws InterruptedException if any thread has interrupted the current thread.
+     */
+    public synchronized void await(Object key, long generation, long wait) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + wait;
+        long remaining = wait;
+        while (remaining > 0 && releases.getOrDefault(key, 0L) == generation) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Notify that a lock has been released.
+     *
+     * @param key Lock key
+     */
+    public synchronized void signal(Object key) {
+        releases.merge(key, 1L, Long::sum);
+        notifyAll();
+    }
+
+    /**
+     * @param previousWait Previous wait time. 0 for the first wait.
+     * @return Next wait time, using an exponential backoff
+     */
+    public static long nextWait(long previousWait) {
+        return Math.min(MAX_WAIT, Math.max(MIN_WAIT, previousWait * 2));
+    }
+}
@@ -17,6 +17,8 @@
 package org.opencb.opencga.storage.core.variant;
 
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Iterators;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.EnumUtils;
@@ -44,6 +46,8 @@ import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
 import org.opencb.commons.datastore.core.result.FacetQueryResult;
 import org.opencb.opencga.core.common.TimeUtils;
+import org.opencb.opencga.core.metrics.Counter;
+import org.opencb.opencga.core.metrics.MetricsRegistry;
 import org.opencb.opencga.core.results.VariantQueryResult;
 import org.opencb.opencga.storage.core.StorageEngine;
 import org.opencb.opencga.storage.core.StoragePipelineResult;
@@ -56,6 +60,10 @@ import org.opencb.opencga.storage.core.metadata.local.FileStudyConfigurationAdap
 import org.opencb.opencga.storage.core.utils.CellBaseUtils;
 import org.opencb.opencga.storage.core.variant.adaptors.*;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.analysis.VariantSampleFilter;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsEngine;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsGenotypeSource;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.VariantIterableIbsGenotypeSource;
 import org.opencb.opencga.storage.core.variant.annotation.DefaultVariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotatorException;
@@ -75,14 +83,18 @@ import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import static org.opencb.opencga.storage.core.metadata.StudyConfigurationManager.addBatchOperation;
 import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options.*;
@@ -99,6 +111,7 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
 
     private final AtomicReference<VariantSearchManager> variantSearchManager = new AtomicReference<>();
     private CellBaseUtils cellBaseUtils;
+    private final AtomicReference<Cache<String, Boolean>> existsNegativeCache = new AtomicReference<>();
 
     public static final String REMOVE_OPERATION_NAME = BatchFileOperation.Type.REMOVE.name().toLowerCase();
 
@@ -137,6 +150,32 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         }
     }
 
+    /**
+     * Groups of fields of the search index that need to be updated for a not synchronized variant.
+     * Only the fields of the modified groups are sent to the search engine.
+     */
+    public enum SyncGroup {
+        ANNOTATION("a"), STATS("s"), STUDIES("f");
+        private final String c;
+
+        SyncGroup(String c) {
+            this.c = c;
+        }
+
+        public String key() {
+            return c;
+        }
+
+        public static SyncGroup fromKey(String key) {
+            for (SyncGroup syncGroup : values()) {
+                if (syncGroup.c.equals(key)) {
+                    return syncGroup;
+                }
+            }
+            throw new IllegalArgumentException("Unknown SyncGroup " + key);
+        }
+    }
+
     public enum Options {
         INCLUDE_STATS("include.stats", true),              //Include existing stats on the original file.
         //        @Deprecated
@@ -197,8 +236,21 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         INTERSECT_ALWAYS("search.intersect.always", false),                      // Force intersect queries
         INTERSECT_PARAMS_THRESHOLD("search.intersect.params.threshold", 3),      // Minimum number of QueryParams in the query to intersect
 
+        SEARCH_EXPORT_THREADS("search.export.threads", 4),  // Threads decoding variants when iterating over the SearchEngine without limit
+
         APPROXIMATE_COUNT_SAMPLING_SIZE("approximateCountSamplingSize", 1000),
-        APPROXIMATE_COUNT("approximateCount", false);
+        APPROXIMATE_COUNT("approximateCount", false),
+
+        // Identity by state options
+        IBS_THREADS("ibs.threads", 4),                   // Threads comparing pairs of samples
+        IBS_TILE_SIZE("ibs.tile.size", 64),              // Samples per side of each tile of pairs of samples
+        IBS_BLOCK_SIZE("ibs.block.size", 100000),        // Max number of sites to keep in memory
+
+        // Exists (beacon) options
+        // Max number of negative answers to remember. Disabled by default, as the cache is local to this instance and
+        // does not see the variants loaded by other processes, e.g. the storage jobs.
+        EXISTS_NEGATIVE_CACHE_SIZE("exists.negative_cache.size", 0),
+        EXISTS_NEGATIVE_CACHE_TTL("exists.negative_cache.ttl", 300);      // Seconds to remember a negative answer
 
         private final String key;
         private final Object value;
@@ -335,13 +387,20 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     @Override
     public List<StoragePipelineResult> index(List<URI> inputFiles, URI outdirUri, boolean doExtract, boolean doTransform, boolean doLoad)
             throws StorageEngineException {
-        List<StoragePipelineResult> results = super.index(inputFiles, outdirUri, doExtract, doTransform, doLoad);
-        if (doLoad) {
-            annotateLoadedFiles(outdirUri, inputFiles, results, getOptions());
-            calculateStatsForLoadedFiles(outdirUri, inputFiles, results, getOptions());
-            searchIndexLoadedFiles(inputFiles, getOptions());
+        try {
+            List<StoragePipelineResult> results = super.index(inputFiles, outdirUri, doExtract, doTransform, doLoad);
+            if (doLoad) {
+                annotateLoadedFiles(outdirUri, inputFiles, results, getOptions());
+                calculateStatsForLoadedFiles(outdirUri, inputFiles, results, getOptions());
+                searchIndexLoadedFiles(inputFiles, getOptions());
+            }
+            return results;
+        } finally {
+            if (doLoad) {
+                // Even failed loads may have written some variants
+                invalidateExistsCache();
+            }
         }
-        return results;
     }
 
     @Override
@@ -358,7 +417,11 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
      */
     public void annotate(Query query, ObjectMap params) throws VariantAnnotatorException, StorageEngineException, IOException {
         VariantAnnotationManager annotationManager = newVariantAnnotationManager(params);
-        annotationManager.annotate(query, params);
+        try {
+            annotationManager.annotate(query, params);
+        } finally {
+            invalidateExistsCache();
+        }
     }
 
     /**
@@ -488,7 +551,11 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
      */
     public void calculateStats(String study, List<String> cohorts, QueryOptions options) throws StorageEngineException, IOException {
         VariantStatisticsManager statisticsManager = newVariantStatisticsManager();
-        statisticsManager.calculateStatistics(study, cohorts, options);
+        try {
+            statisticsManager.calculateStatistics(study, cohorts, options);
+        } finally {
+            invalidateExistsCache();
+        }
     }
 
     public void calculateStats(String study, Map<String, ? extends Collection<String>> cohorts, QueryOptions options)
@@ -501,7 +568,11 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
             return sc;
         });
 
-        statisticsManager.calculateStatistics(study, new ArrayList<>(cohorts.keySet()), options);
+        try {
+            statisticsManager.calculateStatistics(study, new ArrayList<>(cohorts.keySet()), options);
+        } finally {
+            invalidateExistsCache();
+        }
     }
 
     /**
@@ -581,6 +652,89 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * Compute the pairwise identity by state (IBS0, IBS1, IBS2) and kinship coefficient of a set of samples.
+     *
+     * @param study      Study
+     * @param samples    Samples to compare. Use all the indexed samples if empty
+     * @param regions    Regions to compare. Use all the genome if empty
+     * @param outputFile Output file. One line per pair of samples. Compressed if ends with ".gz"
+     * @param options    Other options
+     * @throws StorageEngineException if there is any error
+     * @throws IOException if there is an error reading the genotypes or writing the output file
+     */
+    public void ibs(String study, List<String> samples, List<Region> regions, URI outputFile, ObjectMap options)
+            throws StorageEngineException, IOException {
+        if (outputFile == null) {
+            throw new IllegalArgumentException("Missing output file");
+        }
+        try (OutputStream os = outputFile.getPath().endsWith(".gz")
+                ? new GZIPOutputStream(new FileOutputStream(Paths.get(outputFile).toFile()))
+                : new FileOutputStream(Paths.get(outputFile).toFile())) {
+            ibs(study, samples, regions, os, options);
+        }
+    }
+
+    /**
+     * Compute the pairwise identity by state (IBS0, IBS1, IBS2) and kinship coefficient of a set of samples.
+     *
+     * @param study        Study
+     * @param samples      Samples to compare. Use all the indexed samples if empty
+     * @param regions      Regions to compare. Use all the genome if empty
+     * @param outputStream Output stream. One line per pair of samples. Not closed
+     * @param options      Other options
+     * @throws StorageEngineException if there is any error
+     * @throws IOException if there is an error reading the genotypes or writing the output
+     */
+    public void ibs(String study, List<String> samples, List<Region> regions, OutputStream outputStream, ObjectMap options)
+            throws StorageEngineException, IOException {
+        ObjectMap mergedOptions = getMergedOptions(options);
+        samples = getIbsSamples(study, samples);
+        IbsGenotypeSource source = newIbsGenotypeSource(study, mergedOptions);
+        StopWatch stopWatch = StopWatch.createStarted();
+        try (IbsEngine engine = new IbsEngine(samples,
+                mergedOptions.getInt(IBS_THREADS.key(), IBS_THREADS.defaultValue()),
+                mergedOptions.getInt(IBS_TILE_SIZE.key(), IBS_TILE_SIZE.defaultValue()))) {
+            source.read(regions, samples, engine);
+            logger.info("Identity by state of {} samples over {} sites in {}ms", samples.size(), engine.getSites(),
+                    stopWatch.getTime(TimeUnit.MILLISECONDS));
+            engine.write(outputStream);
+        }
+    }
+
+    protected List<String> getIbsSamples(String study, List<String> samples) throws StorageEngineException {
+        if (samples != null && !samples.isEmpty()) {
+            return samples;
+        }
+        StudyConfiguration sc = getStudyConfigurationManager().getStudyConfiguration(study, null).first();
+        if (sc == null) {
+            throw VariantQueryException.studyNotFound(study);
+        }
+        // Sorted by position
+        Map<Integer, String> indexedSamples = StudyConfiguration.getIndexedSamplesPosition(sc).inverse();
+        List<String> allSamples = new ArrayList<>(indexedSamples.size());
+        for (int i = 0; i < indexedSamples.size(); i++) {
+            allSamples.add(indexedSamples.get(i));
+        }
+        return allSamples;
+    }
+
+    protected IbsGenotypeSource newIbsGenotypeSource(String study, ObjectMap options) throws StorageEngineException {
+        return new VariantIterableIbsGenotypeSource(getDBAdaptor(), study,
+                options.getInt(IBS_BLOCK_SIZE.key(), IBS_BLOCK_SIZE.defaultValue()));
+    }
+
+    /**
+     * Get a {@link VariantSampleFilter} for this storage engine. Backends may override this method to read the genotypes
+     * from a more suitable source than the whole variant.
+     *
+     * @return VariantSampleFilter
+     * @throws StorageEngineException if there is an error creating the VariantSampleFilter
+     */
+    public VariantSampleFilter getVariantSampleFilter() throws StorageEngineException {
+        return new VariantSampleFilter(this);
+    }
+
     public VariantSearchLoadResult searchIndex() throws StorageEngineException, IOException, VariantSearchException {
         return searchIndex(new Query(), new QueryOptions(), false);
     }
@@ -673,13 +827,13 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
             }
             dbAdaptor.close();
         } catch (Exception e) {
-            getStudyConfigurationManager().lockAndUpdate(study, studyConfiguration -> {
+            getStudyConfigurationManager().optimisticUpdate(study, studyConfiguration -> {
                 studyConfiguration.getSearchIndexedSampleSetsStatus().put(id.get(), BatchFileOperation.Status.ERROR);
                 return studyConfiguration;
             });
             throw e;
         }
-        getStudyConfigurationManager().lockAndUpdate(study, studyConfiguration -> {
+        getStudyConfigurationManager().optimisticUpdate(study, studyConfiguration -> {
             studyConfiguration.getSearchIndexedSampleSetsStatus().put(id.get(), BatchFileOperation.Status.READY);
             return studyConfiguration;
         });
@@ -722,7 +876,7 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
 
 
         // Invalidate secondary index
-        getStudyConfigurationManager().lockAndUpdate(study, studyConfiguration -> {
+        getStudyConfigurationManager().optimisticUpdate(study, studyConfiguration -> {
             studyConfiguration.getSearchIndexedSampleSetsStatus().put(secIndexId, BatchFileOperation.Status.RUNNING);
             return studyConfiguration;
         });
@@ -732,7 +886,7 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         variantSearchManager.getSolrManager().remove(collection);
 
         // Remove secondary index metadata
-        getStudyConfigurationManager().lockAndUpdate(study, studyConfiguration -> {
+        getStudyConfigurationManager().optimisticUpdate(study, studyConfiguration -> {
             studyConfiguration.getSearchIndexedSampleSetsStatus().remove(secIndexId);
             for (Integer sampleId : sampleIds) {
                 studyConfiguration.getSearchIndexedSampleSets().remove(sampleId);
@@ -808,6 +962,7 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
      * @throws StorageEngineException StorageEngineException
      */
     protected void postRemoveFiles(String study, List<Integer> fileIds, boolean error) throws StorageEngineException {
+        invalidateExistsCache();
         getStudyConfigurationManager().lockAndUpdate(study, studyConfiguration -> {
             if (error) {
                 StudyConfigurationManager.setStatus(studyConfiguration, BatchFileOperation.Status.ERROR, REMOVE_OPERATION_NAME, fileIds);
@@ -932,11 +1087,27 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
     }
 
     public VariantQueryResult<Variant> get(Query query, QueryOptions options) {
+        long start = System.nanoTime();
+        VariantQueryResult<Variant> result;
         try {
-            return (VariantQueryResult<Variant>) getOrIterator(query, options, false);
+            result = (VariantQueryResult<Variant>) getOrIterator(query, options, false);
         } catch (StorageEngineException e) {
             throw VariantQueryException.internalException(e);
         }
+        recordQueryMetrics(query, result.getSource(), System.nanoTime() - start);
+        return result;
+    }
+
+    private void recordQueryMetrics(Query query, String source, long nanos) {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String backend = StringUtils.isEmpty(source) ? getStorageEngineId() : source;
+        metrics.timer("variant_query_seconds", "Variant query latency", "backend", backend).record(nanos, TimeUnit.NANOSECONDS);
+        for (VariantQueryParam param : VariantQueryParam.values()) {
+            if (isValidParam(query, param)) {
+                metrics.timer("variant_query_filter_seconds", "Variant query latency of the queries using each filter",
+                        "backend", backend, "filter", param.key()).record(nanos, TimeUnit.NANOSECONDS);
+            }
+        }
     }
 
     @Override
@@ -971,6 +1142,11 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         } else if (doQuerySearchManager(query, options)) {
             try {
                 if (iterator) {
+                    if (options.getInt(QueryOptions.LIMIT, 0) <= 0) {
+                        // No limit. Use the streaming iterator for exports
+                        int threads = getOptions().getInt(SEARCH_EXPORT_THREADS.key(), SEARCH_EXPORT_THREADS.defaultValue());
+                        return getVariantSearchManager().exportIterator(dbName, query, options, threads);
+                    }
                     return getVariantSearchManager().iterator(dbName, query, options);
                 } else {
                     return getVariantSearchManager().query(dbName, query, options);
@@ -1448,6 +1624,70 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
         }
     }
 
+    /**
+     * Checks if there is any variant matching the query, without counting or returning it.
+     * Negative answers can be cached for {@link Options#EXISTS_NEGATIVE_CACHE_TTL} seconds, as most of the
+     * existence questions (e.g. beacon queries) are for variants that are not in the database. The cache is disabled by default.
+     * Enable it with {@link Options#EXISTS_NEGATIVE_CACHE_SIZE} only if the variants are loaded by this same instance, as the
+     * variants loaded by other processes are not seen until the cached answers expire.
+     *
+     * @param query Query to be executed in the database to filter variants
+     * @return If there is at least one variant matching the query
+     * @throws StorageEngineException if there is any error executing the query
+     */
+    public boolean exists(Query query) throws StorageEngineException {
+        query = preProcessQuery(query, null);
+        Cache<String, Boolean> cache = getExistsNegativeCache();
+        String key = null;
+        if (cache != null) {
+            key = query.toJson();
+            boolean hit = cache.getIfPresent(key) != null;
+            MetricsRegistry.getInstance().counter("cache_requests_total", "Requests to internal caches",
+                    "cache", "variant_exists_negative", "result", hit ? "hit" : "miss").inc();
+            if (hit) {
+                return false;
+            }
+        }
+        boolean exists = getDBAdaptor().exists(query);
+        if (!exists && cache != null) {
+            cache.put(key, Boolean.FALSE);
+        }
+        return exists;
+    }
+
+    /**
+     * Discard the cached negative answers of {@link #exists}. Must be called after any write to the variants.
+     */
+    protected void invalidateExistsCache() {
+        Cache<String, Boolean> cache = existsNegativeCache.get();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    private Cache<String, Boolean> getExistsNegativeCache() {
+        if (existsNegativeCache.get() == null) {
+            ObjectMap options = getOptions();
+            int size = options.getInt(EXISTS_NEGATIVE_CACHE_SIZE.key(), EXISTS_NEGATIVE_CACHE_SIZE.defaultValue());
+            int ttl = options.getInt(EXISTS_NEGATIVE_CACHE_TTL.key(), EXISTS_NEGATIVE_CACHE_TTL.defaultValue());
+            if (size <= 0 || ttl <= 0) {
+                return null;
+            }
+            Counter evictions = MetricsRegistry.getInstance().counter("cache_evictions_total", "Entries evicted from internal caches",
+                    "cache", "variant_exists_negative");
+            existsNegativeCache.compareAndSet(null, CacheBuilder.newBuilder()
+                    .maximumSize(size)
+                    .expireAfterWrite(ttl, TimeUnit.SECONDS)
+                    .<String, Boolean>removalListener(notification -> {
+                        if (notification.wasEvicted()) {
+                            evictions.inc();
+                        }
+                    })
+                    .build());
+        }
+        return existsNegativeCache.get();
+    }
+
     public VariantQueryResult<Long> approximateCount(Query query, QueryOptions options) throws StorageEngineException {
         long count;
         boolean approxCount = true;
@@ -1510,7 +1750,13 @@ public abstract class VariantStorageEngine extends StorageEngine<VariantDBAdapto
 
         FacetQueryResult facetedQueryResult;
         try {
-            facetedQueryResult = getVariantSearchManager().facetedQuery(dbName, query, options);
+            query = preProcessQuery(query, options);
+            if (searchActiveAndAlive()) {
+                facetedQueryResult = getVariantSearchManager().facetedQuery(dbName, query, options);
+            } else {
+                // No search engine, or not available. Compute the facets in the database
+                facetedQueryResult = getDBAdaptor().facet(query, options);
+            }
         } catch (IOException | SolrException | StorageEngineException | VariantSearchException e) {
             throw Throwables.propagate(e);
         }
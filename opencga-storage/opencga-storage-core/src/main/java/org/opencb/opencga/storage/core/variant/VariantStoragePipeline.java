@@ -42,6 +42,7 @@ import org.opencb.commons.run.ParallelTaskRunner;
 import org.opencb.opencga.storage.core.StoragePipeline;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.MetricsTask;
 import org.opencb.opencga.storage.core.io.plain.StringDataReader;
 import org.opencb.opencga.storage.core.io.plain.StringDataWriter;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
@@ -332,7 +333,7 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
             try {
                 ptr = new ParallelTaskRunner<>(
                         dataReader,
-                        taskSupplier,
+                        MetricsTask.wrap("transform", "avro", taskSupplier),
                         dataWriter,
                         config
                 );
@@ -396,7 +397,7 @@ public abstract class VariantStoragePipeline implements StoragePipeline {
             try {
                 ptr = new ParallelTaskRunner<>(
                         dataReader,
-                        taskSupplier,
+                        MetricsTask.wrap("transform", "json", taskSupplier),
                         dataWriter,
                         config
                 );
@@ -23,9 +23,11 @@ import org.opencb.biodata.models.variant.avro.VariantAnnotation;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.commons.datastore.core.result.FacetQueryResult;
 import org.opencb.opencga.core.results.VariantQueryResult;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 
 import java.io.IOException;
@@ -113,6 +115,26 @@ public interface VariantDBAdaptor extends VariantIterable, AutoCloseable {
      */
     QueryResult<Long> count(Query query);
 
+    /**
+     * Checks if there is any variant matching the query. Stops at the first hit, and does not read
+     * any annotation or sample data. Faster than {@link #count} for existence questions, like beacon queries.
+     *
+     * @param query Query to be executed in the database to filter variants
+     * @return If there is at least one variant matching the query
+     */
+    default boolean exists(Query query) {
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, VariantField.ID)
+                .append(QueryOptions.LIMIT, 1)
+                .append(QueryOptions.SKIP_COUNT, true);
+        try (VariantDBIterator iterator = iterator(query, options)) {
+            return iterator.hasNext();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw VariantQueryException.internalException(e);
+        }
+    }
+
     /**
      * Performs a distinct operation of the given field over the returned results.
      *
@@ -149,6 +171,18 @@ public interface VariantDBAdaptor extends VariantIterable, AutoCloseable {
 
     QueryResult groupBy(Query query, List<String> fields, QueryOptions options);
 
+    /**
+     * Fetch facets (i.e., counts) of the variants matching the query, computed by the database itself.
+     * Used when there is no search engine available.
+     *
+     * @param query   Query to be executed in the database to filter variants
+     * @param options Query modifiers, accepted values are: facet fields and facet ranges
+     * @return        A FacetQueryResult with the result of the query
+     */
+    default FacetQueryResult facet(Query query, QueryOptions options) {
+        throw new UnsupportedOperationException("Facet queries not supported by " + getClass().getSimpleName());
+    }
+
     default List<Integer> getReturnedStudies(Query query, QueryOptions options) {
         return VariantQueryUtils.getIncludeStudies(query, options, getStudyConfigurationManager());
     }
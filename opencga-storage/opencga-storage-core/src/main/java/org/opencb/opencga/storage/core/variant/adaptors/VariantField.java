@@ -94,6 +94,7 @@ public enum VariantField {
         RELEASE("release"),
         INDEX_SYNCHRONIZATION("indexSync"),
         INDEX_STUDIES("indexStudies"),
+        INDEX_SYNC_GROUPS("indexSyncGroups"),
         ANNOTATION_ID("annotationId"),
         VARIANT_ID("id");
 
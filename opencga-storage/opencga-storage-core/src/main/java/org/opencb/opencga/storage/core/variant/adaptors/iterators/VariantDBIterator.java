@@ -18,6 +18,7 @@ package org.opencb.opencga.storage.core.variant.adaptors.iterators;
 
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.opencga.core.metrics.MetricsRegistry;
 import org.opencb.opencga.core.results.VariantQueryResult;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.slf4j.Logger;
@@ -36,6 +37,7 @@ public abstract class VariantDBIterator implements Iterator<Variant>, AutoClosea
     protected long timeFetching = 0;
     protected long timeConverting = 0;
     private List<AutoCloseable> closeables = new ArrayList<>();
+    private boolean metricsRecorded = false;
     private final Logger logger = LoggerFactory.getLogger(VariantDBIterator.class);
 
     public VariantDBIterator addCloseable(AutoCloseable closeable) {
@@ -129,11 +131,28 @@ public abstract class VariantDBIterator implements Iterator<Variant>, AutoClosea
 
     @Override
     public void close() throws Exception {
+        recordMetrics();
         for (AutoCloseable closeable : closeables) {
             closeable.close();
         }
     }
 
+    private void recordMetrics() {
+        // Iterators might be closed more than once
+        if (metricsRecorded) {
+            return;
+        }
+        metricsRecorded = true;
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        String iterator = getClass().getSimpleName();
+        metrics.timer("variant_iterator_fetch_seconds", "Time spent fetching data from the backend by the variant iterators",
+                "iterator", iterator).record(getTimeFetching(), TimeUnit.NANOSECONDS);
+        metrics.timer("variant_iterator_convert_seconds", "Time spent converting data into variants by the variant iterators",
+                "iterator", iterator).record(getTimeConverting(), TimeUnit.NANOSECONDS);
+        metrics.counter("variant_iterator_variants_total", "Variants returned by the variant iterators",
+                "iterator", iterator).inc(getCount());
+    }
+
     public static VariantDBIterator emptyIterator() {
         return EMPTY_ITERATOR;
     }
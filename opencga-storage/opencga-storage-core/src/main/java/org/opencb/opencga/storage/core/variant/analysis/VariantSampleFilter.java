@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -37,13 +38,11 @@ import java.util.stream.Collectors;
  */
 public class VariantSampleFilter {
 
-    private final VariantIterable iterable;
-    private int maxVariants;
+    protected final VariantIterable iterable;
     protected final Logger logger = LoggerFactory.getLogger(VariantSampleFilter.class);
 
     public VariantSampleFilter(VariantIterable iterable) {
         this.iterable = iterable;
-        maxVariants = 50;
     }
 
     public Map<String, Set<Variant>> getSamplesInAnyVariants(List<?> variants, String study, List<String> samples, List<String> genotypes) {
@@ -56,31 +55,19 @@ public class VariantSampleFilter {
     }
 
     public Map<String, Set<Variant>> getSamplesInAnyVariants(Query query, List<String> genotypes) {
-
         Map<String, Set<Variant>> map = new HashMap<>();
-        Set<String> samples = new HashSet<>();
 
         Set<String> genotypesSet = new HashSet<>(genotypes);
         List<GenotypeClass> genotypeClasses = getGenotypeClasses(genotypesSet);
+        Predicate<String> validGenotype = gt -> isValidGenotype(genotypesSet, genotypeClasses, gt);
 
-        iterate(query, variant -> {
-            getSamplesSet(variant, samples);
-            for (String sample : samples) {
-                map.put(sample, new HashSet<>());
-            }
-        }, (variant, sample, gt) -> {
-            if (isValidGenotype(genotypesSet, genotypeClasses, gt)) {
-                map.get(sample).add(variant);
+        iterate(query, validGenotype, samples -> { }, (variant, sample, gt) -> {
+            if (validGenotype.test(gt)) {
+                map.computeIfAbsent(sample, s -> new HashSet<>()).add(variant);
             }
             return true;
         });
 
-        for (String sample : samples) {
-            if (map.get(sample).isEmpty()) {
-                map.remove(sample);
-            }
-        }
-
         return map;
     }
 
@@ -97,16 +84,16 @@ public class VariantSampleFilter {
         Set<String> samples = new HashSet<>();
         Set<String> genotypesSet = new HashSet<>(genotypes);
         List<GenotypeClass> genotypeClasses = getGenotypeClasses(genotypesSet);
-        iterate(query, variant -> getSamplesSet(variant, samples),
+        Predicate<String> validGenotype = gt -> isValidGenotype(genotypesSet, genotypeClasses, gt);
+        iterate(query, validGenotype, samples::addAll,
                 (variant, sample, gt) -> {
                     // Remove if not a valid genotype
-                    if (!isValidGenotype(genotypesSet, genotypeClasses, gt)) {
+                    if (!validGenotype.test(gt)) {
                         if (samples.remove(sample)) {
                             logger.debug("variant: {}, sample: {}, gt: {}", variant, sample, gt);
-                            if (sample.isEmpty()) {
-                                return false;
-                            }
                         }
+                        // Stop as soon as there are no more samples to check
+                        return !samples.isEmpty();
                     }
                     return true;
                 });
@@ -114,27 +101,32 @@ public class VariantSampleFilter {
     }
 
     @FunctionalInterface
-    interface GenotypeWalker {
+    protected interface GenotypeWalker {
         boolean accept(Variant variant, String sample, String gt);
     }
 
-    protected void iterate(Query query, Consumer<Variant> init, GenotypeWalker walker) {
+    /**
+     * Walk through the genotypes of the returned samples for all the variants matching the query.
+     * Reads only the GT of the samples, with no limit in the number of variants.
+     *
+     * @param query         Query to execute. Must contain only one returned study
+     * @param validGenotype Genotypes accepted by the walker. Implementations may use it to avoid reading genotypes that
+     *                      can not match.
+     * @param init          Called with the list of returned samples before the first variant. Not called if there are no variants.
+     * @param walker        Called for each variant and sample. Returning false stops the iteration.
+     */
+    protected void iterate(Query query, Predicate<String> validGenotype, Consumer<Collection<String>> init, GenotypeWalker walker) {
+        query = new Query(query).append(VariantQueryParam.INCLUDE_FORMAT.key(), "GT");
         QueryOptions options = new QueryOptions()
-                .append(QueryOptions.INCLUDE, Collections.singletonList(VariantField.STUDIES_SAMPLES_DATA))
-                .append(QueryOptions.LIMIT, maxVariants + 1);
+                .append(QueryOptions.INCLUDE, Collections.singletonList(VariantField.STUDIES_SAMPLES_DATA));
         try (VariantDBIterator iterator = iterable.iterator(query, options)) {
-            if (!iterator.hasNext()) {
-                return;
-            }
-            int numVariants = 0;
+            boolean first = true;
             while (iterator.hasNext()) {
                 Variant variant = iterator.next();
-                if (numVariants == 0) {
-                    init.accept(variant);
-                } else if (numVariants == maxVariants) {
-                    throw new VariantQueryException("Error! Limit reached with more than " + maxVariants + " variants!");
+                if (first) {
+                    init.accept(getSamplesSet(variant, new HashSet<>()));
+                    first = false;
                 }
-                numVariants++;
                 StudyEntry studyEntry = variant.getStudies().get(0);
                 Integer gtIdx = studyEntry.getFormatPositions().get("GT");
                 if (gtIdx == null || gtIdx < 0) {
@@ -145,7 +137,7 @@ public class VariantSampleFilter {
                 for (String sample : studyEntry.getOrderedSamplesName()) {
                     String gt = studyEntry.getSamplesData().get(sampleIdx).get(gtIdx);
                     if (!walker.accept(variant, sample, gt)) {
-                        break;
+                        return;
                     }
                     sampleIdx++;
                 }
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.analysis.ibs;
+
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Pairwise identity by state of a list of samples.
+ * <p>
+ * Genotypes are received in {@link IbsGenotypeBlock}s. For each block, the pairs of samples are tiled in square tiles of
+ * {@code tileSize} x {@code tileSize} samples, and each tile is processed in parallel comparing the genotype bit vectors of
+ * the samples, 64 sites at a time. Multi-allelic sites are compared allele by allele. Counts are accumulated between blocks.
+ */
+public class IbsEngine implements Consumer<IbsGenotypeBlock>, AutoCloseable {
+
+    private final List<String> samples;
+    private final int numSamples;
+    private final int tileSize;
+    private final ExecutorService executor;
+
+    // Counts per pair of samples, indexed by #pairIndex
+    private final int[] ibs0;
+    private final int[] ibs1;
+    private final int[] ibs2;
+    private final int[] hetHet;
+    private final int[] het1;
+    private final int[] het2;
+
+    private long sites = 0;
+    private int blocks = 0;
+    private final Logger logger = LoggerFactory.getLogger(IbsEngine.class);
+
+    public IbsEngine(List<String> samples, int threads, int tileSize) {
+        if (samples.size() < 2) {
+            throw new IllegalArgumentException("At least two samples are required to compute the identity by state");
+        }
+        long numPairs = ((long) samples.size()) * (samples.size() - 1) / 2;
+        if (numPairs > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many samples: " + samples.size());
+        }
+        this.samples = samples;
+        this.numSamples = samples.size();
+        this.tileSize = Math.max(1, tileSize);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        ibs0 = new int[(int) numPairs];
+        ibs1 = new int[(int) numPairs];
+        ibs2 = new int[(int) numPairs];
+        hetHet = new int[(int) numPairs];
+        het1 = new int[(int) numPairs];
+        het2 = new int[(int) numPairs];
+    }
+
+    /**
+     * Add the counts of a block of sites. The samples of the block must be in the same order as in the engine.
+     *
+     * @param block Genotypes block
+     */
+    @Override
+    public void accept(IbsGenotypeBlock block) {
+        if (block.getNumSamples() != numSamples) {
+            throw new IllegalArgumentException("Expected " + numSamples + " samples, got " + block.getNumSamples());
+        }
+        if (block.getNumSites() == 0) {
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (int tile1 = 0; tile1 < numSamples; tile1 += tileSize) {
+            for (int tile2 = tile1; tile2 < numSamples; tile2 += tileSize) {
+                int start1 = tile1;
+                int start2 = tile2;
+                futures.add(executor.submit(() -> processTile(block, start1, start2)));
+            }
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Throwables.propagate(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        sites += block.getNumSites();
+        blocks++;
+        logger.debug("Processed block of {} sites. Total sites: {}", block.getNumSites(), sites);
+    }
+
+    private void processTile(IbsGenotypeBlock block, int start1, int start2) {
+        int end1 = Math.min(start1 + tileSize, numSamples);
+        int end2 = Math.min(start2 + tileSize, numSamples);
+        int words = (block.getNumSites() + Long.SIZE - 1) / Long.SIZE;
+        long[] multiAllelic = block.getMultiAllelic();
+        for (int i = start1; i < end1; i++) {
+            long[] h1 = block.getHet(i);
+            long[] a1 = block.getHomAlt(i);
+            long[] m1 = block.getMissing(i);
+            for (int j = Math.max(i + 1, start2); j < end2; j++) {
+                long[] h2 = block.getHet(j);
+                long[] a2 = block.getHomAlt(j);
+                long[] m2 = block.getMissing(j);
+                int n0 = 0;
+                int n2 = 0;
+                int n = 0;
+                int nHetHet = 0;
+                int nHet1 = 0;
+                int nHet2 = 0;
+                for (int w = 0; w < words; w++) {
+                    long valid = ~(m1[w] | m2[w] | multiAllelic[w]) & block.siteMask(w);
+                    long r1 = ~(h1[w] | a1[w]);
+                    long r2 = ~(h2[w] | a2[w]);
+                    n += Long.bitCount(valid);
+                    n0 += Long.bitCount((a1[w] & r2 | r1 & a2[w]) & valid);
+                    n2 += Long.bitCount((a1[w] & a2[w] | h1[w] & h2[w] | r1 & r2) & valid);
+                    nHetHet += Long.bitCount(h1[w] & h2[w]);
+                    nHet1 += Long.bitCount(h1[w] & valid);
+                    nHet2 += Long.bitCount(h2[w] & valid);
+                }
+                for (int[] genotypes : block.getMultiAllelicGenotypes()) {
+                    int gt1 = genotypes[i];
+                    int gt2 = genotypes[j];
+                    if (gt1 == IbsGenotypeBlock.MISSING || gt2 == IbsGenotypeBlock.MISSING) {
+                        continue;
+                    }
+                    n++;
+                    int shared = IbsGenotypeBlock.sharedAlleles(gt1, gt2);
+                    if (shared == 0) {
+                        n0++;
+                    } else if (shared == 2) {
+                        n2++;
+                    }
+                    boolean isHet1 = IbsGenotypeBlock.isHet(gt1);
+                    boolean isHet2 = IbsGenotypeBlock.isHet(gt2);
+                    if (isHet1) {
+                        nHet1++;
+                    }
+                    if (isHet2) {
+                        nHet2++;
+                    }
+                    if (isHet1 && isHet2) {
+                        nHetHet++;
+                    }
+                }
+                int idx = pairIndex(i, j);
+                ibs0[idx] += n0;
+                ibs1[idx] += n - n0 - n2;
+                ibs2[idx] += n2;
+                hetHet[idx] += nHetHet;
+                het1[idx] += nHet1;
+                het2[idx] += nHet2;
+            }
+        }
+    }
+
+    int pairIndex(int i, int j) {
+        // Position of (i, j) in the upper triangle of the matrix, without the diagonal
+        return (int) (((long) i) * numSamples - ((long) i) * (i + 1) / 2 + (j - i - 1));
+    }
+
+    public IbsResult getResult(int i, int j) {
+        int idx = pairIndex(i, j);
+        return new IbsResult(samples.get(i), samples.get(j), ibs0[idx], ibs1[idx], ibs2[idx], hetHet[idx], het1[idx], het2[idx]);
+    }
+
+    public List<IbsResult> getResults() {
+        List<IbsResult> results = new ArrayList<>(ibs0.length);
+        for (int i = 0; i < numSamples; i++) {
+            for (int j = i + 1; j < numSamples; j++) {
+                results.add(getResult(i, j));
+            }
+        }
+        return results;
+    }
+
+    public void write(OutputStream os) throws IOException {
+        PrintStream out = new PrintStream(os);
+        out.println(IbsResult.HEADER);
+        for (int i = 0; i < numSamples; i++) {
+            for (int j = i + 1; j < numSamples; j++) {
+                out.println(getResult(i, j).toLine());
+            }
+        }
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("Error writing identity by state results");
+        }
+    }
+
+    public List<String> getSamples() {
+        return samples;
+    }
+
+    public long getSites() {
+        return sites;
+    }
+
+    public int getBlocks() {
+        return blocks;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.analysis.ibs;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Genotypes of a set of samples over a block of sites.
+ * <p>
+ * Biallelic sites are stored as bit vectors. Each sample has one bit vector for heterozygous, one for homozygous alternate and
+ * one for missing genotypes. Any biallelic site not set in any of the vectors is homozygous reference.
+ * <p>
+ * Sites where any sample has an allele other than the reference or the main alternate (e.g. 0/2, 1/2) can not be described
+ * with these classes, as 1/2 and 2/2 are both non reference but only share one allele. These sites are marked in a separate
+ * mask, and their genotypes are stored as they are, to be compared allele by allele.
+ */
+public class IbsGenotypeBlock {
+
+    /**
+     * Genotypes are encoded as an int with the lowest allele in the upper 16 bits and the highest allele in the lower 16 bits.
+     */
+    public static final int HOM_REF = 0;
+    public static final int HET = 1;
+    public static final int HOM_ALT = 1 << 16 | 1;
+    public static final int MISSING = -1;
+
+    private static final int ALLELE_MASK = 0xFFFF;
+
+    private final int numSites;
+    private final long[][] het;
+    private final long[][] homAlt;
+    private final long[][] missing;
+    private final long[] multiAllelic;
+    private final int[][] multiAllelicGenotypes;
+
+    IbsGenotypeBlock(int numSites, long[][] het, long[][] homAlt, long[][] missing, long[] multiAllelic,
+                     int[][] multiAllelicGenotypes) {
+        this.numSites = numSites;
+        this.het = het;
+        this.homAlt = homAlt;
+        this.missing = missing;
+        this.multiAllelic = multiAllelic;
+        this.multiAllelicGenotypes = multiAllelicGenotypes;
+    }
+
+    public int getNumSites() {
+        return numSites;
+    }
+
+    public int getNumSamples() {
+        return het.length;
+    }
+
+    long[] getHet(int sample) {
+        return het[sample];
+    }
+
+    long[] getHomAlt(int sample) {
+        return homAlt[sample];
+    }
+
+    long[] getMissing(int sample) {
+        return missing[sample];
+    }
+
+    long[] getMultiAllelic() {
+        return multiAllelic;
+    }
+
+    /**
+     * Genotypes of the multi-allelic sites. One array per site, with one genotype per sample.
+     *
+     * @return Genotypes of the multi-allelic sites
+     */
+    int[][] getMultiAllelicGenotypes() {
+        return multiAllelicGenotypes;
+    }
+
+    /**
+     * Mask of the valid sites for the given word. Only the last word might not be complete.
+     *
+     * @param word Word index
+     * @return Mask with the bits of the existing sites
+     */
+    long siteMask(int word) {
+        int remaining = numSites - word * Long.SIZE;
+        return remaining >= Long.SIZE ? -1L : (1L << remaining) - 1;
+    }
+
+    /**
+     * Encode a genotype. Haploid genotypes are treated as homozygous, and genotypes with more than two alleles are reduced to
+     * their lowest and highest alleles.
+     *
+     * @param gt Genotype. e.g. 0/1, 1|1, ./., 1
+     * @return Encoded genotype, or {@link #MISSING}
+     */
+    public static int genotype(String gt) {
+        if (gt == null || gt.isEmpty()) {
+            return MISSING;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = -1;
+        int allele = 0;
+        int start = 0;
+        for (int i = 0; i <= gt.length(); i++) {
+            if (i == gt.length() || gt.charAt(i) == '/' || gt.charAt(i) == '|') {
+                if (i == start) {
+                    return MISSING;
+                }
+                min = Math.min(min, allele);
+                max = Math.max(max, allele);
+                allele = 0;
+                start = i + 1;
+            } else {
+                char c = gt.charAt(i);
+                if (c < '0' || c > '9') {
+                    // Missing allele, '.' or '-1'
+                    return MISSING;
+                }
+                allele = Math.min(Short.MAX_VALUE, allele * 10 + c - '0');
+            }
+        }
+        return genotype(min, max);
+    }
+
+    public static int genotype(int allele1, int allele2) {
+        return Math.min(allele1, allele2) << 16 | Math.max(allele1, allele2);
+    }
+
+    static boolean isHet(int genotype) {
+        return genotype != MISSING && genotype >>> 16 != (genotype & ALLELE_MASK);
+    }
+
+    /**
+     * Number of alleles shared by two non missing genotypes.
+     *
+     * @param genotype1 First genotype
+     * @param genotype2 Second genotype
+     * @return 0, 1 or 2
+     */
+    static int sharedAlleles(int genotype1, int genotype2) {
+        int a1 = genotype1 >>> 16;
+        int b1 = genotype1 & ALLELE_MASK;
+        int a2 = genotype2 >>> 16;
+        int b2 = genotype2 & ALLELE_MASK;
+        if (a1 == a2) {
+            return b1 == b2 ? 2 : 1;
+        } else {
+            // Alleles are sorted, so only one of them can match
+            return a1 == b2 || b1 == a2 || b1 == b2 ? 1 : 0;
+        }
+    }
+
+    /**
+     * Accumulates the genotypes of a block. Sites are indexed in order of appearance.
+     * <p>
+     * Only sites with at least one non reference genotype should be added, as any other site would count as an IBS2
+     * match for all the pairs of samples.
+     */
+    public static class Builder {
+        private final int numSamples;
+        private final Map<String, Integer> sites = new HashMap<>();
+        // Per sample, site index and genotype packed in one long
+        private final long[][] entries;
+        private final int[] sizes;
+
+        public Builder(int numSamples) {
+            this.numSamples = numSamples;
+            entries = new long[numSamples][];
+            sizes = new int[numSamples];
+            for (int i = 0; i < numSamples; i++) {
+                entries[i] = new long[16];
+            }
+        }
+
+        public Builder add(int sample, String variant, int genotype) {
+            Integer site = sites.get(variant);
+            if (site == null) {
+                site = sites.size();
+                sites.put(variant, site);
+            }
+            if (genotype != HOM_REF) {
+                if (sizes[sample] == entries[sample].length) {
+                    entries[sample] = Arrays.copyOf(entries[sample], sizes[sample] * 2);
+                }
+                entries[sample][sizes[sample]++] = ((long) site) << 32 | (genotype & 0xFFFFFFFFL);
+            }
+            return this;
+        }
+
+        public int getNumSites() {
+            return sites.size();
+        }
+
+        public boolean isEmpty() {
+            return sites.isEmpty();
+        }
+
+        public IbsGenotypeBlock build() {
+            int numSites = sites.size();
+            int words = (numSites + Long.SIZE - 1) / Long.SIZE;
+
+            // Index the multi-allelic sites
+            int[] multiAllelicIndex = new int[numSites];
+            int numMultiAllelic = 0;
+            for (int sample = 0; sample < numSamples; sample++) {
+                for (int i = 0; i < sizes[sample]; i++) {
+                    int genotype = (int) entries[sample][i];
+                    int site = (int) (entries[sample][i] >>> 32);
+                    if (genotype != MISSING && (genotype & ALLELE_MASK) > 1 && multiAllelicIndex[site] == 0) {
+                        multiAllelicIndex[site] = ++numMultiAllelic;
+                    }
+                }
+            }
+
+            long[][] het = new long[numSamples][words];
+            long[][] homAlt = new long[numSamples][words];
+            long[][] missing = new long[numSamples][words];
+            long[] multiAllelic = new long[words];
+            // Samples without entry are hom-ref
+            int[][] multiAllelicGenotypes = new int[numMultiAllelic][numSamples];
+            for (int sample = 0; sample < numSamples; sample++) {
+                for (int i = 0; i < sizes[sample]; i++) {
+                    int genotype = (int) entries[sample][i];
+                    int site = (int) (entries[sample][i] >>> 32);
+                    long bit = 1L << (site & (Long.SIZE - 1));
+                    int word = site / Long.SIZE;
+                    if (multiAllelicIndex[site] > 0) {
+                        multiAllelic[word] |= bit;
+                        multiAllelicGenotypes[multiAllelicIndex[site] - 1][sample] = genotype;
+                        continue;
+                    }
+                    switch (genotype) {
+                        case HET:
+                            het[sample][word] |= bit;
+                            break;
+                        case HOM_ALT:
+                            homAlt[sample][word] |= bit;
+                            break;
+                        case MISSING:
+                            missing[sample][word] |= bit;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+            return new IbsGenotypeBlock(numSites, het, homAlt, missing, multiAllelic, multiAllelicGenotypes);
+        }
+    }
+}
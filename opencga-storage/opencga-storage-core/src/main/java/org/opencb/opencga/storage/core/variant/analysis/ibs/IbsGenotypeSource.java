@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.analysis.ibs;
+
+import org.opencb.biodata.models.core.Region;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Source of genotypes for the {@link IbsEngine}.
+ */
+public interface IbsGenotypeSource {
+
+    /**
+     * Read the genotypes of the given samples, in blocks of sites. Each site must be contained in only one block, and
+     * only sites with at least one non reference genotype among the given samples should be included.
+     *
+     * @param regions  Regions to read. Read all the genome if empty
+     * @param samples  Samples to read. The samples of each block must be in this order
+     * @param consumer Blocks consumer
+     * @throws IOException on error reading the genotypes
+     */
+    void read(List<Region> regions, List<String> samples, Consumer<IbsGenotypeBlock> consumer) throws IOException;
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.analysis.ibs;
+
+/**
+ * Identity by state counts of a pair of samples.
+ * <p>
+ * Only sites where both samples have a called genotype are counted.
+ */
+public class IbsResult {
+
+    public static final String HEADER = "#SAMPLE_1\tSAMPLE_2\tSITES\tIBS0\tIBS1\tIBS2\tHET_HET\tHET_1\tHET_2\tDST\tKINSHIP";
+
+    private final String sample1;
+    private final String sample2;
+    private final long ibs0;
+    private final long ibs1;
+    private final long ibs2;
+    private final long hetHet;
+    private final long het1;
+    private final long het2;
+
+    public IbsResult(String sample1, String sample2, long ibs0, long ibs1, long ibs2, long hetHet, long het1, long het2) {
+        this.sample1 = sample1;
+        this.sample2 = sample2;
+        this.ibs0 = ibs0;
+        this.ibs1 = ibs1;
+        this.ibs2 = ibs2;
+        this.hetHet = hetHet;
+        this.het1 = het1;
+        this.het2 = het2;
+    }
+
+    public String getSample1() {
+        return sample1;
+    }
+
+    public String getSample2() {
+        return sample2;
+    }
+
+    public long getSites() {
+        return ibs0 + ibs1 + ibs2;
+    }
+
+    public long getIbs0() {
+        return ibs0;
+    }
+
+    public long getIbs1() {
+        return ibs1;
+    }
+
+    public long getIbs2() {
+        return ibs2;
+    }
+
+    /**
+     * @return Number of sites where both samples are heterozygous
+     */
+    public long getHetHet() {
+        return hetHet;
+    }
+
+    public long getHet1() {
+        return het1;
+    }
+
+    public long getHet2() {
+        return het2;
+    }
+
+    /**
+     * @return IBS distance, as (IBS2 + 0.5 * IBS1) / SITES
+     */
+    public double getDistance() {
+        long sites = getSites();
+        return sites == 0 ? 0 : (ibs2 + 0.5 * ibs1) / sites;
+    }
+
+    /**
+     * KING-robust kinship coefficient. Around 0.5 for duplicates or monozygotic twins, 0.25 for first degree relatives,
+     * 0.125 for second degree, and 0 or negative for unrelated samples.
+     *
+     * @return Kinship coefficient, as (HET_HET - 2 * IBS0) / (HET_1 + HET_2)
+     */
+    public double getKinship() {
+        long hets = het1 + het2;
+        return hets == 0 ? 0 : (hetHet - 2.0 * ibs0) / hets;
+    }
+
+    public IbsResult merge(IbsResult other) {
+        return new IbsResult(sample1, sample2, ibs0 + other.ibs0, ibs1 + other.ibs1, ibs2 + other.ibs2,
+                hetHet + other.hetHet, het1 + other.het1, het2 + other.het2);
+    }
+
+    public String toLine() {
+        return sample1 + '\t' + sample2 + '\t' + getSites() + '\t' + ibs0 + '\t' + ibs1 + '\t' + ibs2 + '\t'
+                + hetHet + '\t' + het1 + '\t' + het2 + '\t' + String.format("%.5f", getDistance()) + '\t'
+                + String.format("%.5f", getKinship());
+    }
+
+    @Override
+    public String toString() {
+        return "IbsResult{"
+                + "sample1='" + sample1 + '\''
+                + ", sample2='" + sample2 + '\''
+                + ", ibs0=" + ibs0
+                + ", ibs1=" + ibs1
+                + ", ibs2=" + ibs2
+                + ", hetHet=" + hetHet
+                + ", het1=" + het1
+                + ", het2=" + het2
+                + ", kinship=" + getKinship()
+                + '}';
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.analysis.ibs;
+
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantIterable;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
+
+/**
+ * Reads the genotypes from any {@link VariantIterable}, e.g. a VariantDBAdaptor.
+ * <p>
+ * Variants are read once, including only the GT of the given samples. Blocks are emitted every {@code blockSize} sites.
+ */
+public class VariantIterableIbsGenotypeSource implements IbsGenotypeSource {
+
+    private final VariantIterable iterable;
+    private final String study;
+    private final int blockSize;
+
+    public VariantIterableIbsGenotypeSource(VariantIterable iterable, String study, int blockSize) {
+        this.iterable = iterable;
+        this.study = study;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public void read(List<Region> regions, List<String> samples, Consumer<IbsGenotypeBlock> consumer) throws IOException {
+        Query query = new Query(STUDY.key(), study)
+                .append(INCLUDE_STUDY.key(), study)
+                .append(INCLUDE_SAMPLE.key(), samples)
+                .append(INCLUDE_FORMAT.key(), "GT");
+        if (regions != null && !regions.isEmpty()) {
+            query.append(REGION.key(), regions);
+        }
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, Collections.singletonList(VariantField.STUDIES_SAMPLES_DATA));
+
+        Map<String, Integer> samplesPosition = new HashMap<>();
+        for (int i = 0; i < samples.size(); i++) {
+            samplesPosition.put(samples.get(i), i);
+        }
+        int[] positions = null;
+        int[] genotypes = new int[samples.size()];
+
+        IbsGenotypeBlock.Builder builder = new IbsGenotypeBlock.Builder(samples.size());
+        try (VariantDBIterator iterator = iterable.iterator(query, options)) {
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                StudyEntry studyEntry = variant.getStudies().get(0);
+                Integer gtIdx = studyEntry.getFormatPositions().get("GT");
+                if (gtIdx == null || gtIdx < 0) {
+                    throw new VariantQueryException("Missing GT at variant " + variant);
+                }
+                if (positions == null) {
+                    // Samples are returned in the same order for all the variants
+                    positions = new int[samples.size()];
+                    int i = 0;
+                    for (String sample : studyEntry.getOrderedSamplesName()) {
+                        Integer position = samplesPosition.get(sample);
+                        if (position == null) {
+                            throw new VariantQueryException("Unexpected sample " + sample + " at variant " + variant);
+                        }
+                        positions[i++] = position;
+                    }
+                }
+
+                boolean nonRef = false;
+                List<List<String>> samplesData = studyEntry.getSamplesData();
+                for (int i = 0; i < samplesData.size(); i++) {
+                    int genotype = IbsGenotypeBlock.genotype(samplesData.get(i).get(gtIdx));
+                    genotypes[positions[i]] = genotype;
+                    nonRef |= genotype != IbsGenotypeBlock.HOM_REF && genotype != IbsGenotypeBlock.MISSING;
+                }
+                if (nonRef) {
+                    String id = variant.toString();
+                    for (int i = 0; i < genotypes.length; i++) {
+                        builder.add(i, id, genotypes[i]);
+                    }
+                    if (builder.getNumSites() >= blockSize) {
+                        consumer.accept(builder.build());
+                        builder = new IbsGenotypeBlock.Builder(samples.size());
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        if (!builder.isEmpty()) {
+            consumer.accept(builder.build());
+        }
+    }
+}
@@ -40,6 +40,7 @@ import org.opencb.commons.run.ParallelTaskRunner;
 import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.core.common.UriUtils;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.ProjectMetadata;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
@@ -175,6 +176,16 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
             numThreads = params.getInt(NUM_THREADS, numThreads);
         }
 
+        VariantAnnotationCache cache = openCache(params);
+        byte[] namespace;
+        try {
+            namespace = cache == null ? null : buildCacheNamespace();
+        } catch (VariantAnnotatorException | RuntimeException e) {
+            cache.close();
+            throw e;
+        }
+        AtomicLong cachedAnnotations = new AtomicLong();
+
         try {
             DataReader<Variant> variantDataReader = new VariantDBReader(dbAdaptor, query, iteratorQueryOptions);
             ProgressLogger progressLogger;
@@ -193,7 +204,11 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
                 List<VariantAnnotation> variantAnnotationList;
                 long start = System.currentTimeMillis();
                 logger.debug("Annotating batch of {} genomic variants.", variantList.size());
-                variantAnnotationList = variantAnnotator.annotate(variantList);
+                if (cache == null) {
+                    variantAnnotationList = variantAnnotator.annotate(variantList);
+                } else {
+                    variantAnnotationList = annotateWithCache(variantList, cache, namespace, cachedAnnotations);
+                }
                 progressLogger.increment(variantList.size(),
                         () -> ", up to position " + variantList.get(variantList.size() - 1).toString());
                 numAnnotationsToLoad.addAndGet(variantList.size());
@@ -220,11 +235,84 @@ public class DefaultVariantAnnotationManager extends VariantAnnotationManager {
             parallelTaskRunner.run();
         } catch (ExecutionException e) {
             throw new VariantAnnotatorException("Error creating annotations", e);
+        } finally {
+            if (cache != null) {
+                logger.info("Read {} annotations from the annotation cache {}", cachedAnnotations.get(), cache.getPath());
+                cache.close();
+            }
         }
 
         return fileUri;
     }
 
+    private VariantAnnotationCache openCache(ObjectMap params) {
+        String cacheDir = params == null ? null : params.getString(ANNOTATOR_CACHE_DIR);
+        if (StringUtils.isEmpty(cacheDir)) {
+            return null;
+        }
+        try {
+            return VariantAnnotationCache.open(Paths.get(cacheDir));
+        } catch (IOException | RuntimeException e) {
+            // The cache is only an optimization. Do not fail if it is in use by another process
+            logger.warn("Unable to open the annotation cache " + cacheDir + ". Annotating without cache", e);
+            return null;
+        }
+    }
+
+    private byte[] buildCacheNamespace() throws VariantAnnotatorException {
+        ProjectMetadata projectMetadata = dbAdaptor.getStudyConfigurationManager().getProjectMetadata().first();
+        try {
+            return VariantAnnotationCache.buildNamespace(projectMetadata.getSpecies(), projectMetadata.getAssembly(),
+                    variantAnnotator.getVariantAnnotatorProgram(), variantAnnotator.getVariantAnnotatorSourceVersion(),
+                    variantAnnotator.getVariantAnnotatorOptions());
+        } catch (IOException e) {
+            throw new VariantAnnotatorException("Error reading current annotation metadata!", e);
+        }
+    }
+
+    /**
+     * Annotate a batch of variants, reading from the cache the annotations already generated by the same annotator.
+     * Only the variants missing in the cache are sent to the {@link VariantAnnotator}.
+     * Annotations are returned in the same order as the variants.
+     */
+    private List<VariantAnnotation> annotateWithCache(List<Variant> variants, VariantAnnotationCache cache, byte[] namespace,
+                                                      AtomicLong cachedAnnotations)
+            throws VariantAnnotatorException {
+        try {
+            List<Variant> missing = new ArrayList<>();
+            List<VariantAnnotation> cached = cache.get(namespace, variants, missing);
+            cachedAnnotations.addAndGet(cached.size());
+            if (missing.isEmpty()) {
+                return cached;
+            }
+            List<VariantAnnotation> newAnnotations = variantAnnotator.annotate(missing);
+            cache.put(namespace, missing, newAnnotations);
+
+            // Merge both lists. The annotator may skip some of the missing variants
+            List<VariantAnnotation> annotations = new ArrayList<>(cached.size() + newAnnotations.size());
+            Iterator<VariantAnnotation> cachedIterator = cached.iterator();
+            Iterator<Variant> missingIterator = missing.iterator();
+            Variant nextMissing = missingIterator.next();
+            int newIdx = 0;
+            for (Variant variant : variants) {
+                if (variant == nextMissing) {
+                    if (newIdx < newAnnotations.size() && VariantAnnotationCache.sameVariant(variant, newAnnotations.get(newIdx))) {
+                        annotations.add(newAnnotations.get(newIdx));
+                        newIdx++;
+                    }
+                    nextMissing = missingIterator.hasNext() ? missingIterator.next() : null;
+                } else {
+                    annotations.add(cachedIterator.next());
+                }
+            }
+            // Do not lose annotations in an unexpected order
+            annotations.addAll(newAnnotations.subList(newIdx, newAnnotations.size()));
+            return annotations;
+        } catch (IOException e) {
+            throw new VariantAnnotatorException("Error accessing the annotation cache " + cache.getPath(), e);
+        }
+    }
+
     protected QueryOptions getIteratorQueryOptions(Query query, ObjectMap params) {
         QueryOptions iteratorQueryOptions;
         if (params == null) {
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.annotation;
+
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.VariantAnnotation;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.core.metrics.Counter;
+import org.opencb.opencga.core.metrics.MetricsRegistry;
+import org.opencb.opencga.storage.core.metadata.ProjectMetadata;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Local on-disk cache of variant annotations, backed by an embedded RocksDB.
+ * <p>
+ * Annotations are stored as Avro binary, keyed by a namespace and the variant. The namespace is a hash of everything that may
+ * change the content of the annotation: species, assembly, annotator program, annotator source version, annotator parameters and
+ * the schema of {@link VariantAnnotation}. Therefore, the same cache can be shared by projects annotated with different annotators,
+ * and a new annotator version never reads annotations generated by the previous one.
+ * <p>
+ * Only one process can open a cache directory at a time. Instances are shared within the JVM, and must be closed after use.
+ */
+public final class VariantAnnotationCache implements AutoCloseable {
+
+    private static final byte SEPARATOR = '|';
+    private static final Map<Path, VariantAnnotationCache> OPEN_CACHES = new HashMap<>();
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private final Path path;
+    private final Options options;
+    private final RocksDB db;
+    private int references = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // Entries are never evicted, so there are no eviction metrics
+    private final Counter hitsMetric = MetricsRegistry.getInstance().counter("cache_requests_total", "Requests to internal caches",
+            "cache", "variant_annotation", "result", "hit");
+    private final Counter missesMetric = MetricsRegistry.getInstance().counter("cache_requests_total", "Requests to internal caches",
+            "cache", "variant_annotation", "result", "miss");
+
+    private static Logger logger = LoggerFactory.getLogger(VariantAnnotationCache.class);
+
+    private VariantAnnotationCache(Path path) throws IOException {
+        this.path = path;
+        Files.createDirectories(path);
+        options = new Options().setCreateIfMissing(true);
+        try {
+            db = RocksDB.open(options, path.toString());
+        } catch (RocksDBException e) {
+            options.close();
+            throw new IOException("Unable to open variant annotation cache at " + path, e);
+        }
+    }
+
+    /**
+     * Open the cache at the given directory, or get the instance already opened in this JVM.
+     *
+     * @param path Cache directory. Created if missing.
+     * @return Open cache
+     * @throws IOException if the cache can not be opened, e.g. if it is in use by another process.
+     */
+    public static VariantAnnotationCache open(Path path) throws IOException {
+        Path normalizedPath = path.toAbsolutePath().normalize();
+        synchronized (OPEN_CACHES) {
+            VariantAnnotationCache cache = OPEN_CACHES.get(normalizedPath);
+            if (cache == null) {
+                cache = new VariantAnnotationCache(normalizedPath);
+                OPEN_CACHES.put(normalizedPath, cache);
+            }
+            cache.references++;
+            return cache;
+        }
+    }
+
+    /**
+     * Build the namespace identifying the annotations generated by one annotator.
+     *
+     * @param species          Species
+     * @param assembly         Assembly
+     * @param annotator        Annotator program
+     * @param sourceVersion    Annotator source version
+     * @param annotatorOptions Annotator options modifying the annotation content
+     * @return Namespace
+     */
+    public static byte[] buildNamespace(String species, String assembly, ProjectMetadata.VariantAnnotatorProgram annotator,
+                                        List<ObjectMap> sourceVersion, ObjectMap annotatorOptions) {
+        StringBuilder sb = new StringBuilder()
+                .append(species).append(SEPARATOR)
+                .append(assembly).append(SEPARATOR)
+                .append(annotator.getName()).append(SEPARATOR)
+                .append(annotator.getVersion()).append(SEPARATOR)
+                .append(annotator.getCommit()).append(SEPARATOR);
+        if (sourceVersion != null) {
+            sb.append(sourceVersion.stream().map(ObjectMap::toJson).collect(Collectors.joining(",")));
+        }
+        sb.append(SEPARATOR);
+        if (annotatorOptions != null) {
+            // Sort keys to get a stable namespace
+            new TreeMap<>(annotatorOptions).forEach((key, value) -> sb.append(key).append('=').append(value).append(','));
+        }
+        sb.append(SEPARATOR);
+        sb.append(SchemaNormalization.parsingFingerprint64(VariantAnnotation.getClassSchema()));
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            byte[] namespace = Arrays.copyOf(digest, digest.length + 1);
+            namespace[digest.length] = SEPARATOR;
+            return namespace;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // This should never happen!
+        }
+    }
+
+    /**
+     * Get the cached annotations for a list of variants.
+     *
+     * @param namespace Annotations namespace. See {@link #buildNamespace}
+     * @param variants  Variants to read
+     * @param missing   Output list with the variants not found in the cache, in the same order
+     * @return Cached annotations
+     * @throws IOException if there is an error reading from the cache
+     */
+    public List<VariantAnnotation> get(byte[] namespace, List<Variant> variants, List<Variant> missing) throws IOException {
+        List<VariantAnnotation> annotations = new ArrayList<>(variants.size());
+        SpecificDatumReader<VariantAnnotation> datumReader = new SpecificDatumReader<>(VariantAnnotation.class);
+        BinaryDecoder decoder = null;
+        try {
+            for (Variant variant : variants) {
+                byte[] value = db.get(buildKey(namespace, variant));
+                if (value == null) {
+                    missing.add(variant);
+                } else {
+                    decoder = DecoderFactory.get().binaryDecoder(value, decoder);
+                    annotations.add(datumReader.read(null, decoder));
+                }
+            }
+        } catch (RocksDBException e) {
+            throw new IOException("Error reading from variant annotation cache " + path, e);
+        }
+        hits.addAndGet(annotations.size());
+        misses.addAndGet(variants.size() - annotations.size());
+        hitsMetric.inc(annotations.size());
+        missesMetric.inc(variants.size() - annotations.size());
+        return annotations;
+    }
+
+    /**
+     * Add to the cache the annotations generated for a list of variants. Annotators may skip some variants, so the annotations are
+     * matched with the variants by position and alleles.
+     *
+     * @param namespace   Annotations namespace. See {@link #buildNamespace}
+     * @param variants    Annotated variants
+     * @param annotations Annotations, in the same order as the variants
+     * @throws IOException if there is an error writing into the cache
+     */
+    public void put(byte[] namespace, List<Variant> variants, List<VariantAnnotation> annotations) throws IOException {
+        SpecificDatumWriter<VariantAnnotation> datumWriter = new SpecificDatumWriter<>(VariantAnnotation.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = null;
+        Iterator<Variant> iterator = variants.iterator();
+        try (WriteBatch batch = new WriteBatch(); WriteOptions writeOptions = new WriteOptions()) {
+            for (VariantAnnotation annotation : annotations) {
+                Variant variant = null;
+                while (iterator.hasNext()) {
+                    Variant next = iterator.next();
+                    if (sameVariant(next, annotation)) {
+                        variant = next;
+                        break;
+                    }
+                }
+                if (variant == null) {
+                    // Unexpected order. Do not cache the rest of the batch
+                    logger.warn("Unable to find variant for annotation {}:{}:{}:{}", annotation.getChromosome(), annotation.getStart(),
+                            annotation.getReference(), annotation.getAlternate());
+                    break;
+                }
+                out.reset();
+                encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+                datumWriter.write(annotation, encoder);
+                encoder.flush();
+                batch.put(buildKey(namespace, variant), out.toByteArray());
+            }
+            // The cache can be rebuilt, so there is no need to sync each write
+            writeOptions.setDisableWAL(true);
+            db.write(writeOptions, batch);
+        } catch (RocksDBException e) {
+            throw new IOException("Error writing into variant annotation cache " + path, e);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() {
+        synchronized (OPEN_CACHES) {
+            references--;
+            if (references == 0) {
+                OPEN_CACHES.remove(path);
+                try (FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+                    // Flush memtables, as the writes skip the write ahead log
+                    db.flush(flushOptions);
+                } catch (RocksDBException e) {
+                    logger.warn("Error flushing variant annotation cache " + path, e);
+                }
+                db.close();
+                options.close();
+            }
+        }
+    }
+
+    static boolean sameVariant(Variant variant, VariantAnnotation annotation) {
+        return variant.getChromosome().equals(annotation.getChromosome())
+                && variant.getStart().equals(annotation.getStart())
+                && variant.getReference().equals(annotation.getReference())
+                && variant.getAlternate().equals(annotation.getAlternate());
+    }
+
+    private static byte[] buildKey(byte[] namespace, Variant variant) {
+        byte[] variantBytes = variant.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] key = Arrays.copyOf(namespace, namespace.length + variantBytes.length);
+        System.arraycopy(variantBytes, 0, key, namespace.length, variantBytes.length);
+        return key;
+    }
+}
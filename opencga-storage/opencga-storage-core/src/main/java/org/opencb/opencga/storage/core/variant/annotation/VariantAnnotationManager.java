@@ -53,6 +53,8 @@ public abstract class VariantAnnotationManager {
     public static final String CREATE = "annotation.create";
     public static final String LOAD_FILE = "annotation.load.file";
     public static final String CUSTOM_ANNOTATION_KEY = "custom_annotation_key";
+    // Local annotation cache directory. Disabled if empty.
+    public static final String ANNOTATOR_CACHE_DIR = "annotator.cache.dir";
     public static final String CURRENT = "CURRENT";
 
     private static Logger logger = LoggerFactory.getLogger(VariantAnnotationManager.class);
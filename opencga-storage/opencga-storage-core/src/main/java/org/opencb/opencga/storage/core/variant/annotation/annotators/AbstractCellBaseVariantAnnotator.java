@@ -97,6 +97,15 @@ public abstract class AbstractCellBaseVariantAnnotator extends VariantAnnotator
     }
 
 
+    @Override
+    public ObjectMap getVariantAnnotatorOptions() {
+        ObjectMap options = new ObjectMap();
+        options.putIfNotNull(QueryOptions.INCLUDE, queryOptions.get(QueryOptions.INCLUDE));
+        options.putIfNotNull(QueryOptions.EXCLUDE, queryOptions.get(QueryOptions.EXCLUDE));
+        options.put(ANNOTATOR_CELLBASE_IMPRECISE_VARIANTS, impreciseVariants);
+        return options;
+    }
+
     @Override
     public final List<VariantAnnotation> annotate(List<Variant> variants) throws VariantAnnotatorException {
         List<Variant> nonStructuralVariations = filterStructuralVariants(variants);
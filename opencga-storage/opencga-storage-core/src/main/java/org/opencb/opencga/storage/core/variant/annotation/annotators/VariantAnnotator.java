@@ -48,4 +48,14 @@ public abstract class VariantAnnotator {
 
     public abstract List<ObjectMap> getVariantAnnotatorSourceVersion() throws IOException;
 
+    /**
+     * Options, other than the program and the source version, that modify the content of the generated annotations.
+     * Used to identify the annotations stored in the {@link org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationCache}.
+     *
+     * @return Options modifying the annotation content
+     */
+    public ObjectMap getVariantAnnotatorOptions() {
+        return new ObjectMap();
+    }
+
 }
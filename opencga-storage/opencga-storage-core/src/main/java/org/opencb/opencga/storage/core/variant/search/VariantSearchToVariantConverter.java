@@ -23,6 +23,10 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import htsjdk.variant.vcf.VCFConstants;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
 import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.annotation.ConsequenceTypeMappings;
@@ -32,6 +36,7 @@ import org.opencb.commons.datastore.core.ComplexTypeConverter;
 import org.opencb.commons.utils.CollectionUtils;
 import org.opencb.commons.utils.ListUtils;
 import org.opencb.opencga.core.common.ArrayUtils;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.annotation.converters.VariantTraitAssociationToEvidenceEntryConverter;
 import org.slf4j.Logger;
@@ -51,6 +56,31 @@ public class VariantSearchToVariantConverter implements ComplexTypeConverter<Var
     public static final double MISSING_VALUE = -100.0;
     private static final String LIST_SEP = "___";
     private static final String FIELD_SEP = " -- ";
+    // Readers and writers are immutable and thread-safe. Share them between all the conversions
+    private static final ObjectReader FILE_INFO_READER = new ObjectMapper().reader(HashMap.class);
+    private static final ObjectWriter FILE_INFO_WRITER = new ObjectMapper().writer();
+    private static final DocumentObjectBinder BINDER = new DocumentObjectBinder();
+
+    // Fields never modified after the first insertion
+    private static final Set<String> FIXED_FIELDS = new HashSet<>(Arrays.asList("id", "variantId", "chromosome", "start", "end",
+            "type"));
+    // Fixed fields of each group. Missing fields have to be removed explicitly in partial updates
+    private static final Map<SyncGroup, List<String>> GROUP_FIELDS;
+    private static final Map<SyncGroup, List<String>> GROUP_DYNAMIC_FIELD_PREFIXES;
+
+    static {
+        GROUP_FIELDS = new EnumMap<>(SyncGroup.class);
+        GROUP_FIELDS.put(SyncGroup.ANNOTATION, Arrays.asList("xrefs", "phastCons", "phylop", "gerp", "caddRaw", "caddScaled", "sift",
+                "siftDesc", "polyphen", "polyphenDesc", "genes", "biotypes", "soAcc", "geneToSoAcc", "traits", "other"));
+        GROUP_FIELDS.put(SyncGroup.STATS, Collections.emptyList());
+        GROUP_FIELDS.put(SyncGroup.STUDIES, Arrays.asList("studies", "release"));
+
+        GROUP_DYNAMIC_FIELD_PREFIXES = new EnumMap<>(SyncGroup.class);
+        GROUP_DYNAMIC_FIELD_PREFIXES.put(SyncGroup.ANNOTATION, Collections.singletonList("popFreq_"));
+        GROUP_DYNAMIC_FIELD_PREFIXES.put(SyncGroup.STATS, Collections.singletonList("stats_"));
+        GROUP_DYNAMIC_FIELD_PREFIXES.put(SyncGroup.STUDIES, Arrays.asList("gt_", "dp_", "sampleFormat_", "qual_", "filter_",
+                "fileInfo_"));
+    }
 
     private Logger logger = LoggerFactory.getLogger(VariantSearchToVariantConverter.class);
     private final VariantTraitAssociationToEvidenceEntryConverter evidenceEntryConverter;
@@ -139,14 +169,13 @@ public class VariantSearchToVariantConverter implements ComplexTypeConverter<Var
 
         // File info management
         if (MapUtils.isNotEmpty(variantSearchModel.getFileInfo())) {
-            ObjectReader reader = new ObjectMapper().reader(HashMap.class);
             for (String key: variantSearchModel.getFileInfo().keySet()) {
                 // key consists of 'fileInfo' + "__" + studyId + "__" + fileId
                 String[] fields = key.split(VariantSearchUtils.FIELD_SEPARATOR);
                 FileEntry fileEntry = new FileEntry(fields[2], null, new HashMap<>());
                 try {
                     // We obtain the original call
-                    Map<String, String> fileInfoAttributes = reader.readValue(variantSearchModel.getFileInfo().get(key));
+                    Map<String, String> fileInfoAttributes = FILE_INFO_READER.readValue(variantSearchModel.getFileInfo().get(key));
                     if (MapUtils.isNotEmpty(fileInfoAttributes)) {
                         fileEntry.setCall(fileInfoAttributes.get("fileCall"));
                         fileInfoAttributes.remove("fileCall");
@@ -181,6 +210,137 @@ public class VariantSearchToVariantConverter implements ComplexTypeConverter<Var
         return variant;
     }
 
+    /**
+     * Conversion: from a document returned by Solr to data model.
+     * <p>
+     * Reads the fields of the document in one pass, without the reflection based {@link DocumentObjectBinder}.
+     *
+     * @param document Solr document
+     * @return Data model object
+     */
+    public Variant convertToDataModelType(SolrDocument document) {
+        VariantSearchModel variantSearchModel = new VariantSearchModel();
+        for (Map.Entry<String, Object> entry : document) {
+            String name = entry.getKey();
+            Object value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    variantSearchModel.setId(value.toString());
+                    break;
+                case "variantId":
+                    variantSearchModel.setVariantId(value.toString());
+                    break;
+                case "chromosome":
+                    variantSearchModel.setChromosome(value.toString());
+                    break;
+                case "start":
+                    variantSearchModel.setStart(((Number) value).intValue());
+                    break;
+                case "end":
+                    variantSearchModel.setEnd(((Number) value).intValue());
+                    break;
+                case "type":
+                    variantSearchModel.setType(value.toString());
+                    break;
+                case "release":
+                    variantSearchModel.setRelease(((Number) value).intValue());
+                    break;
+                case "phastCons":
+                    variantSearchModel.setPhastCons(((Number) value).doubleValue());
+                    break;
+                case "phylop":
+                    variantSearchModel.setPhylop(((Number) value).doubleValue());
+                    break;
+                case "gerp":
+                    variantSearchModel.setGerp(((Number) value).doubleValue());
+                    break;
+                case "caddRaw":
+                    variantSearchModel.setCaddRaw(((Number) value).doubleValue());
+                    break;
+                case "caddScaled":
+                    variantSearchModel.setCaddScaled(((Number) value).doubleValue());
+                    break;
+                case "sift":
+                    variantSearchModel.setSift(((Number) value).doubleValue());
+                    break;
+                case "siftDesc":
+                    variantSearchModel.setSiftDesc(value.toString());
+                    break;
+                case "polyphen":
+                    variantSearchModel.setPolyphen(((Number) value).doubleValue());
+                    break;
+                case "polyphenDesc":
+                    variantSearchModel.setPolyphenDesc(value.toString());
+                    break;
+                case "xrefs":
+                    variantSearchModel.setXrefs(toStringList(value));
+                    break;
+                case "studies":
+                    variantSearchModel.setStudies(toStringList(value));
+                    break;
+                case "genes":
+                    variantSearchModel.setGenes(toStringList(value));
+                    break;
+                case "biotypes":
+                    variantSearchModel.setBiotypes(toStringList(value));
+                    break;
+                case "geneToSoAcc":
+                    variantSearchModel.setGeneToSoAcc(toStringList(value));
+                    break;
+                case "traits":
+                    variantSearchModel.setTraits(toStringList(value));
+                    break;
+                case "other":
+                    variantSearchModel.setOther(toStringList(value));
+                    break;
+                case "soAcc":
+                    List<Integer> soAcc = new ArrayList<>();
+                    for (Object o : toList(value)) {
+                        soAcc.add(((Number) o).intValue());
+                    }
+                    variantSearchModel.setSoAcc(soAcc);
+                    break;
+                default:
+                    // Dynamic fields. Keys keep the field name, as with the DocumentObjectBinder
+                    if (name.startsWith("stats_")) {
+                        variantSearchModel.getStats().put(name, ((Number) value).floatValue());
+                    } else if (name.startsWith("popFreq_")) {
+                        variantSearchModel.getPopFreq().put(name, ((Number) value).floatValue());
+                    } else if (name.startsWith("gt_")) {
+                        variantSearchModel.getGt().put(name, value.toString());
+                    } else if (name.startsWith("dp_")) {
+                        variantSearchModel.getDp().put(name, ((Number) value).intValue());
+                    } else if (name.startsWith("sampleFormat_")) {
+                        variantSearchModel.getSampleFormat().put(name, value.toString());
+                    } else if (name.startsWith("qual_")) {
+                        variantSearchModel.getQual().put(name, ((Number) value).floatValue());
+                    } else if (name.startsWith("filter_")) {
+                        variantSearchModel.getFilter().put(name, value.toString());
+                    } else if (name.startsWith("fileInfo_")) {
+                        variantSearchModel.getFileInfo().put(name, value.toString());
+                    }
+                    break;
+            }
+        }
+        return convertToDataModelType(variantSearchModel);
+    }
+
+    private static Collection<?> toList(Object value) {
+        return value instanceof Collection ? (Collection<?>) value : Collections.singletonList(value);
+    }
+
+    private static List<String> toStringList(Object value) {
+        Collection<?> values = toList(value);
+        List<String> list = new ArrayList<>(values.size());
+        for (Object o : values) {
+            list.add(o == null ? null : o.toString());
+        }
+        return list;
+    }
+
     public VariantAnnotation getVariantAnnotation(VariantSearchModel variantSearchModel, Variant variant) {
 
         if (includeFields != null && !includeFields.contains(VariantField.ANNOTATION)) {
@@ -586,7 +746,6 @@ public class VariantSearchToVariantConverter implements ComplexTypeConverter<Var
 
         // convert Study related information
         if (CollectionUtils.isNotEmpty(variant.getStudies())) {
-            ObjectWriter writer = new ObjectMapper().writer();
 
             for (StudyEntry studyEntry : variant.getStudies()) {
                 String studyId = studyIdToSearchModel(studyEntry.getStudyId());
@@ -686,7 +845,7 @@ public class VariantSearchToVariantConverter implements ComplexTypeConverter<Var
                             try {
                                 variantSearchModel.getFileInfo().put("fileInfo" + VariantSearchUtils.FIELD_SEPARATOR + studyId
                                                 + VariantSearchUtils.FIELD_SEPARATOR + fileEntry.getFileId(),
-                                        writer.writeValueAsString(fileInfoMap));
+                                        FILE_INFO_WRITER.writeValueAsString(fileInfoMap));
                             } catch (JsonProcessingException e) {
                                 logger.info("Error converting fileInfo for study {} and file {}", studyId, fileEntry.getFileId());
                             }
@@ -1045,6 +1204,63 @@ public class VariantSearchToVariantConverter implements ComplexTypeConverter<Var
         return variantSearchModelList;
     }
 
+    /**
+     * Conversion: from data model to a Solr atomic update, containing only the fields of the given groups.
+     * <p>
+     * Dynamic fields are set one by one, so the dynamic fields that no longer exist in the variant, e.g. a removed cohort,
+     * are not removed from the index. Modifications of the studies of the variant should be loaded as full documents.
+     *
+     * @param variant    Data model object
+     * @param syncGroups Groups of fields to update
+     * @return Solr document with "set" operations
+     */
+    public SolrInputDocument convertToPartialUpdate(Variant variant, Set<SyncGroup> syncGroups) {
+        SolrInputDocument document = BINDER.toSolrInputDocument(convertToStorageType(variant));
+        SolrInputDocument update = new SolrInputDocument();
+        update.addField("id", document.getFieldValue("id"));
+        for (SyncGroup syncGroup : syncGroups) {
+            for (String field : GROUP_FIELDS.get(syncGroup)) {
+                // Set to null to remove the field
+                SolrInputField inputField = document.getField(field);
+                update.addField(field, Collections.singletonMap("set", inputField == null ? null : inputField.getValue()));
+            }
+        }
+        for (SolrInputField inputField : document) {
+            SyncGroup syncGroup = getDynamicFieldSyncGroup(inputField.getName());
+            if (syncGroup != null && syncGroups.contains(syncGroup)) {
+                update.addField(inputField.getName(), Collections.singletonMap("set", inputField.getValue()));
+            }
+        }
+        return update;
+    }
+
+    /**
+     * @param field Solr field name
+     * @return Group of the field, or null if the field is not modified after the first insertion
+     */
+    public static SyncGroup getSyncGroup(String field) {
+        if (FIXED_FIELDS.contains(field)) {
+            return null;
+        }
+        for (Map.Entry<SyncGroup, List<String>> entry : GROUP_FIELDS.entrySet()) {
+            if (entry.getValue().contains(field)) {
+                return entry.getKey();
+            }
+        }
+        return getDynamicFieldSyncGroup(field);
+    }
+
+    private static SyncGroup getDynamicFieldSyncGroup(String field) {
+        for (Map.Entry<SyncGroup, List<String>> entry : GROUP_DYNAMIC_FIELD_PREFIXES.entrySet()) {
+            for (String prefix : entry.getValue()) {
+                if (field.startsWith(prefix)) {
+                    return entry.getKey();
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Retrieve the protein substitution scores and descriptions from a consequence
      * type annotation: sift or polyphen, and update the variant search model.
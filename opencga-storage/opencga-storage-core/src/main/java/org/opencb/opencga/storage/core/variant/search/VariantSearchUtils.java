@@ -16,6 +16,9 @@
 
 package org.opencb.opencga.storage.core.variant.search;
 
+import org.apache.commons.lang3.StringUtils;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.AdditionalAttribute;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
@@ -30,6 +33,8 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.GROUP_NAME;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.INDEX_SYNC_GROUPS;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.*;
 
@@ -349,4 +354,39 @@ public class VariantSearchUtils {
 
         return null;
     }
+
+    /**
+     * Serialize a set of {@link VariantStorageEngine.SyncGroup} to be stored as an additional attribute of the variant annotation.
+     *
+     * @param syncGroups Modified groups of fields
+     * @return Comma separated list of keys
+     */
+    public static String syncGroupsToString(Collection<VariantStorageEngine.SyncGroup> syncGroups) {
+        return syncGroups.stream().map(VariantStorageEngine.SyncGroup::key).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Read the groups of fields modified since the last time that the variant was loaded into the search engine.
+     *
+     * @param variant Variant
+     * @return Modified groups of fields, or null if unknown. In that case, the whole variant has to be loaded.
+     */
+    public static Set<VariantStorageEngine.SyncGroup> getSyncGroups(Variant variant) {
+        if (variant.getAnnotation() == null || variant.getAnnotation().getAdditionalAttributes() == null) {
+            return null;
+        }
+        AdditionalAttribute additionalAttribute = variant.getAnnotation().getAdditionalAttributes().get(GROUP_NAME.key());
+        if (additionalAttribute == null) {
+            return null;
+        }
+        String syncGroups = additionalAttribute.getAttribute().get(INDEX_SYNC_GROUPS.key());
+        if (StringUtils.isEmpty(syncGroups)) {
+            return null;
+        }
+        Set<VariantStorageEngine.SyncGroup> set = EnumSet.noneOf(VariantStorageEngine.SyncGroup.class);
+        for (String key : syncGroups.split(",")) {
+            set.add(VariantStorageEngine.SyncGroup.fromKey(key));
+        }
+        return set;
+    }
 }
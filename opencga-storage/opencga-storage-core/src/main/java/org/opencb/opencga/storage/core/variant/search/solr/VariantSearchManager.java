@@ -24,6 +24,7 @@ import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.UpdateResponse;
 import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.util.SimpleOrderedMap;
 import org.opencb.biodata.formats.variant.io.VariantReader;
 import org.opencb.biodata.models.core.Gene;
@@ -46,11 +47,13 @@ import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.exceptions.VariantSearchException;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 import org.opencb.opencga.storage.core.variant.search.VariantSearchModel;
 import org.opencb.opencga.storage.core.variant.search.VariantSearchToVariantConverter;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -220,6 +223,10 @@ public class VariantSearchManager {
 
     /**
      * Load a Solr core/collection from a variant DB iterator.
+     * <p>
+     * Variants with a known set of modified groups of fields (see {@link VariantSearchUtils#getSyncGroups}) are sent as atomic
+     * updates containing only those fields, unless the studies of the variant were modified. Variants without studies are
+     * removed from the collection. The rest of variants are sent as complete documents.
      *
      * @param collection        Collection name
      * @param variantDBIterator Iterator to retrieve the variants to load
@@ -237,6 +244,7 @@ public class VariantSearchManager {
 
         int count = 0;
         int numLoadedVariants = 0;
+        int numDeletedVariants = 0;
         List<Variant> variantList = new ArrayList<>(insertBatchSize);
         while (variantDBIterator.hasNext()) {
             Variant variant = variantDBIterator.next();
@@ -245,12 +253,9 @@ public class VariantSearchManager {
             count++;
             if (count % insertBatchSize == 0) {
                 loadListener.preLoad(variantList);
-                numLoadedVariants += variantList.size();
-                try {
-                    insert(collection, variantList);
-                } catch (SolrServerException e) {
-                    throw new VariantSearchException("Error inserting variant.", e);
-                }
+                int deleted = loadBatch(collection, variantList);
+                numDeletedVariants += deleted;
+                numLoadedVariants += variantList.size() - deleted;
                 loadListener.postLoad(variantList);
                 variantList.clear();
             }
@@ -259,18 +264,66 @@ public class VariantSearchManager {
         // Insert the remaining variants
         if (CollectionUtils.isNotEmpty(variantList)) {
             loadListener.preLoad(variantList);
-            numLoadedVariants += variantList.size();
-            try {
-                insert(collection, variantList);
-            } catch (SolrServerException e) {
-                throw new VariantSearchException("Error inserting variant.", e);
-            }
+            int deleted = loadBatch(collection, variantList);
+            numDeletedVariants += deleted;
+            numLoadedVariants += variantList.size() - deleted;
             loadListener.postLoad(variantList);
         }
         loadListener.close();
 
-        logger.debug("Variant Search loading done: {} variants indexed", count);
-        return new VariantSearchLoadResult(count, numLoadedVariants, 0);
+        logger.debug("Variant Search loading done: {} variants indexed, {} variants deleted", numLoadedVariants, numDeletedVariants);
+        return new VariantSearchLoadResult(count, numLoadedVariants, numDeletedVariants);
+    }
+
+    /**
+     * Send a batch of variants to Solr, as complete documents, atomic updates or deletions, and commit.
+     *
+     * @param collection Collection name
+     * @param variants   Variants to load
+     * @return Number of deleted variants
+     * @throws VariantSearchException VariantSearchException
+     * @throws IOException IOException
+     */
+    private int loadBatch(String collection, List<Variant> variants) throws VariantSearchException, IOException {
+        List<Variant> fullVariants = new ArrayList<>(variants.size());
+        List<SolrInputDocument> partialUpdates = new ArrayList<>();
+        List<String> deletedVariants = new ArrayList<>();
+        for (Variant variant : variants) {
+            Set<VariantStorageEngine.SyncGroup> syncGroups = VariantSearchUtils.getSyncGroups(variant);
+            if (variant.getStudies() != null && variant.getStudies().isEmpty()) {
+                // Removed from all the studies
+                deletedVariants.add(variant.toString());
+            } else if (syncGroups == null || syncGroups.contains(VariantStorageEngine.SyncGroup.STUDIES)) {
+                fullVariants.add(variant);
+            } else if (!syncGroups.isEmpty()) {
+                partialUpdates.add(variantSearchToVariantConverter.convertToPartialUpdate(variant, syncGroups));
+            }
+        }
+
+        try {
+            SolrClient solrClient = solrManager.getSolrClient();
+            boolean commit = false;
+            if (!deletedVariants.isEmpty()) {
+                commit |= solrClient.deleteById(collection, deletedVariants).getStatus() == 0;
+            }
+            if (!fullVariants.isEmpty()) {
+                List<VariantSearchModel> variantSearchModels = variantSearchToVariantConverter.convertListToStorageType(fullVariants);
+                if (!variantSearchModels.isEmpty()) {
+                    commit |= solrClient.addBeans(collection, variantSearchModels).getStatus() == 0;
+                }
+            }
+            if (!partialUpdates.isEmpty()) {
+                commit |= solrClient.add(collection, partialUpdates).getStatus() == 0;
+            }
+            if (commit) {
+                solrClient.commit(collection);
+            }
+        } catch (SolrServerException e) {
+            throw new VariantSearchException("Error inserting variant.", e);
+        }
+        logger.debug("Loaded {} variants, {} partial updates and {} deletions", fullVariants.size(), partialUpdates.size(),
+                deletedVariants.size());
+        return deletedVariants.size();
     }
 
     /**
@@ -384,6 +437,21 @@ public class VariantSearchManager {
         }
     }
 
+    /**
+     * Return a Solr variant iterator for bulk exports. Documents are streamed from Solr and decoded in parallel.
+     *
+     * @param collection   Collection name
+     * @param query        Query
+     * @param queryOptions Query options
+     * @param threads      Number of threads decoding variants
+     * @return Solr VariantSearch streaming iterator
+     */
+    public VariantSolrStreamingIterator exportIterator(String collection, Query query, QueryOptions queryOptions, int threads) {
+        SolrQuery solrQuery = solrQueryParser.parse(query, queryOptions);
+        return new VariantSolrStreamingIterator(solrManager.getSolrClient(), collection, solrQuery,
+                VariantField.getIncludeFields(queryOptions), threads);
+    }
+
     /**
      * Return a Solr variant iterator to retrieve VariantSearchModel objects from a Solr core/collection
      * according a given query.
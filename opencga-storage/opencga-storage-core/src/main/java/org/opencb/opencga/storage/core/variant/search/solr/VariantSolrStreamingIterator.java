@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.variant.search.solr;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.StreamingResponseCallback;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchToVariantConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Variant iterator for bulk exports from Solr.
+ * <p>
+ * A reader thread pages through the results with cursorMarks, like {@link VariantSearchSolrIterator}, but each page is
+ * received with javabin streaming, one document at a time, without building the whole response in memory.
+ * Documents are grouped in batches and decoded into {@link Variant}s in parallel. Batches are returned in order,
+ * so the iterator keeps the order by id.
+ */
+public class VariantSolrStreamingIterator extends VariantDBIterator {
+
+    public static final int DEFAULT_THREADS = 4;
+    private static final int PAGE_SIZE = 10000;
+    private static final int BATCH_SIZE = 200;
+    private static final Future<List<Variant>> END = CompletableFuture.completedFuture(Collections.emptyList());
+
+    private final SolrClient solrClient;
+    private final String collection;
+    private final SolrQuery solrQuery;
+    private final Set<VariantField> includeFields;
+    private final ExecutorService decoders;
+    private final BlockingQueue<Future<List<Variant>>> queue;
+    private final Thread reader;
+
+    private volatile boolean closed = false;
+    private volatile Exception readerException;
+    private volatile long numFound = -1;
+    private int remaining;
+    private int skip;
+
+    private Iterator<Variant> batch = Collections.emptyIterator();
+    private boolean finished = false;
+    private int count = 0;
+    private final Logger logger = LoggerFactory.getLogger(VariantSolrStreamingIterator.class);
+
+    public VariantSolrStreamingIterator(SolrClient solrClient, String collection, SolrQuery solrQuery, Set<VariantField> includeFields,
+                                        int threads) {
+        this.solrClient = solrClient;
+        this.collection = collection;
+        this.solrQuery = solrQuery;
+        this.includeFields = includeFields;
+
+        // CursorMarks require a sort by the unique key
+        this.solrQuery.setSort(SolrQuery.SortClause.asc("id"));
+        this.remaining = (solrQuery.getRows() == null || solrQuery.getRows() < 0) ? Integer.MAX_VALUE : solrQuery.getRows();
+        // CursorMarks do not support skip. Discard the first documents
+        this.skip = solrQuery.getStart() == null || solrQuery.getStart() < 0 ? 0 : solrQuery.getStart();
+        this.solrQuery.setStart(null);
+
+        threads = Math.max(1, threads);
+        this.decoders = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "solr-variant-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.queue = new ArrayBlockingQueue<>(threads * 2);
+        this.reader = new Thread(this::read, "solr-variant-reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void read() {
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        try {
+            while (!closed && remaining > 0) {
+                int rows = (int) Math.min(PAGE_SIZE, (long) remaining + skip);
+                solrQuery.setRows(rows);
+                solrQuery.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+
+                BatchCallback callback = new BatchCallback();
+                QueryResponse response = solrClient.queryAndStreamResponse(collection, solrQuery, callback);
+                callback.flush();
+
+                String nextCursorMark = response.getNextCursorMark();
+                if (callback.numDocs < rows || nextCursorMark == null || cursorMark.equals(nextCursorMark)) {
+                    break;
+                }
+                cursorMark = nextCursorMark;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            readerException = e;
+        } finally {
+            if (!closed) {
+                try {
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private class BatchCallback extends StreamingResponseCallback {
+        private List<SolrDocument> documents = new ArrayList<>(BATCH_SIZE);
+        private int numDocs = 0;
+
+        @Override
+        public void streamSolrDocument(SolrDocument doc) {
+            numDocs++;
+            if (skip > 0) {
+                skip--;
+                return;
+            }
+            if (remaining <= 0) {
+                return;
+            }
+            remaining--;
+            documents.add(doc);
+            if (documents.size() == BATCH_SIZE) {
+                try {
+                    flush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new VariantQueryException("Interrupted while reading variants from Solr", e);
+                }
+            }
+        }
+
+        @Override
+        public void streamDocListInfo(long numFound, long start, Float maxScore) {
+            VariantSolrStreamingIterator.this.numFound = numFound;
+        }
+
+        void flush() throws InterruptedException {
+            if (documents.isEmpty()) {
+                return;
+            }
+            List<SolrDocument> batch = documents;
+            documents = new ArrayList<>(BATCH_SIZE);
+            // Blocks while the consumer is too slow
+            queue.put(decoders.submit(() -> decode(batch)));
+        }
+    }
+
+    private List<Variant> decode(List<SolrDocument> documents) {
+        // Converters are cheap, but not thread-safe. Use a new one for each batch
+        VariantSearchToVariantConverter converter = new VariantSearchToVariantConverter(includeFields);
+        List<Variant> variants = new ArrayList<>(documents.size());
+        for (SolrDocument document : documents) {
+            variants.add(converter.convertToDataModelType(document));
+        }
+        return variants;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!batch.hasNext()) {
+            if (finished) {
+                return false;
+            }
+            try {
+                Future<List<Variant>> future = queue.take();
+                if (future == END) {
+                    finished = true;
+                    if (readerException != null) {
+                        throw new VariantQueryException("Error reading variants from Solr", readerException);
+                    }
+                    return false;
+                }
+                batch = future.get().iterator();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new VariantQueryException("Interrupted while reading variants from Solr", e);
+            } catch (ExecutionException e) {
+                throw new VariantQueryException("Error decoding variants from Solr", e.getCause());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Variant next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        count++;
+        return batch.next();
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    public long getNumFound() {
+        return numFound;
+    }
+
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        reader.interrupt();
+        decoders.shutdownNow();
+        queue.clear();
+        logger.debug("Closed Solr streaming iterator after {} variants", count);
+        super.close();
+    }
+}
@@ -18,8 +18,12 @@ package org.opencb.opencga.storage.core.alignment.adaptors;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.Test;
+import org.opencb.biodata.models.alignment.RegionCoverage;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.opencga.core.common.TimeUtils;
 import org.opencb.opencga.storage.core.alignment.AlignmentStorageEngine;
+import org.opencb.opencga.storage.core.alignment.local.CoveragePyramid;
+import org.opencb.opencga.storage.core.alignment.local.LocalAlignmentDBAdaptor;
 import org.opencb.opencga.storage.core.alignment.local.LocalAlignmentStorageEngine;
 
 import java.io.File;
@@ -31,7 +35,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 
-import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.*;
 
 /**
  * Created by pfurio on 26/10/16.
@@ -69,6 +73,33 @@ public class DefaultAlignmentDBAdaptorTest {
         assertTrue(Files.exists(tmpRootDir.resolve("HG00096.chrom20.small.bam.bai")));
         assertTrue(Files.exists(tmpRootDir.resolve("HG00096.chrom20.small.bam.stats")));
         assertTrue(Files.exists(tmpRootDir.resolve("HG00096.chrom20.small.bam.bw")));
+        assertTrue(Files.exists(tmpRootDir.resolve("HG00096.chrom20.small.bam" + CoveragePyramid.SUFFIX)));
+    }
+
+    @Test
+    public void indexWithWorkspace() throws Exception {
+        URI resource = getClass().getResource("/HG00096.chrom20.small.bam").toURI();
+
+        Path bamDir = Files.createDirectories(getTmpRootDir().resolve("bam"));
+        Path workspace = Files.createDirectories(getTmpRootDir().resolve("workspace"));
+        Path inputFile = bamDir.resolve("HG00096.chrom20.small.bam");
+        Files.copy(Paths.get(resource), inputFile);
+
+        AlignmentStorageEngine defaultAlignmentStorageManager = new LocalAlignmentStorageEngine();
+        defaultAlignmentStorageManager.index(Arrays.asList(inputFile.toUri()), workspace.toUri(), true, true, true);
+
+        // The coverage pyramid is stored next to the BAM file, where the DBAdaptor looks for it
+        Path pyramidPath = CoveragePyramid.getPyramidPath(inputFile);
+        assertEquals(bamDir.resolve("HG00096.chrom20.small.bam" + CoveragePyramid.SUFFIX), pyramidPath);
+        assertTrue(Files.exists(pyramidPath));
+        assertFalse(Files.exists(workspace.resolve("HG00096.chrom20.small.bam" + CoveragePyramid.SUFFIX)));
+        assertTrue(Files.exists(workspace.resolve("HG00096.chrom20.small.bam.stats")));
+
+        Region region = new Region("20", 60001, 70000);
+        RegionCoverage coverage = new LocalAlignmentDBAdaptor().coverage(inputFile, region, 64).first();
+        try (CoveragePyramid pyramid = CoveragePyramid.open(pyramidPath)) {
+            assertArrayEquals(pyramid.coverage(region, 64).getValues(), coverage.getValues(), 0);
+        }
     }
 
     //    @Test
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.alignment.local;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AlignmentReaderPoolTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private AtomicInteger opened;
+    private List<Reader> closed;
+    private AlignmentReaderPool<Reader> pool;
+
+    private static class Reader {
+        private final Path path;
+
+        Reader(Path path) {
+            this.path = path;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        opened = new AtomicInteger();
+        closed = new ArrayList<>();
+        pool = new AlignmentReaderPool<>(path -> {
+            opened.incrementAndGet();
+            return new Reader(path);
+        }, closed::add, 3, 2);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        Path file = temporaryFolder.newFile("a.bam").toPath();
+        Reader reader;
+        try (AlignmentReaderPool<Reader>.Lease lease = pool.checkout(file)) {
+            reader = lease.get();
+        }
+        try (AlignmentReaderPool<Reader>.Lease lease = pool.checkout(file)) {
+            assertSame(reader, lease.get());
+        }
+        assertEquals(1, opened.get());
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getNumIdle());
+    }
+
+    @Test
+    public void testExclusiveCheckout() throws Exception {
+        Path file = temporaryFolder.newFile("a.bam").toPath();
+        AlignmentReaderPool<Reader>.Lease lease1 = pool.checkout(file);
+        AlignmentReaderPool<Reader>.Lease lease2 = pool.checkout(file);
+        AlignmentReaderPool<Reader>.Lease lease3 = pool.checkout(file);
+        assertNotSame(lease1.get(), lease2.get());
+        assertEquals(3, opened.get());
+
+        lease1.close();
+        lease2.close();
+        lease3.close();
+        // Only 2 idle readers per file
+        assertEquals(2, pool.getNumIdle());
+        assertEquals(1, closed.size());
+    }
+
+    @Test
+    public void testEvictLRU() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            files.add(temporaryFolder.newFile(i + ".bam").toPath());
+        }
+        for (Path file : files) {
+            pool.checkout(file).close();
+        }
+        assertEquals(3, pool.getNumIdle());
+        assertEquals(1, closed.size());
+        assertEquals(files.get(0), closed.get(0).path);
+    }
+
+    @Test
+    public void testModifiedFile() throws Exception {
+        Path file = temporaryFolder.newFile("a.bam").toPath();
+        Reader reader;
+        try (AlignmentReaderPool<Reader>.Lease lease = pool.checkout(file)) {
+            reader = lease.get();
+        }
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10000));
+        try (AlignmentReaderPool<Reader>.Lease lease = pool.checkout(file)) {
+            assertNotSame(reader, lease.get());
+        }
+        assertEquals(2, opened.get());
+        assertEquals(1, pool.getNumIdle());
+        assertSame(reader, closed.get(0));
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        Path file = temporaryFolder.newFile("a.bam").toPath();
+        AlignmentReaderPool<Reader>.Lease lease = pool.checkout(file);
+        lease.discard();
+        lease.close();
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(1, closed.size());
+    }
+
+    @Test
+    public void testMaxOpen() throws Exception {
+        pool = new AlignmentReaderPool<>(path -> {
+            opened.incrementAndGet();
+            return new Reader(path);
+        }, closed::add, 2, 2, 2, 100);
+        Path fileA = temporaryFolder.newFile("a.bam").toPath();
+        Path fileB = temporaryFolder.newFile("b.bam").toPath();
+        Path fileC = temporaryFolder.newFile("c.bam").toPath();
+
+        pool.checkout(fileA).close();
+        AlignmentReaderPool<Reader>.Lease leaseB = pool.checkout(fileB);
+        assertEquals(2, pool.getNumOpen());
+
+        // The idle reader is closed to open a new one
+        AlignmentReaderPool<Reader>.Lease leaseC = pool.checkout(fileC);
+        assertEquals(2, pool.getNumOpen());
+        assertEquals(0, pool.getNumIdle());
+        assertEquals(fileA, closed.get(0).path);
+
+        // All the readers are in use
+        try {
+            pool.checkout(fileA);
+            fail("Expected timeout");
+        } catch (IOException e) {
+            assertEquals(2, pool.getNumOpen());
+        }
+
+        leaseB.discard();
+        assertEquals(1, pool.getNumOpen());
+        pool.checkout(fileA).close();
+        leaseC.close();
+        assertEquals(2, pool.getNumOpen());
+        assertEquals(2, pool.getNumIdle());
+    }
+
+    @Test
+    public void testWaitForReader() throws Exception {
+        pool = new AlignmentReaderPool<>(path -> {
+            opened.incrementAndGet();
+            return new Reader(path);
+        }, closed::add, 1, 1, 1, 10000);
+        Path file = temporaryFolder.newFile("a.bam").toPath();
+
+        AlignmentReaderPool<Reader>.Lease lease = pool.checkout(file);
+        Reader reader = lease.get();
+        Thread thread = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            lease.close();
+        });
+        thread.start();
+        try (AlignmentReaderPool<Reader>.Lease lease2 = pool.checkout(file)) {
+            assertSame(reader, lease2.get());
+        }
+        thread.join();
+        assertEquals(1, opened.get());
+        assertEquals(1, pool.getNumOpen());
+    }
+}
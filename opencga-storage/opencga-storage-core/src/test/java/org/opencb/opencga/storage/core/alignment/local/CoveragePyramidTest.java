@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.core.alignment.local;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.opencb.biodata.models.alignment.RegionCoverage;
+import org.opencb.biodata.models.core.Region;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CoveragePyramidTest {
+
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static Path pyramidPath;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        Path bamPath = Paths.get(CoveragePyramidTest.class.getResource("/HG00096.chrom20.small.bam").toURI());
+        pyramidPath = temporaryFolder.getRoot().toPath().resolve(bamPath.getFileName() + CoveragePyramid.SUFFIX);
+        CoveragePyramid.build(bamPath, pyramidPath, CoveragePyramid.DEFAULT_WINDOW_SIZES);
+    }
+
+    @Test
+    public void testCoverageLevels() throws Exception {
+        try (CoveragePyramid pyramid = CoveragePyramid.open(pyramidPath)) {
+            assertArrayEquals(CoveragePyramid.DEFAULT_WINDOW_SIZES, pyramid.getWindowSizes());
+            assertTrue(pyramid.getChromosomeLengths().containsKey("20"));
+
+            Region region = new Region("20", 60001, 60001 + 64 * 100 - 1);
+            RegionCoverage perBase = pyramid.coverage(region, 1);
+            RegionCoverage windowed = pyramid.coverage(region, 64);
+            assertEquals(64 * 100, perBase.getValues().length);
+            assertEquals(100, windowed.getValues().length);
+
+            double totalCoverage = 0;
+            for (int w = 0; w < 100; w++) {
+                double sum = 0;
+                for (int i = 0; i < 64; i++) {
+                    sum += perBase.getValues()[w * 64 + i];
+                }
+                assertEquals(sum / 64, windowed.getValues()[w], 0.001);
+                totalCoverage += sum;
+            }
+            assertTrue(totalCoverage > 0);
+
+            // Window sizes not matching any level are computed from the nearest smaller level
+            RegionCoverage odd = pyramid.coverage(region, 100);
+            assertEquals(64, odd.getValues().length);
+            double sum = 0;
+            for (int i = 0; i < 100; i++) {
+                sum += perBase.getValues()[i];
+            }
+            assertEquals(sum / 100, odd.getValues()[0], 0.001);
+        }
+    }
+
+    @Test
+    public void testLowCoverageRegions() throws Exception {
+        try (CoveragePyramid pyramid = CoveragePyramid.open(pyramidPath)) {
+            Region region = new Region("20", 60001, 70000);
+            List<RegionCoverage> lowCoverageRegions = pyramid.getLowCoverageRegions(region, 1);
+            RegionCoverage perBase = pyramid.coverage(region, 1);
+            for (RegionCoverage lowCoverageRegion : lowCoverageRegions) {
+                for (int position = lowCoverageRegion.getStart(); position <= lowCoverageRegion.getEnd(); position++) {
+                    assertEquals(0, perBase.getValues()[position - region.getStart()], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUpToDate() throws Exception {
+        Path resource = Paths.get(getClass().getResource("/HG00096.chrom20.small.bam").toURI());
+        Path bamDir = temporaryFolder.newFolder().toPath();
+        Path bamPath = Files.copy(resource, bamDir.resolve(resource.getFileName()));
+        Files.copy(resource.resolveSibling(resource.getFileName() + ".bai"), bamDir.resolve(resource.getFileName() + ".bai"));
+        Path pyramidPath = CoveragePyramid.getPyramidPath(bamPath);
+
+        assertFalse(CoveragePyramid.isUpToDate(pyramidPath, bamPath));
+        CoveragePyramid.build(bamPath, pyramidPath, CoveragePyramid.DEFAULT_WINDOW_SIZES);
+        assertTrue(CoveragePyramid.isUpToDate(pyramidPath, bamPath));
+        try (CoveragePyramid pyramid = CoveragePyramid.open(pyramidPath)) {
+            assertTrue(pyramid.isUpToDate(bamPath));
+
+            // The BAM file is replaced
+            Files.setLastModifiedTime(bamPath, FileTime.fromMillis(Files.getLastModifiedTime(bamPath).toMillis() + 10000));
+            assertFalse(pyramid.isUpToDate(bamPath));
+            assertFalse(CoveragePyramid.isUpToDate(pyramidPath, bamPath));
+        }
+
+        // Rebuilding does not affect the open pyramids
+        try (CoveragePyramid pyramid = CoveragePyramid.open(pyramidPath)) {
+            CoveragePyramid.build(bamPath, pyramidPath, CoveragePyramid.DEFAULT_WINDOW_SIZES);
+            assertTrue(CoveragePyramid.isUpToDate(pyramidPath, bamPath));
+            assertFalse(pyramid.isUpToDate(bamPath));
+            assertTrue(pyramid.coverage(new Region("20", 60001, 70000), 64).getValues().length > 0);
+        }
+    }
+}
@@ -23,12 +23,14 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.variant.dummy.DummyProjectMetadataAdaptor;
 import org.opencb.opencga.storage.core.variant.dummy.DummyStudyConfigurationAdaptor;
 import org.opencb.opencga.storage.core.variant.dummy.DummyVariantFileMetadataDBAdaptor;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
@@ -125,6 +127,89 @@ public class StudyConfigurationManagerTest {
 
     }
 
+    @Test
+    public void lockAndUpdateCallsUpdaterOnceTest() throws StorageEngineException {
+        scm = new StudyConfigurationManager(new DummyProjectMetadataAdaptor(), new ConflictingStudyConfigurationAdaptor(),
+                new DummyVariantFileMetadataDBAdaptor());
+        scm.updateStudyConfiguration(newStudyConfiguration(), null);
+
+        AtomicInteger calls = new AtomicInteger();
+        scm.lockAndUpdate(1, sc -> {
+            calls.incrementAndGet();
+            sc.getFileIds().put("file" + calls.get(), calls.get());
+            return sc;
+        });
+
+        assertEquals(1, calls.get());
+        assertEquals(Collections.singletonMap("file1", 1), scm.getStudyConfiguration(1, null).first().getFileIds());
+    }
+
+    @Test
+    public void optimisticUpdateFallbackToLockTest() throws StorageEngineException {
+        scm = new StudyConfigurationManager(new DummyProjectMetadataAdaptor(), new ConflictingStudyConfigurationAdaptor(),
+                new DummyVariantFileMetadataDBAdaptor());
+        scm.updateStudyConfiguration(newStudyConfiguration(), null);
+
+        AtomicInteger calls = new AtomicInteger();
+        scm.optimisticUpdate(1, sc -> {
+            calls.incrementAndGet();
+            sc.getFileIds().put("file" + calls.get(), calls.get());
+            return sc;
+        });
+
+        // Every conflicting attempt is discarded. Only the last call, with the lock, is written
+        int expectedCalls = StudyConfigurationManager.CHECK_AND_UPDATE_MAX_ATTEMPTS + 1;
+        assertEquals(expectedCalls, calls.get());
+        assertEquals(Collections.singletonMap("file" + expectedCalls, expectedCalls),
+                scm.getStudyConfiguration(1, null).first().getFileIds());
+    }
+
+    @Test
+    public void optimisticUpdateTest() throws StorageEngineException {
+        ConflictingStudyConfigurationAdaptor studyConfigurationAdaptor = new ConflictingStudyConfigurationAdaptor();
+        studyConfigurationAdaptor.conflicts = 1;
+        scm = new StudyConfigurationManager(new DummyProjectMetadataAdaptor(), studyConfigurationAdaptor,
+                new DummyVariantFileMetadataDBAdaptor());
+        scm.updateStudyConfiguration(newStudyConfiguration(), null);
+
+        AtomicInteger calls = new AtomicInteger();
+        scm.optimisticUpdate(1, sc -> {
+            calls.incrementAndGet();
+            sc.getFileIds().put("file" + calls.get(), calls.get());
+            return sc;
+        });
+
+        assertEquals(2, calls.get());
+        assertEquals(Collections.singletonMap("file2", 2), scm.getStudyConfiguration(1, null).first().getFileIds());
+    }
+
+    /**
+     * Supports conditional updates, failing the first {@link #conflicts} attempts.
+     */
+    private static class ConflictingStudyConfigurationAdaptor extends DummyStudyConfigurationAdaptor {
+        private int conflicts = Integer.MAX_VALUE;
+
+        @Override
+        public boolean supportsCheckAndUpdate() {
+            return true;
+        }
+
+        @Override
+        public boolean checkAndUpdateStudyConfiguration(StudyConfiguration studyConfiguration, long expectedTimeStamp,
+                                                        QueryOptions options) {
+            if (conflicts > 0) {
+                conflicts--;
+                return false;
+            }
+            StudyConfiguration current = STUDY_CONFIGURATIONS_BY_ID.get(studyConfiguration.getStudyId());
+            if (current == null || current.getTimeStamp() != expectedTimeStamp) {
+                return false;
+            }
+            updateStudyConfiguration(studyConfiguration, options);
+            return true;
+        }
+    }
+
     protected VariantFileMetadata createVariantFileMetadata(StudyConfiguration studyConfiguration, Integer fileId) {
         studyConfiguration.getFileIds().put("fileName", fileId);
         VariantFileMetadata source = new VariantFileMetadata("fileName", fileId.toString());
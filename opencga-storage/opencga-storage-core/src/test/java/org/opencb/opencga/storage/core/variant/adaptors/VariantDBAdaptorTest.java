@@ -271,6 +271,28 @@ public abstract class VariantDBAdaptorTest extends VariantStorageBaseTest {
         assertEquals(NUM_VARIANTS, numResults);
     }
 
+    @Test
+    public void testExists() {
+        int i = 0;
+        for (Variant variant : allVariants.getResult()) {
+            if (i++ % 10 != 0 || variant.isSymbolic() || variant.getReference().isEmpty() || variant.getAlternate().isEmpty()) {
+                continue;
+            }
+            Query query = new Query(STUDY.key(), studyConfiguration.getStudyName())
+                    .append(REGION.key(), new Region(variant.getChromosome(), variant.getStart(), variant.getStart()))
+                    .append(REFERENCE.key(), variant.getReference())
+                    .append(ALTERNATE.key(), variant.getAlternate());
+            assertTrue(variant.toString(), dbAdaptor.exists(query));
+            query.put(ALTERNATE.key(), variant.getAlternate().equals("T") ? "G" : "T");
+            assertEquals(variant.toString(), count(query) > 0, dbAdaptor.exists(query));
+            // Regions match overlapping variants, not only the ones starting at the given position
+            query.put(ALTERNATE.key(), variant.getAlternate());
+            query.put(REGION.key(), new Region(variant.getChromosome(), variant.getEnd(), variant.getEnd()));
+            assertEquals(variant.toString(), count(query) > 0, dbAdaptor.exists(query));
+        }
+        assertFalse(dbAdaptor.exists(new Query(REGION.key(), "1:1-1")));
+    }
+
     @Test
     public void testGetAllVariants_limit_skip() {
         limitSkip(new Query(), new QueryOptions());
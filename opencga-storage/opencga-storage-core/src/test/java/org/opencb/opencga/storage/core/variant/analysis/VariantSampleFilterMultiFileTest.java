@@ -0,0 +1,116 @@
+package org.opencb.opencga.storage.core.variant.analysis;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+
+import java.net.URI;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Compares the {@link VariantSampleFilter} of each storage engine with the default one, which reads the genotypes from the
+ * variants.
+ */
+@Ignore
+public abstract class VariantSampleFilterMultiFileTest extends VariantStorageBaseTest {
+
+    protected static final String STUDY = "S_1";
+    protected static final List<String> SAMPLES = asList("NA12877", "NA12878", "NA12879", "NA12880");
+    protected static final List<List<String>> GENOTYPES = asList(
+            asList("1/1"),
+            asList("0/1", "1/1"),
+            asList(GenotypeClass.HET.toString()),
+            asList(GenotypeClass.HOM_REF.toString()),
+            asList("0/0"),
+            asList("./."),
+            asList(GenotypeClass.UNKNOWN_GENOTYPE),
+            asList("0/1", GenotypeClass.UNKNOWN_GENOTYPE));
+    protected static boolean loaded = false;
+    protected VariantSampleFilter filter;
+    protected VariantSampleFilter expectedFilter;
+
+    @Before
+    public void before() throws Exception {
+        if (!loaded) {
+            super.before();
+
+            load();
+            loaded = true;
+        }
+        filter = variantStorageEngine.getVariantSampleFilter();
+        expectedFilter = new VariantSampleFilter(variantStorageEngine);
+    }
+
+    protected void load() throws Exception {
+        VariantStorageEngine storageEngine = getVariantStorageEngine();
+        List<URI> inputFiles = new ArrayList<>();
+        for (String sample : SAMPLES) {
+            inputFiles.add(getResourceUri("platinum/1K.end.platinum-genomes-vcf-" + sample + "_S1.genome.vcf.gz"));
+        }
+        storageEngine.getOptions().putAll(getOptions());
+        storageEngine.getOptions().put(VariantStorageEngine.Options.STUDY.key(), STUDY);
+        storageEngine.getOptions().put(VariantStorageEngine.Options.ANNOTATE.key(), false);
+        storageEngine.getOptions().put(VariantStorageEngine.Options.CALCULATE_STATS.key(), false);
+        // Load in two batches, so some samples have unknown genotypes
+        storageEngine.index(inputFiles.subList(0, 2), outputUri, true, true, true);
+        storageEngine.index(inputFiles.subList(2, 4), outputUri, true, true, true);
+    }
+
+    protected ObjectMap getOptions() {
+        return new ObjectMap();
+    }
+
+    @Test
+    public void testGetSamplesInAnyVariants() throws Exception {
+        Query query = new Query(VariantQueryParam.STUDY.key(), STUDY)
+                .append(VariantQueryParam.INCLUDE_STUDY.key(), STUDY)
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), SAMPLES);
+        for (List<String> genotypes : GENOTYPES) {
+            assertEquals(genotypes.toString(), toIds(expectedFilter.getSamplesInAnyVariants(query, genotypes)),
+                    toIds(filter.getSamplesInAnyVariants(query, genotypes)));
+        }
+    }
+
+    @Test
+    public void testGetSamplesInAllVariants() throws Exception {
+        Query query = new Query(VariantQueryParam.STUDY.key(), STUDY)
+                .append(VariantQueryParam.INCLUDE_STUDY.key(), STUDY)
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), SAMPLES);
+        Map<String, Set<Variant>> unknown = expectedFilter.getSamplesInAnyVariants(query, asList(GenotypeClass.UNKNOWN_GENOTYPE));
+        assertFalse(unknown.isEmpty());
+
+        for (Map.Entry<String, Set<Variant>> entry : unknown.entrySet()) {
+            // Variants where this sample has an unknown genotype
+            List<String> variants = entry.getValue().stream().map(Variant::toString).sorted().limit(10).collect(Collectors.toList());
+            for (List<String> genotypes : GENOTYPES) {
+                String message = entry.getKey() + " " + genotypes;
+                assertEquals(message, new HashSet<>(expectedFilter.getSamplesInAllVariants(variants, STUDY, SAMPLES, genotypes)),
+                        new HashSet<>(filter.getSamplesInAllVariants(variants, STUDY, SAMPLES, genotypes)));
+                assertEquals(message, toIds(expectedFilter.getSamplesInAnyVariants(variants, STUDY, SAMPLES, genotypes)),
+                        toIds(filter.getSamplesInAnyVariants(variants, STUDY, SAMPLES, genotypes)));
+            }
+            // A sample with unknown genotype is never hom-ref
+            assertFalse(filter.getSamplesInAllVariants(variants, STUDY, SAMPLES, asList("0/0")).contains(entry.getKey()));
+        }
+    }
+
+    private static Map<String, Set<String>> toIds(Map<String, Set<Variant>> map) {
+        Map<String, Set<String>> ids = new HashMap<>();
+        for (Map.Entry<String, Set<Variant>> entry : map.entrySet()) {
+            ids.put(entry.getKey(), entry.getValue().stream().map(Variant::toString).collect(Collectors.toSet()));
+        }
+        return ids;
+    }
+}
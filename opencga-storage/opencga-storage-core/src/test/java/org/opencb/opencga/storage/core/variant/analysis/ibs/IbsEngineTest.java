@@ -0,0 +1,167 @@
+package org.opencb.opencga.storage.core.variant.analysis.ibs;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.opencb.opencga.storage.core.variant.analysis.ibs.IbsGenotypeBlock.*;
+
+public class IbsEngineTest {
+
+    private static final int[] BIALLELIC_GENOTYPES = {HOM_REF, HET, HOM_ALT, MISSING};
+    private static final int[] MULTI_ALLELIC_GENOTYPES = {HOM_REF, HET, HOM_ALT, MISSING,
+            genotype(0, 2), genotype(1, 2), genotype(2, 2), genotype(2, 3)};
+
+    @Test
+    public void testGenotype() {
+        assertEquals(HOM_REF, genotype("0/0"));
+        assertEquals(HOM_REF, genotype("0"));
+        assertEquals(HET, genotype("0/1"));
+        assertEquals(HET, genotype("1|0"));
+        assertEquals(genotype(0, 2), genotype("0/2"));
+        assertEquals(HOM_ALT, genotype("1/1"));
+        assertEquals(genotype(1, 2), genotype("2|1"));
+        assertEquals(genotype(3, 12), genotype("12/3"));
+        assertEquals(HOM_ALT, genotype("1"));
+        assertEquals(MISSING, genotype("./."));
+        assertEquals(MISSING, genotype("./1"));
+        assertEquals(MISSING, genotype("."));
+        assertEquals(MISSING, genotype("-1/-1"));
+        assertEquals(MISSING, genotype(""));
+    }
+
+    @Test
+    public void testSharedAlleles() {
+        assertEquals(2, sharedAlleles(genotype(1, 2), genotype(1, 2)));
+        assertEquals(1, sharedAlleles(genotype(1, 2), genotype(2, 2)));
+        assertEquals(1, sharedAlleles(genotype(1, 2), genotype(1, 1)));
+        assertEquals(1, sharedAlleles(genotype(0, 1), genotype(0, 2)));
+        assertEquals(1, sharedAlleles(genotype(0, 2), genotype(2, 3)));
+        assertEquals(0, sharedAlleles(genotype(1, 1), genotype(2, 2)));
+        assertEquals(0, sharedAlleles(genotype(0, 0), genotype(1, 2)));
+    }
+
+    @Test
+    public void testMultiAllelic() {
+        List<String> samples = Arrays.asList("S0", "S1", "S2", "S3");
+        try (IbsEngine engine = new IbsEngine(samples, 1, 2)) {
+            IbsGenotypeBlock.Builder builder = new IbsGenotypeBlock.Builder(samples.size());
+            // Multi-allelic site. Sample S3 is hom-ref
+            builder.add(0, "1:100:A:C", genotype(1, 2));
+            builder.add(1, "1:100:A:C", genotype(2, 2));
+            builder.add(2, "1:100:A:C", genotype(1, 1));
+            // Biallelic site
+            builder.add(0, "1:200:A:C", HET);
+            builder.add(1, "1:200:A:C", HOM_ALT);
+            builder.add(2, "1:200:A:C", MISSING);
+            engine.accept(builder.build());
+
+            assertEquals(2, engine.getSites());
+            // 1/2 vs 2/2 and 0/1 vs 1/1
+            assertCounts(engine.getResult(0, 1), 0, 2, 0, 0, 2, 0);
+            // 1/2 vs 1/1. Second site is missing
+            assertCounts(engine.getResult(0, 2), 0, 1, 0, 0, 1, 0);
+            // 1/2 vs 0/0 and 0/1 vs 0/0
+            assertCounts(engine.getResult(0, 3), 1, 1, 0, 0, 2, 0);
+            // 2/2 vs 1/1 and 1/1 vs 0/0
+            assertCounts(engine.getResult(1, 2), 1, 0, 0, 0, 0, 0);
+            assertCounts(engine.getResult(1, 3), 2, 0, 0, 0, 0, 0);
+        }
+    }
+
+    @Test
+    public void testIbs() {
+        int numSamples = 13;
+        List<String> samples = new ArrayList<>();
+        for (int i = 0; i < numSamples; i++) {
+            samples.add("S" + i);
+        }
+        Random random = new Random(1);
+        long[][][] expected = new long[numSamples][numSamples][6];
+
+        try (IbsEngine engine = new IbsEngine(samples, 3, 4)) {
+            for (int numSites : new int[]{1, 64, 150}) {
+                int[][] genotypes = new int[numSites][numSamples];
+                IbsGenotypeBlock.Builder builder = new IbsGenotypeBlock.Builder(numSamples);
+                for (int site = 0; site < numSites; site++) {
+                    // One every 10 sites is multi-allelic
+                    int[] siteGenotypes = site % 10 == 0 ? MULTI_ALLELIC_GENOTYPES : BIALLELIC_GENOTYPES;
+                    for (int sample = 0; sample < numSamples; sample++) {
+                        genotypes[site][sample] = siteGenotypes[random.nextInt(siteGenotypes.length)];
+                        builder.add(sample, numSites + ":" + site, genotypes[site][sample]);
+                    }
+                }
+                engine.accept(builder.build());
+                for (int site = 0; site < numSites; site++) {
+                    for (int i = 0; i < numSamples; i++) {
+                        for (int j = i + 1; j < numSamples; j++) {
+                            count(expected[i][j], genotypes[site][i], genotypes[site][j]);
+                        }
+                    }
+                }
+            }
+            assertEquals(215, engine.getSites());
+
+            for (int i = 0; i < numSamples; i++) {
+                for (int j = i + 1; j < numSamples; j++) {
+                    IbsResult result = engine.getResult(i, j);
+                    assertEquals(samples.get(i), result.getSample1());
+                    assertEquals(samples.get(j), result.getSample2());
+                    assertEquals(expected[i][j][0], result.getIbs0());
+                    assertEquals(expected[i][j][1], result.getIbs1());
+                    assertEquals(expected[i][j][2], result.getIbs2());
+                    assertEquals(expected[i][j][3], result.getHetHet());
+                    assertEquals(expected[i][j][4], result.getHet1());
+                    assertEquals(expected[i][j][5], result.getHet2());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testKinship() {
+        // Same sample twice
+        IbsResult result = new IbsResult("A", "B", 0, 0, 100, 40, 40, 40);
+        assertEquals(0.5, result.getKinship(), 0.0001);
+        assertEquals(1, result.getDistance(), 0.0001);
+    }
+
+    private static void assertCounts(IbsResult result, long ibs0, long ibs1, long ibs2, long hetHet, long het1, long het2) {
+        assertEquals(ibs0, result.getIbs0());
+        assertEquals(ibs1, result.getIbs1());
+        assertEquals(ibs2, result.getIbs2());
+        assertEquals(hetHet, result.getHetHet());
+        assertEquals(het1, result.getHet1());
+        assertEquals(het2, result.getHet2());
+    }
+
+    private static void count(long[] counts, int gt1, int gt2) {
+        if (gt1 == MISSING || gt2 == MISSING) {
+            return;
+        }
+        // Count the shared alleles
+        List<Integer> alleles = new ArrayList<>(Arrays.asList(gt1 >>> 16, gt1 & 0xFFFF));
+        int shared = 0;
+        for (Integer allele : Arrays.asList(gt2 >>> 16, gt2 & 0xFFFF)) {
+            if (alleles.remove(allele)) {
+                shared++;
+            }
+        }
+        counts[shared]++;
+        boolean het1 = (gt1 >>> 16) != (gt1 & 0xFFFF);
+        boolean het2 = (gt2 >>> 16) != (gt2 & 0xFFFF);
+        if (het1 && het2) {
+            counts[3]++;
+        }
+        if (het1) {
+            counts[4]++;
+        }
+        if (het2) {
+            counts[5]++;
+        }
+    }
+}
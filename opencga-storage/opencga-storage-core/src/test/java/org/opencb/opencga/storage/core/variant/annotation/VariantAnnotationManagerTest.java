@@ -19,8 +19,10 @@ import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnno
 import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotatorFactory;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
@@ -121,6 +123,40 @@ public abstract class VariantAnnotationManagerTest extends VariantStorageBaseTes
 
     }
 
+    @Test
+    public void testAnnotationCache() throws Exception {
+        VariantStorageEngine variantStorageEngine = getVariantStorageEngine();
+        runDefaultETL(smallInputUri, variantStorageEngine, newStudyConfiguration(),
+                new ObjectMap(VariantStorageEngine.Options.ANNOTATE.key(), false));
+
+        variantStorageEngine.getOptions()
+                .append(VARIANT_ANNOTATOR_CLASSNAME, TestAnnotator.class.getName())
+                .append(ANNOTATOR, VariantAnnotatorFactory.AnnotationSource.OTHER);
+        String cacheDir = Paths.get(newOutputUri()).resolve("annotation_cache").toString();
+        long count = variantStorageEngine.count(new Query()).first();
+
+        // First annotation. Empty cache
+        TestAnnotator.NUM_ANNOTATED.set(0);
+        variantStorageEngine.annotate(new Query(), new ObjectMap(TestAnnotator.ANNOT_KEY, "v1")
+                .append(ANNOTATOR_CACHE_DIR, cacheDir));
+        assertEquals(count, TestAnnotator.NUM_ANNOTATED.get());
+
+        // Same annotator. All the annotations are read from the cache
+        TestAnnotator.NUM_ANNOTATED.set(0);
+        variantStorageEngine.annotate(new Query(), new ObjectMap(TestAnnotator.ANNOT_KEY, "v1")
+                .append(ANNOTATOR_CACHE_DIR, cacheDir)
+                .append(OVERWRITE_ANNOTATIONS, true));
+        assertEquals(0, TestAnnotator.NUM_ANNOTATED.get());
+        checkAnnotationSnapshot(variantStorageEngine, VariantAnnotationManager.CURRENT, VariantAnnotationManager.CURRENT, "v1", null);
+
+        // New annotator version. Cached annotations can not be used
+        variantStorageEngine.annotate(new Query(), new ObjectMap(TestAnnotator.ANNOT_KEY, "v2")
+                .append(ANNOTATOR_CACHE_DIR, cacheDir)
+                .append(OVERWRITE_ANNOTATIONS, true));
+        assertEquals(count, TestAnnotator.NUM_ANNOTATED.get());
+        checkAnnotationSnapshot(variantStorageEngine, VariantAnnotationManager.CURRENT, VariantAnnotationManager.CURRENT, "v2", null);
+    }
+
     public void testQueries(VariantStorageEngine variantStorageEngine) throws StorageEngineException {
         long count = variantStorageEngine.count(new Query()).first();
         long partialCount = 0;
@@ -172,6 +208,7 @@ public abstract class VariantAnnotationManagerTest extends VariantStorageBaseTes
 
         public static final String ANNOT_KEY = "ANNOT_KEY";
         public static final String FAIL = "ANNOT_FAIL";
+        public static final AtomicInteger NUM_ANNOTATED = new AtomicInteger();
         private final boolean fail;
         private String key;
 
@@ -186,6 +223,7 @@ public abstract class VariantAnnotationManagerTest extends VariantStorageBaseTes
             if (fail) {
                 throw new VariantAnnotatorException("Fail because reasons");
             }
+            NUM_ANNOTATED.addAndGet(variants.size());
             return variants.stream().map(v -> {
                 VariantAnnotation a = new VariantAnnotation();
                 a.setChromosome(v.getChromosome());
@@ -25,6 +25,7 @@ import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
 import org.opencb.opencga.storage.core.variant.dummy.DummyVariantStorageTest;
 import org.opencb.opencga.storage.core.variant.io.VariantReaderUtils;
 import org.opencb.opencga.storage.core.variant.search.solr.VariantSearchManager;
+import org.opencb.opencga.storage.core.variant.search.solr.VariantSolrStreamingIterator;
 import org.opencb.opencga.storage.core.variant.solr.VariantSolrExternalResource;
 
 import java.io.IOException;
@@ -32,6 +33,7 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 public class VariantSearchTest extends VariantStorageBaseTest implements DummyVariantStorageTest {
@@ -150,6 +152,50 @@ public class VariantSearchTest extends VariantStorageBaseTest implements DummyVa
         System.out.println("#variants from Solr = " + results.getResult().size());
     }
 
+    @Test
+    public void testExportIterator() throws Exception {
+        int limit = 300;
+
+        solr.configure(variantStorageEngine);
+        VariantSearchManager variantSearchManager = variantStorageEngine.getVariantSearchManager();
+
+        VariantVcfHtsjdkReader reader = VariantReaderUtils.getVariantVcfReader(Paths.get(smallInputUri.getPath()), null);
+        reader.open();
+        reader.pre();
+        List<Variant> variants = reader.read(limit);
+        reader.post();
+        reader.close();
+
+        String collection = solr.coreName;
+        variantSearchManager.createCore(collection, VariantSearchManager.CONF_SET);
+        variantSearchManager.insert(collection, variants);
+
+        // Variants are returned sorted by id
+        List<String> expectedIds = variants.stream().map(Variant::toString).sorted().collect(Collectors.toList());
+        Map<String, Variant> expectedVariants = variants.stream().collect(Collectors.toMap(Variant::toString, v -> v));
+
+        List<Variant> exported = new ArrayList<>();
+        try (VariantSolrStreamingIterator iterator = variantSearchManager.exportIterator(collection, new Query(), new QueryOptions(), 3)) {
+            iterator.forEachRemaining(exported::add);
+            assertEquals(limit, iterator.getCount());
+            assertEquals(limit, iterator.getNumFound());
+        }
+        assertEquals(expectedIds, exported.stream().map(Variant::toString).collect(Collectors.toList()));
+        for (Variant variant : exported) {
+            Variant expected = expectedVariants.get(variant.toString());
+            assertEquals(expected.getStudies().size(), variant.getStudies().size());
+            assertEquals(expected.getStudies().get(0).getSamplesData(), variant.getStudies().get(0).getSamplesData());
+        }
+
+        // Limit and skip
+        exported.clear();
+        QueryOptions options = new QueryOptions(QueryOptions.LIMIT, 50).append(QueryOptions.SKIP, 10);
+        try (VariantSolrStreamingIterator iterator = variantSearchManager.exportIterator(collection, new Query(), options, 2)) {
+            iterator.forEachRemaining(exported::add);
+        }
+        assertEquals(expectedIds.subList(10, 60), exported.stream().map(Variant::toString).collect(Collectors.toList()));
+    }
+
     private Map<String, ConsequenceType> getConsequenceTypeMap (Variant variant){
         Map<String, ConsequenceType> map = new HashMap<>();
         if (variant.getAnnotation() != null && ListUtils.isNotEmpty(variant.getAnnotation().getConsequenceTypes())) {
@@ -1,8 +1,18 @@
 package org.opencb.opencga.storage.core.variant.search;
 
+import org.apache.solr.client.solrj.beans.DocumentObjectBinder;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
 import org.junit.Before;
 import org.junit.Test;
 import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.stats.VariantStats;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -51,4 +61,66 @@ public class VariantSearchToVariantConverterTest {
 
         assertEquals(expectedVariant.getStudies(), actualVariant.getStudies());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConvertSolrDocument() throws Exception {
+        Variant variant = Variant.newBuilder("chr1:1000:A:T")
+                .setStudyId("1")
+                .setFileId("5")
+                .setFormat("GT", "DP")
+                .addSample("S1", "0/1", "10")
+                .addSample("S2", "1/1", "3")
+                .setFilter("PASS")
+                .setQuality(200.0)
+                .addAttribute("k1", "v1")
+                .build();
+        VariantStats stats = new VariantStats();
+        stats.setAltAlleleFreq(0.25f);
+        variant.getStudy("1").setStats(Collections.singletonMap("ALL", stats));
+
+        VariantSearchModel variantSearchModel = converter.convertToStorageType(variant);
+
+        // Same fields as returned by Solr
+        SolrDocument document = new SolrDocument();
+        for (SolrInputField field : new DocumentObjectBinder().toSolrInputDocument(variantSearchModel)) {
+            document.setField(field.getName(), field.getValue());
+        }
+
+        Variant expected = converter.convertToDataModelType(variantSearchModel);
+        Variant actual = converter.convertToDataModelType(document);
+        assertEquals(expected.toJson(), actual.toJson());
+        assertEquals(variant.getStudies().get(0).getSamplesData(), actual.getStudies().get(0).getSamplesData());
+        assertEquals(0.25f, actual.getStudy("1").getStats("ALL").getAltAlleleFreq(), 0.0001);
+    }
+
+    @Test
+    public void testPartialUpdate() throws Exception {
+        Variant variant = Variant.newBuilder("chr1:1000:A:T")
+                .setStudyId("1")
+                .setFileId("5")
+                .setFormat("GT")
+                .addSample("S1", "0/1")
+                .build();
+        VariantStats stats = new VariantStats();
+        stats.setAltAlleleFreq(0.5f);
+        variant.getStudy("1").setStats(Collections.singletonMap("ALL", stats));
+
+        SolrInputDocument document = converter.convertToPartialUpdate(variant, EnumSet.of(SyncGroup.STATS));
+        assertEquals(variant.toString(), document.getFieldValue("id"));
+        assertEquals(Collections.singletonMap("set", 0.5f), document.getFieldValue("stats__1__ALL"));
+        assertNull(document.getField("studies"));
+        assertNull(document.getField("gt__1__S1"));
+        assertNull(document.getField("sift"));
+        assertEquals(2, document.size());
+
+        document = converter.convertToPartialUpdate(variant, EnumSet.of(SyncGroup.ANNOTATION));
+        assertNull(document.getField("stats__1__ALL"));
+        assertEquals(VariantSearchToVariantConverter.MISSING_VALUE, ((Map) document.getFieldValue("sift")).get("set"));
+        assertTrue(((Map) document.getFieldValue("traits")).containsKey("set"));
+
+        assertEquals(SyncGroup.STATS, VariantSearchToVariantConverter.getSyncGroup("stats__1__ALL"));
+        assertEquals(SyncGroup.ANNOTATION, VariantSearchToVariantConverter.getSyncGroup("popFreq__GNOMAD__ALL"));
+        assertEquals(SyncGroup.STUDIES, VariantSearchToVariantConverter.getSyncGroup("fileInfo__1__5"));
+        assertNull(VariantSearchToVariantConverter.getSyncGroup("chromosome"));
+    }
+}
@@ -20,12 +20,14 @@ import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.time.StopWatch;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.opencga.storage.core.utils.LockNotifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 
 /**
  * Concurrent lock using an HBase cell.
@@ -44,7 +46,7 @@ import java.util.concurrent.TimeoutException;
  *      }
  *
  * Unlock:
- *      HBase.put(row, column, "");
+ *      HBase.put(row, column, "FREE-" + Random() + ":0");
  *
  * Created on 19/05/16.
  *
@@ -55,6 +57,8 @@ public class HBaseLock {
     private static final String LOCK_SEPARATOR = "_";
     private static final String LOCK_EXPIRING_DATE_SEPARATOR = ":";
     private static final String CURRENT_LOCK = "CURRENT-";
+    private static final String FREE_LOCK = "FREE-";
+    private static final LockNotifier NOTIFIER = new LockNotifier();
 
     protected final HBaseManager hbaseManager;
     protected final String tableName;
@@ -113,16 +117,22 @@ public class HBaseLock {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
+        String notifierKey = getNotifierKey(row, column);
+        long wait = 0;
+        long generation = NOTIFIER.generation(notifierKey);
         lockValue = readLockValue(row, column);
         do {
             // If the lock is taken, wait
             while (isLockTaken(lockValue)) {
-                Thread.sleep(100);
-                lockValue = readLockValue(row, column);
                 //Check if the lock is still valid
                 if (stopWatch.getTime() > timeout) {
                     throw new TimeoutException("Unable to get the lock");
                 }
+                // Wait until the lock is released from this JVM, or poll again after a while
+                wait = LockNotifier.nextWait(wait);
+                NOTIFIER.await(notifierKey, generation, wait);
+                generation = NOTIFIER.generation(notifierKey);
+                lockValue = readLockValue(row, column);
             }
             //Check if the lock is still valid
             if (stopWatch.getTime() > timeout) {
@@ -191,6 +201,49 @@ public class HBaseLock {
 
         logger.debug("Unlock lock with token " + lockToken);
         clearLock(row, column);
+        NOTIFIER.signal(getNotifierKey(row, column));
+    }
+
+    /**
+     * Apply a put only if the lock is not taken, and the lock cell is not modified concurrently.
+     *
+     * Every successful checkAndPut, and every unlock, writes a new unique value in the lock cell. Therefore, this put fails
+     * if the lock is taken, or if any other checkAndPut or lock operation modified the row since the condition was evaluated.
+     *
+     * @param row       Row to find the lock cell
+     * @param column    Column to find the lock cell
+     * @param get       Get to read the columns required to evaluate the condition
+     * @param condition Condition to apply the put, evaluated over the result of the get
+     * @param put       Put to apply
+     * @return          false if the lock was taken, the condition was not satisfied, or the row was modified concurrently
+     * @throws IOException if there is an error writing or reading from HBase.
+     */
+    public boolean checkAndPut(byte[] row, byte[] column, Get get, Predicate<Result> condition, Put put) throws IOException {
+        return HBaseManager.act(getConnection(), tableName, table -> {
+            byte[] columnFamily = getColumnFamily();
+            // Read the lock cell with the rest of the columns, in one atomic row read.
+            get.addColumn(columnFamily, column);
+            Result result = table.get(get);
+            byte[] currentLockValue = result.getValue(columnFamily, column);
+
+            String[] lockValue = currentLockValue == null || currentLockValue.length == 0
+                    ? new String[0]
+                    : Bytes.toString(currentLockValue).split(LOCK_SEPARATOR);
+            if (isLockTaken(lockValue) || !condition.test(result)) {
+                return false;
+            }
+
+            // Keep the tokens of any ongoing lock acquisition, so the lock arbitration is not affected
+            StringBuilder newLockValue = new StringBuilder();
+            for (String lock : lockValue) {
+                if (!isLockExpired(lock)) {
+                    newLockValue.append(lock).append(LOCK_SEPARATOR);
+                }
+            }
+            newLockValue.append(newFreeLockValue());
+            put.addColumn(columnFamily, column, Bytes.toBytes(newLockValue.toString()));
+            return table.checkAndPut(row, columnFamily, column, currentLockValue, put);
+        });
     }
 
     private void appendToken(String token, long lockDuration, byte[] row, byte[] qualifier) throws IOException {
@@ -229,11 +282,25 @@ public class HBaseLock {
             Put p = new Put(row);
             byte[] columnFamily = getColumnFamily();
 
-            p.addColumn(columnFamily, qualifier, Bytes.toBytes(""));
+            // Write a unique value, so concurrent checkAndPut operations can detect the change
+            p.addColumn(columnFamily, qualifier, Bytes.toBytes(newFreeLockValue()));
             table.put(p);
         });
     }
 
+    /**
+     * Value of a released lock. Parsed as an already expired token.
+     *
+     * @return Unique free lock value
+     */
+    private String newFreeLockValue() {
+        return FREE_LOCK + RandomStringUtils.randomAlphanumeric(10) + LOCK_EXPIRING_DATE_SEPARATOR + 0 + LOCK_SEPARATOR;
+    }
+
+    private String getNotifierKey(byte[] row, byte[] column) {
+        return tableName + '.' + Bytes.toStringBinary(row) + '.' + Bytes.toStringBinary(column);
+    }
+
     /**
      * A lock is taken if there is any lockValue in the array, and
      * the token has not expired.
@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -371,6 +372,25 @@ public class HBaseManager implements AutoCloseable {
     public static boolean createTableIfNeeded(Connection con, String tableName, byte[] columnFamily,
                                               List<byte[]> preSplits, Compression.Algorithm compressionType)
             throws IOException {
+        return createTableIfNeeded(con, tableName, columnFamily, preSplits, compressionType, Collections.emptyMap());
+    }
+
+    /**
+     * Create default HBase table layout with one column family.
+     *
+     * @param con HBase connection object
+     * @param tableName    HBase table name
+     * @param columnFamily Column Family
+     * @param preSplits Pre-split regions at table creation
+     * @param compressionType Compression Algorithm
+     * @param values Values to store in the table descriptor
+     * @return boolean True if a new table was created
+     * @throws IOException throws {@link IOException} from creating a connection / table
+     **/
+    public static boolean createTableIfNeeded(Connection con, String tableName, byte[] columnFamily,
+                                              List<byte[]> preSplits, Compression.Algorithm compressionType,
+                                              Map<String, String> values)
+            throws IOException {
         TableName tName = TableName.valueOf(tableName);
         LOGGER.debug("Create table if needed with connection {}", con);
         return act(con, tableName, (table, admin) -> {
@@ -381,6 +401,7 @@ public class HBaseManager implements AutoCloseable {
                     family.setCompressionType(compressionType);
                 }
                 descr.addFamily(family);
+                values.forEach(descr::setValue);
                 try {
                     if (preSplits != null && !preSplits.isEmpty()) {
                         admin.createTable(descr, preSplits.toArray(new byte[0][]));
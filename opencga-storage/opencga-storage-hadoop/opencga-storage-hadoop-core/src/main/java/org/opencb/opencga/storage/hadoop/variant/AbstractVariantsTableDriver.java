@@ -109,6 +109,11 @@ public abstract class AbstractVariantsTableDriver extends AbstractHBaseDriver im
         // Validate input CHECK
         try (HBaseManager hBaseManager = new HBaseManager(conf)) {
             checkTablesExist(hBaseManager, archiveTable, variantTable);
+            if (StringUtils.isNotEmpty(archiveTable)) {
+                // The row key format is given by the archive table, not by the configuration
+                int format = ArchiveTableHelper.setArchiveTableRowKeyFormat(conf, hBaseManager.getConnection(), archiveTable);
+                logger.info("Archive table row key format: " + format);
+            }
         }
 
         // Increase the ScannerTimeoutPeriod to avoid ScannerTimeoutExceptions
@@ -25,10 +25,12 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.io.compress.Compression.Algorithm;
 import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
 import org.opencb.biodata.models.variant.avro.VariantType;
@@ -54,6 +56,8 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.analysis.VariantSampleFilter;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsGenotypeSource;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotator;
 import org.opencb.opencga.storage.core.variant.io.VariantExporter;
@@ -77,9 +81,14 @@ import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHel
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConsolidationDrive;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBLoader;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexIbsDriver;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexIbsGenotypeSource;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexQuery;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexVariantSampleFilter;
 import org.opencb.opencga.storage.hadoop.variant.io.HadoopVariantExporter;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantStorageMetadataDBAdaptorFactory;
+import org.opencb.opencga.storage.hadoop.variant.search.HadoopVariantSearchIndexUtils;
 import org.opencb.opencga.storage.hadoop.variant.search.HadoopVariantSearchLoadListener;
 import org.opencb.opencga.storage.hadoop.variant.stats.HadoopDefaultVariantStatisticsManager;
 import org.opencb.opencga.storage.hadoop.variant.stats.HadoopMRVariantStatisticsManager;
@@ -181,6 +190,9 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
     public static final String ARCHIVE_ROW_KEY_SEPARATOR = "opencga.archive.row_key_sep";
     public static final String ARCHIVE_FILE_BATCH_SIZE = "opencga.archive.file_batch_size";
     public static final int DEFAULT_ARCHIVE_FILE_BATCH_SIZE = 1000;
+    // Row key format of new archive tables. 1: string (default), 2: binary. See ArchiveRowKeyFactory
+    public static final String ARCHIVE_ROW_KEY_FORMAT = "opencga.archive.row_key.format";
+    public static final int DEFAULT_ARCHIVE_ROW_KEY_FORMAT = 1;
     public static final String ARCHIVE_FIELDS = "opencga.archive.fields";
     public static final String ARCHIVE_NON_REF_FILTER = "opencga.archive.non-ref.filter";
 
@@ -193,6 +205,9 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
     public static final String STATS_LOCAL = "stats.local";
 
     public static final String DBADAPTOR_PHOENIX_FETCH_SIZE = "dbadaptor.phoenix.fetch_size";
+    // Max number of query shapes with cached PreparedStatements. Disabled by default, as it only saves the SQL parsing.
+    public static final String DBADAPTOR_PHOENIX_STATEMENT_CACHE_SIZE = "dbadaptor.phoenix.statement_cache.size";
+    public static final int DEFAULT_DBADAPTOR_PHOENIX_STATEMENT_CACHE_SIZE = 0;
     public static final String MISSING_GENOTYPES_UPDATED = "missing_genotypes_updated";
     public static final int FILL_GAPS_MAX_SAMPLES = 100;
 
@@ -355,6 +370,7 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
                     logger.error("Problems shutting executer service down", e);
                 }
             }
+            invalidateExistsCache();
         }
         return concurrResult;
     }
@@ -450,6 +466,44 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
         fillGapsOrMissing(study, studyConfiguration, fileIds, sampleIds, true, false, options);
     }
 
+    @Override
+    public void ibs(String study, List<String> samples, List<Region> regions, URI outputFile, ObjectMap options)
+            throws StorageEngineException, IOException {
+        if (outputFile == null || StringUtils.isEmpty(outputFile.getScheme()) || outputFile.getScheme().equals("file")) {
+            super.ibs(study, samples, regions, outputFile, options);
+        } else if (outputFile.getScheme().equals("hdfs")) {
+            FileSystem fileSystem = FileSystem.get(getDBAdaptor().getConfiguration());
+            if (fileSystem.exists(new org.apache.hadoop.fs.Path(outputFile))) {
+                throw new IOException("Output directory " + outputFile + " already exists!");
+            }
+            ObjectMap mergedOptions = getMergedOptions(options);
+            samples = getIbsSamples(study, samples);
+            int studyId = getStudyConfigurationManager().getStudyId(study, null);
+            ObjectMap params = new ObjectMap(mergedOptions)
+                    .append(SampleIndexIbsDriver.SAMPLES, String.join(",", samples))
+                    .append(SampleIndexIbsDriver.OUTPUT, outputFile.toString());
+            if (regions != null && !regions.isEmpty()) {
+                params.append(SampleIndexIbsDriver.REGIONS, regions.stream().map(Region::toString).collect(Collectors.joining(",")));
+            }
+            String[] args = SampleIndexIbsDriver.buildArgs(null, getVariantTableName(), studyId, null, params);
+            getMRExecutor().run(SampleIndexIbsDriver.class, args, mergedOptions,
+                    "Identity by state of " + samples.size() + " samples");
+        } else {
+            throw new IllegalArgumentException("Unknown output scheme '" + outputFile.getScheme() + "' for file " + outputFile);
+        }
+    }
+
+    @Override
+    protected IbsGenotypeSource newIbsGenotypeSource(String study, ObjectMap options) throws StorageEngineException {
+        return new SampleIndexIbsGenotypeSource(getSampleIndexDBAdaptor(), study,
+                options.getInt(SampleIndexIbsDriver.WINDOW_SIZE, SampleIndexDBLoader.BATCH_SIZE));
+    }
+
+    @Override
+    public VariantSampleFilter getVariantSampleFilter() throws StorageEngineException {
+        return new SampleIndexVariantSampleFilter(this, getSampleIndexDBAdaptor(), getStudyConfigurationManager());
+    }
+
     private void fillGapsOrMissing(String study, StudyConfiguration studyConfiguration, Set<Integer> fileIds, List<Integer> sampleIds,
                                    boolean fillGaps, boolean overwrite, ObjectMap inputOptions) throws StorageEngineException {
         ObjectMap options = new ObjectMap(getOptions());
@@ -541,6 +595,7 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
             exception = e;
             throw e;
         } finally {
+            invalidateExistsCache();
             boolean fail = exception != null;
             scm.lockAndUpdate(study, sc -> {
                 StudyConfigurationManager.setStatus(sc,
@@ -649,7 +704,6 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
             String archiveTable = getArchiveTableName(studyId);
             String variantsTable = getVariantTableName();
             String sampleIndexTable = getTableNameGenerator().getSampleIndexTableName(studyId);
-            options.put(DeleteHBaseColumnDriver.DELETE_HBASE_COLUMN_MAPPER_CLASS, MyDeleteHBaseColumnMapper.class.getName());
 
             long startTime = System.currentTimeMillis();
             logger.info("------------------------------------------------------");
@@ -669,7 +723,10 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
                     variantsColumns.add(family + ':' + VariantPhoenixHelper.getStudyColumn(studyId).column());
                 }
 
-                String[] deleteFromVariantsArgs = DeleteHBaseColumnDriver.buildArgs(variantsTable, variantsColumns, options);
+                // Mark the modified variants, so the search index is updated, or the variant removed if it has no more studies
+                ObjectMap variantsOptions = new ObjectMap(options)
+                        .append(DeleteHBaseColumnDriver.DELETE_HBASE_COLUMN_MAPPER_CLASS, MyDeleteHBaseColumnMapper.class.getName());
+                String[] deleteFromVariantsArgs = DeleteHBaseColumnDriver.buildArgs(variantsTable, variantsColumns, variantsOptions);
                 getMRExecutor().run(DeleteHBaseColumnDriver.class, deleteFromVariantsArgs, options, "Delete from variants table");
                 return 0;
             });
@@ -982,15 +1039,27 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
                     result.setNumTotalResults(result.getNumResults());
                 } else if (variants.hasNext()) {
                     long totalCount;
+                    Long totalCountError = null;
+                    Pair<Long, Long> estimate = sampleIndexQuery.getSamplesMap().size() == 1
+                            ? null
+                            : sampleIndexDBAdaptor.approximateCount(sampleIndexQuery);
                     if (sampleIndexQuery.getSamplesMap().size() == 1) {
                         Map.Entry<String, List<String>> entry = sampleIndexQuery.getSamplesMap().entrySet().iterator().next();
                         totalCount = sampleIndexDBAdaptor.count(
                                 sampleIndexQuery.getRegions(), sampleIndexQuery.getStudy(), entry.getKey(), entry.getValue());
+                    } else if (estimate != null) {
+                        // Estimate from the genotype sketches, instead of reading all the variants
+                        totalCount = estimate.getKey();
+                        totalCountError = estimate.getValue();
+                        logger.info("Sketch count estimate = " + totalCount + " +/- " + totalCountError);
                     } else {
                         Iterators.getLast(variants);
                         totalCount = variants.getCount();
                     }
                     long approxCount = totalCount / sampling * result.getNumResults();
+                    if (totalCountError != null) {
+                        result.setApproximateCountError(totalCountError * result.getNumResults() / sampling);
+                    }
                     logger.info("totalCount = " + totalCount);
                     logger.info("sampling = " + sampling);
                     logger.info("result.getNumResults() = " + result.getNumResults());
@@ -1236,7 +1305,10 @@ public class HadoopVariantStorageEngine extends VariantStorageEngine {
         @Override
         protected void map(ImmutableBytesWritable key, Result result, Context context) throws IOException, InterruptedException {
             super.map(key, result, context);
-    //        context.write(key, HadoopVariantSearchIndexUtils.addUnknownSyncStatus(new Put(result.getRow()), columnFamily));
+            // The scan only returns the columns to delete, so any returned row is modified
+            if (!result.isEmpty()) {
+                context.write(key, HadoopVariantSearchIndexUtils.addUnknownSyncStatus(new Put(result.getRow()), columnFamily));
+            }
         }
     }
 }
@@ -50,6 +50,7 @@ import org.opencb.opencga.storage.hadoop.auth.HBaseCredentials;
 import org.opencb.opencga.storage.hadoop.exceptions.StorageHadoopException;
 import org.opencb.opencga.storage.hadoop.utils.HBaseLock;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.archive.VariantHbaseTransformTask;
 import org.opencb.opencga.storage.hadoop.variant.executors.MRExecutor;
@@ -296,6 +297,17 @@ public abstract class HadoopVariantStoragePipeline extends VariantStoragePipelin
         } catch (IOException e) {
             throw new StorageHadoopException("Issue creating table " + getArchiveTable(), e);
         }
+        try {
+            // The row key format can not be changed once the table exists
+            int tableFormat = ArchiveTableHelper.getArchiveTableRowKeyFormat(dbAdaptor.getConnection(), getArchiveTable());
+            int format = new ArchiveRowKeyFactory(dbAdaptor.getGenomeHelper().getConf()).getFormat();
+            if (tableFormat != format) {
+                throw new StorageHadoopException("Archive table " + getArchiveTable() + " uses the row key format " + tableFormat
+                        + ", but " + ARCHIVE_ROW_KEY_FORMAT + " is " + format);
+            }
+        } catch (IOException e) {
+            throw new StorageHadoopException("Issue reading table " + getArchiveTable(), e);
+        }
         try {
             VariantTableHelper.createVariantTableIfNeeded(dbAdaptor.getGenomeHelper(), variantsTableCredentials.getTable(),
                     dbAdaptor.getConnection());
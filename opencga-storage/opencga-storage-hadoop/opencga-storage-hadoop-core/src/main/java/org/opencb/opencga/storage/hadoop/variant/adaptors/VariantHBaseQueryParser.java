@@ -308,6 +308,8 @@ public class VariantHBaseQueryParser {
 
             scan.addColumn(genomeHelper.getColumnFamily(), INDEX_NOT_SYNC.bytes());
             scan.addColumn(genomeHelper.getColumnFamily(), INDEX_UNKNOWN.bytes());
+            scan.addColumn(genomeHelper.getColumnFamily(), INDEX_NOT_SYNC_ANNOTATION.bytes());
+            scan.addColumn(genomeHelper.getColumnFamily(), INDEX_NOT_SYNC_STATS.bytes());
             scan.addColumn(genomeHelper.getColumnFamily(), INDEX_STUDIES.bytes());
 
             Filter f1 = existingColumnFilter(INDEX_NOT_SYNC.bytes());
@@ -603,8 +605,7 @@ public class VariantHBaseQueryParser {
             scan.setStartRow(keyFactory.generateBlockIdAsBytes(fileId, region.getChromosome(), region.getStart()));
             long endSlice = keyFactory.getSliceId((long) region.getEnd()) + 1;
             // +1 because the stop row is exclusive
-            scan.setStopRow(Bytes.toBytes(keyFactory.generateBlockIdFromSlice(
-                    fileId, region.getChromosome(), endSlice)));
+            scan.setStopRow(keyFactory.generateBlockIdFromSliceAsBytes(fileId, region.getChromosome(), endSlice));
         }
     }
 
@@ -19,6 +19,7 @@ package org.opencb.opencga.storage.hadoop.variant.adaptors;
 import com.google.common.collect.Iterators;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.StopWatch;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
@@ -39,8 +40,10 @@ import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
 import org.opencb.opencga.storage.core.metadata.ProjectMetadata;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
@@ -59,7 +62,9 @@ import org.opencb.opencga.storage.hadoop.variant.converters.stats.VariantStatsTo
 import org.opencb.opencga.storage.hadoop.variant.index.VariantHBaseResultSetIterator;
 import org.opencb.opencga.storage.hadoop.variant.index.VariantHBaseScanIterator;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.PhoenixHelper;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.PhoenixStatementCache;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHelper;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantSqlQueryParser;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantFileMetadataDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantStorageMetadataDBAdaptorFactory;
@@ -70,10 +75,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -90,6 +97,8 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
     public static final QueryParam ANNOT_NAME = QueryParam.create("annotName", "", Type.TEXT);
 
     protected static Logger logger = LoggerFactory.getLogger(VariantHadoopDBAdaptor.class);
+    private static final Set<VariantQueryParam> POINT_QUERY_PARAMS = Collections.unmodifiableSet(
+            new HashSet<>(Arrays.asList(STUDY, REGION, REFERENCE, ALTERNATE)));
     private final String variantTable;
     private final VariantPhoenixHelper phoenixHelper;
     private final HBaseCredentials credentials;
@@ -101,7 +110,10 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
     private final VariantSqlQueryParser queryParser;
     private final VariantHBaseQueryParser hbaseQueryParser;
     private final HBaseVariantFileMetadataDBAdaptor variantFileMetadataDBAdaptor;
+    // Row key format of each archive table. Fixed when the table is created
+    private final Map<String, Integer> archiveRowKeyFormats = new ConcurrentHashMap<>();
     private final int phoenixFetchSize;
+    private final PhoenixStatementCache statementCache;
     private boolean clientSideSkip;
     private HBaseManager hBaseManager;
 
@@ -130,6 +142,8 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
                 studyConfigurationManager.get(), clientSideSkip);
 
         phoenixFetchSize = options.getInt(HadoopVariantStorageEngine.DBADAPTOR_PHOENIX_FETCH_SIZE, -1);
+        statementCache = new PhoenixStatementCache(options.getInt(HadoopVariantStorageEngine.DBADAPTOR_PHOENIX_STATEMENT_CACHE_SIZE,
+                HadoopVariantStorageEngine.DEFAULT_DBADAPTOR_PHOENIX_STATEMENT_CACHE_SIZE));
 
         phoenixHelper = new VariantPhoenixHelper(genomeHelper);
 
@@ -152,6 +166,48 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         return phoenixCon.get();
     }
 
+    public PhoenixStatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * Execute a query, reusing a cached PreparedStatement for the query shape if possible. Falls back to a plain statement if the
+     * prepared statement fails.
+     *
+     * @param sql       SQL query
+     * @param fetchSize Fetch size, if any
+     * @return ResultSet, and the action to close or release the statement. Must be called after closing the ResultSet.
+     * @throws SQLException on error executing the query
+     */
+    private Pair<ResultSet, AutoCloseable> executeQuery(String sql, Integer fetchSize) throws SQLException {
+        java.sql.Connection connection = getJdbcConnection();
+        PhoenixStatementCache.QueryShape shape = PhoenixStatementCache.normalize(sql);
+        PreparedStatement preparedStatement = statementCache.prepare(connection, shape);
+        if (preparedStatement != null) {
+            try {
+                if (fetchSize != null) {
+                    preparedStatement.setFetchSize(fetchSize);
+                }
+                ResultSet resultSet = preparedStatement.executeQuery();
+                return Pair.of(resultSet, () -> statementCache.release(preparedStatement, shape));
+            } catch (SQLException e) {
+                // Do not cache the failed statement, but keep the shape, as the error may be unrelated to it
+                logger.debug("Unable to execute query shape " + shape.getSql() + ". Execute as plain statement", e);
+                statementCache.discard(preparedStatement);
+            }
+        }
+        Statement statement = connection.createStatement();
+        try {
+            if (fetchSize != null) {
+                statement.setFetchSize(fetchSize);
+            }
+            return Pair.of(statement.executeQuery(sql), statement::close);
+        } catch (SQLException e) {
+            statement.close();
+            throw e;
+        }
+    }
+
     public GenomeHelper getGenomeHelper() {
         return genomeHelper;
     }
@@ -197,8 +253,16 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         if (fileMetadata == null) {
             throw new StorageEngineException("File '" + fileId + "' not found in study '" + studyId + "'");
         }
-        return new ArchiveTableHelper(genomeHelper, studyId, fileMetadata);
-
+        String archiveTable = getTableNameGenerator().getArchiveTableName(studyId);
+        Integer format = archiveRowKeyFormats.get(archiveTable);
+        if (format == null) {
+            format = ArchiveTableHelper.getArchiveTableRowKeyFormat(getConnection(), archiveTable);
+            archiveRowKeyFormats.put(archiveTable, format);
+        }
+        // Read the archive table with its own row key format, regardless of the configured one
+        Configuration conf = new Configuration(genomeHelper.getConf());
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_FORMAT, format);
+        return new ArchiveTableHelper(conf, studyId, fileMetadata);
     }
 
     @Deprecated
@@ -220,7 +284,12 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
     public void close() throws IOException {
         this.hBaseManager.close();
         try {
-           close(this.phoenixCon.getAndSet(null));
+            java.sql.Connection connection = this.phoenixCon.getAndSet(null);
+            if (connection != null) {
+                logger.info("Phoenix statement cache: " + statementCache);
+                statementCache.invalidate(connection);
+            }
+            close(connection);
         } catch (SQLException e) {
             throw new IOException(e);
         }
@@ -351,17 +420,63 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         long startTime = System.currentTimeMillis();
         String sql = queryParser.parse(query, new QueryOptions(QueryOptions.COUNT, true)).getSql();
         logger.info(sql);
-        try (Statement statement = getJdbcConnection().createStatement();
-             ResultSet resultSet = statement.executeQuery(sql)) { // Cleans up Statement and RS
-            resultSet.next();
-            long count = resultSet.getLong(1);
+        try {
+            Pair<ResultSet, AutoCloseable> pair = executeQuery(sql, null);
+            long count;
+            try (AutoCloseable statement = pair.getValue();
+                 ResultSet resultSet = pair.getKey()) { // Cleans up RS, then Statement
+                resultSet.next();
+                count = resultSet.getLong(1);
+            }
             return new QueryResult<>("count", ((int) (System.currentTimeMillis() - startTime)),
                     1, 1, "", "", Collections.singletonList(count));
-        } catch (SQLException e) {
+        } catch (Exception e) {
+            throw VariantQueryException.internalException(e);
+        }
+    }
+
+    /**
+     * Beacon like queries for SNVs, by study, position, reference and alternate, are resolved with one HBase Get
+     * over the study column of the expected row. Any other query goes through Phoenix with a limit 1.
+     */
+    @Override
+    public boolean exists(Query query) {
+        byte[] rowKey = getPointQueryRowKey(query);
+        if (rowKey == null) {
+            return VariantDBAdaptor.super.exists(query);
+        }
+        Integer studyId = getStudyConfigurationManager().getStudyId(query.getString(STUDY.key()), null);
+        Get get = new Get(rowKey);
+        get.addColumn(genomeHelper.getColumnFamily(), VariantPhoenixHelper.getStudyColumn(studyId).bytes());
+        try {
+            return getHBaseManager().act(variantTable, (HBaseManager.HBaseTableFunction<Boolean>) table -> table.exists(get));
+        } catch (IOException e) {
             throw VariantQueryException.internalException(e);
         }
     }
 
+    private static byte[] getPointQueryRowKey(Query query) {
+        if (query == null || !validParams(query).equals(POINT_QUERY_PARAMS)) {
+            return null;
+        }
+        String study = query.getString(STUDY.key());
+        String regionStr = query.getString(REGION.key());
+        String ref = query.getString(REFERENCE.key());
+        String alt = query.getString(ALTERNATE.key());
+        // Regions match any overlapping variant, like in the generic path. Only SNVs overlap a single position
+        // if and only if they start on it, so any other variant type can not be resolved with a single Get.
+        if (study.contains(",") || study.contains(";") || isNegated(study) || regionStr.contains(",")
+                || ref.length() != 1 || alt.length() != 1
+                || !StringUtils.containsOnly(ref, "ACGTN") || !StringUtils.containsOnly(alt, "ACGTN")) {
+            return null;
+        }
+        Region region = Region.parseRegion(regionStr);
+        if (region.getStart() != region.getEnd()) {
+            return null;
+        }
+        return VariantPhoenixKeyFactory.generateSimpleVariantRowKey(region.getChromosome(), region.getStart(), ref, alt);
+    }
+
     @Override
     public QueryResult distinct(Query query, String field) {
         // TODO Auto-generated method stub
@@ -478,9 +593,9 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
             logger.info(sql);
             logger.debug("Creating {} iterator", VariantHBaseResultSetIterator.class);
             try {
-                Statement statement = getJdbcConnection().createStatement(); // Statemnet closed by iterator
-                statement.setFetchSize(options.getInt("batchSize", phoenixFetchSize));
-                ResultSet resultSet = statement.executeQuery(sql); // RS closed by iterator
+                // Statement and RS closed by iterator
+                Pair<ResultSet, AutoCloseable> pair = executeQuery(sql, options.getInt("batchSize", phoenixFetchSize));
+                ResultSet resultSet = pair.getKey();
 
                 if (options.getBoolean("explain", false)) {
                     logger.info("---- " + "EXPLAIN " + sql);
@@ -498,7 +613,7 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
                 }
 
 //                VariantPhoenixCursorIterator iterator = new VariantPhoenixCursorIterator(phoenixQuery, getJdbcConnection(), converter);
-                VariantHBaseResultSetIterator iterator = new VariantHBaseResultSetIterator(statement,
+                VariantHBaseResultSetIterator iterator = new VariantHBaseResultSetIterator(pair.getValue(),
                         resultSet, genomeHelper, getStudyConfigurationManager(), phoenixQuery.getSelect(),
                         formats, unknownGenotype, options);
 
@@ -596,7 +711,7 @@ public class VariantHadoopDBAdaptor implements VariantDBAdaptor {
         VariantStatsToHBaseConverter converter = new VariantStatsToHBaseConverter(genomeHelper, studyConfiguration);
         List<Put> puts = converter.apply(variantStatsWrappers);
         for (Put put : puts) {
-            HadoopVariantSearchIndexUtils.addNotSyncStatus(put, genomeHelper.getColumnFamily());
+            HadoopVariantSearchIndexUtils.addNotSyncStatus(put, genomeHelper.getColumnFamily(), SyncGroup.STATS);
         }
 
         long start = System.currentTimeMillis();
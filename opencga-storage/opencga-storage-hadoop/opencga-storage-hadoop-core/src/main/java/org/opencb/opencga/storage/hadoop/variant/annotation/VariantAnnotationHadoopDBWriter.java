@@ -1,6 +1,7 @@
 package org.opencb.opencga.storage.hadoop.variant.annotation;
 
 import org.apache.hadoop.hbase.client.Put;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
 import org.opencb.opencga.storage.hadoop.utils.HBaseDataWriter;
 import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
 import org.opencb.opencga.storage.hadoop.variant.search.HadoopVariantSearchIndexUtils;
@@ -24,7 +25,7 @@ public class VariantAnnotationHadoopDBWriter extends HBaseDataWriter<Put> {
     @Override
     protected List<Put> convert(List<Put> puts) {
         for (Put put : puts) {
-            HadoopVariantSearchIndexUtils.addNotSyncStatus(put, columnFamily);
+            HadoopVariantSearchIndexUtils.addNotSyncStatus(put, columnFamily, SyncGroup.ANNOTATION);
         }
 
         return puts;
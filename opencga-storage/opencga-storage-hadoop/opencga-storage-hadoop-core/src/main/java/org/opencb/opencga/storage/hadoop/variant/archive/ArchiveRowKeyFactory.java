@@ -21,6 +21,10 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.opencb.biodata.models.core.Region;
 import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.opencb.opencga.storage.hadoop.variant.GenomeHelper.DEFAULT_ROWKEY_SEPARATOR;
 import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine.*;
@@ -28,13 +32,40 @@ import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngi
 /**
  * Created on 25/04/17.
  *
+ * Generates and parses the row keys of the archive table. There are two row key formats, defined by
+ * {@link HadoopVariantStorageEngine#ARCHIVE_ROW_KEY_FORMAT}:
+ * <ul>
+ * <li>{@link #STRING_FORMAT}: {@code <file_batch>_<chromosome>_<slice>}, with zero padded numbers. e.g. {@code 00001_22_000000012345}
+ * <li>{@link #BINARY_FORMAT}: {@code <file_batch:int><chromosome_id:short><slice:long>}. The chromosome id is taken from a fixed
+ * dictionary of the human chromosomes. Other contigs use the id {@link #OTHER_CHROMOSOME_ID}, followed by the chromosome name and a
+ * 0 byte. Both formats keep the order by file batch, chromosome and slice.
+ * </ul>
+ * The format of a table can not be changed once it contains data.
+ *
  * @author Jacobo Coll &lt;jacobo167@gmail.com&gt;
  */
 public class ArchiveRowKeyFactory {
 
+    public static final int STRING_FORMAT = 1;
+    public static final int BINARY_FORMAT = 2;
+
+    public static final short OTHER_CHROMOSOME_ID = 0;
+    // Do not modify! The position of each chromosome is its id in the BINARY_FORMAT
+    private static final String[] CHROMOSOMES = {null,
+            "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "13", "14", "15", "16", "17", "18", "19", "20", "21", "22",
+            "X", "Y", "MT", };
+    private static final Map<String, Short> CHROMOSOME_IDS = new HashMap<>();
+
+    static {
+        for (short i = 1; i < CHROMOSOMES.length; i++) {
+            CHROMOSOME_IDS.put(CHROMOSOMES[i], i);
+        }
+    }
+
     private final int chunkSize;
     private final char separator;
     private final int fileBatchSize;
+    private final int format;
 
     private static final int FILE_BATCH_IDX = 0;
     private static final int CHROMOSOME_IDX = 1;
@@ -44,16 +75,29 @@ public class ArchiveRowKeyFactory {
     private static final int FILE_BATCH_PAD = 5;
     private static final int POSITION_PAD = 12;
 
+    private static final int CHROMOSOME_ID_OFFSET = Bytes.SIZEOF_INT;
+    private static final int CHROMOSOME_NAME_OFFSET = CHROMOSOME_ID_OFFSET + Bytes.SIZEOF_SHORT;
+    private static final int BINARY_KEY_LENGTH = CHROMOSOME_NAME_OFFSET + Bytes.SIZEOF_LONG;
+
     public ArchiveRowKeyFactory(Configuration conf) {
-        this.chunkSize = conf.getInt(ARCHIVE_CHUNK_SIZE, DEFAULT_ARCHIVE_CHUNK_SIZE);
-        this.separator = conf.get(ARCHIVE_ROW_KEY_SEPARATOR, DEFAULT_ROWKEY_SEPARATOR).charAt(0);
-        this.fileBatchSize = conf.getInt(ARCHIVE_FILE_BATCH_SIZE, DEFAULT_ARCHIVE_FILE_BATCH_SIZE);
+        this(conf.getInt(ARCHIVE_CHUNK_SIZE, DEFAULT_ARCHIVE_CHUNK_SIZE),
+                conf.get(ARCHIVE_ROW_KEY_SEPARATOR, DEFAULT_ROWKEY_SEPARATOR).charAt(0),
+                conf.getInt(ARCHIVE_FILE_BATCH_SIZE, DEFAULT_ARCHIVE_FILE_BATCH_SIZE),
+                conf.getInt(ARCHIVE_ROW_KEY_FORMAT, DEFAULT_ARCHIVE_ROW_KEY_FORMAT));
     }
 
     public ArchiveRowKeyFactory(int chunkSize, char separator, int fileBatchSize) {
+        this(chunkSize, separator, fileBatchSize, STRING_FORMAT);
+    }
+
+    public ArchiveRowKeyFactory(int chunkSize, char separator, int fileBatchSize, int format) {
+        if (format != STRING_FORMAT && format != BINARY_FORMAT) {
+            throw new IllegalArgumentException("Unknown archive row key format " + format);
+        }
         this.chunkSize = chunkSize;
         this.separator = separator;
         this.fileBatchSize = fileBatchSize;
+        this.format = format;
     }
 
     public int getChunkSize() {
@@ -64,6 +108,10 @@ public class ArchiveRowKeyFactory {
         return separator;
     }
 
+    public int getFormat() {
+        return format;
+    }
+
     public long getSliceId(long position) {
         return chunkSize > 0
                 ? position / (long) chunkSize
@@ -96,6 +144,8 @@ public class ArchiveRowKeyFactory {
      * </ul>
      * e.g. using chunk size 100, separator _ with chr2 and 1234 would result in
      * 2_12
+     * <br>
+     * Always uses the {@link #STRING_FORMAT} layout. Use {@link #generateBlockIdAsBytes(int, String, long)} to build row keys.
      *
      * @param fileId   File id
      * @param chrom    Chromosome name
@@ -121,15 +171,172 @@ public class ArchiveRowKeyFactory {
     }
 
     /**
-     * Changes the String from {@link #generateBlockId(int, String, long)} to bytes.
+     * Generates the row key of the archive table, in the format of this factory.
      *
-     * @param fileId File id
-     * @param chrom  Chromosome
-     * @param start  Position
+     * @param fileId   File id
+     * @param chrom    Chromosome
+     * @param position Position
      * @return {@link Byte} array
      */
-    public byte[] generateBlockIdAsBytes(int fileId, String chrom, int start) {
-        return Bytes.toBytes(generateBlockId(fileId, chrom, start));
+    public byte[] generateBlockIdAsBytes(int fileId, String chrom, long position) {
+        return generateBlockIdFromSliceAndBatchAsBytes(getFileBatch(fileId), chrom, getSliceId(position));
+    }
+
+    public byte[] generateBlockIdAsBytes(Variant variant, int fileId) {
+        return generateBlockIdFromSliceAsBytes(fileId, variant.getChromosome(), getSliceId(variant.getStart()));
+    }
+
+    public byte[] generateBlockIdFromSliceAsBytes(int fileId, String chrom, long slice) {
+        return generateBlockIdFromSliceAndBatchAsBytes(getFileBatch(fileId), chrom, slice);
+    }
+
+    public byte[] generateBlockIdFromSliceAndBatchAsBytes(int fileBatch, String chrom, long slice) {
+        if (format == STRING_FORMAT) {
+            return Bytes.toBytes(generateBlockIdFromSliceAndBatch(fileBatch, chrom, slice));
+        }
+        String chromosome = Region.normalizeChromosome(chrom);
+        Short chromosomeId = CHROMOSOME_IDS.get(chromosome);
+        byte[] blockId;
+        int offset;
+        if (chromosomeId != null) {
+            blockId = new byte[BINARY_KEY_LENGTH];
+            offset = Bytes.putInt(blockId, 0, fileBatch);
+            offset = Bytes.putShort(blockId, offset, chromosomeId);
+        } else {
+            byte[] chromosomeBytes = Bytes.toBytes(chromosome);
+            blockId = new byte[BINARY_KEY_LENGTH + chromosomeBytes.length + 1];
+            offset = Bytes.putInt(blockId, 0, fileBatch);
+            offset = Bytes.putShort(blockId, offset, OTHER_CHROMOSOME_ID);
+            offset = Bytes.putBytes(blockId, offset, chromosomeBytes, 0, chromosomeBytes.length);
+            // Separate the name from the slice, so "chrA" sorts before "chrAB"
+            offset = Bytes.putByte(blockId, offset, (byte) 0);
+        }
+        Bytes.putLong(blockId, offset, slice);
+        return blockId;
+    }
+
+    public int extractFileBatchFromBlockId(byte[] blockId) {
+        return extractFileBatchFromBlockId(blockId, 0, blockId.length);
+    }
+
+    /**
+     * Reads the file batch of a row key without creating any object.
+     *
+     * @param blockId Buffer with the row key
+     * @param offset  Offset of the row key in the buffer
+     * @param length  Length of the row key
+     * @return File batch
+     */
+    public int extractFileBatchFromBlockId(byte[] blockId, int offset, int length) {
+        if (format == BINARY_FORMAT) {
+            return Bytes.toInt(blockId, offset);
+        } else {
+            return (int) parseLong(blockId, offset, indexOf(blockId, offset, length, (byte) separator));
+        }
+    }
+
+    public long extractSliceFromBlockId(byte[] blockId) {
+        return extractSliceFromBlockId(blockId, 0, blockId.length);
+    }
+
+    /**
+     * Reads the slice of a row key without creating any object.
+     *
+     * @param blockId Buffer with the row key
+     * @param offset  Offset of the row key in the buffer
+     * @param length  Length of the row key
+     * @return Slice
+     */
+    public long extractSliceFromBlockId(byte[] blockId, int offset, int length) {
+        if (format == BINARY_FORMAT) {
+            return Bytes.toLong(blockId, offset + length - Bytes.SIZEOF_LONG);
+        } else {
+            int sliceStart = lastIndexOf(blockId, offset, length, (byte) separator) + 1;
+            return parseLong(blockId, sliceStart, offset + length);
+        }
+    }
+
+    public long extractPositionFromBlockId(byte[] blockId, int offset, int length) {
+        return getStartPositionFromSlice(extractSliceFromBlockId(blockId, offset, length));
+    }
+
+    public String extractChromosomeFromBlockId(byte[] blockId) {
+        return extractChromosomeFromBlockId(blockId, 0, blockId.length);
+    }
+
+    /**
+     * Reads the chromosome of a row key. Chromosomes from the dictionary of the {@link #BINARY_FORMAT} are not copied.
+     *
+     * @param blockId Buffer with the row key
+     * @param offset  Offset of the row key in the buffer
+     * @param length  Length of the row key
+     * @return Chromosome
+     */
+    public String extractChromosomeFromBlockId(byte[] blockId, int offset, int length) {
+        if (format == BINARY_FORMAT) {
+            short chromosomeId = Bytes.toShort(blockId, offset + CHROMOSOME_ID_OFFSET);
+            if (chromosomeId != OTHER_CHROMOSOME_ID) {
+                return CHROMOSOMES[chromosomeId];
+            }
+            // Skip the 0 byte after the chromosome name
+            return Bytes.toString(blockId, offset + CHROMOSOME_NAME_OFFSET, length - BINARY_KEY_LENGTH - 1);
+        } else {
+            int chromosomeStart = indexOf(blockId, offset, length, (byte) separator) + 1;
+            int chromosomeEnd = lastIndexOf(blockId, offset, length, (byte) separator);
+            return Bytes.toString(blockId, chromosomeStart, chromosomeEnd - chromosomeStart);
+        }
+    }
+
+    public Region extractRegionFromBlockId(byte[] blockId) {
+        String chr = extractChromosomeFromBlockId(blockId);
+        long position = extractPositionFromBlockId(blockId, 0, blockId.length);
+
+        return new Region(chr, (int) position, (int) (position + getChunkSize()));
+    }
+
+    /**
+     * Readable representation of a row key, for logging. Same as the {@link #STRING_FORMAT}.
+     *
+     * @param blockId Row key
+     * @return Readable row key
+     */
+    public String toString(byte[] blockId) {
+        if (format == STRING_FORMAT) {
+            return Bytes.toString(blockId);
+        } else {
+            return generateBlockIdFromSliceAndBatch(extractFileBatchFromBlockId(blockId), extractChromosomeFromBlockId(blockId),
+                    extractSliceFromBlockId(blockId));
+        }
+    }
+
+    private static int indexOf(byte[] bytes, int offset, int length, byte b) {
+        for (int i = offset; i < offset + length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Block ID is not valid. Separator not found in " + Bytes.toStringBinary(bytes, offset, length));
+    }
+
+    private static int lastIndexOf(byte[] bytes, int offset, int length, byte b) {
+        for (int i = offset + length - 1; i >= offset; i--) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Block ID is not valid. Separator not found in " + Bytes.toStringBinary(bytes, offset, length));
+    }
+
+    private static long parseLong(byte[] bytes, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid number " + Bytes.toStringBinary(bytes, start, end - start));
+            }
+            value = value * 10 + digit;
+        }
+        return value;
     }
 
     public int extractFileBatchFromBlockId(String blockId) {
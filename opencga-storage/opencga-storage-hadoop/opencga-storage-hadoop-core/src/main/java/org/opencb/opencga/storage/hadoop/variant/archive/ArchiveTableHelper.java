@@ -23,6 +23,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Connection;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Table;
 import org.apache.hadoop.hbase.io.compress.Compression;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.opencb.biodata.models.variant.VariantFileMetadata;
@@ -38,6 +39,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -189,7 +191,41 @@ public class ArchiveTableHelper extends GenomeHelper {
         Compression.Algorithm compression = Compression.getCompressionAlgorithmByName(
                 genomeHelper.getConf().get(HadoopVariantStorageEngine.ARCHIVE_TABLE_COMPRESSION, Compression.Algorithm.SNAPPY.getName()));
         final List<byte[]> preSplits = generateArchiveTableBootPreSplitHuman(genomeHelper.getConf());
-        return HBaseManager.createTableIfNeeded(con, tableName, genomeHelper.getColumnFamily(), preSplits, compression);
+        int rowKeyFormat = new ArchiveRowKeyFactory(genomeHelper.getConf()).getFormat();
+        return HBaseManager.createTableIfNeeded(con, tableName, genomeHelper.getColumnFamily(), preSplits, compression,
+                Collections.singletonMap(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_FORMAT, String.valueOf(rowKeyFormat)));
+    }
+
+    /**
+     * Read the row key format of an existing archive table.
+     *
+     * @param con       HBase connection object
+     * @param tableName Archive table name
+     * @return Row key format, as defined in {@link ArchiveRowKeyFactory}
+     * @throws IOException If any IO problem occurs
+     */
+    public static int getArchiveTableRowKeyFormat(Connection con, String tableName) throws IOException {
+        return HBaseManager.act(con, tableName, (Table table) -> {
+            String format = table.getTableDescriptor().getValue(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_FORMAT);
+            // Tables created before the format was configurable use the string format
+            return format == null ? ArchiveRowKeyFactory.STRING_FORMAT : Integer.parseInt(format);
+        });
+    }
+
+    /**
+     * Copy the row key format of an existing archive table into the configuration. Every {@link ArchiveRowKeyFactory} created
+     * from this configuration, e.g. in the MapReduce tasks, will use the format of the table, regardless of the configured one.
+     *
+     * @param conf      Configuration to modify
+     * @param con       HBase connection object
+     * @param tableName Archive table name
+     * @return Row key format of the table
+     * @throws IOException If any IO problem occurs
+     */
+    public static int setArchiveTableRowKeyFormat(Configuration conf, Connection con, String tableName) throws IOException {
+        int format = getArchiveTableRowKeyFormat(con, tableName);
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_FORMAT, format);
+        return format;
     }
 
     public static List<byte[]> generateArchiveTableBootPreSplitHuman(Configuration conf) {
@@ -206,7 +242,7 @@ public class ArchiveTableHelper extends GenomeHelper {
         for (int batch = 0; batch <= expectedNumBatches; batch++) {
             int finalBatch = batch;
             preSplits.addAll(generateBootPreSplitsHuman(nSplits, (chr, start) ->
-                    Bytes.toBytes(rowKeyFactory.generateBlockIdFromSliceAndBatch(finalBatch, chr, start))));
+                    rowKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(finalBatch, chr, start)));
         }
         return preSplits;
     }
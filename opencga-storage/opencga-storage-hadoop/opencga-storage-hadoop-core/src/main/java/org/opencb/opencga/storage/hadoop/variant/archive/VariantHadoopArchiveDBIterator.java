@@ -121,7 +121,6 @@ public class VariantHadoopArchiveDBIterator extends VariantDBIterator implements
                     return null;
                 }
                 Result result = fetch(iterator::next);
-                byte[] rid = result.getRow();
                 try {
                     byte[] nonRefValue = result.getValue(columnFamily, nonRefColumnBytes);
                     if (nonRefValue != null && nonRefValue.length > 0) {
@@ -83,7 +83,7 @@ public class VariantToVcfSliceMapper extends Mapper<AvroKey<VariantAvro>, NullWr
         for (long slicePos : slicePositionArr) {
             VcfSlice slice = converter.convert(Collections.singletonList(variant), (int) slicePos);
             ImmutableBytesWritable rowKey = new ImmutableBytesWritable(getHelper().getKeyFactory().
-                    generateBlockIdAsBytes(getHelper().getFileId(), variant.getChromosome(), (int) slicePos));
+                    generateBlockIdAsBytes(getHelper().getFileId(), variant.getChromosome(), slicePos));
             context.write(rowKey, new VcfSliceWritable(slice));
         }
 
@@ -39,6 +39,7 @@ import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.converters.VariantTraitAssociationToEvidenceEntryConverter;
 import org.opencb.opencga.storage.core.variant.io.json.mixin.VariantAnnotationMixin;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchUtils;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 import org.opencb.opencga.storage.hadoop.variant.converters.AbstractPhoenixConverter;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHelper;
@@ -185,7 +186,16 @@ public class HBaseToVariantAnnotationConverter extends AbstractPhoenixConverter
         // Arrays.equals(PBoolean.TRUE_BYTES, result.getFamilyMap(columnFamily).get(VariantColumn.INDEX_UNKNOWN.bytes()))
         VariantStorageEngine.SyncStatus syncStatus = HadoopVariantSearchIndexUtils.getSyncStatus(notSync, unknown, studies);
 
-        return post(variantAnnotation, releases, syncStatus, studies, annotationId);
+        Set<VariantStorageEngine.SyncGroup> syncGroups = null;
+        if (ts > 0 && syncStatus != VariantStorageEngine.SyncStatus.SYNCHRONIZED) {
+            Cell annotationCell = result.getColumnLatestCell(columnFamily, VariantColumn.INDEX_NOT_SYNC_ANNOTATION.bytes());
+            Cell statsCell = result.getColumnLatestCell(columnFamily, VariantColumn.INDEX_NOT_SYNC_STATS.bytes());
+            syncGroups = HadoopVariantSearchIndexUtils.getSyncGroups(unknown,
+                    annotationCell != null && annotationCell.getTimestamp() > ts,
+                    statsCell != null && statsCell.getTimestamp() > ts);
+        }
+
+        return post(variantAnnotation, releases, syncStatus, syncGroups, studies, annotationId);
     }
 
     public VariantAnnotation convert(ResultSet resultSet) {
@@ -261,7 +271,7 @@ public class HBaseToVariantAnnotationConverter extends AbstractPhoenixConverter
             }
         }
 
-        return post(variantAnnotation, releases, syncStatus, studies, annotationId);
+        return post(variantAnnotation, releases, syncStatus, null, studies, annotationId);
     }
 
     public Integer findColumn(ResultSet resultSet, String column) {
@@ -278,7 +288,7 @@ public class HBaseToVariantAnnotationConverter extends AbstractPhoenixConverter
     }
 
     private VariantAnnotation post(VariantAnnotation variantAnnotation, List<Integer> releases, VariantStorageEngine.SyncStatus syncStatus,
-                                   List<Integer> studies, String annotationId) {
+                                   Set<VariantStorageEngine.SyncGroup> syncGroups, List<Integer> studies, String annotationId) {
         boolean hasRelease = releases != null && !releases.isEmpty();
         boolean hasIndex = syncStatus != null || studies != null;
         boolean hasAnnotationId = StringUtils.isNotEmpty(annotationId);
@@ -352,6 +362,10 @@ public class HBaseToVariantAnnotationConverter extends AbstractPhoenixConverter
                 additionalAttribute.getAttribute().put(VariantField.AdditionalAttributes.INDEX_STUDIES.key(),
                         studies.stream().map(Object::toString).collect(Collectors.joining(",")));
             }
+            if (syncGroups != null) {
+                additionalAttribute.getAttribute().put(VariantField.AdditionalAttributes.INDEX_SYNC_GROUPS.key(),
+                        VariantSearchUtils.syncGroupsToString(syncGroups));
+            }
         }
 
         if (hasAnnotationId) {
@@ -177,15 +177,13 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
             if (vcfSlicePair == null) {
                 continue;
             }
-            VcfSlice nonRefVcfSlice = vcfSlicePair.getNonRefVcfSlice();
-            ListIterator<VcfSliceProtos.VcfRecord> nonRefIterator = nonRefVcfSlice == null
-                    ? Collections.<VcfSliceProtos.VcfRecord>emptyList().listIterator()
-                    : nonRefVcfSlice.getRecordsList().listIterator();
-            VcfSlice refVcfSlice = vcfSlicePair.getRefVcfSlice();
-            ListIterator<VcfSliceProtos.VcfRecord> refIterator = refVcfSlice == null
-                    ? Collections.<VcfSliceProtos.VcfRecord>emptyList().listIterator()
-                    : refVcfSlice.getRecordsList().listIterator();
-
+            // Index each VcfSlice once, and use it for all the variants of the block
+            VcfSliceOverlapIndex nonRefIndex = vcfSlicePair.getNonRefVcfSlice() == null
+                    ? null
+                    : new VcfSliceOverlapIndex(vcfSlicePair.getNonRefVcfSlice());
+            VcfSliceOverlapIndex refIndex = vcfSlicePair.getRefVcfSlice() == null
+                    ? null
+                    : new VcfSliceOverlapIndex(vcfSlicePair.getRefVcfSlice());
 
             Set<Integer> sampleIds = studyConfiguration.getSamplesInFiles().get(fileId);
             for (Variant variant : variants) {
@@ -193,7 +191,7 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
 
                 StopWatch stopWatch = new StopWatch().start();
                 VariantOverlappingStatus overlappingStatus = fillGapsTask.fillGaps(variant, sampleIds, put, sampleIndexPuts, fileId,
-                        nonRefVcfSlice, nonRefIterator, refVcfSlice, refIterator);
+                        nonRefIndex, refIndex);
                 increment("OVERLAPPING_STATUS_" + String.valueOf(overlappingStatus), context.fileBatch, 1);
                 increment("OVERLAPPING_STATUS_" + String.valueOf(overlappingStatus), context.fileBatch, stopWatch);
             }
@@ -237,10 +235,9 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
         protected Context(Result result) throws IOException {
             this.rowKey = result.getRow();
             this.result = result;
-            String blockId = Bytes.toString(rowKey);
-            region = rowKeyFactory.extractRegionFromBlockId(blockId);
+            region = rowKeyFactory.extractRegionFromBlockId(rowKey);
 
-            fileBatch = rowKeyFactory.extractFileBatchFromBlockId(blockId);
+            fileBatch = rowKeyFactory.extractFileBatchFromBlockId(rowKey);
             this.fileIdsInBatch = new TreeSet<>();
             for (Integer fileId : AbstractFillFromArchiveTask.this.fileIds) {
                 if (rowKeyFactory.getFileBatch(fileId) == fileBatch) {
@@ -248,7 +245,7 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
                 }
             }
             if (fileIdsInBatch.isEmpty()) {
-                throw new IllegalStateException("Read data from RK " + blockId + " from file batch " + fileBatch
+                throw new IllegalStateException("Read data from RK " + rowKeyFactory.toString(rowKey) + " from file batch " + fileBatch
                         + " without any file from " + AbstractFillFromArchiveTask.this.fileIds);
             }
 
@@ -270,7 +267,7 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
                 if (pair == null) {
                     if (fileBatch != rowKeyFactory.getFileBatch(fileId)) {
                         // This should never happen
-                        logger.warn("Skip VcfSlice for file " + fileId + " in RK " + Bytes.toString(rowKey));
+                        logger.warn("Skip VcfSlice for file " + fileId + " in RK " + rowKeyFactory.toString(rowKey));
                     }
                     vcfSliceNotFound(fileId);
                 }
@@ -288,7 +285,7 @@ public abstract class AbstractFillFromArchiveTask implements Task<Result, Abstra
                     increment("PARSE_VCF_SLICE", fileBatch, stopWatch);
                     increment("PARSE_VCF_SLICE", fileBatch, 1);
                 } catch (InvalidProtocolBufferException | RuntimeException e) {
-                    throw new IOException("Error parsing data from row " + Bytes.toString(rowKey), e);
+                    throw new IOException("Error parsing data from row " + rowKeyFactory.toString(rowKey), e);
                 }
             } else {
                 vcfSlice = null;
@@ -45,6 +45,10 @@ public class FillGapsFromVariantTask implements TaskWithException<Variant, Put,
     private final Map<Integer, byte[]> fileToNonRefColumnMap = new HashMap<>();
     private final Logger logger = LoggerFactory.getLogger(FillGapsFromVariantTask.class);
     private FillGapsTask fillGapsTask;
+    // Indexes over the VcfSlices of the last archive block read, by file. Variants are expected to be sorted,
+    // so consecutive variants use the same block.
+    private byte[] blockRowKey;
+    private final Map<Integer, VcfSliceOverlapIndex> blockIndexes = new HashMap<>();
 
     public FillGapsFromVariantTask(HBaseManager hBaseManager,
                                    String archiveTableName,
@@ -138,20 +142,21 @@ public class FillGapsFromVariantTask implements TaskWithException<Variant, Put,
         for (Integer missingSample : missingSamples) {
             fileIds.add(samplesFileMap.get(missingSample));
         }
-        Get get = new Get(Bytes.toBytes(archiveRowKeyFactory.generateBlockId(variant, anyFileId)));
-        for (Integer fileId : fileIds) {
-            get.addColumn(helper.getColumnFamily(), fileToNonRefColumnMap.get(fileId));
+        byte[] rowKey = archiveRowKeyFactory.generateBlockIdAsBytes(variant, anyFileId);
+        if (!Arrays.equals(rowKey, blockRowKey)) {
+            blockRowKey = rowKey;
+            blockIndexes.clear();
         }
+        readBlock(fileIds);
 
         Put put = new Put(VariantPhoenixKeyFactory.generateVariantRowKey(variant));
-        Result result = archiveTable.get(get);
         for (Integer fileId : fileIds) {
-            byte[] bytes = result.getValue(helper.getColumnFamily(), fileToNonRefColumnMap.get(fileId));
-            if (bytes != null) {
-                VcfSliceProtos.VcfSlice refVcfSlice = null; // FIXME !!
-                VcfSliceProtos.VcfSlice nonRefVcfSlice = VcfSliceProtos.VcfSlice.parseFrom(bytes);
+            VcfSliceOverlapIndex nonRefIndex = blockIndexes.get(fileId);
+            if (nonRefIndex != null) {
+                // Only the non reference column of the archive is read. There are no reference blocks
+                VcfSliceOverlapIndex refIndex = null;
                 ArrayList<Put> sampleIndexPuts = null; // FIXME !!
-                fillGapsTask.fillGaps(variant, missingSamples, put, sampleIndexPuts, fileId, nonRefVcfSlice, refVcfSlice);
+                fillGapsTask.fillGaps(variant, missingSamples, put, sampleIndexPuts, fileId, nonRefIndex, refIndex);
             } else {
                 logger.debug("Missing fileId " + fileId + " in variant " + variant);
             }
@@ -159,6 +164,29 @@ public class FillGapsFromVariantTask implements TaskWithException<Variant, Put,
         return put;
     }
 
+    /**
+     * Read from the current archive block the VcfSlices of the files not read yet, and index them.
+     * Missing VcfSlices are stored as null, so they are not read again.
+     */
+    private void readBlock(Set<Integer> fileIds) throws IOException {
+        Get get = new Get(blockRowKey);
+        for (Integer fileId : fileIds) {
+            if (!blockIndexes.containsKey(fileId)) {
+                get.addColumn(helper.getColumnFamily(), fileToNonRefColumnMap.get(fileId));
+            }
+        }
+        if (!get.hasFamilies()) {
+            return;
+        }
+        Result result = archiveTable.get(get);
+        for (Integer fileId : fileIds) {
+            if (!blockIndexes.containsKey(fileId)) {
+                byte[] bytes = result.getValue(helper.getColumnFamily(), fileToNonRefColumnMap.get(fileId));
+                blockIndexes.put(fileId, bytes == null ? null : new VcfSliceOverlapIndex(VcfSliceProtos.VcfSlice.parseFrom(bytes)));
+            }
+        }
+    }
+
     public static Query buildQuery(Object study, Collection<?> sampleIds, Collection<?> fileIds) {
         return new Query()
                 .append(VariantQueryParam.STUDY.key(), study)
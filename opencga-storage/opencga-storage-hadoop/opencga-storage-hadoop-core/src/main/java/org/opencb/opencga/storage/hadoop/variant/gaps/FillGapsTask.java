@@ -65,18 +65,22 @@ public class FillGapsTask {
         return this;
     }
 
+    /**
+     * Fill the gaps of a variant for one file.
+     *
+     * The same {@link VcfSliceOverlapIndex} should be used to fill all the variants within the archive block.
+     *
+     * @param variant         Variant to fill
+     * @param missingSamples  Samples to fill
+     * @param put             Put to write the new values
+     * @param sampleIndexPuts List of puts over the sample index
+     * @param fileId          File to read
+     * @param nonRefIndex     Index over the VcfSlice with the variants of the file. May be null.
+     * @param refIndex        Index over the VcfSlice with the reference blocks of the file. May be null.
+     * @return                Overlapping status
+     */
     public VariantOverlappingStatus fillGaps(Variant variant, Set<Integer> missingSamples, Put put, List<Put> sampleIndexPuts,
-                                             Integer fileId,
-                                             VcfSliceProtos.VcfSlice nonRefVcfSlice, VcfSliceProtos.VcfSlice refVcfSlice) {
-        return fillGaps(variant, missingSamples, put, sampleIndexPuts, fileId,
-                nonRefVcfSlice, nonRefVcfSlice.getRecordsList().listIterator(),
-                refVcfSlice, refVcfSlice.getRecordsList().listIterator());
-    }
-
-    public VariantOverlappingStatus fillGaps(Variant variant, Set<Integer> missingSamples, Put put, List<Put> sampleIndexPuts,
-                                             Integer fileId,
-                                             VcfSliceProtos.VcfSlice nonRefVcfSlice, ListIterator<VcfSliceProtos.VcfRecord> nonRefIterator,
-                                             VcfSliceProtos.VcfSlice refVcfSlice, ListIterator<VcfSliceProtos.VcfRecord> refIterator) {
+                                             Integer fileId, VcfSliceOverlapIndex nonRefIndex, VcfSliceOverlapIndex refIndex) {
         final VariantOverlappingStatus overlappingStatus;
 
         // Three scenarios:
@@ -84,15 +88,15 @@ public class FillGapsTask {
         //  Overlap with another variant
         //  No overlap
 
-        List<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>> overlappingRecords = new ArrayList<>(1);
-        if (nonRefVcfSlice != null) {
-            boolean isVariantAlreadyLoaded = getOverlappingVariants(variant, fileId, nonRefVcfSlice, nonRefIterator, overlappingRecords);
+        List<Pair<VcfSliceOverlapIndex, VcfSliceProtos.VcfRecord>> overlappingRecords = new ArrayList<>(1);
+        if (nonRefIndex != null) {
+            boolean isVariantAlreadyLoaded = getOverlappingVariants(variant, nonRefIndex, overlappingRecords);
             if (isVariantAlreadyLoaded) {
                 return VariantOverlappingStatus.NONE;
             }
         }
-        if (refVcfSlice != null) {
-            boolean isVariantAlreadyLoaded = getOverlappingVariants(variant, fileId, refVcfSlice, refIterator, overlappingRecords);
+        if (refIndex != null) {
+            boolean isVariantAlreadyLoaded = getOverlappingVariants(variant, refIndex, overlappingRecords);
             if (isVariantAlreadyLoaded) {
                 String msg = "Found that the variant " + variant + " was already loaded in refVcfSlice!";
 //                throw new IllegalStateException(msg);
@@ -101,7 +105,7 @@ public class FillGapsTask {
         }
 
         final VcfSliceProtos.VcfRecord vcfRecord;
-        final VcfSliceProtos.VcfSlice vcfSlice;
+        final VcfSliceOverlapIndex vcfSliceIndex;
         if (overlappingRecords.isEmpty()) {
             if (skipReferenceVariants) {
                 // We are not reading reference blocks, so there gaps are expected and read as HOM_REF
@@ -121,14 +125,14 @@ public class FillGapsTask {
             }
         } else if (overlappingRecords.size() > 1) {
             // Discard ref_blocks
-            List<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>> realVariants = overlappingRecords
+            List<Pair<VcfSliceOverlapIndex, VcfSliceProtos.VcfRecord>> realVariants = overlappingRecords
                     .stream()
                     .filter(pair -> pair.getRight().getType() != VariantProto.VariantType.NO_VARIATION)
                     .collect(Collectors.toList());
             if (realVariants.size() > 1) {
                 // Check if all the variants are different versions of the same multi-allelic variant
                 Set<String> calls = new HashSet<>();
-                for (Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord> pair : realVariants) {
+                for (Pair<VcfSliceOverlapIndex, VcfSliceProtos.VcfRecord> pair : realVariants) {
                     String call = pair.getValue().getCall();
                     if (call.isEmpty()) {
                         calls.add(null);
@@ -145,7 +149,7 @@ public class FillGapsTask {
             // If there is only one real variant, use it
             if (realVariants.size() == 1) {
                 vcfRecord = realVariants.get(0).getRight();
-                vcfSlice = realVariants.get(0).getLeft();
+                vcfSliceIndex = realVariants.get(0).getLeft();
             } else {
 //                String msg = "Found multiple overlaps for variant " + variant + " in file " + fileId;
 //                if (!quiet) {
@@ -156,9 +160,9 @@ public class FillGapsTask {
             }
         } else {
             vcfRecord = overlappingRecords.get(0).getRight();
-            vcfSlice = overlappingRecords.get(0).getLeft();
+            vcfSliceIndex = overlappingRecords.get(0).getLeft();
         }
-        Variant archiveVariant = convertToVariant(vcfSlice, vcfRecord, fileId);
+        Variant archiveVariant = convertToVariant(vcfSliceIndex, vcfRecord, fileId);
 
         if (archiveVariant.getType().equals(VariantType.NO_VARIATION)) {
             overlappingStatus = processReferenceOverlap(missingSamples, put, variant, archiveVariant);
@@ -330,76 +334,35 @@ public class FillGapsTask {
         return StringUtils.contains(gt, '1');
     }
 
-    public boolean getOverlappingVariants(Variant variant, int fileId,
-                                          VcfSliceProtos.VcfSlice vcfSlice, ListIterator<VcfSliceProtos.VcfRecord> iterator,
-                                          List<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>> overlappingRecords) {
-        String chromosome = vcfSlice.getChromosome();
-        int position = vcfSlice.getPosition();
-        Integer resetPosition = null;
-        boolean isAlreadyPresent = false;
-        int firstIndex = iterator.nextIndex();
-        // Assume sorted VcfRecords
-        while (iterator.hasNext()) {
-            VcfSliceProtos.VcfRecord vcfRecord = iterator.next();
-            int start = VcfRecordProtoToVariantConverter.getStart(vcfRecord, position);
-            int end = VcfRecordProtoToVariantConverter.getEnd(vcfRecord, position);
-            String reference = vcfRecord.getReference();
-            String alternate = vcfRecord.getAlternate();
-            // If the VcfRecord starts after the variant, stop looking for variants
+    /**
+     * Find the records from the VcfSlice overlapping with the variant.
+     *
+     * @param variant            Variant to fill
+     * @param index              Index over the VcfSlice
+     * @param overlappingRecords Output list of overlapping records
+     * @return                   If the variant is already loaded for this file
+     */
+    public boolean getOverlappingVariants(Variant variant, VcfSliceOverlapIndex index,
+                                          List<Pair<VcfSliceOverlapIndex, VcfSliceProtos.VcfRecord>> overlappingRecords) {
+        String chromosome = index.getChromosome();
+        if (!StringUtils.equals(variant.getChromosome(), chromosome)) {
+            return false;
+        }
+        for (int i = index.firstCandidate(variant); index.isCandidate(variant, i); i++) {
+            int start = index.getStart(i);
+            int end = index.getEnd(i);
             if (overlapsWith(variant, chromosome, start, end)) {
-                if (resetPosition == null) {
-                    resetPosition = Math.max(iterator.previousIndex() - 1, firstIndex);
-                }
-
-//                if (skipReferenceVariants && hasAllReferenceGenotype(vcfSlice, vcfRecord)) {
-//                    // Skip this variant
-//                    continue;
-//                }
-
+                VcfSliceProtos.VcfRecord vcfRecord = index.getRecord(i);
                 // If the same variant is present for this file in the VcfSlice, the variant is already loaded
-                if (isVariantAlreadyLoaded(variant, vcfSlice, vcfRecord, chromosome, start, end, reference, alternate)) {
+                if (isVariantAlreadyLoaded(variant, index.getVcfSlice(), vcfRecord, chromosome, start, end,
+                        vcfRecord.getReference(), vcfRecord.getAlternate())) {
                     // Variant already loaded. Nothing to do!
-                    isAlreadyPresent = true;
-                    break;
-                }
-
-                overlappingRecords.add(ImmutablePair.of(vcfSlice, vcfRecord));
-            } else if (isRegionAfterVariantStart(start, end, variant)) {
-                if (resetPosition == null) {
-                    resetPosition = Math.max(iterator.previousIndex() - 1, firstIndex);
+                    return true;
                 }
-                // Shouldn't happen that the first VcfRecord from the iterator is beyond the variant to process,
-                // and is not the first VcfRecord from the slice.
-                // If so, there may be a bug, or the variants or the VcfSlice is not sorted
-                if (firstIndex != 0 && firstIndex == iterator.previousIndex()) {
-                    // This should never happen
-                    throw new IllegalStateException("Variants or VcfSlice not in order!"
-                            + " First next VcfRecord from iterator (index : " + firstIndex + ") "
-                            + chromosome + ':' + start + '-' + end + ':' + reference + ':' + alternate
-                            + " is after the current variant to process for file " + fileId
-                    );
-//                    // Something weird happened. Go back to the first position
-//                    while (iterator.hasPrevious()) {
-//                        iterator.previous();
-//                    }
-//                    firstIndex = 0;
-                } else {
-                    break;
-                }
-            }
-        }
-        if (resetPosition == null && !iterator.hasNext()) {
-            // If the iterator reaches the end without finding any point, reset the iterator
-            resetPosition = firstIndex;
-        }
-        // Send back the iterator
-        if (resetPosition != null) {
-//            logger.info("Reset from " + iterator.nextIndex() + " to " + resetPosition + ". fileId : " + fileId + " variant " + variant);
-            while (iterator.nextIndex() > resetPosition) {
-                iterator.previous();
+                overlappingRecords.add(ImmutablePair.of(index, vcfRecord));
             }
         }
-        return isAlreadyPresent;
+        return false;
     }
 
     /**
@@ -445,10 +408,10 @@ public class FillGapsTask {
         return true;
     }
 
-    public Variant convertToVariant(VcfSliceProtos.VcfSlice vcfSlice, VcfSliceProtos.VcfRecord vcfRecord, Integer fileId) {
-        VcfRecordProtoToVariantConverter converter = new VcfRecordProtoToVariantConverter(vcfSlice.getFields(),
-                getSamplePosition(fileId), fileId.toString(), studyConfiguration.getStudyName());
-        return converter.convert(vcfRecord, vcfSlice.getChromosome(), vcfSlice.getPosition());
+    private Variant convertToVariant(VcfSliceOverlapIndex index, VcfSliceProtos.VcfRecord vcfRecord, Integer fileId) {
+        VcfRecordProtoToVariantConverter converter = index.getConverter(() -> new VcfRecordProtoToVariantConverter(
+                index.getVcfSlice().getFields(), getSamplePosition(fileId), fileId.toString(), studyConfiguration.getStudyName()));
+        return converter.convert(vcfRecord, index.getChromosome(), index.getVcfSlice().getPosition());
     }
 
     public LinkedHashMap<String, Integer> getSamplePosition(Integer fileId) {
@@ -5,7 +5,6 @@ import org.apache.hadoop.hbase.client.Put;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.mapreduce.TableMapper;
-import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.phoenix.schema.types.PInteger;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.opencga.storage.hadoop.variant.AbstractVariantsTableDriver;
@@ -76,7 +75,7 @@ public class PrepareFillMissingMapper extends TableMapper<ImmutableBytesWritable
 //            logger.info("FILL some for variant " + variant + " -> " + fileBatches);
         }
         for (Integer fileBatch : fileBatches) {
-            Put put = new Put(Bytes.toBytes(rowKeyFactory.generateBlockIdFromSliceAndBatch(fileBatch, chromosome, sliceId)), timestamp);
+            Put put = new Put(rowKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(fileBatch, chromosome, sliceId), timestamp);
             put.addColumn(family, column, lastFileBytes);
             context.write(EMPTY_IMMUTABLE_BYTES, put);
             if (!newVariant) {
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.gaps;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos;
+import org.opencb.biodata.tools.variant.converters.proto.VcfRecordProtoToVariantConverter;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Interval index over the records of a {@link VcfSliceProtos.VcfSlice}.
+ *
+ * The start and end of each record are decoded only once per slice, and kept in dense arrays together with the running max end
+ * and the min start of the remaining records. Finding the records overlapping a variant is a binary search plus a scan over the
+ * candidates, regardless of the order the variants are processed.
+ */
+public class VcfSliceOverlapIndex {
+
+    private final VcfSliceProtos.VcfSlice vcfSlice;
+    private final List<VcfSliceProtos.VcfRecord> records;
+    private final int[] starts;
+    private final int[] ends;
+    // maxEnds[i] : Max of max(start, end) for the records [0, i]
+    private final int[] maxEnds;
+    // minStarts[i] : Min of min(start, end) for the records [i, n)
+    private final int[] minStarts;
+    private VcfRecordProtoToVariantConverter converter;
+
+    public VcfSliceOverlapIndex(VcfSliceProtos.VcfSlice vcfSlice) {
+        this.vcfSlice = vcfSlice;
+        records = vcfSlice.getRecordsList();
+        int size = records.size();
+        int position = vcfSlice.getPosition();
+        starts = new int[size];
+        ends = new int[size];
+        maxEnds = new int[size];
+        minStarts = new int[size];
+        for (int i = 0; i < size; i++) {
+            VcfSliceProtos.VcfRecord record = records.get(i);
+            starts[i] = VcfRecordProtoToVariantConverter.getStart(record, position);
+            ends[i] = VcfRecordProtoToVariantConverter.getEnd(record, position);
+            int max = Math.max(starts[i], ends[i]);
+            maxEnds[i] = i == 0 ? max : Math.max(maxEnds[i - 1], max);
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            int min = Math.min(starts[i], ends[i]);
+            minStarts[i] = i == size - 1 ? min : Math.min(minStarts[i + 1], min);
+        }
+    }
+
+    public VcfSliceProtos.VcfSlice getVcfSlice() {
+        return vcfSlice;
+    }
+
+    public String getChromosome() {
+        return vcfSlice.getChromosome();
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    public VcfSliceProtos.VcfRecord getRecord(int i) {
+        return records.get(i);
+    }
+
+    public int getStart(int i) {
+        return starts[i];
+    }
+
+    public int getEnd(int i) {
+        return ends[i];
+    }
+
+    /**
+     * Index of the first record that may overlap with the variant.
+     * Records before this index end before the variant starts.
+     *
+     * @param variant Variant
+     * @return First candidate
+     */
+    public int firstCandidate(Variant variant) {
+        int variantMin = Math.min(variant.getStart(), variant.getEnd());
+        int low = 0;
+        int high = maxEnds.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxEnds[mid] < variantMin) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Check if there are more candidates at the given index. All the records from this index start after the variant.
+     *
+     * @param variant Variant
+     * @param i       Index of the record
+     * @return If the record, or any of the following ones, may overlap with the variant
+     */
+    public boolean isCandidate(Variant variant, int i) {
+        return i < minStarts.length && minStarts[i] <= Math.max(variant.getStart(), variant.getEnd());
+    }
+
+    /**
+     * Get the converter for this slice. All the variants from a slice share the same fields and samples.
+     *
+     * @param supplier Converter supplier, if not created yet
+     * @return Converter
+     */
+    public VcfRecordProtoToVariantConverter getConverter(Supplier<VcfRecordProtoToVariantConverter> supplier) {
+        if (converter == null) {
+            converter = supplier.get();
+        }
+        return converter;
+    }
+}
@@ -92,7 +92,11 @@ public abstract class AbstractArchiveTableMapper extends AbstractHBaseVariantMap
 
     @Override
     public final void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
-        logger.info("Start mapping key: " + Bytes.toString(key.get()));
+        // Read the chromosome and slice directly from the key buffer, without copying it
+        byte[] currRowKey = key.get();
+        String chr = rowKeyFactory.extractChromosomeFromBlockId(currRowKey, key.getOffset(), key.getLength());
+        long sliceReg = rowKeyFactory.extractSliceFromBlockId(currRowKey, key.getOffset(), key.getLength());
+        logger.info("Start mapping slice {}:{}", chr, sliceReg);
         startStep();
         if (value.isEmpty()) {
             context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "VCF_RESULT_EMPTY").increment(1);
@@ -103,10 +107,6 @@ public abstract class AbstractArchiveTableMapper extends AbstractHBaseVariantMap
 
 
         // Calculate various positions
-        byte[] currRowKey = key.get();
-        String sliceKey = Bytes.toString(currRowKey);
-        String chr = rowKeyFactory.extractChromosomeFromBlockId(sliceKey);
-        Long sliceReg = rowKeyFactory.extractSliceFromBlockId(sliceKey);
         long startPos = rowKeyFactory.getStartPositionFromSlice(sliceReg);
         long nextStartPos = rowKeyFactory.getStartPositionFromSlice(sliceReg + 1);
 
@@ -120,7 +120,7 @@ public abstract class AbstractArchiveTableMapper extends AbstractHBaseVariantMap
             sampleIds.addAll(sids);
         }
 
-        logger.debug("Processing slice {}", sliceKey);
+        logger.debug("Processing slice {}:{}", chr, sliceReg);
 
 
         VariantMapReduceContext ctx = new VariantMapReduceContext(currRowKey, context, value, fileIds,
@@ -136,7 +136,7 @@ public abstract class AbstractArchiveTableMapper extends AbstractHBaseVariantMap
         // Clean up of this slice
         this.getMrHelper().addTimesAsCounters();
 
-        logger.info("Finished mapping key: " + Bytes.toString(key.get()));
+        logger.info("Finished mapping slice {}:{}", chr, sliceReg);
     }
 
     protected abstract void map(VariantMapReduceContext ctx) throws IOException, InterruptedException;
@@ -38,7 +38,7 @@ import java.util.List;
  */
 public class VariantHBaseResultSetIterator extends VariantDBIterator {
 
-    private final Statement statement;
+    private final AutoCloseable statementCloser;
     private final ResultSet resultSet;
     private final GenomeHelper genomeHelper;
     private final StudyConfigurationManager scm;
@@ -53,7 +53,29 @@ public class VariantHBaseResultSetIterator extends VariantDBIterator {
             VariantQueryUtils.SelectVariantElements select, List<String> formats,
             String unknownGenotype, QueryOptions options)
             throws SQLException {
-        this.statement = statement;
+        this(statement::close, resultSet, genomeHelper, scm, select, formats, unknownGenotype, options);
+    }
+
+    /**
+     * Build an iterator over a ResultSet, releasing the statement with the given action.
+     * Used for statements that can be reused after closing the ResultSet, like cached PreparedStatements.
+     *
+     * @param statementCloser   Action to close or release the statement
+     * @param resultSet         ResultSet
+     * @param genomeHelper      GenomeHelper
+     * @param scm               StudyConfigurationManager
+     * @param select            Selected elements
+     * @param formats           Formats to include
+     * @param unknownGenotype   Unknown genotype
+     * @param options           Query options
+     * @throws SQLException     on error fetching the first result
+     */
+    public VariantHBaseResultSetIterator(
+            AutoCloseable statementCloser, ResultSet resultSet, GenomeHelper genomeHelper, StudyConfigurationManager scm,
+            VariantQueryUtils.SelectVariantElements select, List<String> formats,
+            String unknownGenotype, QueryOptions options)
+            throws SQLException {
+        this.statementCloser = statementCloser;
         this.resultSet = resultSet;
         this.genomeHelper = genomeHelper;
         this.scm = scm;
@@ -84,7 +106,7 @@ public class VariantHBaseResultSetIterator extends VariantDBIterator {
         logger.debug("Close variant iterator. Fetch = {}ms, Convert = {}ms",
                 getTimeFetching() / 1000000.0, getTimeConverting() / 1000000.0);
         resultSet.close();
-        statement.close();
+        statementCloser.close();
     }
 
     @Override
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.hadoop.variant.index.phoenix;
+
+import org.opencb.opencga.core.metrics.Counter;
+import org.opencb.opencga.core.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of Phoenix {@link PreparedStatement}s, by connection and query shape.
+ * <p>
+ * The shape of a query is the SQL generated by the {@link VariantSqlQueryParser}, after replacing the literal values with bind
+ * parameters. Queries that only differ in the region, gene or sample values share the same shape, so the SQL is parsed and
+ * validated only once per cached statement. Phoenix still compiles the query plan on every execution, as the plan depends on the
+ * bound values (e.g. the scan ranges), so the savings are limited to the parsing and to the creation of the statement.
+ * Check the hit rate and the query times before enabling it.
+ * <p>
+ * A PreparedStatement can only have one open ResultSet, so statements are borrowed while the ResultSet is in use, and returned
+ * with {@link #release}. Concurrent queries with the same shape get different statements.
+ * Shapes that Phoenix is not able to prepare, e.g. due to a bind parameter with an ambiguous type, are executed as plain
+ * statements with the literal values. Up to {@code maxShapes} uncacheable shapes are remembered.
+ */
+public class PhoenixStatementCache {
+
+    private final int maxShapes;
+    private final int maxStatementsPerShape;
+    private final Map<Connection, LinkedHashMap<String, Deque<PreparedStatement>>> cache = new IdentityHashMap<>();
+    private final Map<PreparedStatement, Connection> borrowed = new IdentityHashMap<>();
+    private final Set<String> uncacheableShapes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong uncacheable = new AtomicLong();
+    private final Counter hitsMetric = requestsMetric("hit");
+    private final Counter missesMetric = requestsMetric("miss");
+    private final Counter uncacheableMetric = requestsMetric("uncacheable");
+    private final Counter evictionsMetric = MetricsRegistry.getInstance().counter("cache_evictions_total",
+            "Entries evicted from internal caches", "cache", "phoenix_statement");
+
+    private static Logger logger = LoggerFactory.getLogger(PhoenixStatementCache.class);
+
+    public PhoenixStatementCache(int maxShapes) {
+        this(maxShapes, 4);
+    }
+
+    public PhoenixStatementCache(int maxShapes, int maxStatementsPerShape) {
+        this.maxShapes = maxShapes;
+        this.maxStatementsPerShape = maxStatementsPerShape;
+        this.uncacheableShapes = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > maxShapes;
+            }
+        }));
+    }
+
+    /**
+     * Shape of a query. SQL with bind parameters, plus the extracted values.
+     */
+    public static class QueryShape {
+        private final String sql;
+        private final List<Object> parameters;
+
+        QueryShape(String sql, List<Object> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public List<Object> getParameters() {
+            return parameters;
+        }
+
+        @Override
+        public String toString() {
+            return sql + " " + parameters;
+        }
+    }
+
+    /**
+     * Replace the string and numeric literals from the SQL with bind parameters.
+     * Quoted identifiers, comments (hints) and array positions are kept as they are.
+     *
+     * @param sql SQL query
+     * @return Shape of the query
+     */
+    public static QueryShape normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        List<Object> parameters = new ArrayList<>();
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // String literal. Quotes are escaped by doubling them
+                StringBuilder value = new StringBuilder();
+                i++;
+                while (i < length) {
+                    char v = sql.charAt(i);
+                    if (v == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            value.append('\'');
+                            i += 2;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(v);
+                        i++;
+                    }
+                }
+                i++; // Skip closing quote
+                parameters.add(value.toString());
+                sb.append('?');
+            } else if (c == '"') {
+                int end = sql.indexOf('"', i + 1);
+                end = end < 0 ? length : end + 1;
+                sb.append(sql, i, end);
+                i = end;
+            } else if (c == '[') {
+                int end = sql.indexOf(']', i + 1);
+                end = end < 0 ? length : end + 1;
+                sb.append(sql, i, end);
+                i = end;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                sb.append(sql, i, end);
+                i = end;
+            } else if (Character.isLetter(c) || c == '_') {
+                // Identifier or keyword. May contain digits
+                int end = i + 1;
+                while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_')) {
+                    end++;
+                }
+                sb.append(sql, i, end);
+                i = end;
+            } else if (Character.isDigit(c) || c == '.' && i + 1 < length && Character.isDigit(sql.charAt(i + 1))) {
+                int end = i;
+                boolean decimal = false;
+                while (end < length && Character.isDigit(sql.charAt(end))) {
+                    end++;
+                }
+                if (end < length && sql.charAt(end) == '.') {
+                    decimal = true;
+                    end++;
+                    while (end < length && Character.isDigit(sql.charAt(end))) {
+                        end++;
+                    }
+                }
+                if (end < length && (sql.charAt(end) == 'e' || sql.charAt(end) == 'E')) {
+                    int exp = end + 1;
+                    if (exp < length && (sql.charAt(exp) == '-' || sql.charAt(exp) == '+')) {
+                        exp++;
+                    }
+                    if (exp < length && Character.isDigit(sql.charAt(exp))) {
+                        decimal = true;
+                        end = exp;
+                        while (end < length && Character.isDigit(sql.charAt(end))) {
+                            end++;
+                        }
+                    }
+                }
+                String number = sql.substring(i, end);
+                parameters.add(decimal ? new BigDecimal(number) : (Object) Long.valueOf(number));
+                sb.append('?');
+                i = end;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return new QueryShape(sb.toString(), parameters);
+    }
+
+    /**
+     * Get a prepared statement for the given shape, with all the parameters bound, and the default fetch size.
+     * Must be returned with {@link #release}, or with {@link #discard} if it fails to execute.
+     *
+     * @param connection Phoenix connection
+     * @param shape      Query shape
+     * @return PreparedStatement, or null if the shape can not be prepared
+     */
+    public PreparedStatement prepare(Connection connection, QueryShape shape) {
+        if (maxShapes <= 0 || uncacheableShapes.contains(shape.getSql())) {
+            uncacheable.incrementAndGet();
+            uncacheableMetric.inc();
+            return null;
+        }
+        PreparedStatement statement = null;
+        synchronized (this) {
+            LinkedHashMap<String, Deque<PreparedStatement>> shapes = cache.get(connection);
+            if (shapes != null) {
+                Deque<PreparedStatement> statements = shapes.get(shape.getSql());
+                if (statements != null) {
+                    statement = statements.poll();
+                }
+            }
+            if (statement != null) {
+                hits.incrementAndGet();
+                hitsMetric.inc();
+                borrowed.put(statement, connection);
+            }
+        }
+        if (statement == null) {
+            try {
+                statement = connection.prepareStatement(shape.getSql());
+                // Validate the types of the bind parameters. Fails for parameters with an ambiguous type
+                statement.getParameterMetaData();
+            } catch (SQLException e) {
+                logger.debug("Unable to prepare query shape " + shape.getSql(), e);
+                uncacheableShapes.add(shape.getSql());
+                uncacheable.incrementAndGet();
+                uncacheableMetric.inc();
+                if (statement != null) {
+                    close(statement);
+                }
+                return null;
+            }
+            misses.incrementAndGet();
+            missesMetric.inc();
+            synchronized (this) {
+                borrowed.put(statement, connection);
+            }
+        }
+        try {
+            // Reset the fetch size from the previous use of the statement. Use the default fetch size
+            statement.setFetchSize(0);
+            List<Object> parameters = shape.getParameters();
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            return statement;
+        } catch (SQLException e) {
+            logger.debug("Unable to bind parameters " + shape.getParameters() + " to query shape " + shape.getSql(), e);
+            discard(statement);
+            return null;
+        }
+    }
+
+    /**
+     * Close a statement obtained from {@link #prepare} without returning it to the cache. Used when the statement fails to
+     * execute. The query shape can still be cached, as the error may not be related to the shape.
+     *
+     * @param statement Statement obtained from {@link #prepare}
+     */
+    public void discard(PreparedStatement statement) {
+        synchronized (this) {
+            borrowed.remove(statement);
+        }
+        close(statement);
+    }
+
+    /**
+     * @param shape Query shape
+     * @return If the shape failed to prepare, and will be executed as a plain statement
+     */
+    public boolean isUncacheable(QueryShape shape) {
+        return uncacheableShapes.contains(shape.getSql());
+    }
+
+    /**
+     * Return a statement obtained from {@link #prepare}. The ResultSet must be closed at this point.
+     *
+     * @param statement Statement
+     * @param shape     Query shape used to prepare the statement
+     */
+    public void release(PreparedStatement statement, QueryShape shape) {
+        boolean cached = false;
+        synchronized (this) {
+            Connection connection = borrowed.remove(statement);
+            if (connection != null) {
+                LinkedHashMap<String, Deque<PreparedStatement>> shapes = cache.computeIfAbsent(connection, c -> newLruMap());
+                Deque<PreparedStatement> statements = shapes.computeIfAbsent(shape.getSql(), s -> new ArrayDeque<>());
+                if (statements.size() < maxStatementsPerShape) {
+                    try {
+                        statement.clearParameters();
+                        statements.push(statement);
+                        cached = true;
+                    } catch (SQLException e) {
+                        logger.debug("Error clearing parameters", e);
+                    }
+                }
+            }
+        }
+        if (!cached) {
+            close(statement);
+        }
+    }
+
+    /**
+     * Close all the cached statements from a connection. Must be called before closing the connection.
+     *
+     * @param connection Phoenix connection
+     */
+    public void invalidate(Connection connection) {
+        LinkedHashMap<String, Deque<PreparedStatement>> shapes;
+        synchronized (this) {
+            shapes = cache.remove(connection);
+            borrowed.values().removeIf(c -> c == connection);
+        }
+        if (shapes != null) {
+            shapes.values().forEach(statements -> statements.forEach(PhoenixStatementCache::close));
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getUncacheable() {
+        return uncacheable.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get() + uncacheable.get();
+        return total == 0 ? 0 : ((double) hits.get()) / total;
+    }
+
+    @Override
+    public String toString() {
+        return "PhoenixStatementCache{"
+                + "hits=" + hits
+                + ", misses=" + misses
+                + ", uncacheable=" + uncacheable
+                + ", hitRate=" + String.format("%.3f", getHitRate())
+                + '}';
+    }
+
+    private LinkedHashMap<String, Deque<PreparedStatement>> newLruMap() {
+        return new LinkedHashMap<String, Deque<PreparedStatement>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Deque<PreparedStatement>> eldest) {
+                if (size() > maxShapes) {
+                    eldest.getValue().forEach(PhoenixStatementCache::close);
+                    evictionsMetric.inc();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private static Counter requestsMetric(String result) {
+        return MetricsRegistry.getInstance().counter("cache_requests_total", "Requests to internal caches",
+                "cache", "phoenix_statement", "result", result);
+    }
+
+    private static void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.debug("Error closing statement", e);
+        }
+    }
+}
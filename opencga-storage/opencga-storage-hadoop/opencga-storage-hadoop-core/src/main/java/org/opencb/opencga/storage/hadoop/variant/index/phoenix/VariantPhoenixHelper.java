@@ -136,6 +136,8 @@ public class VariantPhoenixHelper {
         FULL_ANNOTATION(ANNOTATION_PREFIX + "FULL", PVarchar.INSTANCE),
 
         INDEX_NOT_SYNC("_IDX_N", PBoolean.INSTANCE),
+        INDEX_NOT_SYNC_ANNOTATION("_IDX_N_A", PBoolean.INSTANCE),
+        INDEX_NOT_SYNC_STATS("_IDX_N_S", PBoolean.INSTANCE),
         INDEX_UNKNOWN("_IDX_U", PBoolean.INSTANCE),
         INDEX_STUDIES("_IDX_ST_", PIntegerArray.INSTANCE);
 
@@ -0,0 +1,173 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * HyperLogLog distinct count sketch of the variants from a SampleIndexTable row.
+ * <p>
+ * Sketches from different rows, genotypes and samples can be merged to estimate the number of distinct variants of the union.
+ * Intersections are estimated with the inclusion-exclusion principle over the unions, so the error grows with the number of
+ * intersected sketches.
+ * <p>
+ * Serialized in sparse format (register index and value) while most of the registers are empty, which is the usual case for
+ * a single row, and in dense format otherwise.
+ */
+public class HyperLogLogSketch {
+
+    public static final int PRECISION = 12;
+    public static final int REGISTERS = 1 << PRECISION;
+    // Relative standard error of one estimation
+    public static final double STANDARD_ERROR = 1.04 / Math.sqrt(REGISTERS);
+
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers;
+
+    public HyperLogLogSketch() {
+        registers = new byte[REGISTERS];
+    }
+
+    private HyperLogLogSketch(byte[] registers) {
+        this.registers = registers;
+    }
+
+    public HyperLogLogSketch add(String variant) {
+        long hash = HASH_FUNCTION.hashString(variant, StandardCharsets.UTF_8).asLong();
+        int idx = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Add a sentinel bit, so the rank is never greater than 64 - PRECISION + 1
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (registers[idx] < rank) {
+            registers[idx] = rank;
+        }
+        return this;
+    }
+
+    public HyperLogLogSketch addAll(Iterable<String> variants) {
+        for (String variant : variants) {
+            add(variant);
+        }
+        return this;
+    }
+
+    /**
+     * Merge the given sketch into this one. The result is the sketch of the union.
+     *
+     * @param other Other sketch
+     * @return this
+     */
+    public HyperLogLogSketch merge(HyperLogLogSketch other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] < other.registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public HyperLogLogSketch copy() {
+        return new HyperLogLogSketch(registers.clone());
+    }
+
+    /**
+     * @return Estimated number of distinct variants
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            // Small range correction. Linear counting
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Estimate the size of the intersection of the given sketches using the inclusion-exclusion principle.
+     *
+     * @param sketches Sketches to intersect
+     * @return Estimated intersection size, and its error bound
+     */
+    public static long[] estimateIntersection(List<HyperLogLogSketch> sketches) {
+        int n = sketches.size();
+        double estimate = 0;
+        double error = 0;
+        long min = Long.MAX_VALUE;
+        for (int subset = 1; subset < (1 << n); subset++) {
+            HyperLogLogSketch union = new HyperLogLogSketch();
+            for (int i = 0; i < n; i++) {
+                if ((subset & (1 << i)) != 0) {
+                    union.merge(sketches.get(i));
+                }
+            }
+            long unionEstimate = union.estimate();
+            if (Integer.bitCount(subset) == 1) {
+                min = Math.min(min, unionEstimate);
+            }
+            estimate += (Integer.bitCount(subset) % 2 == 1 ? 1 : -1) * unionEstimate;
+            error += STANDARD_ERROR * unionEstimate;
+        }
+        long value = Math.max(0, Math.min(min, Math.round(estimate)));
+        return new long[]{value, Math.round(error)};
+    }
+
+    public byte[] toBytes() {
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+        ByteBuffer buffer;
+        if (nonZero * 3 < REGISTERS) {
+            buffer = ByteBuffer.allocate(1 + nonZero * 3);
+            buffer.put(SPARSE);
+            for (int i = 0; i < REGISTERS; i++) {
+                if (registers[i] != 0) {
+                    buffer.putShort((short) i);
+                    buffer.put(registers[i]);
+                }
+            }
+        } else {
+            buffer = ByteBuffer.allocate(1 + REGISTERS);
+            buffer.put(DENSE);
+            buffer.put(registers);
+        }
+        return buffer.array();
+    }
+
+    public static HyperLogLogSketch fromBytes(byte[] bytes) {
+        return fromBytes(bytes, 0, bytes.length);
+    }
+
+    public static HyperLogLogSketch fromBytes(byte[] bytes, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+        byte[] registers = new byte[REGISTERS];
+        byte format = buffer.get();
+        if (format == DENSE) {
+            buffer.get(registers);
+        } else if (format == SPARSE) {
+            while (buffer.hasRemaining()) {
+                int idx = buffer.getShort();
+                registers[idx] = buffer.get();
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown HyperLogLogSketch format " + format);
+        }
+        return new HyperLogLogSketch(registers);
+    }
+}
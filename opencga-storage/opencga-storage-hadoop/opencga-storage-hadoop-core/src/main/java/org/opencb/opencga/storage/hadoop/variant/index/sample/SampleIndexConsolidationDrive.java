@@ -167,6 +167,8 @@ public class SampleIndexConsolidationDrive extends AbstractVariantsTableDriver {
                         context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "new_gt").increment(1);
                         put.addColumn(family, Bytes.toBytes(gt), Bytes.toBytes(String.join(",", variants)));
                         put.addColumn(family, SampleIndexConverter.toGenotypeCountColumn(gt), Bytes.toBytes(variants.size()));
+                        put.addColumn(family, SampleIndexConverter.toGenotypeSketchColumn(gt),
+                                new HyperLogLogSketch().addAll(variants).toBytes());
                     } else {
                         context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "merged_gt").increment(1);
                         // Merge with existing values
@@ -192,6 +194,19 @@ public class SampleIndexConsolidationDrive extends AbstractVariantsTableDriver {
 
                             put.addColumn(family, SampleIndexConverter.toGenotypeColumn(gt), Bytes.toBytes(sb.toString()));
                             put.addColumn(family, SampleIndexConverter.toGenotypeCountColumn(gt), Bytes.toBytes(variantsSet.size()));
+
+                            // Update the existing sketch with the new variants
+                            Cell sketchCell = otherCells.get(Bytes.toString(SampleIndexConverter.toGenotypeSketchColumn(gt)));
+                            HyperLogLogSketch sketch;
+                            if (sketchCell == null) {
+                                sketch = new HyperLogLogSketch();
+                                for (Variant variant : variantsSet) {
+                                    sketch.add(variant.toString());
+                                }
+                            } else {
+                                sketch = HyperLogLogSketch.fromBytes(CellUtil.cloneValue(sketchCell)).addAll(variants);
+                            }
+                            put.addColumn(family, SampleIndexConverter.toGenotypeSketchColumn(gt), sketch.toBytes());
                         }
                     }
                 }
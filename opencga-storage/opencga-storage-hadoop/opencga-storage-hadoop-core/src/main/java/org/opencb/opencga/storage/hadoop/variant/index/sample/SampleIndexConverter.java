@@ -30,8 +30,10 @@ public class SampleIndexConverter implements Converter<Result, Collection<Varian
 
     private static final char META_PREFIX = '_';
     private static final String PENDING_VARIANT_PREFIX = META_PREFIX + "V_";
-    private static final byte[] PENDING_VARIANT_PREFIX_BYTES = Bytes.toBytes(PENDING_VARIANT_PREFIX);
+    static final byte[] PENDING_VARIANT_PREFIX_BYTES = Bytes.toBytes(PENDING_VARIANT_PREFIX);
     private static final String GENOTYPE_COUNT_PREFIX = META_PREFIX + "C_";
+    private static final String GENOTYPE_SKETCH_PREFIX = META_PREFIX + "H_";
+    private static final byte[] GENOTYPE_SKETCH_PREFIX_BYTES = Bytes.toBytes(GENOTYPE_SKETCH_PREFIX);
 
     private final Region region;
 
@@ -102,6 +104,10 @@ public class SampleIndexConverter implements Converter<Result, Collection<Varian
         return Bytes.toBytes(GENOTYPE_COUNT_PREFIX + genotype);
     }
 
+    public static byte[] toGenotypeSketchColumn(String genotype) {
+        return Bytes.toBytes(GENOTYPE_SKETCH_PREFIX + genotype);
+    }
+
     public static byte[] toPendingColumn(Variant variant, String gt) {
         return Bytes.toBytes(PENDING_VARIANT_PREFIX + variant.toString() + '_' + gt);
     }
@@ -184,4 +190,24 @@ public class SampleIndexConverter implements Converter<Result, Collection<Varian
         }
         return count;
     }
+
+    /**
+     * Merge all the genotype sketches from the result.
+     *
+     * @param result Result, or null
+     * @param sketch Sketch to merge into
+     * @return Number of sketch cells merged
+     */
+    public int convertToSketch(Result result, HyperLogLogSketch sketch) {
+        int merged = 0;
+        if (result != null) {
+            for (Cell cell : result.rawCells()) {
+                if (Bytes.startsWith(CellUtil.cloneQualifier(cell), GENOTYPE_SKETCH_PREFIX_BYTES)) {
+                    sketch.merge(HyperLogLogSketch.fromBytes(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength()));
+                    merged++;
+                }
+            }
+        }
+        return merged;
+    }
 }
@@ -2,6 +2,7 @@ package org.opencb.opencga.storage.hadoop.variant.index.sample;
 
 import com.google.common.collect.Iterators;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.client.ResultScanner;
 import org.apache.hadoop.hbase.client.Scan;
@@ -45,6 +46,9 @@ public class SampleIndexDBAdaptor {
     private final byte[] family;
     private static Logger logger = LoggerFactory.getLogger(SampleIndexDBAdaptor.class);
 
+    // Intersections are estimated from the union of all the subsets of samples
+    public static final int MAX_SKETCH_INTERSECTION = 4;
+
     public SampleIndexDBAdaptor(GenomeHelper helper, HBaseManager hBaseManager, HBaseVariantTableNameGenerator tableNameGenerator,
                                 StudyConfigurationManager scm) {
         this.hBaseManager = hBaseManager;
@@ -53,6 +57,18 @@ public class SampleIndexDBAdaptor {
         family = helper.getColumnFamily();
     }
 
+    HBaseManager getHBaseManager() {
+        return hBaseManager;
+    }
+
+    HBaseVariantTableNameGenerator getTableNameGenerator() {
+        return tableNameGenerator;
+    }
+
+    byte[] getFamily() {
+        return family;
+    }
+
     public VariantDBIterator iterator(SampleIndexQuery query) {
         return iterator(query.getRegions(), query.getStudy(), query.getSamplesMap(), query.getQueryOperation());
     }
@@ -218,6 +234,80 @@ public class SampleIndexDBAdaptor {
         }
     }
 
+    /**
+     * Estimate the number of variants matching the query from the genotype sketches, without reading the variants.
+     *
+     * Only regions aligned to the SampleIndexTable batches, and non negated genotypes are supported.
+     * Intersections are limited to {@link #MAX_SKETCH_INTERSECTION} samples.
+     *
+     * @param query SampleIndexQuery
+     * @return Estimated count and error bound, or null if the query can not be answered from the sketches
+     */
+    public Pair<Long, Long> approximateCount(SampleIndexQuery query) {
+        Map<String, List<String>> samples = query.getSamplesMap();
+        if (samples.isEmpty()
+                || query.getQueryOperation() != QueryOperation.OR && samples.size() > MAX_SKETCH_INTERSECTION
+                || query.getRegions().stream().anyMatch(region -> !alignedToBatches(region))) {
+            return null;
+        }
+        Integer studyId = getStudyId(query.getStudy());
+        List<String> allGts = getAllLoadedGenotypes(query.getStudy());
+        String tableName = tableNameGenerator.getSampleIndexTableName(studyId);
+        List<Region> regionsList = query.getRegions().isEmpty()
+                ? Collections.singletonList((Region) null)
+                : query.getRegions();
+
+        List<HyperLogLogSketch> sketches = new ArrayList<>(samples.size());
+        for (Map.Entry<String, List<String>> entry : samples.entrySet()) {
+            List<String> gts = entry.getValue().isEmpty() ? allGts : GenotypeClass.filter(entry.getValue(), allGts);
+            if (!gts.stream().allMatch(SampleIndexDBLoader::validGenotype)) {
+                return null;
+            }
+            HyperLogLogSketch sketch = new HyperLogLogSketch();
+            if (!gts.isEmpty()) {
+                try {
+                    boolean missingSketch = hBaseManager.act(tableName, table -> {
+                        SampleIndexConverter converter = new SampleIndexConverter();
+                        for (Region region : regionsList) {
+                            Scan scan = parse(region, studyId, entry.getKey(), Collections.emptyList(), true);
+                            for (String gt : gts) {
+                                scan.addColumn(family, SampleIndexConverter.toGenotypeSketchColumn(gt));
+                                // Rows without sketches were loaded before sketches existed
+                                scan.addColumn(family, SampleIndexConverter.toGenotypeCountColumn(gt));
+                            }
+                            try (ResultScanner scanner = table.getScanner(scan)) {
+                                for (Result result : scanner) {
+                                    int merged = converter.convertToSketch(result, sketch);
+                                    if (merged * 2 != result.size()) {
+                                        return true;
+                                    }
+                                }
+                            }
+                        }
+                        return false;
+                    });
+                    if (missingSketch) {
+                        logger.info("Missing genotype sketches for sample " + entry.getKey());
+                        return null;
+                    }
+                } catch (IOException e) {
+                    throw VariantQueryException.internalException(e);
+                }
+            }
+            sketches.add(sketch);
+        }
+
+        if (query.getQueryOperation() == QueryOperation.OR || sketches.size() == 1) {
+            HyperLogLogSketch union = new HyperLogLogSketch();
+            sketches.forEach(union::merge);
+            long estimate = union.estimate();
+            return Pair.of(estimate, Math.round(estimate * HyperLogLogSketch.STANDARD_ERROR));
+        } else {
+            long[] estimate = HyperLogLogSketch.estimateIntersection(sketches);
+            return Pair.of(estimate[0], estimate[1]);
+        }
+    }
+
     protected Integer getStudyId(String study) {
         Integer studyId;
         if (StringUtils.isEmpty(study)) {
@@ -277,6 +367,11 @@ public class SampleIndexDBAdaptor {
         return regions;
     }
 
+    protected static boolean alignedToBatches(Region region) {
+        return (region.getStart() <= 1 || startsAtBatch(region))
+                && (region.getEnd() == Integer.MAX_VALUE || (region.getEnd() + 1) % SampleIndexDBLoader.BATCH_SIZE == 0);
+    }
+
     protected static boolean startsAtBatch(Region region) {
         return region.getStart() % SampleIndexDBLoader.BATCH_SIZE == 0;
     }
@@ -327,7 +422,7 @@ public class SampleIndexDBAdaptor {
     }
 
 
-    private int toSampleId(int studyId, String sample) {
+    int toSampleId(int studyId, String sample) {
         StudyConfiguration sc = scm.getStudyConfiguration(studyId, RO_CACHED_OPTIONS).first();
         if (sc == null) {
             throw VariantQueryException.studyNotFound(studyId, scm.getStudies(null).keySet());
@@ -15,6 +15,7 @@ import java.util.*;
 import static org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine.*;
 import static org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConverter.toGenotypeColumn;
 import static org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConverter.toGenotypeCountColumn;
+import static org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConverter.toGenotypeSketchColumn;
 
 /**
  * Created on 14/05/18.
@@ -165,6 +166,8 @@ public class SampleIndexDBLoader extends AbstractHBaseDataWriter<Variant, Put> {
                 for (Map.Entry<String, Set<String>> gtsEntry : gtsMap.entrySet()) {
                     put.addColumn(family, toGenotypeColumn(gtsEntry.getKey()), Bytes.toBytes(String.join(",", gtsEntry.getValue())));
                     put.addColumn(family, toGenotypeCountColumn(gtsEntry.getKey()), Bytes.toBytes(gtsEntry.getValue().size()));
+                    put.addColumn(family, toGenotypeSketchColumn(gtsEntry.getKey()),
+                            new HyperLogLogSketch().addAll(gtsEntry.getValue()).toBytes());
                 }
                 if (!put.isEmpty()) {
                     puts.add(put);
@@ -0,0 +1,308 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.NLineInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsEngine;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsResult;
+import org.opencb.opencga.storage.hadoop.utils.HBaseManager;
+import org.opencb.opencga.storage.hadoop.variant.AbstractVariantsTableDriver;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.index.VariantTableHelper;
+import org.opencb.opencga.storage.hadoop.variant.metadata.HBaseVariantStorageMetadataDBAdaptorFactory;
+import org.opencb.opencga.storage.hadoop.variant.utils.HBaseVariantTableNameGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.*;
+
+import static org.opencb.opencga.storage.hadoop.variant.utils.HBaseVariantTableNameGenerator.getDBNameFromVariantsTableName;
+
+/**
+ * Pairwise identity by state of a set of samples, reading the genotypes from the SampleIndexTable.
+ * <p>
+ * The genome is split in windows, written into a file in HDFS. Each mapper reads {@link #WINDOWS_PER_TASK} windows with the
+ * {@link SampleIndexIbsGenotypeSource} and accumulates the counts of all the pairs of samples with an {@link IbsEngine}.
+ * The counts are summed by pair of samples in the reducer.
+ */
+public class SampleIndexIbsDriver extends AbstractVariantsTableDriver {
+    private static final Logger LOG = LoggerFactory.getLogger(SampleIndexIbsDriver.class);
+
+    public static final String SAMPLES = "samples";
+    public static final String REGIONS = "regions";
+    public static final String OUTPUT = "output";
+    public static final String STUDY_NAME = "ibs.study";
+    public static final String WINDOW_SIZE = "ibs.window.size";
+    public static final String WINDOWS_PER_TASK = "ibs.mr.windows_per_task";
+
+    private List<String> samples;
+    private String regions;
+    private String outputPath;
+    private Path windowsFile;
+
+    @Override
+    protected Map<String, String> getParams() {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("--" + HadoopVariantStorageEngine.STUDY_ID, "<integer>*");
+        params.put("--" + SAMPLES, "<sample>[,<sample>]*");
+        params.put("--" + REGIONS, "<region>[,<region>]*");
+        params.put("--" + OUTPUT, "<path>*");
+        params.put("--" + WINDOW_SIZE, "<integer>");
+        params.put("--" + WINDOWS_PER_TASK, "<integer>");
+        return params;
+    }
+
+    @Override
+    protected void parseAndValidateParameters() throws IOException {
+        super.parseAndValidateParameters();
+        String[] samplesArray = getConf().getStrings(SAMPLES);
+        if (samplesArray == null || samplesArray.length < 2) {
+            throw new IllegalArgumentException("At least two samples are required!");
+        }
+        samples = Arrays.asList(samplesArray);
+        regions = getConf().get(REGIONS);
+        outputPath = getConf().get(OUTPUT);
+        if (StringUtils.isEmpty(outputPath)) {
+            throw new IllegalArgumentException("Missing output path!");
+        }
+    }
+
+    @Override
+    protected Class<?> getMapperClass() {
+        return SampleIndexIbsMapper.class;
+    }
+
+    @Override
+    protected String getJobOperationName() {
+        return "identity_by_state";
+    }
+
+    @Override
+    protected Job setupJob(Job job, String archiveTable, String variantTable) throws IOException {
+        StudyConfigurationManager scm = getStudyConfigurationManager();
+        StudyConfiguration sc = scm.getStudyConfiguration(getStudyId(), null).first();
+        int windowSize = getConf().getInt(WINDOW_SIZE, SampleIndexDBLoader.BATCH_SIZE);
+
+        List<Region> windows = new ArrayList<>();
+        try (HBaseManager hBaseManager = new HBaseManager(getConf())) {
+            SampleIndexDBAdaptor dbAdaptor = new SampleIndexDBAdaptor(getHelper(), hBaseManager, generator, scm);
+            SampleIndexIbsGenotypeSource source = new SampleIndexIbsGenotypeSource(dbAdaptor, sc.getStudyName(), windowSize);
+            List<Region> regionsList = new ArrayList<>();
+            if (StringUtils.isNotEmpty(regions)) {
+                for (String region : regions.split(",")) {
+                    regionsList.add(Region.parseRegion(region));
+                }
+            }
+            windows.addAll(source.getWindows(regionsList));
+        }
+        LOG.info("Identity by state of " + samples.size() + " samples in " + windows.size() + " windows");
+
+        // Write one window per line
+        FileSystem fs = FileSystem.get(getConf());
+        windowsFile = new Path(getConf().get("hadoop.tmp.dir", "/tmp"), "ibs_windows." + System.currentTimeMillis() + ".txt");
+        try (FSDataOutputStream os = fs.create(windowsFile)) {
+            PrintStream out = new PrintStream(os);
+            for (Region window : windows) {
+                out.println(window.toString());
+            }
+            out.flush();
+        }
+        fs.deleteOnExit(windowsFile);
+        LOG.info("Windows file: " + windowsFile);
+
+        job.getConfiguration().set(STUDY_NAME, sc.getStudyName());
+        job.getConfiguration().setInt(WINDOW_SIZE, windowSize);
+
+        job.setInputFormatClass(NLineInputFormat.class);
+        NLineInputFormat.addInputPath(job, windowsFile);
+        NLineInputFormat.setNumLinesPerSplit(job, getConf().getInt(WINDOWS_PER_TASK, 100));
+
+        job.setMapperClass(SampleIndexIbsMapper.class);
+        job.setMapOutputKeyClass(Text.class);
+        job.setMapOutputValueClass(IbsWritable.class);
+
+        job.setCombinerClass(SampleIndexIbsCombiner.class);
+        job.setReducerClass(SampleIndexIbsReducer.class);
+        job.setOutputKeyClass(NullWritable.class);
+        job.setOutputValueClass(Text.class);
+        // Only one reducer, so the output file has only one header
+        job.setNumReduceTasks(1);
+
+        job.setOutputFormatClass(TextOutputFormat.class);
+        LOG.info("Output file: " + outputPath);
+        FileOutputFormat.setOutputPath(job, new Path(outputPath));
+        FileOutputFormat.setCompressOutput(job, false);
+
+        return job;
+    }
+
+    @Override
+    protected void postExecution(boolean succeed) throws IOException {
+        if (windowsFile != null) {
+            FileSystem.get(getConf()).delete(windowsFile, false);
+        }
+    }
+
+    public static class IbsWritable implements Writable {
+        private long ibs0;
+        private long ibs1;
+        private long ibs2;
+        private long hetHet;
+        private long het1;
+        private long het2;
+
+        public IbsWritable() {
+        }
+
+        public IbsWritable(IbsResult result) {
+            ibs0 = result.getIbs0();
+            ibs1 = result.getIbs1();
+            ibs2 = result.getIbs2();
+            hetHet = result.getHetHet();
+            het1 = result.getHet1();
+            het2 = result.getHet2();
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeLong(ibs0);
+            out.writeLong(ibs1);
+            out.writeLong(ibs2);
+            out.writeLong(hetHet);
+            out.writeLong(het1);
+            out.writeLong(het2);
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            ibs0 = in.readLong();
+            ibs1 = in.readLong();
+            ibs2 = in.readLong();
+            hetHet = in.readLong();
+            het1 = in.readLong();
+            het2 = in.readLong();
+        }
+
+        public IbsWritable merge(IbsWritable other) {
+            ibs0 += other.ibs0;
+            ibs1 += other.ibs1;
+            ibs2 += other.ibs2;
+            hetHet += other.hetHet;
+            het1 += other.het1;
+            het2 += other.het2;
+            return this;
+        }
+
+        public IbsResult toResult(String sample1, String sample2) {
+            return new IbsResult(sample1, sample2, ibs0, ibs1, ibs2, hetHet, het1, het2);
+        }
+    }
+
+    public static class SampleIndexIbsMapper extends Mapper<LongWritable, Text, Text, IbsWritable> {
+
+        private HBaseManager hBaseManager;
+        private StudyConfigurationManager scm;
+        private SampleIndexIbsGenotypeSource source;
+        private IbsEngine engine;
+        private List<String> samples;
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            Configuration conf = context.getConfiguration();
+            hBaseManager = new HBaseManager(conf);
+            String variantsTableName = VariantTableHelper.getVariantsTable(conf);
+            HBaseVariantTableNameGenerator tableNameGenerator =
+                    new HBaseVariantTableNameGenerator(getDBNameFromVariantsTableName(variantsTableName), conf);
+            scm = new StudyConfigurationManager(new HBaseVariantStorageMetadataDBAdaptorFactory(
+                    hBaseManager,
+                    tableNameGenerator.getMetaTableName(),
+                    conf));
+            SampleIndexDBAdaptor dbAdaptor = new SampleIndexDBAdaptor(new GenomeHelper(conf), hBaseManager, tableNameGenerator, scm);
+            source = new SampleIndexIbsGenotypeSource(dbAdaptor, conf.get(STUDY_NAME),
+                    conf.getInt(WINDOW_SIZE, SampleIndexDBLoader.BATCH_SIZE));
+
+            samples = Arrays.asList(conf.getStrings(SAMPLES));
+            // Pairs are compared in the same thread, as there might be multiple mappers per node.
+            engine = new IbsEngine(samples, 1, samples.size());
+        }
+
+        @Override
+        protected void map(LongWritable key, Text value, Context context) throws IOException, InterruptedException {
+            Region window = Region.parseRegion(value.toString());
+            source.read(Collections.singletonList(window), samples, engine);
+            context.getCounter("OPENCGA", "windows").increment(1);
+        }
+
+        @Override
+        protected void cleanup(Context context) throws IOException, InterruptedException {
+            context.getCounter("OPENCGA", "sites").increment(engine.getSites());
+            for (int i = 0; i < samples.size(); i++) {
+                for (int j = i + 1; j < samples.size(); j++) {
+                    IbsResult result = engine.getResult(i, j);
+                    context.write(new Text(result.getSample1() + '\t' + result.getSample2()), new IbsWritable(result));
+                }
+            }
+            engine.close();
+            scm.close();
+            hBaseManager.close();
+        }
+    }
+
+    public static class SampleIndexIbsCombiner extends Reducer<Text, IbsWritable, Text, IbsWritable> {
+        @Override
+        protected void reduce(Text key, Iterable<IbsWritable> values, Context context) throws IOException, InterruptedException {
+            IbsWritable ibs = new IbsWritable();
+            for (IbsWritable value : values) {
+                ibs.merge(value);
+            }
+            context.write(key, ibs);
+        }
+    }
+
+    public static class SampleIndexIbsReducer extends Reducer<Text, IbsWritable, NullWritable, Text> {
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            context.write(NullWritable.get(), new Text(IbsResult.HEADER));
+        }
+
+        @Override
+        protected void reduce(Text key, Iterable<IbsWritable> values, Context context) throws IOException, InterruptedException {
+            IbsWritable ibs = new IbsWritable();
+            for (IbsWritable value : values) {
+                ibs.merge(value);
+            }
+            String[] pair = key.toString().split("\t");
+            context.write(NullWritable.get(), new Text(ibs.toResult(pair[0], pair[1]).toLine()));
+        }
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(new SampleIndexIbsDriver().privateMain(args));
+        } catch (Exception e) {
+            LOG.error("Error executing " + SampleIndexIbsDriver.class, e);
+            System.exit(1);
+        }
+    }
+}
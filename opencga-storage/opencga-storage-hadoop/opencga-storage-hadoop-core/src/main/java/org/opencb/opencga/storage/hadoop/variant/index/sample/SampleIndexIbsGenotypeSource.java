@@ -0,0 +1,245 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.client.*;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.MultipleColumnPrefixFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsGenotypeBlock;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsGenotypeSource;
+import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the genotypes for the {@link org.opencb.opencga.storage.core.variant.analysis.ibs.IbsEngine} from the SampleIndexTable.
+ * <p>
+ * The genome is read in windows of {@code windowSize} bases, aligned to the SampleIndexTable batches. All the rows of all the
+ * samples of one window are fetched with one multi-get, and converted into one {@link IbsGenotypeBlock}.
+ * <p>
+ * Genotypes pending to be consolidated ({@link SampleIndexConverter#toPendingColumn}) are read as well. These are the genotypes
+ * without the main alternate (0/2, 2/2, ...) written by the fill gaps operation.
+ * <p>
+ * The SampleIndexTable does not contain hom-ref or missing genotypes, so any genotype not found is counted as hom-ref.
+ */
+public class SampleIndexIbsGenotypeSource implements IbsGenotypeSource {
+
+    private final SampleIndexDBAdaptor dbAdaptor;
+    private final String study;
+    private final int windowSize;
+    private static Logger logger = LoggerFactory.getLogger(SampleIndexIbsGenotypeSource.class);
+
+    public SampleIndexIbsGenotypeSource(SampleIndexDBAdaptor dbAdaptor, String study, int windowSize) {
+        this.dbAdaptor = dbAdaptor;
+        this.study = study;
+        // Align windows to batches
+        this.windowSize = Math.max(1, windowSize / SampleIndexDBLoader.BATCH_SIZE) * SampleIndexDBLoader.BATCH_SIZE;
+    }
+
+    @Override
+    public void read(List<Region> regions, List<String> samples, Consumer<IbsGenotypeBlock> consumer) throws IOException {
+        int studyId = dbAdaptor.getStudyId(study);
+        int[] sampleIds = new int[samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            sampleIds[i] = dbAdaptor.toSampleId(studyId, samples.get(i));
+        }
+        // Genotype columns, and any pending variant
+        List<byte[]> prefixes = new ArrayList<>();
+        for (String gt : dbAdaptor.getAllLoadedGenotypes(study)) {
+            if (SampleIndexDBLoader.validGenotype(gt)) {
+                prefixes.add(SampleIndexConverter.toGenotypeColumn(gt));
+            }
+        }
+        prefixes.add(SampleIndexConverter.PENDING_VARIANT_PREFIX_BYTES);
+        Filter columnsFilter = new MultipleColumnPrefixFilter(prefixes.toArray(new byte[prefixes.size()][]));
+
+        List<Region> windows = getWindows(regions);
+        logger.info("Reading {} samples in {} windows", samples.size(), windows.size());
+
+        String tableName = dbAdaptor.getTableNameGenerator().getSampleIndexTableName(studyId);
+        dbAdaptor.getHBaseManager().act(tableName, table -> {
+            for (Region window : windows) {
+                consumer.accept(readWindow(table, window, sampleIds, columnsFilter));
+            }
+        });
+    }
+
+    private IbsGenotypeBlock readWindow(Table table, Region window, int[] sampleIds, Filter columnsFilter) throws IOException {
+        byte[] family = dbAdaptor.getFamily();
+        int firstBatch = window.getStart() / SampleIndexDBLoader.BATCH_SIZE;
+        int lastBatch = window.getEnd() / SampleIndexDBLoader.BATCH_SIZE;
+        List<Get> gets = new ArrayList<>(sampleIds.length * (lastBatch - firstBatch + 1));
+        for (int sampleId : sampleIds) {
+            for (int batch = firstBatch; batch <= lastBatch; batch++) {
+                Get get = new Get(SampleIndexConverter.toRowKey(sampleId, window.getChromosome(),
+                        batch * SampleIndexDBLoader.BATCH_SIZE));
+                get.addFamily(family);
+                get.setFilter(columnsFilter);
+                gets.add(get);
+            }
+        }
+        Result[] results = table.get(gets);
+
+        IbsGenotypeBlock.Builder builder = new IbsGenotypeBlock.Builder(sampleIds.length);
+        int batches = lastBatch - firstBatch + 1;
+        for (int i = 0; i < results.length; i++) {
+            Result result = results[i];
+            if (result == null || result.isEmpty()) {
+                continue;
+            }
+            int sample = i / batches;
+            int batch = firstBatch + i % batches;
+            // Only check the position of the variants if the batch is not completely inside the window
+            boolean partial = batch * SampleIndexDBLoader.BATCH_SIZE < window.getStart()
+                    || (batch + 1) * SampleIndexDBLoader.BATCH_SIZE - 1 > window.getEnd();
+            for (Cell cell : result.rawCells()) {
+                byte[] column = CellUtil.cloneQualifier(cell);
+                Pair<String, String> pending = SampleIndexConverter.parsePendingColumn(column);
+                if (pending != null) {
+                    add(builder, window, partial, sample, pending.getKey(), IbsGenotypeBlock.genotype(pending.getValue()));
+                } else {
+                    int genotype = IbsGenotypeBlock.genotype(Bytes.toString(column));
+                    String value = Bytes.toString(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+                    for (String variant : value.split(",")) {
+                        add(builder, window, partial, sample, variant, genotype);
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static void add(IbsGenotypeBlock.Builder builder, Region window, boolean partial, int sample, String variant,
+                            int genotype) {
+        if (!variant.isEmpty() && (!partial || window.contains(window.getChromosome(), new Variant(variant).getStart()))) {
+            builder.add(sample, variant, genotype);
+        }
+    }
+
+    /**
+     * Split the given regions in windows. Regions without end are extended up to the last variant of the chromosome.
+     *
+     * @param regions Regions to split. All the chromosomes if empty
+     * @return List of windows
+     * @throws IOException on error reading from HBase
+     */
+    public List<Region> getWindows(List<Region> regions) throws IOException {
+        List<Region> windows = new ArrayList<>();
+        for (Region region : getRegions(regions)) {
+            windows.addAll(splitWindows(region, windowSize));
+        }
+        return windows;
+    }
+
+    private List<Region> getRegions(List<Region> regions) throws IOException {
+        if (regions == null || regions.isEmpty()) {
+            return getChromosomes();
+        }
+        List<Region> merged = VariantQueryUtils.mergeRegions(new ArrayList<>(regions));
+        List<Region> result = new ArrayList<>(merged.size());
+        for (Region region : merged) {
+            if (region.getEnd() == Integer.MAX_VALUE) {
+                int end = getLastPosition(region.getChromosome());
+                if (end >= region.getStart()) {
+                    result.add(new Region(region.getChromosome(), region.getStart(), end));
+                }
+            } else {
+                result.add(region);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the chromosomes with any variant, from the first to the last variant position of each chromosome.
+     * Uses one small scan per chromosome over the variants table.
+     *
+     * @return List of regions
+     * @throws IOException on error reading from HBase
+     */
+    public List<Region> getChromosomes() throws IOException {
+        String variantsTable = dbAdaptor.getTableNameGenerator().getVariantTableName();
+        return dbAdaptor.getHBaseManager().act(variantsTable, table -> {
+            List<Region> chromosomes = new ArrayList<>();
+            byte[] startRow = HConstants.EMPTY_START_ROW;
+            while (true) {
+                Scan scan = new Scan();
+                scan.setStartRow(startRow);
+                scan.setFilter(new FirstKeyOnlyFilter());
+                scan.setCaching(1);
+                Result first;
+                try (ResultScanner scanner = table.getScanner(scan)) {
+                    first = scanner.next();
+                }
+                if (first == null) {
+                    break;
+                }
+                Variant variant = VariantPhoenixKeyFactory.extractVariantFromVariantRowKey(first.getRow());
+                String chromosome = variant.getChromosome();
+                int end = getLastPosition(table, chromosome);
+                chromosomes.add(new Region(chromosome, variant.getStart(), Math.max(variant.getStart(), end)));
+                startRow = VariantPhoenixKeyFactory.generateVariantRowKey(chromosome, Integer.MAX_VALUE);
+            }
+            return chromosomes;
+        });
+    }
+
+    private int getLastPosition(String chromosome) throws IOException {
+        String variantsTable = dbAdaptor.getTableNameGenerator().getVariantTableName();
+        return dbAdaptor.getHBaseManager().act(variantsTable, table -> getLastPosition(table, chromosome));
+    }
+
+    private int getLastPosition(Table table, String chromosome) throws IOException {
+        Scan scan = new Scan();
+        scan.setReversed(true);
+        scan.setStartRow(VariantPhoenixKeyFactory.generateVariantRowKey(chromosome, Integer.MAX_VALUE));
+        scan.setStopRow(VariantPhoenixKeyFactory.generateVariantRowKey(chromosome, 0));
+        scan.setFilter(new FirstKeyOnlyFilter());
+        scan.setCaching(1);
+        try (ResultScanner scanner = table.getScanner(scan)) {
+            Result last = scanner.next();
+            if (last == null) {
+                return -1;
+            }
+            Variant variant = VariantPhoenixKeyFactory.extractVariantFromVariantRowKey(last.getRow());
+            return Math.max(variant.getStart(), variant.getEnd());
+        }
+    }
+
+    /**
+     * Split a region in windows aligned to the given size.
+     *
+     * @param region     Region with a defined end
+     * @param windowSize Window size
+     * @return List of windows
+     */
+    public static List<Region> splitWindows(Region region, int windowSize) {
+        List<Region> windows = new ArrayList<>();
+        int start = Math.max(0, region.getStart());
+        while (start <= region.getEnd()) {
+            int end = (int) Math.min(region.getEnd(), ((long) start / windowSize + 1) * windowSize - 1);
+            windows.add(new Region(region.getChromosome(), start, end));
+            start = end + 1;
+            if (end == Integer.MAX_VALUE) {
+                break;
+            }
+        }
+        return windows;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+}
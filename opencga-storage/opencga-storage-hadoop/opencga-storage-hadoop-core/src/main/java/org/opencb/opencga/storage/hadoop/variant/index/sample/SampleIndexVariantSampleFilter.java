@@ -0,0 +1,237 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import com.google.common.base.Throwables;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Get;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Table;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.MultipleColumnPrefixFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantIterable;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.analysis.VariantSampleFilter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.opencb.opencga.storage.core.metadata.StudyConfigurationManager.RO_CACHED_OPTIONS;
+
+/**
+ * VariantSampleFilter reading the genotypes from the SampleIndexTable.
+ * <p>
+ * Only the ids of the matching variants are read from the variants table. Then, the genotypes of the samples are read
+ * from the SampleIndexTable, with one multi-get for each chunk of variants, including the genotypes pending to be
+ * consolidated. No other format field is read.
+ * <p>
+ * The SampleIndexTable does not contain hom-ref, missing or unknown genotypes. If any of those genotypes is requested,
+ * the genotypes not found in the SampleIndexTable are read from the variants table. Otherwise, they are reported as
+ * {@link GenotypeClass#UNKNOWN_GENOTYPE}, as they can not match any requested genotype.
+ */
+public class SampleIndexVariantSampleFilter extends VariantSampleFilter {
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final List<String> NOT_INDEXED_GENOTYPES = Arrays.asList("0/0", "0|0", "0", "./.", ".",
+            GenotypeClass.UNKNOWN_GENOTYPE);
+
+    private final SampleIndexDBAdaptor dbAdaptor;
+    private final StudyConfigurationManager scm;
+
+    public SampleIndexVariantSampleFilter(VariantIterable iterable, SampleIndexDBAdaptor dbAdaptor, StudyConfigurationManager scm) {
+        super(iterable);
+        this.dbAdaptor = dbAdaptor;
+        this.scm = scm;
+    }
+
+    @Override
+    protected void iterate(Query query, Predicate<String> validGenotype, Consumer<Collection<String>> init, GenotypeWalker walker) {
+        Map<Integer, List<Integer>> includeSamples = VariantQueryUtils.getIncludeSamples(query, new QueryOptions(), scm);
+        if (includeSamples.size() != 1) {
+            throw new VariantQueryException("Unable to process with " + includeSamples.size() + " studies.");
+        }
+        int studyId = includeSamples.keySet().iterator().next();
+        List<Integer> sampleIds = includeSamples.get(studyId);
+        if (sampleIds.isEmpty()) {
+            throw new VariantQueryException("Unable to get samples!");
+        }
+        StudyConfiguration sc = scm.getStudyConfiguration(studyId, RO_CACHED_OPTIONS).first();
+        List<String> sampleNames = new ArrayList<>(sampleIds.size());
+        for (Integer sampleId : sampleIds) {
+            sampleNames.add(sc.getSampleIds().inverse().get(sampleId));
+        }
+        // Genotype columns, and any pending variant
+        List<byte[]> prefixes = new ArrayList<>();
+        for (String gt : dbAdaptor.getAllLoadedGenotypes(sc.getStudyName())) {
+            if (SampleIndexDBLoader.validGenotype(gt)) {
+                prefixes.add(SampleIndexConverter.toGenotypeColumn(gt));
+            }
+        }
+        prefixes.add(SampleIndexConverter.PENDING_VARIANT_PREFIX_BYTES);
+        Filter columnsFilter = new MultipleColumnPrefixFilter(prefixes.toArray(new byte[prefixes.size()][]));
+        boolean readNotIndexed = NOT_INDEXED_GENOTYPES.stream().anyMatch(validGenotype);
+
+        String tableName = dbAdaptor.getTableNameGenerator().getSampleIndexTableName(studyId);
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, VariantField.ID);
+        try (VariantDBIterator iterator = iterable.iterator(query, options)) {
+            if (!iterator.hasNext()) {
+                return;
+            }
+            init.accept(sampleNames);
+            dbAdaptor.getHBaseManager().act(tableName, table -> {
+                List<Variant> chunk = new ArrayList<>(CHUNK_SIZE);
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() == CHUNK_SIZE || !iterator.hasNext()) {
+                        List<Map<String, String>> genotypes = readGenotypes(table, chunk, sampleIds, columnsFilter);
+                        if (readNotIndexed) {
+                            readNotIndexedGenotypes(sc.getStudyName(), chunk, sampleNames, genotypes);
+                        }
+                        if (!walk(chunk, sampleNames, genotypes, walker)) {
+                            return;
+                        }
+                        chunk.clear();
+                    }
+                }
+            });
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Read the genotypes of a chunk of variants from the SampleIndexTable.
+     *
+     * @return Genotypes of the variants of this chunk, for each sample
+     */
+    private List<Map<String, String>> readGenotypes(Table table, List<Variant> variants, List<Integer> sampleIds,
+                                                    Filter columnsFilter) throws IOException {
+        Set<String> variantIds = new HashSet<>(variants.size());
+        Set<Pair<String, Integer>> batches = new LinkedHashSet<>();
+        for (Variant variant : variants) {
+            variantIds.add(variant.toString());
+            batches.add(Pair.of(variant.getChromosome(), variant.getStart() / SampleIndexDBLoader.BATCH_SIZE));
+        }
+
+        byte[] family = dbAdaptor.getFamily();
+        List<Get> gets = new ArrayList<>(sampleIds.size() * batches.size());
+        for (Integer sampleId : sampleIds) {
+            for (Pair<String, Integer> batch : batches) {
+                Get get = new Get(SampleIndexConverter.toRowKey(sampleId, batch.getKey(),
+                        batch.getValue() * SampleIndexDBLoader.BATCH_SIZE));
+                get.addFamily(family);
+                get.setFilter(columnsFilter);
+                gets.add(get);
+            }
+        }
+        Result[] results = table.get(gets);
+
+        List<Map<String, String>> genotypes = new ArrayList<>(sampleIds.size());
+        for (int i = 0; i < sampleIds.size(); i++) {
+            genotypes.add(new HashMap<>());
+        }
+        for (int i = 0; i < results.length; i++) {
+            Result result = results[i];
+            if (result == null || result.isEmpty()) {
+                continue;
+            }
+            Map<String, String> sampleGenotypes = genotypes.get(i / batches.size());
+            for (Cell cell : result.rawCells()) {
+                byte[] column = CellUtil.cloneQualifier(cell);
+                Pair<String, String> pending = SampleIndexConverter.parsePendingColumn(column);
+                if (pending != null) {
+                    if (variantIds.contains(pending.getKey())) {
+                        sampleGenotypes.put(pending.getKey(), pending.getValue());
+                    }
+                } else {
+                    String gt = Bytes.toString(column);
+                    String value = Bytes.toString(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+                    for (String variant : value.split(",")) {
+                        if (variantIds.contains(variant)) {
+                            sampleGenotypes.put(variant, gt);
+                        }
+                    }
+                }
+            }
+        }
+        return genotypes;
+    }
+
+    /**
+     * Read from the variants table the genotypes not found in the SampleIndexTable.
+     */
+    private void readNotIndexedGenotypes(String study, List<Variant> variants, List<String> sampleNames,
+                                         List<Map<String, String>> genotypes) throws IOException {
+        List<String> variantIds = new ArrayList<>();
+        Set<String> samples = new LinkedHashSet<>();
+        for (Variant variant : variants) {
+            String variantId = variant.toString();
+            boolean notIndexed = false;
+            for (int i = 0; i < sampleNames.size(); i++) {
+                if (!genotypes.get(i).containsKey(variantId)) {
+                    samples.add(sampleNames.get(i));
+                    notIndexed = true;
+                }
+            }
+            if (notIndexed) {
+                variantIds.add(variantId);
+            }
+        }
+        if (variantIds.isEmpty()) {
+            return;
+        }
+        Query query = new Query(VariantQueryParam.ID.key(), variantIds)
+                .append(VariantQueryParam.STUDY.key(), study)
+                .append(VariantQueryParam.INCLUDE_STUDY.key(), study)
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), new ArrayList<>(samples))
+                .append(VariantQueryParam.INCLUDE_FORMAT.key(), "GT");
+        QueryOptions options = new QueryOptions(QueryOptions.INCLUDE, Collections.singletonList(VariantField.STUDIES_SAMPLES_DATA));
+        try (VariantDBIterator iterator = iterable.iterator(query, options)) {
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                String variantId = variant.toString();
+                StudyEntry studyEntry = variant.getStudies().get(0);
+                for (int i = 0; i < sampleNames.size(); i++) {
+                    if (!genotypes.get(i).containsKey(variantId) && samples.contains(sampleNames.get(i))) {
+                        genotypes.get(i).put(variantId, studyEntry.getSampleData(sampleNames.get(i), "GT"));
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private boolean walk(List<Variant> variants, List<String> sampleNames, List<Map<String, String>> genotypes,
+                         GenotypeWalker walker) {
+        for (Variant variant : variants) {
+            String variantId = variant.toString();
+            for (int i = 0; i < sampleNames.size(); i++) {
+                String gt = genotypes.get(i).get(variantId);
+                if (gt == null) {
+                    gt = GenotypeClass.UNKNOWN_GENOTYPE;
+                }
+                if (!walker.accept(variant, sampleNames.get(i), gt)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -20,6 +20,7 @@ import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.*;
 import org.apache.hadoop.hbase.util.Bytes;
@@ -168,15 +169,8 @@ public class HBaseStudyConfigurationDBAdaptor extends AbstractHBaseDBAdaptor imp
         studyConfiguration.getHeaders().clear(); // REMOVE: stored as VariantFileMetadata
 
         try {
+            Put put = buildPut(studyConfiguration);
             hBaseManager.act(tableName, table -> {
-                byte[] bytes = objectMapper.writeValueAsBytes(studyConfiguration);
-                // Compress json
-                // Avoid "java.lang.IllegalArgumentException: KeyValue size too large"
-                bytes = CompressionUtils.compress(bytes);
-                Put put = new Put(getStudyConfigurationRowKey(studyConfiguration));
-                put.addColumn(family, getValueColumn(), studyConfiguration.getTimeStamp(), bytes);
-                put.addColumn(family, getTypeColumn(), studyConfiguration.getTimeStamp(),
-                        Type.STUDY_CONFIGURATION.bytes());
                 table.put(put);
             });
         } catch (IOException e) {
@@ -186,6 +180,49 @@ public class HBaseStudyConfigurationDBAdaptor extends AbstractHBaseDBAdaptor imp
         return new QueryResult<>("", (int) (System.currentTimeMillis() - startTime), 0, 0, "", error, Collections.emptyList());
     }
 
+    @Override
+    public boolean supportsCheckAndUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean checkAndUpdateStudyConfiguration(StudyConfiguration studyConfiguration, long expectedTimeStamp, QueryOptions options) {
+        logger.debug("Check and update StudyConfiguration {}", studyConfiguration.getStudyName());
+        studyConfiguration.getHeaders().clear(); // REMOVE: stored as VariantFileMetadata
+
+        boolean updated;
+        try {
+            byte[] row = getStudyConfigurationRowKey(studyConfiguration);
+            Put put = buildPut(studyConfiguration);
+            // The StudyConfiguration is written with its timeStamp as cell timestamp
+            Get get = new Get(row).addColumn(family, getValueColumn());
+            updated = lock.checkAndPut(row, getLockColumn(), get, result -> {
+                Cell cell = result.getColumnLatestCell(family, getValueColumn());
+                return cell != null && cell.getTimestamp() == expectedTimeStamp;
+            }, put);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Only modify the studies summary if the conditional update succeeded
+        if (updated) {
+            updateStudiesSummary(studyConfiguration.getStudyName(), studyConfiguration.getStudyId(), options);
+        }
+        return updated;
+    }
+
+    private Put buildPut(StudyConfiguration studyConfiguration) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(studyConfiguration);
+        // Compress json
+        // Avoid "java.lang.IllegalArgumentException: KeyValue size too large"
+        bytes = CompressionUtils.compress(bytes);
+        Put put = new Put(getStudyConfigurationRowKey(studyConfiguration));
+        put.addColumn(family, getValueColumn(), studyConfiguration.getTimeStamp(), bytes);
+        put.addColumn(family, getTypeColumn(), studyConfiguration.getTimeStamp(),
+                Type.STUDY_CONFIGURATION.bytes());
+        return put;
+    }
+
     @Override
     public BiMap<String, Integer> getStudies(QueryOptions options) {
         Get get = new Get(getStudiesSummaryRowKey());
@@ -3,9 +3,12 @@ package org.opencb.opencga.storage.hadoop.variant.search;
 import org.apache.hadoop.hbase.client.Put;
 import org.apache.phoenix.schema.types.PBoolean;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixHelper;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created on 23/04/18.
@@ -29,6 +32,36 @@ public class HadoopVariantSearchIndexUtils {
         return put;
     }
 
+    /**
+     * Marks the row as Not Sync Status, and the group of fields that was modified. Only the fields of the modified groups
+     * will be sent to the search engine.
+     *
+     * @param put Mutation to add new Variant information.
+     * @param columnFamily Main column family.
+     * @param syncGroup Modified group of fields. Either {@link SyncGroup#ANNOTATION} or {@link SyncGroup#STATS}
+     * @return The same put operation with the {@link VariantPhoenixHelper.VariantColumn#INDEX_NOT_SYNC} column.
+     */
+    public static Put addNotSyncStatus(Put put, byte[] columnFamily, SyncGroup syncGroup) {
+        if (put != null) {
+            long ts = System.currentTimeMillis();
+            put.addColumn(columnFamily, VariantPhoenixHelper.VariantColumn.INDEX_NOT_SYNC.bytes(), ts, PBoolean.TRUE_BYTES);
+            put.addColumn(columnFamily, getNotSyncColumn(syncGroup).bytes(), ts, PBoolean.TRUE_BYTES);
+        }
+        return put;
+    }
+
+    public static VariantPhoenixHelper.VariantColumn getNotSyncColumn(SyncGroup syncGroup) {
+        switch (syncGroup) {
+            case ANNOTATION:
+                return VariantPhoenixHelper.VariantColumn.INDEX_NOT_SYNC_ANNOTATION;
+            case STATS:
+                return VariantPhoenixHelper.VariantColumn.INDEX_NOT_SYNC_STATS;
+            default:
+                // Modifications of the studies are marked with the Unknown Sync Status
+                throw new IllegalArgumentException("Unexpected SyncGroup " + syncGroup);
+        }
+    }
+
     /**
      * Marks the row as Unknown Sync Status. This method should be called when loading or removing files.
      *
@@ -61,4 +94,27 @@ public class HadoopVariantSearchIndexUtils {
         }
         return syncStatus;
     }
+
+    /**
+     * Groups of fields modified since the last search index.
+     *
+     * @param unknown    If the row has the Unknown Sync Status, i.e. the studies of the variant were modified
+     * @param annotation If the annotation was modified
+     * @param stats      If the stats were modified
+     * @return Modified groups of fields, or null if unknown
+     */
+    public static Set<SyncGroup> getSyncGroups(boolean unknown, boolean annotation, boolean stats) {
+        Set<SyncGroup> syncGroups = EnumSet.noneOf(SyncGroup.class);
+        if (unknown) {
+            syncGroups.add(SyncGroup.STUDIES);
+        }
+        if (annotation) {
+            syncGroups.add(SyncGroup.ANNOTATION);
+        }
+        if (stats) {
+            syncGroups.add(SyncGroup.STATS);
+        }
+        // Empty if marked by a version that did not register the groups
+        return syncGroups.isEmpty() ? null : syncGroups;
+    }
 }
@@ -8,6 +8,7 @@ import org.opencb.biodata.models.variant.Variant;
 import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsCalculator;
 import org.opencb.opencga.storage.core.variant.stats.VariantStatsWrapper;
 import org.opencb.opencga.storage.hadoop.variant.converters.stats.VariantStatsToHBaseConverter;
@@ -81,7 +82,7 @@ public class VariantStatsMapper extends VariantMapper<ImmutableBytesWritable, Pu
             if (put == null) {
                 context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "stats.put.null").increment(1);
             } else {
-                HadoopVariantSearchIndexUtils.addNotSyncStatus(put, helper.getColumnFamily());
+                HadoopVariantSearchIndexUtils.addNotSyncStatus(put, helper.getColumnFamily(), SyncGroup.STATS);
                 context.getCounter(VariantsTableMapReduceHelper.COUNTER_GROUP_NAME, "stats.put").increment(1);
                 context.write(new ImmutableBytesWritable(helper.getVariantsTable()), put);
             }
@@ -22,10 +22,12 @@ import org.apache.hadoop.hbase.util.Bytes;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
 import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.index.phoenix.VariantPhoenixKeyFactory;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -65,6 +67,63 @@ public class GenomeHelperTest {
         Assert.assertEquals(1, keyFactory.getFileBatch(101));
     }
 
+    @Test
+    public void testBlockRowKeyBytes() throws Exception {
+        byte[] blockId = keyFactory.generateBlockIdAsBytes(150, "chr2", 222 * CHUNK_SIZE + 10);
+        Assert.assertEquals("00001_2_000000000222", Bytes.toString(blockId));
+        checkBlockRowKey(keyFactory, blockId, 1, "2", 222);
+        checkBlockRowKey(keyFactory, Bytes.toBytes("00001_NC_007605_000000000222"), 1, "NC_007605", 222);
+    }
+
+    @Test
+    public void testBinaryBlockRowKey() throws Exception {
+        ArchiveRowKeyFactory binaryKeyFactory = new ArchiveRowKeyFactory(CHUNK_SIZE, '_', 100, ArchiveRowKeyFactory.BINARY_FORMAT);
+        byte[] blockId = binaryKeyFactory.generateBlockIdAsBytes(150, "chr2", 222 * CHUNK_SIZE + 10);
+        Assert.assertEquals(14, blockId.length);
+        checkBlockRowKey(binaryKeyFactory, blockId, 1, "2", 222);
+        Assert.assertEquals("00001_2_000000000222", binaryKeyFactory.toString(blockId));
+        checkBlockRowKey(binaryKeyFactory, binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(3, "MT", 5), 3, "MT", 5);
+        checkBlockRowKey(binaryKeyFactory, binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(3, "NC_007605", 5), 3, "NC_007605", 5);
+
+        // Keys inside a bigger buffer
+        byte[] buffer = new byte[blockId.length + 10];
+        System.arraycopy(blockId, 0, buffer, 5, blockId.length);
+        Assert.assertEquals(1, binaryKeyFactory.extractFileBatchFromBlockId(buffer, 5, blockId.length));
+        Assert.assertEquals("2", binaryKeyFactory.extractChromosomeFromBlockId(buffer, 5, blockId.length));
+        Assert.assertEquals(222, binaryKeyFactory.extractSliceFromBlockId(buffer, 5, blockId.length));
+    }
+
+    @Test
+    public void testBinaryBlockRowKeyOrder() throws Exception {
+        ArchiveRowKeyFactory binaryKeyFactory = new ArchiveRowKeyFactory(CHUNK_SIZE, '_', 100, ArchiveRowKeyFactory.BINARY_FORMAT);
+        List<byte[]> keys = Arrays.asList(
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "A", 10),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "A", 2000),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "AB", 1),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "1", 10),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "1", 300),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "2", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "10", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "X", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(0, "MT", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(1, "A", 0),
+                binaryKeyFactory.generateBlockIdFromSliceAndBatchAsBytes(1, "1", 0));
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(Bytes.compareTo(keys.get(i - 1), keys.get(i)) < 0);
+        }
+    }
+
+    private void checkBlockRowKey(ArchiveRowKeyFactory keyFactory, byte[] blockId, int fileBatch, String chromosome, long slice) {
+        Assert.assertEquals(fileBatch, keyFactory.extractFileBatchFromBlockId(blockId));
+        Assert.assertEquals(chromosome, keyFactory.extractChromosomeFromBlockId(blockId));
+        Assert.assertEquals(slice, keyFactory.extractSliceFromBlockId(blockId));
+        Assert.assertEquals(slice * CHUNK_SIZE, keyFactory.extractPositionFromBlockId(blockId, 0, blockId.length));
+        Region region = keyFactory.extractRegionFromBlockId(blockId);
+        Assert.assertEquals(chromosome, region.getChromosome());
+        Assert.assertEquals(slice * CHUNK_SIZE, region.getStart());
+        Assert.assertEquals((slice + 1) * CHUNK_SIZE, region.getEnd());
+    }
+
     @Test
     public void testGenerateSplitArchive() throws Exception {
         assertOrder(GenomeHelper.generateBootPreSplitsHuman(30, (chr, pos) -> keyFactory.generateBlockIdAsBytes(1, chr, pos)), 30);
@@ -79,6 +138,20 @@ public class GenomeHelperTest {
         assertOrder(ArchiveTableHelper.generateArchiveTableBootPreSplitHuman(conf), 50);
     }
 
+    @Test
+    public void testGenerateSplitArchiveBinary() throws Exception {
+        Configuration conf = new Configuration();
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_TABLE_PRESPLIT_SIZE, 10);
+        conf.setInt(HadoopVariantStorageEngine.EXPECTED_FILES_NUMBER, 4500);
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_FILE_BATCH_SIZE, 1000);
+        conf.setInt(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_FORMAT, ArchiveRowKeyFactory.BINARY_FORMAT);
+        List<byte[]> splits = ArchiveTableHelper.generateArchiveTableBootPreSplitHuman(conf);
+        assertEquals(50, splits.size());
+        for (int i = 1; i < splits.size(); i++) {
+            assertTrue(Bytes.compareTo(splits.get(i - 1), splits.get(i)) < 0);
+        }
+    }
+
     @Test
     public void testGenerateSplitVariants() throws Exception {
         assertOrder(GenomeHelper.generateBootPreSplitsHuman(30, VariantPhoenixKeyFactory::generateVariantRowKey), 30);
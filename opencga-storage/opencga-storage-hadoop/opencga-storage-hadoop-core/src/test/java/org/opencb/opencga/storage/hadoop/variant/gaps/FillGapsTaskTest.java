@@ -30,6 +30,8 @@ import org.opencb.opencga.storage.hadoop.variant.AbstractVariantsTableDriver;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
 import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
 import org.opencb.opencga.storage.hadoop.variant.adaptors.VariantHadoopDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveRowKeyFactory;
+import org.opencb.opencga.storage.hadoop.variant.archive.ArchiveTableHelper;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBAdaptor;
 import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexDBLoader;
 
@@ -155,6 +157,24 @@ public class FillGapsTaskTest extends VariantStorageBaseTest implements HadoopVa
         checkQueryGenotypes(dbAdaptor);
     }
 
+    @Test
+    public void testFillGapsBinaryArchiveRowKeyFormat() throws Exception {
+        StudyConfiguration studyConfiguration = loadPlatinum(new ObjectMap()
+                .append(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_FORMAT, ArchiveRowKeyFactory.BINARY_FORMAT)
+                .append(VariantStorageEngine.Options.MERGE_MODE.key(), VariantStorageEngine.MergeMode.BASIC), 4);
+
+        HadoopVariantStorageEngine variantStorageEngine = (HadoopVariantStorageEngine) this.variantStorageEngine;
+        VariantHadoopDBAdaptor dbAdaptor = variantStorageEngine.getDBAdaptor();
+        assertEquals(ArchiveRowKeyFactory.BINARY_FORMAT, ArchiveTableHelper.getArchiveTableRowKeyFormat(dbAdaptor.getConnection(),
+                variantStorageEngine.getArchiveTableName(studyConfiguration.getStudyId())));
+
+        // The format is read from the archive table, not from the configuration
+        variantStorageEngine.getOptions().put(HadoopVariantStorageEngine.ARCHIVE_ROW_KEY_FORMAT, ArchiveRowKeyFactory.STRING_FORMAT);
+        List<Integer> sampleIds = new ArrayList<>(studyConfiguration.getSampleIds().values());
+        fillGaps(variantStorageEngine, studyConfiguration, sampleIds);
+        checkFillGaps(studyConfiguration, dbAdaptor, sampleIds);
+    }
+
     @Test
     public void testFillGapsConflictingFiles() throws Exception {
         StudyConfiguration studyConfiguration = load(new QueryOptions(), Arrays.asList(
@@ -8,11 +8,10 @@ import org.opencb.biodata.models.variant.protobuf.VcfSliceProtos;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.*;
+import java.util.stream.Collectors;
 
+import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
 
@@ -36,15 +35,16 @@ public class FillGapsTaskUtilsTest {
                 new Variant("1:29180::CAGAGA"),
                 new Variant("1:29181:A:G"),
                 new Variant("1:29193:A:G"),
-                new Variant("1:29198:A:G")
+                new Variant("1:29198:A:G"),
+                new Variant("17:29180:CAGAGACAGC:AAGAAACAGCAAAAAAAAAA"),
+                new Variant("17:29180:C:A"),
+                new Variant("17:29185:A:G"),
+                new Variant("17:29190::AAAAAAAA"),
+                new Variant("17:29193:A:G"),
+                new Variant("17:29464:G:")
         );
 
-        ListIterator<VcfSliceProtos.VcfRecord> iterator = vcfSlice.getRecordsList().listIterator();
-        for (Variant variant : variants) {
-            ArrayList<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>> list = new ArrayList<>();
-            a.getOverlappingVariants(variant, 1, vcfSlice, iterator, list);
-            System.out.println(variant + " iteratorIdx : " + iterator.nextIndex());
-        }
+        checkOverlappingVariants(a, vcfSlice, variants);
     }
 
 
@@ -82,11 +82,56 @@ public class FillGapsTaskUtilsTest {
                 new Variant("2:182562947:C:A")
         );
 
-        ListIterator<VcfSliceProtos.VcfRecord> iterator = vcfSlice.getRecordsList().listIterator();
+        checkOverlappingVariants(a, vcfSlice, variants);
+    }
+
+    @Test
+    public void testGetOverlappingVariantsIndex() {
+        FillGapsTask a = new FillGapsTask(new StudyConfiguration(1, "a"), new GenomeHelper(new Configuration()), true);
+
+        VcfSliceProtos.VcfSlice vcfSlice = buildVcfSlice(
+                "2:182562570:C:T",
+                "2:182562574-182562573::T",
+                "2:182562574-182562573::TT",
+                "2:182562574-182562576:TTT:",
+                "2:182562580:AAAAAAAAAAAAAAAAAAAA:",
+                "2:182562600:G:A"
+        );
+
+        List<Variant> variants = new ArrayList<>(Arrays.asList(
+                new Variant("2:182562560:A:G"),
+                new Variant("2:182562571:CTG:"),
+                new Variant("2:182562572::T"),
+                new Variant("2:182562573:G:T"),
+                new Variant("2:182562574:TTTT:"),
+                new Variant("2:182562574::A"),
+                new Variant("2:182562576:T:C"),
+                new Variant("2:182562594:G:A"),
+                new Variant("2:182562600:G:C"),
+                new Variant("2:182562890:A:G"),
+                new Variant("3:182562594:G:A")
+        ));
+        // The index does not depend on the order of the variants
+        Collections.reverse(variants);
+
+        checkOverlappingVariants(a, vcfSlice, variants);
+    }
+
+    private void checkOverlappingVariants(FillGapsTask a, VcfSliceProtos.VcfSlice vcfSlice, List<Variant> variants) {
+        // The same index is used for all the variants
+        VcfSliceOverlapIndex index = new VcfSliceOverlapIndex(vcfSlice);
         for (Variant variant : variants) {
-            ArrayList<Pair<VcfSliceProtos.VcfSlice, VcfSliceProtos.VcfRecord>> list = new ArrayList<>();
-            a.getOverlappingVariants(variant, 1, vcfSlice, iterator, list);
-            System.out.println(variant + " iteratorIdx : " + iterator.nextIndex());
+            List<Pair<VcfSliceOverlapIndex, VcfSliceProtos.VcfRecord>> list = new ArrayList<>();
+            a.getOverlappingVariants(variant, index, list);
+
+            List<VcfSliceProtos.VcfRecord> expected = new ArrayList<>();
+            for (int i = 0; i < index.size(); i++) {
+                if (FillGapsTask.overlapsWith(variant, vcfSlice.getChromosome(), index.getStart(i), index.getEnd(i))) {
+                    expected.add(vcfSlice.getRecords(i));
+                }
+            }
+            List<VcfSliceProtos.VcfRecord> actual = list.stream().map(Pair::getRight).collect(Collectors.toList());
+            assertEquals(variant.toString(), expected, actual);
         }
     }
 
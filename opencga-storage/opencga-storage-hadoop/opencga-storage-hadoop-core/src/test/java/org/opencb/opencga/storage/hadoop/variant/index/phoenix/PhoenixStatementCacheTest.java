@@ -0,0 +1,210 @@
+package org.opencb.opencga.storage.hadoop.variant.index.phoenix;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class PhoenixStatementCacheTest {
+
+    private static final PhoenixStatementCache.QueryShape SHAPE_1 = PhoenixStatementCache.normalize(
+            "SELECT * FROM VARIANTS WHERE \"CHROMOSOME\" = '1' AND \"POSITION\" >= 1000");
+    private static final PhoenixStatementCache.QueryShape SHAPE_1B = PhoenixStatementCache.normalize(
+            "SELECT * FROM VARIANTS WHERE \"CHROMOSOME\" = '2' AND \"POSITION\" >= 5");
+    private static final PhoenixStatementCache.QueryShape SHAPE_2 = PhoenixStatementCache.normalize(
+            "SELECT * FROM VARIANTS WHERE \"CHROMOSOME\" = '1'");
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        connection = Mockito.mock(Connection.class);
+        Mockito.doAnswer(invocation -> Mockito.mock(PreparedStatement.class))
+                .when(connection).prepareStatement(ArgumentMatchers.anyString());
+    }
+
+    @Test
+    public void testNormalize() {
+        PhoenixStatementCache.QueryShape shape = PhoenixStatementCache.normalize(
+                "SELECT /*+ NO_INDEX */ \"CHROMOSOME\",\"1_GT\" FROM \"VARIANTS\"(\"1_S2_GT\" VARCHAR ARRAY) "
+                        + "WHERE ( \"CHROMOSOME\" = '1' AND \"POSITION\" >= 1000 AND \"POSITION\" <= 2000 ) "
+                        + "AND 'BRCA2' = ANY(\"GENES\") AND \"POP_FREQ\"[2] < 0.5 AND \"SIFT\" > 1.0E-5 AND NAME = 'it''s' LIMIT 10");
+
+        assertEquals("SELECT /*+ NO_INDEX */ \"CHROMOSOME\",\"1_GT\" FROM \"VARIANTS\"(\"1_S2_GT\" VARCHAR ARRAY) "
+                + "WHERE ( \"CHROMOSOME\" = ? AND \"POSITION\" >= ? AND \"POSITION\" <= ? ) "
+                + "AND ? = ANY(\"GENES\") AND \"POP_FREQ\"[2] < ? AND \"SIFT\" > ? AND NAME = ? LIMIT ?", shape.getSql());
+        assertEquals(Arrays.asList("1", 1000L, 2000L, "BRCA2", new BigDecimal("0.5"), new BigDecimal("1.0E-5"), "it's", 10L),
+                shape.getParameters());
+    }
+
+    @Test
+    public void testSameShape() {
+        PhoenixStatementCache.QueryShape shape1 = PhoenixStatementCache.normalize(
+                "SELECT * FROM VARIANTS WHERE \"CHROMOSOME\" = '1' AND \"POSITION\" >= 1000");
+        PhoenixStatementCache.QueryShape shape2 = PhoenixStatementCache.normalize(
+                "SELECT * FROM VARIANTS WHERE \"CHROMOSOME\" = 'X' AND \"POSITION\" >= 5");
+        assertEquals(shape1.getSql(), shape2.getSql());
+    }
+
+    @Test
+    public void testReuseStatement() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(10);
+        PreparedStatement statement = cache.prepare(connection, SHAPE_1);
+        assertNotNull(statement);
+        verify(statement).setObject(1, "1");
+        verify(statement).setObject(2, 1000L);
+        cache.release(statement, SHAPE_1);
+        verify(statement).clearParameters();
+        verify(statement, never()).close();
+
+        // Same shape, different values
+        assertSame(statement, cache.prepare(connection, SHAPE_1B));
+        verify(statement).setObject(1, "2");
+        verify(statement).setObject(2, 5L);
+        cache.release(statement, SHAPE_1B);
+
+        verify(connection, times(1)).prepareStatement(SHAPE_1.getSql());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getUncacheable());
+    }
+
+    @Test
+    public void testConcurrentStatements() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(10, 1);
+        PreparedStatement statement1 = cache.prepare(connection, SHAPE_1);
+        PreparedStatement statement2 = cache.prepare(connection, SHAPE_1);
+        // Borrowed statements are not shared
+        assertNotSame(statement1, statement2);
+
+        cache.release(statement1, SHAPE_1);
+        cache.release(statement2, SHAPE_1);
+        // Only one statement per shape is kept
+        verify(statement1, never()).close();
+        verify(statement2).close();
+        assertSame(statement1, cache.prepare(connection, SHAPE_1));
+    }
+
+    @Test
+    public void testMaxShapes() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(1);
+        PreparedStatement statement1 = cache.prepare(connection, SHAPE_1);
+        PreparedStatement statement2 = cache.prepare(connection, SHAPE_2);
+        cache.release(statement1, SHAPE_1);
+        cache.release(statement2, SHAPE_2);
+        // Least recently used shape is evicted
+        verify(statement1).close();
+        verify(statement2, never()).close();
+        assertSame(statement2, cache.prepare(connection, SHAPE_2));
+        assertNotSame(statement1, cache.prepare(connection, SHAPE_1));
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(0);
+        assertNull(cache.prepare(connection, SHAPE_1));
+        verify(connection, never()).prepareStatement(ArgumentMatchers.anyString());
+    }
+
+    @Test
+    public void testPrepareFailure() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(10);
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        doThrow(new SQLException("Ambiguous type")).when(statement).getParameterMetaData();
+        doReturn(statement).when(connection).prepareStatement(SHAPE_1.getSql());
+
+        assertNull(cache.prepare(connection, SHAPE_1));
+        verify(statement).close();
+        assertTrue(cache.isUncacheable(SHAPE_1));
+
+        // The shape is not prepared again
+        assertNull(cache.prepare(connection, SHAPE_1B));
+        verify(connection, times(1)).prepareStatement(SHAPE_1.getSql());
+        assertEquals(2, cache.getUncacheable());
+
+        // Other shapes are not affected
+        assertNotNull(cache.prepare(connection, SHAPE_2));
+    }
+
+    @Test
+    public void testBindFailure() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(10);
+        PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+        doThrow(new SQLException("Closed")).when(statement).setObject(ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+        doReturn(statement).when(connection).prepareStatement(SHAPE_1.getSql());
+
+        assertNull(cache.prepare(connection, SHAPE_1));
+        verify(statement).close();
+        assertFalse(cache.isUncacheable(SHAPE_1));
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(10);
+        PreparedStatement statement = cache.prepare(connection, SHAPE_1);
+        // e.g. the execution failed
+        cache.discard(statement);
+        verify(statement).close();
+
+        // Errors executing the statement do not make the shape uncacheable
+        assertFalse(cache.isUncacheable(SHAPE_1));
+        PreparedStatement newStatement = cache.prepare(connection, SHAPE_1);
+        assertNotNull(newStatement);
+        assertNotSame(statement, newStatement);
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(10);
+        PreparedStatement statement = cache.prepare(connection, SHAPE_1);
+        cache.release(statement, SHAPE_1);
+        cache.invalidate(connection);
+        verify(statement).close();
+
+        Connection otherConnection = Mockito.mock(Connection.class);
+        Mockito.doAnswer(invocation -> Mockito.mock(PreparedStatement.class))
+                .when(otherConnection).prepareStatement(ArgumentMatchers.anyString());
+        PreparedStatement otherStatement = cache.prepare(otherConnection, SHAPE_1);
+        // Statements are not shared between connections
+        assertNotSame(statement, otherStatement);
+        cache.release(otherStatement, SHAPE_1);
+        assertNotSame(otherStatement, cache.prepare(connection, SHAPE_1));
+    }
+
+    @Test
+    public void testResetFetchSize() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(10);
+        PreparedStatement statement = cache.prepare(connection, SHAPE_1);
+        statement.setFetchSize(500);
+        cache.release(statement, SHAPE_1);
+
+        assertSame(statement, cache.prepare(connection, SHAPE_1B));
+        verify(statement, times(2)).setFetchSize(0);
+    }
+
+    @Test
+    public void testMaxUncacheableShapes() throws Exception {
+        PhoenixStatementCache cache = new PhoenixStatementCache(1);
+        Mockito.doAnswer(invocation -> {
+            PreparedStatement statement = Mockito.mock(PreparedStatement.class);
+            doThrow(new SQLException("Ambiguous type")).when(statement).getParameterMetaData();
+            return statement;
+        }).when(connection).prepareStatement(ArgumentMatchers.anyString());
+
+        assertNull(cache.prepare(connection, SHAPE_1));
+        assertNull(cache.prepare(connection, SHAPE_2));
+        assertTrue(cache.isUncacheable(SHAPE_2));
+        // Only the last uncacheable shape is remembered
+        assertFalse(cache.isUncacheable(SHAPE_1));
+    }
+}
@@ -0,0 +1,66 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogSketchTest {
+
+    private static HyperLogLogSketch sketch(int from, int to) {
+        HyperLogLogSketch sketch = new HyperLogLogSketch();
+        for (int i = from; i < to; i++) {
+            sketch.add("1:" + i + ":A:C");
+        }
+        return sketch;
+    }
+
+    private static void checkEstimate(long expected, long actual) {
+        // 3 times the standard error
+        double error = Math.max(1, expected * HyperLogLogSketch.STANDARD_ERROR * 3);
+        assertTrue("Expected " + expected + " +/- " + error + " but got " + actual, Math.abs(expected - actual) <= error);
+    }
+
+    @Test
+    public void testEstimate() {
+        assertEquals(0, new HyperLogLogSketch().estimate());
+        checkEstimate(10, sketch(0, 10).estimate());
+        checkEstimate(1000, sketch(0, 1000).estimate());
+        checkEstimate(100000, sketch(0, 100000).estimate());
+        // Duplicated values
+        checkEstimate(1000, sketch(0, 1000).merge(sketch(0, 1000)).estimate());
+    }
+
+    @Test
+    public void testUnion() {
+        checkEstimate(15000, sketch(0, 10000).merge(sketch(5000, 15000)).estimate());
+    }
+
+    @Test
+    public void testIntersection() {
+        long[] estimate = HyperLogLogSketch.estimateIntersection(Arrays.asList(sketch(0, 10000), sketch(5000, 15000)));
+        assertTrue(Math.abs(5000 - estimate[0]) <= estimate[1]);
+
+        estimate = HyperLogLogSketch.estimateIntersection(Arrays.asList(sketch(0, 1000), sketch(5000, 6000)));
+        assertTrue(estimate[0] <= estimate[1]);
+    }
+
+    @Test
+    public void testSerialize() {
+        // Sparse
+        HyperLogLogSketch sketch = sketch(0, 100);
+        byte[] bytes = sketch.toBytes();
+        assertTrue(bytes.length < HyperLogLogSketch.REGISTERS);
+        assertArrayEquals(bytes, HyperLogLogSketch.fromBytes(bytes).toBytes());
+        assertEquals(sketch.estimate(), HyperLogLogSketch.fromBytes(bytes).estimate());
+
+        // Dense
+        sketch = sketch(0, 100000);
+        bytes = sketch.toBytes();
+        assertEquals(HyperLogLogSketch.REGISTERS + 1, bytes.length);
+        assertEquals(sketch.estimate(), HyperLogLogSketch.fromBytes(bytes).estimate());
+    }
+}
@@ -0,0 +1,161 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.VariantStorageBaseTest;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsEngine;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsGenotypeBlock;
+import org.opencb.opencga.storage.core.variant.analysis.ibs.IbsResult;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Compares the identity by state computed from the SampleIndexTable with the one computed from the variants table.
+ */
+public class SampleIndexIbsTest extends VariantStorageBaseTest implements HadoopVariantStorageTest {
+
+    @ClassRule
+    public static HadoopExternalResource externalResource = new HadoopExternalResource();
+    private static HadoopVariantStorageEngine variantStorageEngine;
+    private static final String STUDY_NAME = "st1";
+    private static List<String> samples;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        variantStorageEngine = externalResource.getVariantStorageEngine();
+        for (int fileId = 12877; fileId <= 12880; fileId++) {
+            URI inputUri = VariantStorageBaseTest.getResourceUri("platinum/1K.end.platinum-genomes-vcf-NA" + fileId + "_S1.genome.vcf.gz");
+            VariantStorageBaseTest.runDefaultETL(inputUri, variantStorageEngine, new StudyConfiguration(0, STUDY_NAME),
+                    new ObjectMap(VariantStorageEngine.Options.ANNOTATE.key(), false)
+                            .append(VariantStorageEngine.Options.CALCULATE_STATS.key(), false)
+                            .append(VariantStorageEngine.Options.GVCF.key(), true)
+                            .append(VariantStorageEngine.Options.MERGE_MODE.key(), VariantStorageEngine.MergeMode.BASIC));
+        }
+        StudyConfiguration sc = variantStorageEngine.getStudyConfigurationManager().getStudyConfiguration(STUDY_NAME, null).first();
+        samples = new ArrayList<>(sc.getSampleIds().keySet());
+        samples.sort(String::compareTo);
+
+        // Fill gaps writes the genotypes without the main alternate as pending variants in the SampleIndexTable
+        variantStorageEngine.fillGaps(STUDY_NAME, samples, new ObjectMap("local", false));
+    }
+
+    @Before
+    public void before() throws Exception {
+        // Do not clean database!
+    }
+
+    @Test
+    public void testSampleIndexSource() throws Exception {
+        checkSampleIndexSource(Collections.emptyList(), SampleIndexDBLoader.BATCH_SIZE);
+        checkSampleIndexSource(Collections.emptyList(), SampleIndexDBLoader.BATCH_SIZE * 10);
+    }
+
+    @Test
+    public void testSampleIndexSourceRegions() throws Exception {
+        // Windows partially covering a batch
+        checkSampleIndexSource(Arrays.asList(new Region("1", 10000, 15000), new Region("1", 17000, 18000)),
+                SampleIndexDBLoader.BATCH_SIZE);
+    }
+
+    @Test
+    public void testDriver() throws Exception {
+        URI output = URI.create("hdfs:///ibs.txt");
+        variantStorageEngine.ibs(STUDY_NAME, samples, null, output, new ObjectMap(SampleIndexIbsDriver.WINDOWS_PER_TASK, 1));
+
+        List<String> lines = new ArrayList<>();
+        FileSystem fs = FileSystem.get(externalResource.getConf());
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(new Path(output.toString(), "part-r-00000"))))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        assertEquals(IbsResult.HEADER, lines.get(0));
+
+        Set<String> expected = new HashSet<>();
+        try (IbsEngine engine = expectedIbs(Collections.emptyList())) {
+            for (IbsResult result : engine.getResults()) {
+                expected.add(result.toLine());
+            }
+        }
+        assertEquals(samples.size() * (samples.size() - 1) / 2, lines.size() - 1);
+        assertEquals(expected, new HashSet<>(lines.subList(1, lines.size())));
+    }
+
+    private void checkSampleIndexSource(List<Region> regions, int windowSize) throws Exception {
+        SampleIndexIbsGenotypeSource source = new SampleIndexIbsGenotypeSource(variantStorageEngine.getSampleIndexDBAdaptor(),
+                STUDY_NAME, windowSize);
+        try (IbsEngine expected = expectedIbs(regions);
+             IbsEngine actual = new IbsEngine(samples, 2, 2)) {
+            source.read(regions, samples, actual);
+            assertNotEquals(0, expected.getSites());
+            assertEquals(expected.getSites(), actual.getSites());
+            for (int i = 0; i < samples.size(); i++) {
+                for (int j = i + 1; j < samples.size(); j++) {
+                    assertEquals(expected.getResult(i, j).toLine(), actual.getResult(i, j).toLine());
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the identity by state reading the genotypes from the variants table. Genotypes not stored in the
+     * SampleIndexTable are counted as hom-ref.
+     */
+    private IbsEngine expectedIbs(List<Region> regions) throws Exception {
+        IbsEngine engine = new IbsEngine(samples, 1, samples.size());
+        IbsGenotypeBlock.Builder builder = new IbsGenotypeBlock.Builder(samples.size());
+        Query query = new Query(VariantQueryParam.STUDY.key(), STUDY_NAME)
+                .append(VariantQueryParam.INCLUDE_SAMPLE.key(), samples);
+        try (VariantDBIterator iterator = variantStorageEngine.getDBAdaptor().iterator(query, new QueryOptions())) {
+            while (iterator.hasNext()) {
+                Variant variant = iterator.next();
+                if (!regions.isEmpty() && regions.stream().noneMatch(r -> r.contains(variant.getChromosome(), variant.getStart()))) {
+                    continue;
+                }
+                StudyEntry studyEntry = variant.getStudies().get(0);
+                int[] genotypes = new int[samples.size()];
+                boolean found = false;
+                for (int i = 0; i < samples.size(); i++) {
+                    String gt = studyEntry.getSampleData(samples.get(i), "GT");
+                    if (gt == null || gt.equals(GenotypeClass.UNKNOWN_GENOTYPE) || !SampleIndexDBLoader.validGenotype(gt)) {
+                        genotypes[i] = IbsGenotypeBlock.HOM_REF;
+                    } else {
+                        genotypes[i] = IbsGenotypeBlock.genotype(gt);
+                        found = true;
+                    }
+                }
+                if (found) {
+                    for (int i = 0; i < genotypes.length; i++) {
+                        builder.add(i, variant.toString(), genotypes[i]);
+                    }
+                }
+            }
+        }
+        engine.accept(builder.build());
+        return engine;
+    }
+}
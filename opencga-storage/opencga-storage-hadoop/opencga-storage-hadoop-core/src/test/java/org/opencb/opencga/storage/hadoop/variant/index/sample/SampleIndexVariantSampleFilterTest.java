@@ -0,0 +1,30 @@
+package org.opencb.opencga.storage.hadoop.variant.index.sample;
+
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.analysis.VariantSampleFilterMultiFileTest;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageEngine;
+import org.opencb.opencga.storage.hadoop.variant.HadoopVariantStorageTest;
+
+import static org.junit.Assert.assertTrue;
+
+public class SampleIndexVariantSampleFilterTest extends VariantSampleFilterMultiFileTest implements HadoopVariantStorageTest {
+
+    @ClassRule
+    public static ExternalResource externalResource = new HadoopExternalResource();
+
+    @Override
+    protected ObjectMap getOptions() {
+        return new ObjectMap()
+                .append(HadoopVariantStorageEngine.VARIANT_TABLE_INDEXES_SKIP, true)
+                .append(VariantStorageEngine.Options.MERGE_MODE.key(), VariantStorageEngine.MergeMode.BASIC);
+    }
+
+    @Test
+    public void testFilterClass() {
+        assertTrue(filter instanceof SampleIndexVariantSampleFilter);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.dummy.DummyProjectMetadataAdaptor;
+import org.opencb.opencga.storage.core.variant.dummy.DummyStudyConfigurationAdaptor;
+import org.opencb.opencga.storage.core.variant.dummy.DummyVariantFileMetadataDBAdaptor;
+import org.opencb.opencga.storage.hadoop.variant.GenomeHelper;
+import org.opencb.opencga.storage.hadoop.variant.converters.stats.HBaseToVariantStatsConverter;
+import org.opencb.opencga.storage.hadoop.variant.converters.study.HBaseToStudyEntryConverter;
+import org.opencb.opencga.storage.hadoop.variant.converters.study.StudyEntryToHBaseConverter;
+import org.opencb.opencga.storage.hadoop.variant.index.sample.SampleIndexConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converters of the HBase variants table and the sample index table.
+ * Times are per variant for the variants table, and per sample index row for the sample index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HadoopConvertersBenchmark {
+
+    public static final int NUM_VARIANTS = 1000;
+    public static final int NUM_SAMPLE_INDEX_ROWS = 10;
+
+    @Param({"10", "100", "1000"})
+    protected int numSamples;
+
+    private List<Variant> variants;
+    private List<Result> variantResults;
+    private List<Result> sampleIndexResults;
+
+    private StudyEntryToHBaseConverter studyEntryToHBaseConverter;
+    private HBaseToStudyEntryConverter hbaseToStudyEntryConverter;
+    private SampleIndexConverter sampleIndexConverter;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticDataset dataset = new SyntheticDataset(NUM_VARIANTS, numSamples);
+        StudyConfiguration studyConfiguration = dataset.getStudyConfiguration();
+        StudyConfigurationManager scm = new StudyConfigurationManager(new DummyProjectMetadataAdaptor(),
+                new DummyStudyConfigurationAdaptor(), new DummyVariantFileMetadataDBAdaptor());
+        scm.updateStudyConfiguration(studyConfiguration, null);
+
+        GenomeHelper genomeHelper = new GenomeHelper(new Configuration());
+        byte[] family = genomeHelper.getColumnFamily();
+        studyEntryToHBaseConverter = new StudyEntryToHBaseConverter(family, studyConfiguration, false, null);
+        hbaseToStudyEntryConverter = new HBaseToStudyEntryConverter(family, scm, new HBaseToVariantStatsConverter(genomeHelper));
+        sampleIndexConverter = new SampleIndexConverter();
+
+        variants = dataset.getVariants();
+        variantResults = new ArrayList<>(variants.size());
+        for (Variant variant : variants) {
+            variantResults.add(toResult(studyEntryToHBaseConverter.convert(variant)));
+        }
+
+        // One sample index row for each of the first samples. As written by the SampleIndexDBLoader
+        sampleIndexResults = new ArrayList<>(NUM_SAMPLE_INDEX_ROWS);
+        for (int sampleIdx = 0; sampleIdx < NUM_SAMPLE_INDEX_ROWS; sampleIdx++) {
+            Map<String, List<String>> variantsByGenotype = new TreeMap<>();
+            for (Variant variant : variants) {
+                String gt = variant.getStudies().get(0).getSampleData(dataset.getSamples().get(sampleIdx), "GT");
+                if (!gt.equals("0/0") && !gt.equals("./.")) {
+                    variantsByGenotype.computeIfAbsent(gt, k -> new ArrayList<>()).add(variant.toString());
+                }
+            }
+            Put put = new Put(SampleIndexConverter.toRowKey(sampleIdx + 1, SyntheticDataset.CHROMOSOME, variants.get(0).getStart()));
+            for (Map.Entry<String, List<String>> entry : variantsByGenotype.entrySet()) {
+                put.addColumn(family, SampleIndexConverter.toGenotypeColumn(entry.getKey()),
+                        Bytes.toBytes(String.join(",", entry.getValue())));
+                put.addColumn(family, SampleIndexConverter.toGenotypeCountColumn(entry.getKey()),
+                        Bytes.toBytes(entry.getValue().size()));
+            }
+            sampleIndexResults.add(toResult(put));
+        }
+    }
+
+    private static Result toResult(Put put) {
+        List<Cell> cells = new ArrayList<>();
+        for (List<Cell> familyCells : put.getFamilyCellMap().values()) {
+            cells.addAll(familyCells);
+        }
+        // All the cells are from the same row and family. Results must be sorted by qualifier
+        cells.sort((c1, c2) -> Bytes.compareTo(CellUtil.cloneQualifier(c1), CellUtil.cloneQualifier(c2)));
+        return Result.create(cells);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void studyEntryToHBase(Blackhole bh) {
+        for (Variant variant : variants) {
+            bh.consume(studyEntryToHBaseConverter.convert(variant));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void hbaseToStudyEntry(Blackhole bh) {
+        for (Result result : variantResults) {
+            bh.consume(hbaseToStudyEntryConverter.convert(result));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_SAMPLE_INDEX_ROWS)
+    public void sampleIndexToVariants(Blackhole bh) {
+        for (Result result : sampleIndexResults) {
+            bh.consume(sampleIndexConverter.convert(result));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_SAMPLE_INDEX_ROWS)
+    public void sampleIndexToCount(Blackhole bh) {
+        for (Result result : sampleIndexResults) {
+            bh.consume(sampleIndexConverter.convertToCount(result));
+        }
+    }
+}
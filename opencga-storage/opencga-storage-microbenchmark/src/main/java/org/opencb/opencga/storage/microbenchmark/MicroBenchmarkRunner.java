@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the micro benchmarks of this module, writing a JSON report.
+ * <p>
+ * Accepts the same arguments as the JMH command line. By default, runs all the benchmarks and writes the report to
+ * {@link #DEFAULT_RESULT_FILE}. Reports of different versions can be compared with any JMH report visualizer.
+ * <p>
+ * Usage:
+ * java -jar opencga-storage-microbenchmark.jar [MongoDBConvertersBenchmark] [-p numSamples=100] [-rff result.json]
+ */
+public final class MicroBenchmarkRunner {
+
+    public static final String DEFAULT_RESULT_FILE = "opencga-microbenchmark.json";
+
+    private MicroBenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (options.getIncludes().isEmpty()) {
+            builder.include(MicroBenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+        }
+        if (!options.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!options.getResult().hasValue()) {
+            builder.result(DEFAULT_RESULT_FILE);
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
+import org.opencb.opencga.storage.mongodb.variant.converters.*;
+import org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToAvroBinaryConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.opencb.opencga.storage.microbenchmark.SyntheticDataset.STUDY_ID;
+
+/**
+ * Converters of the MongoDB variants collection and the stage collection. Times are per variant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MongoDBConvertersBenchmark {
+
+    public static final int NUM_VARIANTS = 1000;
+
+    @Param({"10", "100", "1000"})
+    protected int numSamples;
+
+    private List<Variant> variants;
+    private List<Document> documents;
+    private List<Document> studyDocuments;
+    private List<Binary> binaries;
+    private LinkedHashSet<String> sampleNames;
+
+    private DocumentToVariantConverter variantConverter;
+    private DocumentToSamplesConverter samplesConverter;
+    private VariantToAvroBinaryConverter avroConverter;
+
+    @Setup
+    public void setup() {
+        SyntheticDataset dataset = new SyntheticDataset(NUM_VARIANTS, numSamples);
+        StudyConfiguration studyConfiguration = dataset.getStudyConfiguration();
+        studyConfiguration.getAttributes().put(MongoDBVariantStorageEngine.MongoDBVariantOptions.DEFAULT_GENOTYPE.key(), "0/0");
+        sampleNames = new LinkedHashSet<>(dataset.getSamples());
+
+        samplesConverter = new DocumentToSamplesConverter(studyConfiguration);
+        DocumentToStudyVariantEntryConverter studyConverter = new DocumentToStudyVariantEntryConverter(false, samplesConverter);
+        variantConverter = new DocumentToVariantConverter(studyConverter, new DocumentToVariantStatsConverter());
+        avroConverter = new VariantToAvroBinaryConverter();
+
+        variants = dataset.getVariants();
+        documents = new ArrayList<>(variants.size());
+        studyDocuments = new ArrayList<>(variants.size());
+        binaries = new ArrayList<>(variants.size());
+        for (Variant variant : variants) {
+            documents.add(variantConverter.convertToStorageType(variant));
+            studyDocuments.add(studyConverter.convertToStorageType(variant, variant.getStudies().get(0)));
+            binaries.add(avroConverter.convertToStorageType(variant));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void variantToDocument(Blackhole bh) {
+        for (Variant variant : variants) {
+            bh.consume(variantConverter.convertToStorageType(variant));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void documentToVariant(Blackhole bh) {
+        for (Document document : documents) {
+            bh.consume(variantConverter.convertToDataModelType(document));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void samplesToDocument(Blackhole bh) {
+        for (Variant variant : variants) {
+            StudyEntry studyEntry = variant.getStudies().get(0);
+            bh.consume(samplesConverter.convertToStorageType(studyEntry, STUDY_ID, new Document(), sampleNames));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void documentToSamples(Blackhole bh) {
+        for (Document document : studyDocuments) {
+            bh.consume(samplesConverter.convertToDataModelType(document, STUDY_ID));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void variantToAvroBinary(Blackhole bh) {
+        for (Variant variant : variants) {
+            bh.consume(avroConverter.convertToStorageType(variant));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void avroBinaryToVariant(Blackhole bh) {
+        for (Binary binary : binaries) {
+            bh.consume(avroConverter.convertToDataModelType(binary));
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.annotation.ConsequenceTypeMappings;
+import org.opencb.biodata.models.variant.avro.*;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+
+import java.util.*;
+
+/**
+ * Deterministic synthetic variants for the micro benchmarks.
+ * <p>
+ * The same arguments always produce the same dataset, so the results of different executions and different versions
+ * can be compared. Variants are sorted, in one study with one file, with GT and DP for all the samples, and with a
+ * simplified annotation.
+ */
+public final class SyntheticDataset {
+
+    public static final int STUDY_ID = 1;
+    public static final String STUDY_NAME = "S_1";
+    public static final int FILE_ID = 1;
+    public static final String CHROMOSOME = "1";
+    public static final long DEFAULT_SEED = 42;
+
+    private static final char[] BASES = {'A', 'C', 'G', 'T'};
+    private static final String[] GENOTYPES = {"0/0", "0/1", "1/1", "./."};
+    // Cumulative probability of each genotype
+    private static final double[] GENOTYPE_FREQUENCIES = {0.7, 0.9, 0.98, 1};
+    private static final String[] CONSEQUENCE_TYPES = {"missense_variant", "synonymous_variant", "intron_variant",
+            "upstream_gene_variant", "stop_gained", "3_prime_UTR_variant", };
+
+    private final Random random;
+    private final List<String> samples;
+    private final LinkedHashMap<String, Integer> samplesPosition;
+    private final StudyConfiguration studyConfiguration;
+    private final List<Variant> variants;
+    private final List<Variant> vcfVariants;
+
+    public SyntheticDataset(int numVariants, int numSamples) {
+        this(numVariants, numSamples, DEFAULT_SEED);
+    }
+
+    public SyntheticDataset(int numVariants, int numSamples, long seed) {
+        random = new Random(seed);
+        samples = new ArrayList<>(numSamples);
+        samplesPosition = new LinkedHashMap<>();
+        for (int i = 0; i < numSamples; i++) {
+            String sample = "SAMPLE_" + i;
+            samples.add(sample);
+            samplesPosition.put(sample, i);
+        }
+        studyConfiguration = buildStudyConfiguration();
+
+        variants = new ArrayList<>(numVariants);
+        vcfVariants = new ArrayList<>(numVariants);
+        int position = 10000;
+        for (int i = 0; i < numVariants; i++) {
+            position += 1 + random.nextInt(500);
+            String reference = String.valueOf(randomBase());
+            String alternate = String.valueOf(randomBase(reference.charAt(0)));
+            String vcfReference = reference;
+            String vcfAlternate = alternate;
+            int vcfPosition = position;
+            int type = random.nextInt(10);
+            if (type == 0) {
+                // Deletion. In VCF, with the previous base as anchor
+                reference = randomBases(1 + random.nextInt(4));
+                alternate = "";
+                vcfPosition = position - 1;
+                vcfReference = randomBase() + reference;
+                vcfAlternate = vcfReference.substring(0, 1);
+            } else if (type == 1) {
+                // Insertion
+                reference = "";
+                alternate = randomBases(1 + random.nextInt(4));
+                vcfPosition = position - 1;
+                vcfReference = String.valueOf(randomBase());
+                vcfAlternate = vcfReference + alternate;
+            } else if (type == 2) {
+                // SNV in VCF with context bases, to be trimmed by the normalizer
+                char context = randomBase();
+                vcfReference = reference + context;
+                vcfAlternate = alternate + context;
+            }
+
+            List<List<String>> samplesData = randomSamplesData();
+            variants.add(buildVariant(position, reference, alternate, samplesData, true));
+            vcfVariants.add(buildVariant(vcfPosition, vcfReference, vcfAlternate, samplesData, false));
+        }
+    }
+
+    private StudyConfiguration buildStudyConfiguration() {
+        StudyConfiguration sc = new StudyConfiguration(STUDY_ID, STUDY_NAME);
+        sc.getFileIds().put(String.valueOf(FILE_ID), FILE_ID);
+        sc.getIndexedFiles().add(FILE_ID);
+        LinkedHashSet<Integer> sampleIds = new LinkedHashSet<>();
+        for (Map.Entry<String, Integer> entry : samplesPosition.entrySet()) {
+            // Sample ids start at 1
+            sc.getSampleIds().put(entry.getKey(), entry.getValue() + 1);
+            sampleIds.add(entry.getValue() + 1);
+        }
+        sc.getSamplesInFiles().put(FILE_ID, sampleIds);
+        sc.getAttributes().put(VariantStorageEngine.Options.EXTRA_GENOTYPE_FIELDS.key(), "DP");
+        sc.getAttributes().put(VariantStorageEngine.Options.MERGE_MODE.key(), VariantStorageEngine.MergeMode.BASIC);
+        return sc;
+    }
+
+    private Variant buildVariant(int position, String reference, String alternate, List<List<String>> samplesData,
+                                 boolean annotate) {
+        Variant variant = new Variant(CHROMOSOME + ':' + position + ':' + (reference.isEmpty() ? "-" : reference) + ':'
+                + (alternate.isEmpty() ? "-" : alternate));
+        StudyEntry studyEntry = new StudyEntry(String.valueOf(FILE_ID), String.valueOf(STUDY_ID));
+        studyEntry.getFile(String.valueOf(FILE_ID)).setCall(null);
+        Map<String, String> attributes = studyEntry.getFile(String.valueOf(FILE_ID)).getAttributes();
+        attributes.put("QUAL", String.valueOf(random.nextInt(1000)));
+        attributes.put("FILTER", "PASS");
+        attributes.put("AN", String.valueOf(samples.size() * 2));
+        studyEntry.setFormatAsString("GT:DP");
+        studyEntry.setSortedSamplesPosition(samplesPosition);
+        List<List<String>> copy = new ArrayList<>(samplesData.size());
+        for (List<String> sampleData : samplesData) {
+            copy.add(new ArrayList<>(sampleData));
+        }
+        studyEntry.setSamplesData(copy);
+        variant.addStudyEntry(studyEntry);
+        if (annotate) {
+            variant.setAnnotation(randomAnnotation(variant));
+        }
+        return variant;
+    }
+
+    private List<List<String>> randomSamplesData() {
+        List<List<String>> samplesData = new ArrayList<>(samples.size());
+        boolean carriers = false;
+        for (int i = 0; i < samples.size(); i++) {
+            double p = random.nextDouble();
+            int gt = 0;
+            while (p > GENOTYPE_FREQUENCIES[gt]) {
+                gt++;
+            }
+            carriers |= gt == 1 || gt == 2;
+            samplesData.add(Arrays.asList(GENOTYPES[gt], String.valueOf(5 + random.nextInt(60))));
+        }
+        if (!carriers) {
+            // Every variant is found in at least one sample
+            samplesData.set(random.nextInt(samples.size()), Arrays.asList("0/1", String.valueOf(5 + random.nextInt(60))));
+        }
+        return samplesData;
+    }
+
+    private VariantAnnotation randomAnnotation(Variant variant) {
+        VariantAnnotation annotation = new VariantAnnotation();
+        annotation.setChromosome(variant.getChromosome());
+        annotation.setStart(variant.getStart());
+        annotation.setEnd(variant.getEnd());
+        annotation.setReference(variant.getReference());
+        annotation.setAlternate(variant.getAlternate());
+        annotation.setId("rs" + random.nextInt(100000000));
+
+        int gene = random.nextInt(20000);
+        List<ConsequenceType> consequenceTypes = new ArrayList<>();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            ConsequenceType consequenceType = new ConsequenceType();
+            consequenceType.setGeneName("GENE" + gene);
+            consequenceType.setEnsemblGeneId(String.format("ENSG%011d", gene));
+            consequenceType.setEnsemblTranscriptId(String.format("ENST%011d", gene * 10 + i));
+            consequenceType.setBiotype("protein_coding");
+            String so = CONSEQUENCE_TYPES[random.nextInt(CONSEQUENCE_TYPES.length)];
+            consequenceType.setSequenceOntologyTerms(Collections.singletonList(
+                    new SequenceOntologyTerm(ConsequenceTypeMappings.getSoAccessionString(so), so)));
+            consequenceTypes.add(consequenceType);
+        }
+        annotation.setConsequenceTypes(consequenceTypes);
+
+        List<PopulationFrequency> populationFrequencies = new ArrayList<>();
+        for (String population : Arrays.asList("ALL", "AFR", "EUR")) {
+            PopulationFrequency populationFrequency = new PopulationFrequency();
+            populationFrequency.setStudy("1kG_phase3");
+            populationFrequency.setPopulation(population);
+            populationFrequency.setRefAllele(variant.getReference());
+            populationFrequency.setAltAllele(variant.getAlternate());
+            float altAlleleFreq = random.nextFloat();
+            populationFrequency.setAltAlleleFreq(altAlleleFreq);
+            populationFrequency.setRefAlleleFreq(1 - altAlleleFreq);
+            populationFrequencies.add(populationFrequency);
+        }
+        annotation.setPopulationFrequencies(populationFrequencies);
+
+        annotation.setConservation(Arrays.asList(
+                new Score(random.nextDouble(), "phastCons", ""),
+                new Score(random.nextDouble() * 10 - 5, "phylop", ""),
+                new Score(random.nextDouble() * 10 - 5, "gerp", "")));
+        annotation.setFunctionalScore(Arrays.asList(
+                new Score(random.nextDouble() * 10, "cadd_raw", ""),
+                new Score(random.nextDouble() * 40, "cadd_scaled", "")));
+        return annotation;
+    }
+
+    private char randomBase() {
+        return BASES[random.nextInt(BASES.length)];
+    }
+
+    private char randomBase(char other) {
+        char base = randomBase();
+        while (base == other) {
+            base = randomBase();
+        }
+        return base;
+    }
+
+    private String randomBases(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(randomBase());
+        }
+        return sb.toString();
+    }
+
+    public List<String> getSamples() {
+        return samples;
+    }
+
+    public StudyConfiguration getStudyConfiguration() {
+        return studyConfiguration;
+    }
+
+    /**
+     * @return Normalized and annotated variants
+     */
+    public List<Variant> getVariants() {
+        return variants;
+    }
+
+    /**
+     * @return The same variants, as they would be read from a VCF file, before the normalization
+     */
+    public List<Variant> getVcfVariants() {
+        return vcfVariants;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.tools.variant.VariantNormalizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalization of the variants read from VCF files, as done by the transform step. Times are per variant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantNormalizerBenchmark {
+
+    public static final int NUM_VARIANTS = 1000;
+
+    @Param({"10", "100", "1000"})
+    protected int numSamples;
+
+    private List<Variant> vcfVariants;
+    private VariantNormalizer normalizer;
+
+    @Setup
+    public void setup() {
+        SyntheticDataset dataset = new SyntheticDataset(NUM_VARIANTS, numSamples);
+        // Same configuration as the VariantTransformTask
+        normalizer = new VariantNormalizer(true, true, false);
+        vcfVariants = dataset.getVcfVariants();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void normalize(Blackhole bh) throws Exception {
+        for (Variant variant : vcfVariants) {
+            // Do not reuse the input variants, so every invocation normalizes the same data
+            bh.consume(normalizer.normalize(Collections.singletonList(variant), false));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.microbenchmark;
+
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchModel;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchToVariantConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converter of the variants search index (Solr). Times are per variant.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VariantSearchConverterBenchmark {
+
+    public static final int NUM_VARIANTS = 1000;
+
+    @Param({"10", "100", "1000"})
+    protected int numSamples;
+
+    private List<Variant> variants;
+    private List<VariantSearchModel> models;
+    private VariantSearchToVariantConverter converter;
+
+    @Setup
+    public void setup() {
+        SyntheticDataset dataset = new SyntheticDataset(NUM_VARIANTS, numSamples);
+        converter = new VariantSearchToVariantConverter();
+        variants = dataset.getVariants();
+        models = new ArrayList<>(variants.size());
+        for (Variant variant : variants) {
+            models.add(converter.convertToStorageType(variant));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void variantToSearchModel(Blackhole bh) {
+        for (Variant variant : variants) {
+            bh.consume(converter.convertToStorageType(variant));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VARIANTS)
+    public void searchModelToVariant(Blackhole bh) {
+        for (VariantSearchModel model : models) {
+            bh.consume(converter.convertToDataModelType(model));
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.opencb.opencga.storage.mongodb.metadata;
 
 import com.mongodb.ReadPreference;
 import com.mongodb.WriteConcern;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.Projections;
 import com.mongodb.client.model.Updates;
 import com.mongodb.client.result.UpdateResult;
@@ -127,18 +128,36 @@ public class MongoDBStudyConfigurationDBAdaptor implements StudyConfigurationAda
 
     @Override
     public QueryResult updateStudyConfiguration(StudyConfiguration studyConfiguration, QueryOptions options) {
-        Document studyMongo = new DocumentToStudyConfigurationConverter().convertToStorageType(studyConfiguration);
-
-        // Update field by field, instead of replacing the whole object to preserve existing fields like "_lock"
         Document query = new Document("_id", studyConfiguration.getStudyId());
-        List<Bson> updates = new ArrayList<>(studyMongo.size());
-        studyMongo.forEach((s, o) -> updates.add(new Document("$set", new Document(s, o))));
-        QueryResult<UpdateResult> queryResult = collection.update(query, Updates.combine(updates), new QueryOptions(UPSERT, true));
+        QueryResult<UpdateResult> queryResult = collection.update(query, buildUpdate(studyConfiguration), new QueryOptions(UPSERT, true));
 //        studyConfigurationMap.put(studyConfiguration.getStudyId(), studyConfiguration);
 
         return queryResult;
     }
 
+    @Override
+    public boolean supportsCheckAndUpdate() {
+        return true;
+    }
+
+    @Override
+    public boolean checkAndUpdateStudyConfiguration(StudyConfiguration studyConfiguration, long expectedTimeStamp, QueryOptions options) {
+        Bson query = Filters.and(
+                Filters.eq("_id", studyConfiguration.getStudyId()),
+                Filters.eq("timeStamp", expectedTimeStamp),
+                mongoLock.isUnlocked());
+        return collection.update(query, buildUpdate(studyConfiguration), null).first().getMatchedCount() == 1;
+    }
+
+    private Bson buildUpdate(StudyConfiguration studyConfiguration) {
+        Document studyMongo = studyConfigurationConverter.convertToStorageType(studyConfiguration);
+
+        // Update field by field, instead of replacing the whole object to preserve existing fields like "_lock"
+        List<Bson> updates = new ArrayList<>(studyMongo.size());
+        studyMongo.forEach((s, o) -> updates.add(new Document("$set", new Document(s, o))));
+        return Updates.combine(updates);
+    }
+
     @Override
     public List<String> getStudyNames(QueryOptions options) {
         List<String> studyNames = collection.distinct("studyName", new Document("studyName", new Document("$exists", 1))).getResult();
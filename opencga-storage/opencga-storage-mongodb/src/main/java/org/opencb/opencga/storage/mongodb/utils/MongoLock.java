@@ -25,6 +25,7 @@ import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.opencga.storage.core.utils.LockNotifier;
 
 import java.util.Calendar;
 import java.util.Date;
@@ -47,6 +48,7 @@ public class MongoLock {
 
     private static final String LOCK_FIELD = "lock";
     private static final String WRITE_FIELD = "write";
+    private static final LockNotifier NOTIFIER = new LockNotifier();
     private final String lockWriteField;
 
     private final MongoDBCollection collection;
@@ -93,23 +95,27 @@ public class MongoLock {
 
         StopWatch watch = new StopWatch();
         watch.start();
+        String notifierKey = getNotifierKey(id);
+        long wait = 0;
         long modifiedCount;
         Date date;
         do {
+            long generation = NOTIFIER.generation(notifierKey);
             date = new Date(Calendar.getInstance().getTimeInMillis() + lockDuration);
-            Date now = Calendar.getInstance().getTime();
 
-            Bson query = and(eq("_id", id), or(eq(lockWriteField, null), lt(lockWriteField, now)));
+            Bson query = and(eq("_id", id), isUnlocked());
             Bson update = combine(set(lockWriteField, date));
 
             modifiedCount = collection.update(query, update, null).first().getModifiedCount();
 
             if (modifiedCount != 1) {
-                Thread.sleep(100);
                 //Check if the lock is still valid
                 if (watch.getTime() > timeout) {
                     throw new TimeoutException("Unable to get the lock");
                 }
+                // Wait until the lock is released from this JVM, or poll again after a while
+                wait = LockNotifier.nextWait(wait);
+                NOTIFIER.await(notifierKey, generation, Math.min(wait, Math.max(1, timeout - watch.getTime())));
             }
         } while (modifiedCount == 0);
 
@@ -135,6 +141,22 @@ public class MongoLock {
         if (matchedCount == 0) {
             throw new IllegalStateException("Lock token " + lockToken + " not found!");
         }
+        NOTIFIER.signal(getNotifierKey(id));
+    }
+
+    /**
+     * Filter matching the documents where the lock is not taken, or has expired.
+     * Can be combined with other filters to apply updates only if the document is not locked.
+     *
+     * @return Filter
+     */
+    public Bson isUnlocked() {
+        return or(eq(lockWriteField, null), lt(lockWriteField, Calendar.getInstance().getTime()));
+    }
+
+    private String getNotifierKey(Object id) {
+        // Locks from different collections may share the key. This would only produce some extra wake-ups.
+        return lockWriteField + '.' + id;
     }
 
 }
@@ -44,6 +44,7 @@ import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
 import org.opencb.opencga.storage.core.variant.adaptors.iterators.VariantDBIterator;
+import org.opencb.opencga.storage.core.variant.analysis.VariantSampleFilter;
 import org.opencb.opencga.storage.core.variant.annotation.VariantAnnotationManager;
 import org.opencb.opencga.storage.core.variant.annotation.annotators.VariantAnnotator;
 import org.opencb.opencga.storage.core.variant.io.VariantImporter;
@@ -53,6 +54,7 @@ import org.opencb.opencga.storage.core.variant.stats.VariantStatisticsManager;
 import org.opencb.opencga.storage.mongodb.annotation.MongoDBVariantAnnotationManager;
 import org.opencb.opencga.storage.mongodb.auth.MongoCredentials;
 import org.opencb.opencga.storage.mongodb.metadata.MongoDBVariantStorageMetadataDBAdaptorFactory;
+import org.opencb.opencga.storage.mongodb.variant.adaptors.MongoDBVariantSampleFilter;
 import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
 import org.opencb.opencga.storage.mongodb.variant.load.MongoVariantImporter;
 import org.opencb.opencga.storage.mongodb.variant.stats.MongoDBVariantStatisticsManager;
@@ -307,6 +309,7 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
             throw e;
         } finally {
             Runtime.getRuntime().removeShutdownHook(hook);
+            invalidateExistsCache();
         }
     }
 
@@ -477,6 +480,9 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
             for (StoragePipeline storagePipeline : storageResultMap.values()) {
                 storagePipeline.close();
             }
+            if (doLoad) {
+                invalidateExistsCache();
+            }
         }
 
         return results;
@@ -496,6 +502,11 @@ public class MongoDBVariantStorageEngine extends VariantStorageEngine {
         return dbAdaptor.get();
     }
 
+    @Override
+    public VariantSampleFilter getVariantSampleFilter() throws StorageEngineException {
+        return new MongoDBVariantSampleFilter(this, getDBAdaptor());
+    }
+
     /**
      * Decide if a query should be resolved using SearchManager or not.
      *
@@ -35,6 +35,7 @@ import org.opencb.commons.run.ParallelTaskRunner;
 import org.opencb.commons.run.Task;
 import org.opencb.opencga.storage.core.config.StorageConfiguration;
 import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.io.MetricsTask;
 import org.opencb.opencga.storage.core.metadata.BatchFileOperation;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
@@ -317,8 +318,8 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                     MERGE_IGNORE_OVERLAPPING_VARIANTS.defaultValue());
 
 //            Map<String, Set<Integer>> chromosomeInLoadedFiles = getChromosomeInLoadedFiles();
-            MongoDBVariantMerger variantMerger = new MongoDBVariantMerger(dbAdaptor, studyConfiguration, fileIds,
-                    resume, ignoreOverlapping, release);
+            Task<Document, MongoDBOperations> variantMerger = new MetricsTask<>("mongodb_direct_load", "merge",
+                    new MongoDBVariantMerger(dbAdaptor, studyConfiguration, fileIds, resume, ignoreOverlapping, release));
 
             // Writer -- MongoDBVariantDirectLoader
             MongoDBVariantDirectLoader loader = new MongoDBVariantDirectLoader(dbAdaptor, studyConfiguration, fileId, resume,
@@ -416,10 +417,12 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                     .setAbortOnFail(true).build();
             if (isStageParallelWrite(options)) {
                 logger.info("Multi thread stage load... [{} readerThreads, {} writerThreads]", numReaders, loadThreads);
-                ptr = new ParallelTaskRunner<>(variantReader, remapIdsTask.then(converterTask).then(stageLoader), null, config);
+                ptr = new ParallelTaskRunner<>(variantReader,
+                        new MetricsTask<>("mongodb_stage", "convert", remapIdsTask.then(converterTask)).then(stageLoader), null, config);
             } else {
                 logger.info("Multi thread stage load... [{} readerThreads, {} tasks, {} writerThreads]", numReaders, loadThreads, 1);
-                ptr = new ParallelTaskRunner<>(variantReader, remapIdsTask.then(converterTask), stageLoader, config);
+                ptr = new ParallelTaskRunner<>(variantReader,
+                        new MetricsTask<>("mongodb_stage", "convert", remapIdsTask.then(converterTask)), stageLoader, config);
             }
 
             Thread hook = new Thread(() -> {
@@ -668,11 +671,12 @@ public class MongoDBVariantStoragePipeline extends VariantStoragePipeline {
                 .setNumTasks(loadThreads)
                 .setBatchSize(batchSize)
                 .setAbortOnFail(true).build();
+        Task<Document, MongoDBOperations> mergeTask = new MetricsTask<>("mongodb_merge", "merge", variantMerger);
         try {
             if (isMergeParallelWrite(options)) {
-                ptrMerge = new ParallelTaskRunner<>(reader, variantMerger.then(variantLoader), null, config);
+                ptrMerge = new ParallelTaskRunner<>(reader, mergeTask.then(variantLoader), null, config);
             } else {
-                ptrMerge = new ParallelTaskRunner<>(reader, variantMerger, variantLoader, config);
+                ptrMerge = new ParallelTaskRunner<>(reader, mergeTask, variantLoader, config);
             }
         } catch (RuntimeException e) {
             throw new StorageEngineException("Error while creating ParallelTaskRunner", e);
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.adaptors;
+
+import com.google.common.base.Throwables;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.opencga.storage.core.exceptions.StorageEngineException;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.analysis.VariantSampleFilter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.opencb.opencga.storage.core.metadata.StudyConfigurationManager.RO_CACHED_OPTIONS;
+import static org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass.UNKNOWN_GENOTYPE;
+import static org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine.MongoDBVariantOptions.DEFAULT_GENOTYPE;
+import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter.*;
+import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter.*;
+
+/**
+ * VariantSampleFilter reading the genotypes directly from the variant documents.
+ * <p>
+ * Only the variant coordinates, the file ids and the lists of sample ids for each genotype are projected.
+ * The samples data is never converted, and no other format field is read.
+ */
+public class MongoDBVariantSampleFilter extends VariantSampleFilter {
+
+    private final VariantStorageEngine engine;
+    private final VariantMongoDBAdaptor dbAdaptor;
+
+    public MongoDBVariantSampleFilter(VariantStorageEngine engine, VariantMongoDBAdaptor dbAdaptor) {
+        super(engine);
+        this.engine = engine;
+        this.dbAdaptor = dbAdaptor;
+    }
+
+    @Override
+    protected void iterate(Query query, Predicate<String> validGenotype, Consumer<Collection<String>> init, GenotypeWalker walker) {
+        StudyConfigurationManager scm = dbAdaptor.getStudyConfigurationManager();
+        Map<Integer, List<Integer>> includeSamples = VariantQueryUtils.getIncludeSamples(query, new QueryOptions(), scm);
+        if (includeSamples.size() != 1) {
+            throw new VariantQueryException("Unable to process with " + includeSamples.size() + " studies.");
+        }
+        int studyId = includeSamples.keySet().iterator().next();
+        List<Integer> sampleIds = includeSamples.get(studyId);
+        if (sampleIds.isEmpty()) {
+            throw new VariantQueryException("Unable to get samples!");
+        }
+        StudyConfiguration sc = scm.getStudyConfiguration(studyId, RO_CACHED_OPTIONS).first();
+        List<String> sampleNames = new ArrayList<>(sampleIds.size());
+        for (Integer sampleId : sampleIds) {
+            sampleNames.add(sc.getSampleIds().inverse().get(sampleId));
+        }
+        String defaultGenotype = getDefaultGenotype(sc);
+
+        Document mongoQuery;
+        try {
+            mongoQuery = dbAdaptor.getQueryParser().parseQuery(engine.preProcessQuery(query, null));
+        } catch (StorageEngineException e) {
+            throw VariantQueryException.internalException(e);
+        }
+        Document projection = new Document()
+                .append(CHROMOSOME_FIELD, 1)
+                .append(START_FIELD, 1)
+                .append(END_FIELD, 1)
+                .append(REFERENCE_FIELD, 1)
+                .append(ALTERNATE_FIELD, 1)
+                .append(TYPE_FIELD, 1)
+                .append(SV_FIELD, 1)
+                .append(STUDIES_FIELD + '.' + STUDYID_FIELD, 1)
+                .append(STUDIES_FIELD + '.' + FILES_FIELD + '.' + FILEID_FIELD, 1)
+                .append(STUDIES_FIELD + '.' + GENOTYPES_FIELD, 1);
+        QueryOptions options = new QueryOptions(MongoDBCollection.BATCH_SIZE, 100);
+
+        DocumentToVariantConverter converter = new DocumentToVariantConverter();
+        Map<Integer, String> genotypes = new HashMap<>();
+        try (MongoCursor<Document> cursor = dbAdaptor.getVariantsCollection().nativeQuery()
+                .find(mongoQuery, projection, options).iterator()) {
+            boolean first = true;
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                Document study = getStudy(document, studyId);
+                if (study == null) {
+                    continue;
+                }
+                if (first) {
+                    init.accept(sampleNames);
+                    first = false;
+                }
+                Variant variant = converter.convertToDataModelType(document);
+                Set<Integer> loadedSamples = getLoadedSamples(study, sc);
+
+                genotypes.clear();
+                Document gts = study.get(GENOTYPES_FIELD, Document.class);
+                if (gts != null) {
+                    for (Map.Entry<String, Object> entry : gts.entrySet()) {
+                        if (entry.getKey().equals(UNKNOWN_GENOTYPE)) {
+                            // Skip this legacy genotype!
+                            continue;
+                        }
+                        String gt = DocumentToSamplesConverter.genotypeToDataModelType(entry.getKey());
+                        for (Object sampleId : (List) entry.getValue()) {
+                            genotypes.put(((Number) sampleId).intValue(), gt);
+                        }
+                    }
+                }
+
+                for (int i = 0; i < sampleIds.size(); i++) {
+                    Integer sampleId = sampleIds.get(i);
+                    String gt = genotypes.get(sampleId);
+                    if (gt == null) {
+                        gt = loadedSamples.contains(sampleId) ? defaultGenotype : UNKNOWN_GENOTYPE;
+                    }
+                    if (!walker.accept(variant, sampleNames.get(i), gt)) {
+                        return;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private Document getStudy(Document document, int studyId) {
+        List<Document> studies = document.get(STUDIES_FIELD, List.class);
+        if (studies != null) {
+            for (Document study : studies) {
+                if (((Number) study.get(STUDYID_FIELD)).intValue() == studyId) {
+                    return study;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Set<Integer> getLoadedSamples(Document study, StudyConfiguration sc) {
+        Set<Integer> loadedSamples = new HashSet<>();
+        List<Document> files = study.get(FILES_FIELD, List.class);
+        if (files != null) {
+            for (Document file : files) {
+                int fileId = Math.abs(((Number) file.get(FILEID_FIELD)).intValue());
+                LinkedHashSet<Integer> samplesInFile = sc.getSamplesInFiles().get(fileId);
+                if (samplesInFile != null) {
+                    loadedSamples.addAll(samplesInFile);
+                }
+            }
+        }
+        return loadedSamples;
+    }
+
+    private static String getDefaultGenotype(StudyConfiguration sc) {
+        List<String> defaultGenotypes = sc.getAttributes().getAsStringList(DEFAULT_GENOTYPE.key());
+        if (defaultGenotypes.isEmpty()) {
+            return UNKNOWN_GENOTYPE;
+        } else {
+            return defaultGenotypes.get(0);
+        }
+    }
+}
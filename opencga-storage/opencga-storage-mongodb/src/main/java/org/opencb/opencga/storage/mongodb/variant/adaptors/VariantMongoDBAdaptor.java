@@ -40,6 +40,7 @@ import org.opencb.commons.datastore.core.ObjectMap;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.commons.datastore.core.result.FacetQueryResult;
 import org.opencb.commons.datastore.mongodb.MongoDBCollection;
 import org.opencb.commons.datastore.mongodb.MongoDataStore;
 import org.opencb.commons.datastore.mongodb.MongoDataStoreManager;
@@ -51,6 +52,7 @@ import org.opencb.opencga.storage.core.metadata.ProjectMetadata;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.metadata.StudyConfigurationManager;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
 import org.opencb.opencga.storage.core.variant.adaptors.GenotypeClass;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptor;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
@@ -69,6 +71,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -77,6 +81,7 @@ import static com.mongodb.client.model.Updates.*;
 import static org.opencb.commons.datastore.mongodb.MongoDBCollection.MULTI;
 import static org.opencb.commons.datastore.mongodb.MongoDBCollection.NAME;
 import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options.LOADED_GENOTYPES;
+import static org.opencb.opencga.storage.core.variant.VariantStorageEngine.Options.SEARCH_INDEX_LAST_TIMESTAMP;
 import static org.opencb.commons.datastore.mongodb.MongoDBCollection.*;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.GROUP_NAME;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.VARIANT_ID;
@@ -104,6 +109,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
 
     private StudyConfigurationManager studyConfigurationManager;
     private final ObjectMap configuration;
+    private ExecutorService facetExecutorService;
 //    private CacheManager cacheManager;
 
     private static Logger logger = LoggerFactory.getLogger(VariantMongoDBAdaptor.class);
@@ -147,6 +153,10 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         return variantsCollection;
     }
 
+    VariantMongoDBQueryParser getQueryParser() {
+        return queryParser;
+    }
+
     public MongoDBCollection getStageCollection(int studyId) {
         String stageCollectionName = configuration.getString(COLLECTION_STAGE.key(), COLLECTION_STAGE.defaultValue());
         // Ensure retro-compatibility.
@@ -386,7 +396,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         Bson update = combine(
                 pull(DocumentToVariantConverter.STUDIES_FIELD, eq(STUDYID_FIELD, studyId)),
                 pull(DocumentToVariantConverter.STATS_FIELD, eq(DocumentToVariantStatsConverter.STUDY_ID, studyId)),
-                getSetIndexNotSynchronized(timestamp)
+                getSetIndexNotSynchronized(timestamp, SyncGroup.STUDIES)
         );
         logger.debug("removeStudy: query = {}", query.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
         logger.debug("removeStudy: update = {}", update.toBsonDocument(Document.class, MongoClient.getDefaultCodecRegistry()));
@@ -916,6 +926,33 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         return queryResult;
     }
 
+    @Override
+    public FacetQueryResult facet(Query query, QueryOptions options) {
+        if (query == null) {
+            query = new Query();
+        }
+        if (options == null) {
+            options = new QueryOptions();
+        }
+        int maxBuckets = configuration.getInt(VariantMongoDBFacetQueryExecutor.FACET_MAX_BUCKETS,
+                VariantMongoDBFacetQueryExecutor.DEFAULT_FACET_MAX_BUCKETS);
+        return new VariantMongoDBFacetQueryExecutor(variantsCollection, queryParser, getFacetExecutorService(), maxBuckets)
+                .facet(query, options);
+    }
+
+    private synchronized ExecutorService getFacetExecutorService() {
+        if (facetExecutorService == null) {
+            int threads = Math.max(1, configuration.getInt(VariantMongoDBFacetQueryExecutor.FACET_THREADS,
+                    VariantMongoDBFacetQueryExecutor.DEFAULT_FACET_THREADS));
+            facetExecutorService = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "variant-facet");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return facetExecutorService;
+    }
+
     @Override
     public QueryResult groupBy(Query query, List<String> fields, QueryOptions options) {
         String warningMsg = "Unimplemented VariantMongoDBAdaptor::groupBy list of fields. Using field[0] : '" + fields.get(0) + "'";
@@ -994,7 +1031,8 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
                     pullUpdatesBulkList.add(pull);
                 }
 
-                Bson push = combine(pushEach(DocumentToVariantConverter.STATS_FIELD, cohorts), getSetIndexNotSynchronized(timestamp));
+                Bson push = combine(pushEach(DocumentToVariantConverter.STATS_FIELD, cohorts),
+                        getSetIndexNotSynchronized(timestamp, SyncGroup.STATS));
                 pushQueriesBulkList.add(find);
                 pushUpdatesBulkList.add(push);
             }
@@ -1065,7 +1103,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
             Document convertedVariantAnnotation = converter.convertToStorageType(variantAnnotation);
             Bson update = combine(
                     set(DocumentToVariantConverter.ANNOTATION_FIELD + ".0", convertedVariantAnnotation),
-                    getSetIndexNotSynchronized(timestamp));
+                    getSetIndexNotSynchronized(timestamp, SyncGroup.ANNOTATION));
             queries.add(find);
             updates.add(update);
         }
@@ -1081,7 +1119,7 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         Document updateDocument = DocumentToVariantAnnotationConverter.convertToStorageType(attribute);
         return variantsCollection.update(queryDocument,
                 combine(set(DocumentToVariantConverter.CUSTOM_ANNOTATION_FIELD + '.' + name, updateDocument),
-                        getSetIndexNotSynchronized(timeStamp)),
+                        getSetIndexNotSynchronized(timeStamp, SyncGroup.ANNOTATION)),
                 new QueryOptions(MULTI, true));
     }
 
@@ -1097,6 +1135,12 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
 
     @Override
     public void close() throws IOException {
+        synchronized (this) {
+            if (facetExecutorService != null) {
+                facetExecutorService.shutdownNow();
+                facetExecutorService = null;
+            }
+        }
         if (closeConnection) {
             mongoManager.close();
         }
@@ -1142,8 +1186,12 @@ public class VariantMongoDBAdaptor implements VariantDBAdaptor {
         } else {
             annotationIds = Collections.emptyMap();
         }
-        return new DocumentToVariantConverter(studyEntryConverter,
+        DocumentToVariantConverter converter = new DocumentToVariantConverter(studyEntryConverter,
                 new DocumentToVariantStatsConverter(studyConfigurationManager), returnedStudies, annotationIds);
+        if (query.getBoolean(VARIANTS_TO_INDEX.key(), false) && projectMetadata != null) {
+            converter.setIndexTimestamp(projectMetadata.getAttributes().getLong(SEARCH_INDEX_LAST_TIMESTAMP.key()));
+        }
+        return converter;
     }
 
     public void createIndexes(QueryOptions options) {
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.adaptors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.StopWatch;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.opencb.biodata.models.core.Region;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.annotation.ConsequenceTypeMappings;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.QueryResult;
+import org.opencb.commons.datastore.core.result.FacetQueryResult;
+import org.opencb.commons.datastore.mongodb.MongoDBCollection;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.VariantQueryXref;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantAnnotationConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.REGION;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryUtils.isValidParam;
+
+/**
+ * Compute variant facets with MongoDB aggregations, without a search engine.
+ * <p>
+ * Accepts the same facet syntax as the search engine, for a subset of fields:
+ * <ul>
+ *     <li>Categorical facets: {@code field[value1,value2]:limit}, with the fields {@link #CATEGORICAL_FIELDS}</li>
+ *     <li>Range facets: {@code field[start..end]:step}, with the fields {@link #RANGE_FIELDS}. The number of buckets
+ *     is limited by {@link #FACET_MAX_BUCKETS}</li>
+ * </ul>
+ * Multiple facets are separated by {@link #FACET_SEPARATOR}. Nested facets are not supported.
+ * <p>
+ * All the facets are computed with one {@code $facet} stage, in one aggregation per chromosome. Only the chromosomes from the
+ * region filter are aggregated, if any. The aggregations are executed in parallel in an executor shared between queries, and the
+ * results merged.
+ */
+public class VariantMongoDBFacetQueryExecutor {
+
+    public static final String FACET_SEPARATOR = ";";
+    public static final String FACET_THREADS = "facetThreads";
+    public static final int DEFAULT_FACET_THREADS = 4;
+    public static final String FACET_MAX_BUCKETS = "facetMaxBuckets";
+    public static final int DEFAULT_FACET_MAX_BUCKETS = 10000;
+    public static final int DEFAULT_LIMIT = 10;
+
+    public static final List<String> CATEGORICAL_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "chromosome", "type", "genes", "biotypes", "consequenceType"));
+    public static final List<String> RANGE_FIELDS = Collections.unmodifiableList(Arrays.asList("start"));
+
+    private static final Pattern CATEGORICAL_PATTERN = Pattern.compile("^([a-zA-Z][a-zA-Z0-9_]*)(\\[[^\\]]+\\])?(:\\d+)?$");
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^([a-zA-Z][a-zA-Z0-9_]*)\\[(\\d+)\\.\\.(\\d+)\\]:(\\d+)$");
+    private static final String COUNT_FACET = "_count";
+    private static final String OTHER_BUCKET = "_other";
+    private static final String VALUE = "v";
+
+    private final MongoDBCollection variantsCollection;
+    private final VariantMongoDBQueryParser queryParser;
+    private final ExecutorService executorService;
+    private final int maxBuckets;
+    private static Logger logger = LoggerFactory.getLogger(VariantMongoDBFacetQueryExecutor.class);
+
+    /**
+     * @param variantsCollection Variants collection
+     * @param queryParser        Query parser
+     * @param executorService    Executor to run the aggregations. Not closed by this class.
+     */
+    public VariantMongoDBFacetQueryExecutor(MongoDBCollection variantsCollection, VariantMongoDBQueryParser queryParser,
+                                            ExecutorService executorService) {
+        this(variantsCollection, queryParser, executorService, DEFAULT_FACET_MAX_BUCKETS);
+    }
+
+    /**
+     * @param variantsCollection Variants collection
+     * @param queryParser        Query parser
+     * @param executorService    Executor to run the aggregations. Not closed by this class.
+     * @param maxBuckets         Max number of buckets of a range facet
+     */
+    public VariantMongoDBFacetQueryExecutor(MongoDBCollection variantsCollection, VariantMongoDBQueryParser queryParser,
+                                            ExecutorService executorService, int maxBuckets) {
+        this.variantsCollection = variantsCollection;
+        this.queryParser = queryParser;
+        this.executorService = executorService;
+        this.maxBuckets = maxBuckets;
+    }
+
+    private static final class FacetDefinition {
+        private final String name;
+        private final boolean range;
+        private final List<Bson> pipeline;
+        private final int limit;
+
+        private FacetDefinition(String name, boolean range, List<Bson> pipeline, int limit) {
+            this.name = name;
+            this.range = range;
+            this.pipeline = pipeline;
+            this.limit = limit;
+        }
+    }
+
+    public FacetQueryResult facet(Query query, QueryOptions options) {
+        StopWatch stopWatch = StopWatch.createStarted();
+        String facetQuery = options.getString(QueryOptions.FACET);
+        if (StringUtils.isEmpty(facetQuery)) {
+            throw VariantQueryException.malformedParam(null, QueryOptions.FACET, "Missing facet query");
+        }
+        List<FacetDefinition> facets = new ArrayList<>();
+        for (String facet : facetQuery.split(FACET_SEPARATOR)) {
+            facets.add(parseFacet(facet.trim()));
+        }
+
+        Document facetStage = new Document(COUNT_FACET, Collections.singletonList(new Document("$count", "count")));
+        for (FacetDefinition facet : facets) {
+            facetStage.append(facet.name, facet.pipeline);
+        }
+        Document mongoQuery = queryParser.parseQuery(query);
+
+        // Split the aggregation per chromosome
+        List<String> chromosomes = getChromosomes(query);
+        List<Future<Document>> futures = new ArrayList<>(chromosomes.size());
+        for (String chromosome : chromosomes) {
+            List<Bson> pipeline = Arrays.asList(
+                    new Document("$match", new Document("$and", Arrays.asList(
+                            new Document(DocumentToVariantConverter.CHROMOSOME_FIELD, chromosome), mongoQuery))),
+                    new Document("$facet", facetStage));
+            futures.add(executorService.submit(() -> {
+                logger.debug("db.variants.aggregate( " + pipeline + " )");
+                QueryResult<Document> result = variantsCollection.aggregate(pipeline, new QueryOptions());
+                return result.first();
+            }));
+        }
+
+        // Merge results
+        long numMatches = 0;
+        Map<String, Map<String, Long>> counts = new HashMap<>();
+        try {
+            for (Future<Document> future : futures) {
+                Document document = future.get();
+                if (document == null) {
+                    continue;
+                }
+                for (Document count : getList(document, COUNT_FACET)) {
+                    numMatches += ((Number) count.get("count")).longValue();
+                }
+                for (FacetDefinition facet : facets) {
+                    Map<String, Long> facetCounts = counts.computeIfAbsent(facet.name, k -> new HashMap<>());
+                    for (Document bucket : getList(document, facet.name)) {
+                        String value = String.valueOf(bucket.get("_id"));
+                        if (!OTHER_BUCKET.equals(value)) {
+                            facetCounts.merge(value, ((Number) bucket.get("count")).longValue(), Long::sum);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw VariantQueryException.internalException(e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw VariantQueryException.internalException(e);
+        }
+
+        List<FacetQueryResult.Field> fields = new ArrayList<>(facets.size());
+        for (FacetDefinition facet : facets) {
+            Comparator<Map.Entry<String, Long>> comparator;
+            if (facet.range) {
+                comparator = Comparator.comparing(entry -> Long.valueOf(entry.getKey()));
+            } else {
+                comparator = Map.Entry.<String, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.<String, Long>comparingByKey());
+            }
+            List<FacetQueryResult.Bucket> buckets = counts.getOrDefault(facet.name, Collections.emptyMap()).entrySet()
+                    .stream()
+                    .sorted(comparator)
+                    .limit(facet.limit)
+                    .map(entry -> {
+                        FacetQueryResult.Bucket bucket = new FacetQueryResult.Bucket();
+                        bucket.setValue(toBucketValue(facet.name, entry.getKey()));
+                        bucket.setCount(entry.getValue());
+                        return bucket;
+                    })
+                    .collect(Collectors.toList());
+            FacetQueryResult.Field field = new FacetQueryResult.Field();
+            field.setName(facet.name);
+            field.setCount(numMatches);
+            field.setBuckets(buckets);
+            fields.add(field);
+        }
+
+        FacetQueryResult result = new FacetQueryResult();
+        result.setId("facet");
+        result.setDbTime((int) stopWatch.getTime(TimeUnit.MILLISECONDS));
+        result.setNumMatches(numMatches);
+        result.setResults(fields);
+        return result;
+    }
+
+    /**
+     * Chromosomes to aggregate. If the query only filters by region and variant, these are the chromosomes from the filter.
+     * Otherwise, all the chromosomes from the collection.
+     *
+     * @param query Query
+     * @return List of chromosomes
+     */
+    List<String> getChromosomes(Query query) {
+        List<Region> regions = isValidParam(query, REGION)
+                ? Region.parseRegions(query.getString(REGION.key()), true)
+                : Collections.emptyList();
+        VariantQueryXref xrefs = VariantQueryUtils.parseXrefs(query);
+        // Genes and xrefs are combined with the regions with an OR, and may be in any chromosome
+        if ((!regions.isEmpty() || !xrefs.getVariants().isEmpty())
+                && xrefs.getGenes().isEmpty() && xrefs.getIds().isEmpty() && xrefs.getOtherXrefs().isEmpty()) {
+            Set<String> chromosomes = new LinkedHashSet<>();
+            for (Region region : regions) {
+                chromosomes.add(region.getChromosome());
+            }
+            for (Variant variant : xrefs.getVariants()) {
+                chromosomes.add(variant.getChromosome());
+            }
+            return new ArrayList<>(chromosomes);
+        }
+        List<String> chromosomes = new ArrayList<>();
+        for (Object chromosome : variantsCollection.distinct(DocumentToVariantConverter.CHROMOSOME_FIELD, new Document()).getResult()) {
+            chromosomes.add(String.valueOf(chromosome));
+        }
+        return chromosomes;
+    }
+
+    private FacetDefinition parseFacet(String facet) {
+        Matcher rangeMatcher = RANGE_PATTERN.matcher(facet);
+        if (rangeMatcher.find()) {
+            String name = rangeMatcher.group(1);
+            if (!RANGE_FIELDS.contains(name)) {
+                throw VariantQueryException.malformedParam(null, QueryOptions.FACET,
+                        "Unsupported range facet '" + name + "'. Supported fields: " + RANGE_FIELDS);
+            }
+            long start;
+            long end;
+            long step;
+            try {
+                start = Long.parseLong(rangeMatcher.group(2));
+                end = Long.parseLong(rangeMatcher.group(3));
+                step = Long.parseLong(rangeMatcher.group(4));
+            } catch (NumberFormatException e) {
+                throw VariantQueryException.malformedParam(null, QueryOptions.FACET, "Invalid range facet '" + facet + "'");
+            }
+            if (step <= 0 || end < start) {
+                throw VariantQueryException.malformedParam(null, QueryOptions.FACET, "Invalid range facet '" + facet + "'");
+            }
+            // Check the number of buckets before building the boundaries
+            long numBuckets = (end - start) / step + 1;
+            if (numBuckets > maxBuckets) {
+                throw VariantQueryException.malformedParam(null, QueryOptions.FACET, "Range facet '" + facet + "' exceeds the max number"
+                        + " of buckets. Requested " + numBuckets + " buckets, max " + maxBuckets + ". Increase the step.");
+            }
+            List<Long> boundaries = new ArrayList<>((int) numBuckets + 1);
+            for (long boundary = start; boundary <= end; boundary += step) {
+                boundaries.add(boundary);
+            }
+            boundaries.add(boundaries.get(boundaries.size() - 1) + step);
+            Document bucket = new Document("groupBy", "$" + DocumentToVariantConverter.START_FIELD)
+                    .append("boundaries", boundaries)
+                    .append("default", OTHER_BUCKET)
+                    .append("output", new Document("count", new Document("$sum", 1)));
+            return new FacetDefinition(name, true, Collections.singletonList(new Document("$bucket", bucket)), Integer.MAX_VALUE);
+        }
+
+        Matcher matcher = CATEGORICAL_PATTERN.matcher(facet);
+        if (!matcher.find()) {
+            throw VariantQueryException.malformedParam(null, QueryOptions.FACET, "Invalid or unsupported facet '" + facet + "'");
+        }
+        String name = matcher.group(1);
+        List<String> include = StringUtils.isEmpty(matcher.group(2))
+                ? Collections.emptyList()
+                : Arrays.asList(matcher.group(2).substring(1, matcher.group(2).length() - 1).split(","));
+        int limit = StringUtils.isEmpty(matcher.group(3)) ? DEFAULT_LIMIT : Integer.parseInt(matcher.group(3).substring(1));
+
+        String ctPath = "$" + DocumentToVariantConverter.ANNOTATION_FIELD + '.'
+                + DocumentToVariantAnnotationConverter.CONSEQUENCE_TYPE_FIELD;
+        Object value;
+        boolean array = true;
+        List<Object> includeValues = new ArrayList<>(include);
+        switch (name) {
+            case "chromosome":
+                value = "$" + DocumentToVariantConverter.CHROMOSOME_FIELD;
+                array = false;
+                break;
+            case "type":
+                value = "$" + DocumentToVariantConverter.TYPE_FIELD;
+                array = false;
+                break;
+            case "genes":
+                value = distinct(ctPath + '.' + DocumentToVariantAnnotationConverter.CT_GENE_NAME_FIELD);
+                break;
+            case "biotypes":
+                value = distinct(ctPath + '.' + DocumentToVariantAnnotationConverter.CT_BIOTYPE_FIELD);
+                break;
+            case "consequenceType":
+                // Array of arrays of SO accessions. Flatten before removing duplicates
+                value = new Document("$reduce", new Document()
+                        .append("input", new Document("$ifNull", Arrays.asList(
+                                ctPath + '.' + DocumentToVariantAnnotationConverter.CT_SO_ACCESSION_FIELD, Collections.emptyList())))
+                        .append("initialValue", Collections.emptyList())
+                        .append("in", new Document("$setUnion", Arrays.asList("$$value", "$$this"))));
+                includeValues.clear();
+                for (String ct : include) {
+                    String term = ct.startsWith("SO:") ? ct.substring(3) : ct;
+                    if (StringUtils.isNumeric(term)) {
+                        includeValues.add(Integer.valueOf(term));
+                    } else if (ConsequenceTypeMappings.termToAccession.containsKey(term)) {
+                        includeValues.add(ConsequenceTypeMappings.termToAccession.get(term));
+                    } else {
+                        throw VariantQueryException.malformedParam(null, QueryOptions.FACET, "Unknown consequence type '" + ct + "'");
+                    }
+                }
+                break;
+            default:
+                throw VariantQueryException.malformedParam(null, QueryOptions.FACET,
+                        "Unsupported facet '" + name + "'. Supported fields: " + CATEGORICAL_FIELDS + ", " + RANGE_FIELDS);
+        }
+
+        List<Bson> pipeline = new ArrayList<>(4);
+        pipeline.add(new Document("$project", new Document(VALUE, value)));
+        if (array) {
+            pipeline.add(new Document("$unwind", "$" + VALUE));
+        }
+        if (!includeValues.isEmpty()) {
+            pipeline.add(new Document("$match", new Document(VALUE, new Document("$in", includeValues))));
+        }
+        pipeline.add(new Document("$group", new Document("_id", "$" + VALUE).append("count", new Document("$sum", 1))));
+        return new FacetDefinition(name, false, pipeline, limit);
+    }
+
+    // Values of an array field, without duplicates. Each variant is counted only once per value.
+    private static Document distinct(String path) {
+        return new Document("$setUnion", Arrays.asList(new Document("$ifNull", Arrays.asList(path, Collections.emptyList())),
+                Collections.emptyList()));
+    }
+
+    private static String toBucketValue(String facet, String value) {
+        if (facet.equals("consequenceType")) {
+            return ConsequenceTypeMappings.accessionToTerm.getOrDefault(Integer.valueOf(value), value);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Document> getList(Document document, String key) {
+        Object value = document.get(key);
+        return value == null ? Collections.emptyList() : (List<Document>) value;
+    }
+}
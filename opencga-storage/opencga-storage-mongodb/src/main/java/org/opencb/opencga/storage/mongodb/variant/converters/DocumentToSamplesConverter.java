@@ -36,7 +36,6 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.zip.DataFormatException;
 
@@ -54,6 +53,7 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
     private final Map<Integer, BiMap<String, Integer>> __studySamplesId; //Inverse map from "sampleIds". Do not use directly, can be null
     // . Use "getIndexedIdSamplesMap()"
     private final Map<Integer, LinkedHashMap<String, Integer>> __samplesPosition;
+    private final Map<Integer, ReturnedSamples> __returnedSamples;
     private final Map<Integer, Set<String>> studyDefaultGenotypeSet;
     private Map<Integer, LinkedHashSet<Integer>> includeSamples;
     private StudyConfigurationManager studyConfigurationManager;
@@ -111,6 +111,7 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         studyConfigurations = new HashMap<>();
         __studySamplesId = new HashMap<>();
         __samplesPosition = new HashMap<>();
+        __returnedSamples = new HashMap<>();
         studyDefaultGenotypeSet = new HashMap<>();
         includeSamples = Collections.emptyMap();
         studyConfigurationManager = null;
@@ -212,9 +213,11 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
             return Collections.emptyList();
         }
 
+        final ReturnedSamples returnedSamples = getReturnedSamples(studyConfiguration, sampleIds, samplesPositionToReturn);
+        final int numSamples = samplesPositionToReturn.size();
         final Set<Integer> filesWithSamplesData;
         final Map<Integer, Document> files;
-        final Set<Integer> loadedSamples;
+        final boolean[] loadedSamples = new boolean[numSamples];
         final List<String> extraFields;
         if (object.containsKey(DocumentToStudyVariantEntryConverter.FILES_FIELD)) {
             List<Document> fileObjects = getList(object, DocumentToStudyVariantEntryConverter.FILES_FIELD);
@@ -223,27 +226,21 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
                             f -> f.get(DocumentToStudyVariantEntryConverter.FILEID_FIELD, Number.class).intValue(),
                             f -> f));
 
-            loadedSamples = new HashSet<>();
-            filesWithSamplesData = new HashSet<>();
-            studyConfiguration.getSamplesInFiles().forEach((fileId, samplesInFile) -> {
-                // File indexed and contains any sample (not disjoint)
-                if (studyConfiguration.getIndexedFiles().contains(fileId) && !Collections.disjoint(samplesInFile, sampleIds.values())) {
-                    filesWithSamplesData.add(fileId);
-                }
-                if (files.containsKey(fileId) || files.containsKey(-fileId)) {
-                    loadedSamples.addAll(samplesInFile);
+            for (Integer fileId : files.keySet()) {
+                for (int samplePosition : returnedSamples.getLoadedSamplePositions(Math.abs(fileId))) {
+                    loadedSamples[samplePosition] = true;
                 }
-            });
+            }
+            filesWithSamplesData = returnedSamples.filesWithSamplesData;
 
             extraFields = getExtraFormatFields(filesWithSamplesData, files);
         } else {
             files = Collections.emptyMap();
             extraFields = Collections.emptyList();
             filesWithSamplesData = Collections.emptySet();
-            loadedSamples = Collections.emptySet();
         }
 
-        List<List<String>> samplesData = new ArrayList<>(sampleIds.size());
+        List<List<String>> samplesData = new ArrayList<>(numSamples);
 
 
         // An array of genotypes is initialized with the most common one
@@ -258,15 +255,13 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         }
 
         // Add the samples to the file
-        for (String sampleName : samplesPositionToReturn.keySet()) {
-            Integer sampleId = sampleIds.get(sampleName);
-
+        for (int samplePosition = 0; samplePosition < numSamples; samplePosition++) {
             String[] values;
             if (excludeGenotypes) {
                 values = new String[extraFields.size()];
             } else {
                 values = new String[1 + extraFields.size()];
-                if (loadedSamples.contains(sampleId)) {
+                if (loadedSamples[samplePosition]) {
                     values[0] = defaultGenotype;
                 } else {
                     values[0] = unknownGenotype;
@@ -280,7 +275,6 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         // in the position specified in the array, such as:
         // "0|1" : [ 41, 311, 342, 358, 881, 898, 903 ]
         // genotypes[41], genotypes[311], etc, will be set to "0|1"
-        Map<Integer, String> idSamples = getIndexedSamplesIdMap(studyId).inverse();
         if (!excludeGenotypes) {
             Document mongoGenotypes = (Document) object.get(DocumentToStudyVariantEntryConverter.GENOTYPES_FIELD);
             for (Map.Entry<String, Object> dbo : mongoGenotypes.entrySet()) {
@@ -292,8 +286,9 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
                     genotype = genotypeToDataModelType(dbo.getKey());
                 }
                 for (Integer sampleId : (List<Integer>) dbo.getValue()) {
-                    if (idSamples.containsKey(sampleId)) {
-                        samplesData.get(samplesPositionToReturn.get(idSamples.get(sampleId))).set(0, genotype);
+                    int samplePosition = returnedSamples.getSamplePosition(sampleId);
+                    if (samplePosition >= 0) {
+                        samplesData.get(samplePosition).set(0, genotype);
                     }
                 }
             }
@@ -301,6 +296,8 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
 
         if (!extraFields.isEmpty()) {
             for (Integer fid : filesWithSamplesData) {
+                // Position to return of each sample in the file, in the same order as the values are stored
+                int[] fileSamplePositions = returnedSamples.getFileSamplePositions(fid);
                 Document samplesDataDocument = null;
                 if (files.containsKey(fid) && files.get(fid).containsKey(DocumentToStudyVariantEntryConverter.SAMPLE_DATA_FIELD)) {
                     samplesDataDocument = files.get(fid)
@@ -318,7 +315,7 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
                     }
                     for (String extraField : extraFields) {
                         extraField = extraField.toLowerCase();
-                        byte[] byteArray = samplesDataDocument == null || !samplesDataDocument.containsKey(extraField)
+                        byte[] byteArray = !samplesDataDocument.containsKey(extraField)
                                 ? null
                                 : samplesDataDocument.get(extraField, Binary.class).getData();
 
@@ -339,29 +336,11 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
                         } catch (InvalidProtocolBufferException e) {
                             throw new UncheckedIOException(e);
                         }
-                        Supplier<String> supplier;
-                        if (otherFields == null) {
-                            supplier = () -> UNKNOWN_FIELD;
-                        } else if (otherFields.getIntValuesCount() > 0) {
-                            final Iterator<Integer> iterator = otherFields.getIntValuesList().iterator();
-                            supplier = () -> iterator.hasNext() ? INTEGER_COMPLEX_TYPE_CONVERTER.convertToDataModelType(iterator.next())
-                                    : UNKNOWN_FIELD;
-                        } else if (otherFields.getFloatValuesCount() > 0) {
-                            final Iterator<Integer> iterator = otherFields.getFloatValuesList().iterator();
-                            supplier = () -> iterator.hasNext() ? FLOAT_COMPLEX_TYPE_CONVERTER.convertToDataModelType(iterator.next())
-                                    : UNKNOWN_FIELD;
-                        } else {
-                            final Iterator<String> iterator = otherFields.getStringValuesList().iterator();
-                            supplier = () -> iterator.hasNext() ? iterator.next() : UNKNOWN_FIELD;
-                        }
-                        for (Integer sampleId : studyConfiguration.getSamplesInFiles().get(fid)) {
-                            String sampleName = studyConfiguration.getSampleIds().inverse().get(sampleId);
-                            Integer samplePosition = samplesPositionToReturn.get(sampleName);
-                            if (samplePosition == null) {
-                                // The sample on this position is not returned. Skip this value.
-                                supplier.get();
-                            } else {
-                                samplesData.get(samplePosition).set(extraFieldPosition, supplier.get());
+                        // Only decode the values of the returned samples
+                        for (int i = 0; i < fileSamplePositions.length; i++) {
+                            int samplePosition = fileSamplePositions[i];
+                            if (samplePosition >= 0) {
+                                samplesData.get(samplePosition).set(extraFieldPosition, getExtraFieldValue(otherFields, i));
                             }
                         }
 
@@ -375,10 +354,8 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
                         extraFieldPosition = 1; //Skip GT
                     }
                     for (int i = 0; i < extraFields.size(); i++) {
-                        for (Integer sampleId : studyConfiguration.getSamplesInFiles().get(fid)) {
-                            String sampleName = studyConfiguration.getSampleIds().inverse().get(sampleId);
-                            Integer samplePosition = samplesPositionToReturn.get(sampleName);
-                            if (samplePosition != null) {
+                        for (int samplePosition : fileSamplePositions) {
+                            if (samplePosition >= 0) {
                                 if (samplesData.get(samplePosition).get(extraFieldPosition) == null) {
                                     samplesData.get(samplePosition).set(extraFieldPosition, UNKNOWN_FIELD);
                                 }
@@ -409,6 +386,22 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         return samplesData;
     }
 
+    private static String getExtraFieldValue(VariantMongoDBProto.OtherFields otherFields, int i) {
+        if (otherFields == null) {
+            return UNKNOWN_FIELD;
+        } else if (otherFields.getIntValuesCount() > 0) {
+            return i < otherFields.getIntValuesCount()
+                    ? INTEGER_COMPLEX_TYPE_CONVERTER.convertToDataModelType(otherFields.getIntValues(i))
+                    : UNKNOWN_FIELD;
+        } else if (otherFields.getFloatValuesCount() > 0) {
+            return i < otherFields.getFloatValuesCount()
+                    ? FLOAT_COMPLEX_TYPE_CONVERTER.convertToDataModelType(otherFields.getFloatValues(i))
+                    : UNKNOWN_FIELD;
+        } else {
+            return i < otherFields.getStringValuesCount() ? otherFields.getStringValues(i) : UNKNOWN_FIELD;
+        }
+    }
+
     public List<String> getExtraFormatFields(Set<Integer> filesWithSamplesData, Map<Integer, Document> files) {
         final List<String> extraFields;
         if (format != null) {
@@ -637,11 +630,13 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         }
         __studySamplesId.clear();
         __samplesPosition.clear();
+        __returnedSamples.clear();
     }
 
     public void addStudyConfiguration(StudyConfiguration studyConfiguration) {
         this.studyConfigurations.put(studyConfiguration.getStudyId(), studyConfiguration);
         this.__studySamplesId.put(studyConfiguration.getStudyId(), null);
+        this.__returnedSamples.remove(studyConfiguration.getStudyId());
 
         Set defGenotypeSet = studyConfiguration.getAttributes().get(DEFAULT_GENOTYPE.key(), Set.class);
         if (defGenotypeSet == null) {
@@ -708,6 +703,77 @@ public class DocumentToSamplesConverter extends AbstractDocumentConverter {
         return __samplesPosition.get(studyConfiguration.getStudyId());
     }
 
+    private ReturnedSamples getReturnedSamples(StudyConfiguration studyConfiguration, BiMap<String, Integer> sampleIds,
+                                               LinkedHashMap<String, Integer> samplesPositionToReturn) {
+        return __returnedSamples.computeIfAbsent(studyConfiguration.getStudyId(),
+                studyId -> new ReturnedSamples(studyConfiguration, sampleIds, samplesPositionToReturn));
+    }
+
+    /**
+     * Int indexed positions of the returned samples, so only the returned samples are decoded from each document.
+     */
+    private static final class ReturnedSamples {
+        private static final int[] EMPTY = new int[0];
+
+        /** Position to return of each sampleId. -1 if the sample is not returned. */
+        private final int[] samplePositions;
+        /** For each file, position to return of each of its samples, in the order they are stored. -1 if not returned. */
+        private final Map<Integer, int[]> fileSamplePositions = new HashMap<>();
+        /** For each file, positions to return of its samples. */
+        private final Map<Integer, int[]> loadedSamplePositions = new HashMap<>();
+        /** Indexed files with any returned sample. */
+        private final Set<Integer> filesWithSamplesData = new HashSet<>();
+
+        ReturnedSamples(StudyConfiguration studyConfiguration, BiMap<String, Integer> sampleIds,
+                        LinkedHashMap<String, Integer> samplesPositionToReturn) {
+            int maxSampleId = -1;
+            for (Integer sampleId : studyConfiguration.getSampleIds().values()) {
+                maxSampleId = Math.max(maxSampleId, sampleId);
+            }
+            samplePositions = new int[maxSampleId + 1];
+            Arrays.fill(samplePositions, -1);
+            for (Map.Entry<String, Integer> entry : sampleIds.entrySet()) {
+                Integer samplePosition = samplesPositionToReturn.get(entry.getKey());
+                if (samplePosition != null && entry.getValue() >= 0 && entry.getValue() < samplePositions.length) {
+                    samplePositions[entry.getValue()] = samplePosition;
+                }
+            }
+
+            BiMap<Integer, String> sampleNames = studyConfiguration.getSampleIds().inverse();
+            studyConfiguration.getSamplesInFiles().forEach((fileId, samplesInFile) -> {
+                int[] positions = new int[samplesInFile.size()];
+                int[] loadedPositions = new int[samplesInFile.size()];
+                int numLoaded = 0;
+                int i = 0;
+                for (Integer sampleId : samplesInFile) {
+                    Integer samplePosition = samplesPositionToReturn.get(sampleNames.get(sampleId));
+                    positions[i++] = samplePosition == null ? -1 : samplePosition;
+                    if (getSamplePosition(sampleId) >= 0) {
+                        loadedPositions[numLoaded++] = getSamplePosition(sampleId);
+                    }
+                }
+                fileSamplePositions.put(fileId, positions);
+                loadedSamplePositions.put(fileId, Arrays.copyOf(loadedPositions, numLoaded));
+                // File indexed and contains any returned sample
+                if (numLoaded > 0 && studyConfiguration.getIndexedFiles().contains(fileId)) {
+                    filesWithSamplesData.add(fileId);
+                }
+            });
+        }
+
+        int getSamplePosition(int sampleId) {
+            return sampleId >= 0 && sampleId < samplePositions.length ? samplePositions[sampleId] : -1;
+        }
+
+        int[] getFileSamplePositions(int fileId) {
+            return fileSamplePositions.getOrDefault(fileId, EMPTY);
+        }
+
+        int[] getLoadedSamplePositions(int fileId) {
+            return loadedSamplePositions.getOrDefault(fileId, EMPTY);
+        }
+    }
+
     public static String genotypeToDataModelType(String genotype) {
         return StringUtils.replace(genotype, "-1", ".");
     }
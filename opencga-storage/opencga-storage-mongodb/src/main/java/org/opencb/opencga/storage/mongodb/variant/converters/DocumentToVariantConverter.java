@@ -22,13 +22,16 @@ import org.opencb.biodata.models.variant.StudyEntry;
 import org.opencb.biodata.models.variant.Variant;
 import org.opencb.biodata.models.variant.avro.*;
 import org.opencb.commons.datastore.core.ComplexTypeConverter;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchUtils;
 import org.opencb.opencga.storage.mongodb.variant.adaptors.VariantMongoDBAdaptor;
 
 import java.util.*;
 
 import static java.util.Collections.*;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.GROUP_NAME;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.INDEX_SYNC_GROUPS;
 import static org.opencb.opencga.storage.core.variant.adaptors.VariantField.AdditionalAttributes.RELEASE;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter.*;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantAnnotationConverter.*;
@@ -172,6 +175,8 @@ public class DocumentToVariantConverter extends AbstractDocumentConverter implem
 
     // Add default variant ID if it is missing. Use CHR:POS:REF:ALT
     private boolean addDefaultId;
+    // Last search index timestamp. Used to know which groups of fields were modified since then
+    private long indexTimestamp = -1;
 
     /**
      * Create a converter between {@link Variant} and {@link Document} entities when there is
@@ -321,8 +326,10 @@ public class DocumentToVariantConverter extends AbstractDocumentConverter implem
         }
         Document customAnnotation = object.get(CUSTOM_ANNOTATION_FIELD, Document.class);
         boolean hasRelease = object.containsKey(RELEASE_FIELD);
-        boolean hasIndex = object.containsKey(INDEX_FIELD);
-        if (mongoAnnotation != null || customAnnotation != null || hasRelease) {
+        // Modified groups of fields are only needed when reading variants to index. See setIndexTimestamp
+        Set<SyncGroup> syncGroups = indexTimestamp > 0 ? getSyncGroups(object.get(INDEX_FIELD, Document.class)) : null;
+        boolean hasSyncGroups = syncGroups != null;
+        if (mongoAnnotation != null || customAnnotation != null || hasRelease || hasSyncGroups) {
             VariantAnnotation annotation;
             if (mongoAnnotation != null) {
                 annotation = variantAnnotationConverter
@@ -335,7 +342,7 @@ public class DocumentToVariantConverter extends AbstractDocumentConverter implem
                 }
             }
             AdditionalAttribute additionalAttribute = null;
-            if (hasRelease || hasIndex) {
+            if (hasRelease || hasSyncGroups) {
                 if (annotation.getAdditionalAttributes() == null) {
                     annotation.setAdditionalAttributes(new HashMap<>());
                 }
@@ -355,6 +362,9 @@ public class DocumentToVariantConverter extends AbstractDocumentConverter implem
 
                 additionalAttribute.getAttribute().put(RELEASE.key(), release);
             }
+            if (hasSyncGroups) {
+                additionalAttribute.getAttribute().put(INDEX_SYNC_GROUPS.key(), VariantSearchUtils.syncGroupsToString(syncGroups));
+            }
 
             variant.setAnnotation(annotation);
         }
@@ -367,6 +377,32 @@ public class DocumentToVariantConverter extends AbstractDocumentConverter implem
         return variant;
     }
 
+    /**
+     * Groups of fields modified after the last search index.
+     *
+     * @param index Index document, with the timestamp of the last modification of each group
+     * @return Modified groups of fields, or null if unknown
+     */
+    private Set<SyncGroup> getSyncGroups(Document index) {
+        if (index == null) {
+            return null;
+        }
+        Set<SyncGroup> syncGroups = EnumSet.noneOf(SyncGroup.class);
+        for (SyncGroup syncGroup : SyncGroup.values()) {
+            Object ts = index.get(syncGroup.key());
+            if (ts instanceof Number && ((Number) ts).longValue() > indexTimestamp) {
+                syncGroups.add(syncGroup);
+            }
+        }
+        // Modified by a version that did not register the groups
+        return syncGroups.isEmpty() ? null : syncGroups;
+    }
+
+    public DocumentToVariantConverter setIndexTimestamp(long indexTimestamp) {
+        this.indexTimestamp = indexTimestamp;
+        return this;
+    }
+
     @Override
     public Document convertToStorageType(Variant variant) {
         // Attributes easily calculated
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2015-2017 OpenCB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opencb.opencga.storage.mongodb.variant.converters.stage;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.bson.types.Binary;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.FileEntry;
+import org.opencb.biodata.models.variant.avro.StudyEntry;
+import org.opencb.biodata.models.variant.avro.VariantAvro;
+import org.opencb.commons.datastore.core.ComplexTypeConverter;
+import org.opencb.commons.utils.CompressionUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.zip.DataFormatException;
+
+/**
+ * Converts variants into a compact binary for the stage collection.
+ * <p>
+ * The variant, without the samples data and the file attributes, is written as Avro binary. The samples data is written by columns,
+ * one column per format field. Values from a list of well known values, as the most common genotypes, are written as a single
+ * byte. A column with repeated values is dictionary encoded if it takes less space, so each distinct value is written and decoded
+ * only once. Format fields and file attribute keys from a list of well known keys are also written as a single byte.
+ * <p>
+ * Columns are length prefixed, so the decoder can skip the format fields that are not going to be used.
+ * <p>
+ * Binaries written by the {@link VariantToAvroBinaryConverter} can also be read.
+ */
+public class VariantToColumnarBinaryConverter implements ComplexTypeConverter<Variant, Binary> {
+
+    /** First byte of the binary. Compressed Avro binaries from {@link VariantToAvroBinaryConverter} start with a zlib header. */
+    static final byte MAGIC = 'C';
+
+    // Column types. PLAIN_COLUMN is only read, for binaries written before VALUES_COLUMN existed
+    private static final int PLAIN_COLUMN = 0;
+    private static final int DICTIONARY_COLUMN = 1;
+    private static final int VALUES_COLUMN = 2;
+    // Missing value. Used for the samples with less values than the format.
+    private static final int MISSING = 0;
+    // Value not in the list of well known values. Followed by the value.
+    private static final int LITERAL = -1;
+
+    // Well known keys. Never remove or reorder elements from this list! New elements must be added at the end.
+    private static final List<String> KEYS = Collections.unmodifiableList(Arrays.asList(
+            "GT", "DP", "AD", "GQ", "PL", "FT", "GL", "PS", "PGT", "PID", "MIN_DP", "SB", "RGQ",
+            "QUAL", "FILTER", "SRC", "AC", "AF", "AN", "BaseQRankSum", "ClippingRankSum", "DB", "DS", "END", "ExcessHet",
+            "FS", "InbreedingCoeff", "MLEAC", "MLEAF", "MQ", "MQRankSum", "QD", "ReadPosRankSum", "SOR", "NEGATIVE_TRAIN_SITE",
+            "POSITIVE_TRAIN_SITE", "VQSLOD", "culprit", "HaplotypeScore", "MQ0", "NS"));
+    private static final Map<String, Integer> KEYS_INDEX = index(KEYS);
+
+    // Well known values. Never remove or reorder elements from this list! New elements must be added at the end.
+    private static final List<String> VALUES = Collections.unmodifiableList(Arrays.asList(
+            "0/0", "0/1", "1/1", "./.", "0|0", "0|1", "1|0", "1|1", ".|.", "0", "1", ".", "1/2", "2/2", "0/2", "PASS", "0,0"));
+    private static final Map<String, Integer> VALUES_INDEX = index(VALUES);
+
+    private final Set<String> includeFormat;
+    private final VariantToAvroBinaryConverter avroConverter = new VariantToAvroBinaryConverter();
+    private final SpecificDatumWriter<VariantAvro> writer = new SpecificDatumWriter<>(VariantAvro.getClassSchema());
+    private final SpecificDatumReader<VariantAvro> reader = new SpecificDatumReader<>(VariantAvro.getClassSchema());
+
+    public VariantToColumnarBinaryConverter() {
+        this(null);
+    }
+
+    /**
+     * @param includeFormat Format fields to decode. Other fields are skipped. Null for all the fields.
+     */
+    public VariantToColumnarBinaryConverter(Collection<String> includeFormat) {
+        this.includeFormat = includeFormat == null ? null : new HashSet<>(includeFormat);
+    }
+
+    @Override
+    public Variant convertToDataModelType(Binary object) {
+        byte[] data = object.getData();
+        if (data.length == 0 || data[0] != MAGIC) {
+            return avroConverter.convertToDataModelType(object);
+        }
+        try {
+            data = CompressionUtils.decompress(Arrays.copyOfRange(data, 1, data.length));
+            BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(data, null);
+
+            ByteBuffer skeleton = decoder.readBytes(null);
+            VariantAvro variantAvro = reader.read(null,
+                    DecoderFactory.get().binaryDecoder(skeleton.array(), skeleton.position(), skeleton.remaining(), null));
+
+            for (StudyEntry study : variantAvro.getStudies()) {
+                for (FileEntry file : study.getFiles()) {
+                    int numAttributes = decoder.readInt();
+                    Map<String, String> attributes = new HashMap<>(numAttributes);
+                    for (int i = 0; i < numAttributes; i++) {
+                        String key = readKey(decoder);
+                        attributes.put(key, decoder.readString());
+                    }
+                    file.setAttributes(attributes);
+                }
+                readSamplesData(decoder, study);
+            }
+            return new Variant(variantAvro);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DataFormatException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Binary convertToStorageType(Variant variant) {
+        List<StudyEntry> studies = variant.getImpl().getStudies();
+
+        // Write as Avro binary a copy of the variant without the columnar data. The given variant is not modified
+        VariantAvro skeletonAvro = shallowCopy(variant.getImpl(), new VariantAvro());
+        List<StudyEntry> skeletonStudies = new ArrayList<>(studies.size());
+        for (StudyEntry study : studies) {
+            StudyEntry skeletonStudy = shallowCopy(study, new StudyEntry());
+            skeletonStudy.setFormat(Collections.emptyList());
+            skeletonStudy.setSamplesData(Collections.emptyList());
+            List<FileEntry> skeletonFiles = new ArrayList<>(study.getFiles().size());
+            for (FileEntry file : study.getFiles()) {
+                FileEntry skeletonFile = shallowCopy(file, new FileEntry());
+                skeletonFile.setAttributes(Collections.emptyMap());
+                skeletonFiles.add(skeletonFile);
+            }
+            skeletonStudy.setFiles(skeletonFiles);
+            skeletonStudies.add(skeletonStudy);
+        }
+        skeletonAvro.setStudies(skeletonStudies);
+
+        try {
+            ByteArrayOutputStream skeleton = new ByteArrayOutputStream();
+            BinaryEncoder skeletonEncoder = EncoderFactory.get().directBinaryEncoder(skeleton, null);
+            writer.write(skeletonAvro, skeletonEncoder);
+            skeletonEncoder.flush();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
+            encoder.writeBytes(skeleton.toByteArray());
+            for (StudyEntry study : studies) {
+                for (FileEntry file : study.getFiles()) {
+                    Map<String, String> fileAttributes = file.getAttributes() == null ? Collections.emptyMap() : file.getAttributes();
+                    encoder.writeInt(fileAttributes.size());
+                    for (Map.Entry<String, String> entry : fileAttributes.entrySet()) {
+                        writeKey(encoder, entry.getKey());
+                        encoder.writeString(entry.getValue());
+                    }
+                }
+                writeSamplesData(encoder, study.getFormat(), study.getSamplesData());
+            }
+            encoder.flush();
+
+            byte[] compressed = CompressionUtils.compress(out.toByteArray());
+            byte[] data = new byte[compressed.length + 1];
+            data[0] = MAGIC;
+            System.arraycopy(compressed, 0, data, 1, compressed.length);
+            return new Binary(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeSamplesData(BinaryEncoder encoder, List<String> format, List<List<String>> samplesData) throws IOException {
+        int numSamples = samplesData.size();
+        encoder.writeInt(format.size());
+        encoder.writeInt(numSamples);
+        ByteArrayOutputStream columnOut = new ByteArrayOutputStream();
+        int[] indexes = new int[numSamples];
+        for (int i = 0; i < format.size(); i++) {
+            writeKey(encoder, format.get(i));
+
+            // Index of each value in the dictionary. 0 is reserved for missing values
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            // Estimated size of the column with and without dictionary
+            int valuesSize = 0;
+            int dictionarySize = 0;
+            for (int sample = 0; sample < numSamples; sample++) {
+                List<String> sampleData = samplesData.get(sample);
+                String value = i < sampleData.size() ? sampleData.get(i) : null;
+                valuesSize += valueSize(value);
+                if (value == null) {
+                    indexes[sample] = MISSING;
+                } else {
+                    Integer index = dictionary.get(value);
+                    if (index == null) {
+                        index = dictionary.size() + 1;
+                        dictionary.put(value, index);
+                        dictionarySize += varIntSize(value.length()) + value.length();
+                    }
+                    indexes[sample] = index;
+                }
+                dictionarySize += varIntSize(indexes[sample]);
+            }
+
+            columnOut.reset();
+            BinaryEncoder columnEncoder = EncoderFactory.get().directBinaryEncoder(columnOut, null);
+            if (dictionarySize + varIntSize(dictionary.size()) < valuesSize) {
+                columnEncoder.writeInt(DICTIONARY_COLUMN);
+                columnEncoder.writeInt(dictionary.size());
+                for (String value : dictionary.keySet()) {
+                    columnEncoder.writeString(value);
+                }
+                for (int index : indexes) {
+                    columnEncoder.writeInt(index);
+                }
+            } else {
+                columnEncoder.writeInt(VALUES_COLUMN);
+                for (List<String> sampleData : samplesData) {
+                    writeValue(columnEncoder, i < sampleData.size() ? sampleData.get(i) : null);
+                }
+            }
+            columnEncoder.flush();
+            encoder.writeBytes(columnOut.toByteArray());
+        }
+    }
+
+    private void readSamplesData(BinaryDecoder decoder, StudyEntry study) throws IOException {
+        int numFormat = decoder.readInt();
+        int numSamples = decoder.readInt();
+        List<String> format = new ArrayList<>(numFormat);
+        List<String[]> samplesData = new ArrayList<>(numSamples);
+        for (int i = 0; i < numSamples; i++) {
+            samplesData.add(new String[numFormat]);
+        }
+        for (int i = 0; i < numFormat; i++) {
+            String key = readKey(decoder);
+            if (includeFormat != null && !includeFormat.contains(key)) {
+                decoder.skipBytes();
+                continue;
+            }
+            int column = format.size();
+            format.add(key);
+
+            ByteBuffer columnBytes = decoder.readBytes(null);
+            BinaryDecoder columnDecoder = DecoderFactory.get()
+                    .binaryDecoder(columnBytes.array(), columnBytes.position(), columnBytes.remaining(), null);
+            int columnType = columnDecoder.readInt();
+            if (columnType == DICTIONARY_COLUMN) {
+                // Each distinct value is decoded only once
+                int dictionarySize = columnDecoder.readInt();
+                String[] dictionary = new String[dictionarySize + 1];
+                for (int d = 1; d <= dictionarySize; d++) {
+                    dictionary[d] = columnDecoder.readString();
+                }
+                for (String[] sampleData : samplesData) {
+                    sampleData[column] = dictionary[columnDecoder.readInt()];
+                }
+            } else if (columnType == VALUES_COLUMN) {
+                for (String[] sampleData : samplesData) {
+                    sampleData[column] = readValue(columnDecoder);
+                }
+            } else {
+                for (String[] sampleData : samplesData) {
+                    sampleData[column] = columnDecoder.readBoolean() ? columnDecoder.readString() : null;
+                }
+            }
+        }
+
+        List<List<String>> samplesDataList = new ArrayList<>(numSamples);
+        for (String[] sampleData : samplesData) {
+            // Missing values are only allowed at the end of the sample data
+            int size = format.size();
+            while (size > 0 && sampleData[size - 1] == null) {
+                size--;
+            }
+            samplesDataList.add(new ArrayList<>(Arrays.asList(sampleData).subList(0, size)));
+        }
+        study.setFormat(format);
+        study.setSamplesData(samplesDataList);
+    }
+
+    private static void writeValue(BinaryEncoder encoder, String value) throws IOException {
+        if (value == null) {
+            encoder.writeInt(MISSING);
+        } else {
+            Integer index = VALUES_INDEX.get(value);
+            if (index == null) {
+                encoder.writeInt(LITERAL);
+                encoder.writeString(value);
+            } else {
+                encoder.writeInt(index + 1);
+            }
+        }
+    }
+
+    private static String readValue(BinaryDecoder decoder) throws IOException {
+        int code = decoder.readInt();
+        if (code == MISSING) {
+            return null;
+        } else if (code == LITERAL) {
+            return decoder.readString();
+        } else {
+            return VALUES.get(code - 1);
+        }
+    }
+
+    // Approximate size of a value written with writeValue. Assumes one byte per char, as writeString
+    private static int valueSize(String value) {
+        if (value == null || VALUES_INDEX.containsKey(value)) {
+            return 1;
+        } else {
+            return 1 + varIntSize(value.length()) + value.length();
+        }
+    }
+
+    // Size of an int written by Avro, with zig-zag variable length encoding
+    private static int varIntSize(int value) {
+        int n = (value << 1) ^ (value >> 31);
+        int size = 1;
+        while ((n & ~0x7F) != 0) {
+            size++;
+            n >>>= 7;
+        }
+        return size;
+    }
+
+    private static Map<String, Integer> index(List<String> list) {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < list.size(); i++) {
+            map.put(list.get(i), i);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static <T extends SpecificRecordBase> T shallowCopy(T record, T copy) {
+        for (Schema.Field field : record.getSchema().getFields()) {
+            copy.put(field.pos(), record.get(field.pos()));
+        }
+        return copy;
+    }
+
+    private static void writeKey(BinaryEncoder encoder, String key) throws IOException {
+        Integer index = KEYS_INDEX.get(key);
+        if (index == null) {
+            encoder.writeInt(-1);
+            encoder.writeString(key);
+        } else {
+            encoder.writeInt(index);
+        }
+    }
+
+    private static String readKey(BinaryDecoder decoder) throws IOException {
+        int index = decoder.readInt();
+        if (index < 0) {
+            return decoder.readString();
+        } else {
+            return KEYS.get(index);
+        }
+    }
+}
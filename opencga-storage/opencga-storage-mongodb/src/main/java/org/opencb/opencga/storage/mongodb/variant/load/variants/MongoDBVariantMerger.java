@@ -29,6 +29,7 @@ import org.opencb.biodata.models.variant.avro.FileEntry;
 import org.opencb.biodata.models.variant.avro.VariantType;
 import org.opencb.biodata.tools.variant.VariantNormalizer;
 import org.opencb.biodata.tools.variant.merge.VariantMerger;
+import org.opencb.commons.datastore.core.ComplexTypeConverter;
 import org.opencb.commons.datastore.core.Query;
 import org.opencb.commons.datastore.core.QueryOptions;
 import org.opencb.commons.datastore.core.QueryResult;
@@ -43,6 +44,7 @@ import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesCo
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToStudyVariantEntryConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter;
 import org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter;
+import org.opencb.opencga.storage.mongodb.variant.converters.stage.VariantToColumnarBinaryConverter;
 import org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStageLoader;
 import org.opencb.opencga.storage.mongodb.variant.search.MongoDBVariantSearchIndexUtils;
 import org.slf4j.Logger;
@@ -58,7 +60,6 @@ import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVa
 import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter.ID_FIELD;
 import static org.opencb.opencga.storage.mongodb.variant.converters.stage.StageDocumentToVariantConverter.SECONDARY_ALTERNATES_FIELD;
 import static org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStageLoader.STAGE_TO_VARIANT_CONVERTER;
-import static org.opencb.opencga.storage.mongodb.variant.load.stage.MongoDBVariantStageLoader.VARIANT_CONVERTER_DEFAULT;
 
 /**
  * Created on 07/04/16.
@@ -246,6 +247,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
     private final Logger logger = LoggerFactory.getLogger(MongoDBVariantMerger.class);
     private final VariantMerger variantMerger;
     private final List<String> format;
+    private final ComplexTypeConverter<Variant, Binary> stageConverter;
     private boolean resume;
 
     private final int release;
@@ -258,6 +260,10 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
 
         excludeGenotypes = getExcludeGenotypes(studyConfiguration);
         format = buildFormat(studyConfiguration);
+        // Decode from the stage collection only the format fields to be loaded
+        Set<String> stageFormat = new HashSet<>(format);
+        stageFormat.add(VariantMerger.GT_KEY);
+        stageConverter = new VariantToColumnarBinaryConverter(stageFormat);
         indexedSamples = Collections.unmodifiableList(buildIndexedSamplesList(fileIds));
         studyId = studyConfiguration.getStudyId();
         this.release = release;
@@ -968,7 +974,7 @@ public class MongoDBVariantMerger implements ParallelTaskRunner.Task<Document, M
 
     private Variant getFileVariantFromStage(Object o) {
         if (o instanceof Binary) {
-            return VARIANT_CONVERTER_DEFAULT.convertToDataModelType((Binary) o);
+            return stageConverter.convertToDataModelType((Binary) o);
         } else if (o instanceof Variant) {
 //            Variant original = (Variant) o;
 //            Variant copy = new Variant(VariantAvro.newBuilder(original.getImpl()).build());
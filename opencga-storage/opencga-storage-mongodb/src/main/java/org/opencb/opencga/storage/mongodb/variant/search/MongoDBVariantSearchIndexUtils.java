@@ -1,7 +1,9 @@
 package org.opencb.opencga.storage.mongodb.variant.search;
 
 import org.bson.conversions.Bson;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
 
+import static com.mongodb.client.model.Updates.combine;
 import static com.mongodb.client.model.Updates.set;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter.INDEX_FIELD;
 import static org.opencb.opencga.storage.mongodb.variant.converters.DocumentToVariantConverter.INDEX_TIMESTAMP_FIELD;
@@ -26,11 +28,27 @@ public class MongoDBVariantSearchIndexUtils {
         return set(INDEX_FIELD + '.' + INDEX_TIMESTAMP_FIELD, value);
     }
 
+    /**
+     * Marks the variant as not synchronized, and the group of fields that was modified.
+     * The group is stored as a timestamp, to know if it was modified after the last search index.
+     *
+     * @param value     Timestamp
+     * @param syncGroup Modified group of fields
+     * @return Update operation
+     */
+    public static Bson getSetIndexNotSynchronized(long value, SyncGroup syncGroup) {
+        return combine(getSetIndexNotSynchronized(value), set(getSyncGroupField(syncGroup), value));
+    }
+
+    public static String getSyncGroupField(SyncGroup syncGroup) {
+        return INDEX_FIELD + '.' + syncGroup.key();
+    }
+
 //    public static Bson getSetIndexSynchronized() {
 //        return SET_INDEX_SYNCHRONIZED;
 //    }
 
     public static Bson getSetIndexUnknown(long ts) {
-        return set(INDEX_FIELD + '.' + INDEX_TIMESTAMP_FIELD, ts);
+        return combine(set(INDEX_FIELD + '.' + INDEX_TIMESTAMP_FIELD, ts), set(getSyncGroupField(SyncGroup.STUDIES), ts));
     }
 }
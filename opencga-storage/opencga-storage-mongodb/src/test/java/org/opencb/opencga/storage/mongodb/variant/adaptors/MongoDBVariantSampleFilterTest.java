@@ -0,0 +1,22 @@
+package org.opencb.opencga.storage.mongodb.variant.adaptors;
+
+import org.junit.Test;
+import org.opencb.commons.datastore.core.ObjectMap;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.analysis.VariantSampleFilterMultiFileTest;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageTest;
+
+import static org.junit.Assert.assertTrue;
+
+public class MongoDBVariantSampleFilterTest extends VariantSampleFilterMultiFileTest implements MongoDBVariantStorageTest {
+
+    @Override
+    protected ObjectMap getOptions() {
+        return new ObjectMap(VariantStorageEngine.Options.MERGE_MODE.key(), VariantStorageEngine.MergeMode.BASIC);
+    }
+
+    @Test
+    public void testFilterClass() {
+        assertTrue(filter instanceof MongoDBVariantSampleFilter);
+    }
+}
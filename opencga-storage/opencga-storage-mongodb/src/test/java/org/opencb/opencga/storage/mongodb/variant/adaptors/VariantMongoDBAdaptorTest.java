@@ -2,10 +2,21 @@ package org.opencb.opencga.storage.mongodb.variant.adaptors;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Test;
+import org.opencb.commons.datastore.core.Query;
+import org.opencb.commons.datastore.core.QueryOptions;
+import org.opencb.commons.datastore.core.result.FacetQueryResult;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantDBAdaptorTest;
+import org.opencb.opencga.storage.core.variant.adaptors.VariantQueryException;
 import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageTest;
 
 import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.opencb.opencga.storage.core.variant.adaptors.VariantQueryParam.*;
 
 /**
  * Created on 22/12/17.
@@ -29,4 +40,68 @@ public class VariantMongoDBAdaptorTest extends VariantDBAdaptorTest implements M
         super.after();
         closeConnections();
     }
+
+    @Test
+    public void testFacet() {
+        FacetQueryResult result = dbAdaptor.facet(new Query(),
+                new QueryOptions(QueryOptions.FACET, "chromosome:100;type;genes:5;consequenceType:5;start[1..100000000]:10000000"));
+
+        long numVariants = dbAdaptor.count(new Query()).first();
+        assertEquals(numVariants, result.getNumMatches());
+        assertEquals(5, result.getResults().size());
+
+        long chromosomeCount = 0;
+        for (FacetQueryResult.Bucket bucket : result.getResults().get(0).getBuckets()) {
+            assertEquals(dbAdaptor.count(new Query(REGION.key(), bucket.getValue())).first().longValue(), bucket.getCount());
+            chromosomeCount += bucket.getCount();
+        }
+        assertEquals(numVariants, chromosomeCount);
+
+        for (FacetQueryResult.Bucket bucket : result.getResults().get(1).getBuckets()) {
+            assertEquals(dbAdaptor.count(new Query(TYPE.key(), bucket.getValue())).first().longValue(), bucket.getCount());
+        }
+
+        assertEquals(5, result.getResults().get(2).getBuckets().size());
+        for (FacetQueryResult.Bucket bucket : result.getResults().get(2).getBuckets()) {
+            assertEquals(dbAdaptor.count(new Query(GENE.key(), bucket.getValue())).first().longValue(), bucket.getCount());
+        }
+
+        for (FacetQueryResult.Bucket bucket : result.getResults().get(3).getBuckets()) {
+            assertEquals(dbAdaptor.count(new Query(ANNOT_CONSEQUENCE_TYPE.key(), bucket.getValue())).first().longValue(),
+                    bucket.getCount());
+        }
+
+        assertTrue(result.getResults().get(4).getBuckets().size() > 0);
+    }
+
+    @Test
+    public void testFacetRegion() throws Exception {
+        FacetQueryResult all = dbAdaptor.facet(new Query(), new QueryOptions(QueryOptions.FACET, "chromosome:100"));
+        String chromosome = all.getResults().get(0).getBuckets().get(0).getValue();
+
+        Query query = new Query(REGION.key(), chromosome + ":1-100000000");
+        VariantMongoDBFacetQueryExecutor executor = new VariantMongoDBFacetQueryExecutor(
+                ((VariantMongoDBAdaptor) dbAdaptor).getVariantsCollection(), ((VariantMongoDBAdaptor) dbAdaptor).getQueryParser(), null);
+        assertEquals(Collections.singletonList(chromosome), executor.getChromosomes(query));
+        // Genes may be in any chromosome
+        assertEquals(all.getResults().get(0).getBuckets().size(),
+                executor.getChromosomes(new Query(query).append(GENE.key(), "BRCA2")).size());
+
+        // Use the storage engine, so the query is preprocessed. Compute the facets in the database
+        variantStorageEngine.getConfiguration().getSearch().setActive(false);
+        FacetQueryResult result = variantStorageEngine.facet(query, new QueryOptions(QueryOptions.FACET, "chromosome:100;type"));
+        assertEquals(dbAdaptor.count(query).first().longValue(), result.getNumMatches());
+        assertEquals(1, result.getResults().get(0).getBuckets().size());
+        assertEquals(chromosome, result.getResults().get(0).getBuckets().get(0).getValue());
+    }
+
+    @Test
+    public void testFacetMaxBuckets() {
+        try {
+            dbAdaptor.facet(new Query(), new QueryOptions(QueryOptions.FACET, "start[1..250000000]:1"));
+            fail("Expected VariantQueryException");
+        } catch (VariantQueryException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("max number of buckets"));
+        }
+    }
 }
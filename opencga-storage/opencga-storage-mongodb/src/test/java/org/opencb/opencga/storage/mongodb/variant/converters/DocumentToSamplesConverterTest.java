@@ -16,8 +16,15 @@
 
 package org.opencb.opencga.storage.mongodb.variant.converters;
 
+import org.bson.Document;
+import org.bson.types.Binary;
 import org.junit.Test;
-import org.opencb.opencga.storage.mongodb.variant.converters.DocumentToSamplesConverter;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
+
+import java.util.*;
 
 import static org.junit.Assert.*;
 
@@ -68,6 +75,70 @@ public class DocumentToSamplesConverterTest {
 
     }
 
+    @Test
+    public void testIncludeSamples() throws Exception {
+        int studyId = 1;
+        int fileId = 10;
+        StudyConfiguration studyConfiguration = new StudyConfiguration(studyId, "study");
+        Map<String, Integer> sampleIds = new HashMap<>();
+        for (int i = 1; i <= 5; i++) {
+            sampleIds.put("S" + i, i);
+        }
+        studyConfiguration.setSampleIds(sampleIds);
+        studyConfiguration.getIndexedFiles().add(fileId);
+        LinkedHashSet<String> samplesInFile = new LinkedHashSet<>(Arrays.asList("S1", "S2", "S3", "S4", "S5"));
+        studyConfiguration.getSamplesInFiles().put(fileId, new LinkedHashSet<>(Arrays.asList(1, 2, 3, 4, 5)));
+        studyConfiguration.getAttributes().put(MongoDBVariantStorageEngine.MongoDBVariantOptions.DEFAULT_GENOTYPE.key(),
+                Collections.singleton("0/0"));
+        studyConfiguration.getAttributes().put(VariantStorageEngine.Options.EXTRA_GENOTYPE_FIELDS.key(), Collections.singletonList("DP"));
+        studyConfiguration.getAttributes().put(VariantStorageEngine.Options.EXTRA_GENOTYPE_FIELDS_TYPE.key(),
+                Collections.singletonList("Integer"));
+        studyConfiguration.getAttributes().put(VariantStorageEngine.Options.EXTRA_GENOTYPE_FIELDS_COMPRESS.key(), false);
+
+        StudyEntry studyEntry = new StudyEntry(String.valueOf(studyId));
+        studyEntry.setFormatAsString("GT:DP");
+        List<String> genotypes = Arrays.asList("0/0", "0/1", "1/1", "0/1", "0/0");
+        for (int i = 1; i <= 5; i++) {
+            Map<String, String> data = new HashMap<>();
+            data.put("GT", genotypes.get(i - 1));
+            data.put("DP", String.valueOf(i * 10));
+            studyEntry.addSampleData("S" + i, data);
+        }
+
+        Document sampleData = new Document();
+        Document mongoGenotypes = new DocumentToSamplesConverter(studyConfiguration)
+                .convertToStorageType(studyEntry, studyId, sampleData, samplesInFile);
+        Document mongoSampleData = new Document();
+        sampleData.forEach((key, value) -> mongoSampleData.append(key, new Binary((byte[]) value)));
+        Document mongoStudy = new Document(mongoGenotypes)
+                .append(DocumentToStudyVariantEntryConverter.FILES_FIELD, Collections.singletonList(
+                        new Document(DocumentToStudyVariantEntryConverter.FILEID_FIELD, fileId)
+                                .append(DocumentToStudyVariantEntryConverter.SAMPLE_DATA_FIELD, mongoSampleData)));
+
+        DocumentToSamplesConverter converter = new DocumentToSamplesConverter(studyConfiguration);
+        assertEquals(Arrays.asList(
+                Arrays.asList("0/0", "10"),
+                Arrays.asList("0/1", "20"),
+                Arrays.asList("1/1", "30"),
+                Arrays.asList("0/1", "40"),
+                Arrays.asList("0/0", "50")),
+                converter.convertToDataModelType(mongoStudy, studyId));
+
+        converter.setIncludeSamples(Collections.singletonMap(studyId, Arrays.asList(4, 2)));
+        StudyEntry convertedStudyEntry = new StudyEntry(String.valueOf(studyId));
+        assertEquals(Arrays.asList(
+                Arrays.asList("0/1", "40"),
+                Arrays.asList("0/1", "20")),
+                converter.convertToDataModelType(mongoStudy, convertedStudyEntry, studyId));
+        assertEquals(Arrays.asList("S4", "S2"), convertedStudyEntry.getOrderedSamplesName());
+
+        converter.setIncludeSamples(Collections.singletonMap(studyId, Arrays.asList(5, 1)));
+        assertEquals(Arrays.asList(
+                Arrays.asList("0/0", "50"),
+                Arrays.asList("0/0", "10")),
+                converter.convertToDataModelType(mongoStudy, studyId));
+    }
+
     public void testInteger(String dataModelType) {
         assertEquals(dataModelType, DocumentToSamplesConverter.INTEGER_COMPLEX_TYPE_CONVERTER.convertToDataModelType(DocumentToSamplesConverter.INTEGER_COMPLEX_TYPE_CONVERTER.convertToStorageType(dataModelType)));
     }
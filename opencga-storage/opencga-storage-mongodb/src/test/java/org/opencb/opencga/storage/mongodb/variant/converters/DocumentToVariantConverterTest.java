@@ -27,7 +27,9 @@ import org.opencb.biodata.models.variant.avro.FileEntry;
 import org.opencb.commons.utils.CryptoUtils;
 import org.opencb.opencga.storage.core.metadata.StudyConfiguration;
 import org.opencb.opencga.storage.core.variant.VariantStorageEngine;
+import org.opencb.opencga.storage.core.variant.VariantStorageEngine.SyncGroup;
 import org.opencb.opencga.storage.core.variant.adaptors.VariantField;
+import org.opencb.opencga.storage.core.variant.search.VariantSearchUtils;
 import org.opencb.opencga.storage.mongodb.variant.MongoDBVariantStorageEngine;
 import org.opencb.opencga.storage.mongodb.variant.protobuf.VariantMongoDBProto;
 
@@ -35,6 +37,7 @@ import java.util.*;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 /**
  * @author Cristina Yenyxe Gonzalez Garcia <cyenyxe@ebi.ac.uk>
@@ -188,6 +191,31 @@ public class DocumentToVariantConverterTest {
         assertEquals(mongoVariant, converted);
     }
 
+    @Test
+    public void testConvertIndexSyncGroups() {
+        mongoVariant.append(DocumentToVariantConverter.INDEX_FIELD, new Document(DocumentToVariantConverter.INDEX_TIMESTAMP_FIELD, 300L)
+                .append(SyncGroup.ANNOTATION.key(), 300L)
+                .append(SyncGroup.STATS.key(), 50L));
+
+        // Groups are only read when the index timestamp is provided
+        DocumentToVariantConverter converter = new DocumentToVariantConverter();
+        assertNull(converter.convertToDataModelType(mongoVariant).getAnnotation());
+
+        converter.setIndexTimestamp(100);
+        Variant converted = converter.convertToDataModelType(mongoVariant);
+        assertEquals(EnumSet.of(SyncGroup.ANNOTATION), VariantSearchUtils.getSyncGroups(converted));
+
+        converter.setIndexTimestamp(20);
+        converted = converter.convertToDataModelType(mongoVariant);
+        assertEquals(EnumSet.of(SyncGroup.ANNOTATION, SyncGroup.STATS), VariantSearchUtils.getSyncGroups(converted));
+
+        // No group modified after the last index. Unknown changes
+        converter.setIndexTimestamp(400);
+        converted = converter.convertToDataModelType(mongoVariant);
+        assertNull(converted.getAnnotation());
+        assertNull(VariantSearchUtils.getSyncGroups(converted));
+    }
+
     @Test
     public void testFieldsMap() {
         assertEquals(VariantField.values().length, DocumentToVariantConverter.FIELDS_MAP.size());
@@ -0,0 +1,114 @@
+package org.opencb.opencga.storage.mongodb.variant.converters.stage;
+
+import org.bson.types.Binary;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencb.biodata.models.variant.StudyEntry;
+import org.opencb.biodata.models.variant.Variant;
+import org.opencb.biodata.models.variant.avro.FileEntry;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class VariantToColumnarBinaryConverterTest {
+
+    private Variant variant;
+
+    @Before
+    public void setUp() throws Exception {
+        variant = new Variant("1:1000:A:C");
+        StudyEntry studyEntry = new StudyEntry("1", new ArrayList<>(), Arrays.asList("GT", "DP", "MY_FIELD"));
+        List<List<String>> samplesData = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            if (i % 10 == 0) {
+                // Samples with missing values
+                samplesData.add(new ArrayList<>(Arrays.asList("0/1", String.valueOf(i))));
+            } else {
+                samplesData.add(new ArrayList<>(Arrays.asList(i % 3 == 0 ? "0/0" : "1/1", String.valueOf(i), "value")));
+            }
+        }
+        studyEntry.setSamplesData(samplesData);
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("QUAL", "50");
+        attributes.put("FILTER", "PASS");
+        attributes.put("MY_KEY", "my_value");
+        studyEntry.setFiles(Collections.singletonList(new FileEntry("5", "1000:A:C,G:1", attributes)));
+        variant.addStudyEntry(studyEntry);
+    }
+
+    @Test
+    public void testConvert() {
+        VariantToColumnarBinaryConverter converter = new VariantToColumnarBinaryConverter();
+        StudyEntry studyEntry = variant.getStudies().get(0);
+        List<String> format = studyEntry.getFormat();
+        List<List<String>> samplesData = studyEntry.getSamplesData();
+        Map<String, String> attributes = studyEntry.getFiles().get(0).getAttributes();
+        Binary binary = converter.convertToStorageType(variant);
+
+        assertEquals(VariantToColumnarBinaryConverter.MAGIC, binary.getData()[0]);
+        // The original variant is not modified
+        assertSame(format, variant.getStudies().get(0).getFormat());
+        assertSame(samplesData, variant.getStudies().get(0).getSamplesData());
+        assertSame(attributes, variant.getStudies().get(0).getFiles().get(0).getAttributes());
+        assertEquals(3, format.size());
+        assertEquals(100, samplesData.size());
+        assertEquals(3, attributes.size());
+
+        checkEquals(variant, converter.convertToDataModelType(binary));
+        assertTrue(binary.length() < new VariantToAvroBinaryConverter().convertToStorageType(variant).length());
+    }
+
+    @Test
+    public void testConvertSingleSample() {
+        Variant variant = new Variant("1:1000:A:C");
+        StudyEntry studyEntry = new StudyEntry("1", new ArrayList<>(), Arrays.asList("GT", "FT", "MY_FIELD"));
+        studyEntry.setSamplesData(Collections.singletonList(new ArrayList<>(Arrays.asList("0/1", "PASS", "value"))));
+        studyEntry.setFiles(Collections.singletonList(new FileEntry("5", "", new HashMap<>())));
+        variant.addStudyEntry(studyEntry);
+
+        VariantToColumnarBinaryConverter converter = new VariantToColumnarBinaryConverter();
+        Binary binary = converter.convertToStorageType(variant);
+        checkEquals(variant, converter.convertToDataModelType(binary));
+
+        // Known values and dictionary entries are decoded once, and shared between samples and variants
+        Variant decoded = converter.convertToDataModelType(binary);
+        assertSame(decoded.getStudies().get(0).getSamplesData().get(0).get(0),
+                converter.convertToDataModelType(binary).getStudies().get(0).getSamplesData().get(0).get(0));
+        decoded = converter.convertToDataModelType(converter.convertToStorageType(this.variant));
+        List<List<String>> samplesData = decoded.getStudies().get(0).getSamplesData();
+        assertSame(samplesData.get(1).get(2), samplesData.get(2).get(2));
+    }
+
+    @Test
+    public void testConvertIncludeFormat() {
+        Binary binary = new VariantToColumnarBinaryConverter().convertToStorageType(variant);
+        Variant decoded = new VariantToColumnarBinaryConverter(Collections.singletonList("GT")).convertToDataModelType(binary);
+
+        StudyEntry studyEntry = decoded.getStudies().get(0);
+        assertEquals(Collections.singletonList("GT"), studyEntry.getFormat());
+        List<List<String>> samplesData = variant.getStudies().get(0).getSamplesData();
+        for (int i = 0; i < samplesData.size(); i++) {
+            assertEquals(Collections.singletonList(samplesData.get(i).get(0)), studyEntry.getSamplesData().get(i));
+        }
+        assertEquals(variant.getStudies().get(0).getFiles().get(0).getAttributes(), studyEntry.getFiles().get(0).getAttributes());
+    }
+
+    @Test
+    public void testReadAvroBinary() {
+        Binary binary = new VariantToAvroBinaryConverter().convertToStorageType(variant);
+        checkEquals(variant, new VariantToColumnarBinaryConverter().convertToDataModelType(binary));
+    }
+
+    private void checkEquals(Variant expected, Variant actual) {
+        assertEquals(expected.toString(), actual.toString());
+        StudyEntry expectedStudy = expected.getStudies().get(0);
+        StudyEntry actualStudy = actual.getStudies().get(0);
+        assertEquals(expectedStudy.getStudyId(), actualStudy.getStudyId());
+        assertEquals(expectedStudy.getFormat(), actualStudy.getFormat());
+        assertEquals(expectedStudy.getSamplesData(), actualStudy.getSamplesData());
+        assertEquals(expectedStudy.getFiles().get(0).getFileId(), actualStudy.getFiles().get(0).getFileId());
+        assertEquals(expectedStudy.getFiles().get(0).getCall(), actualStudy.getFiles().get(0).getCall());
+        assertEquals(expectedStudy.getFiles().get(0).getAttributes(), actualStudy.getFiles().get(0).getAttributes());
+    }
+}